@@ -0,0 +1,36 @@
+package ui_invernadero;
+
+/**
+ * Actuadores del Arduino del invernadero con su pin digital
+ * Ventilador(8), Buzzer(13), LED(11), Válvula(12), Servo(7)
+ * @author Nicom
+ */
+public enum Actuador {
+
+    VENTILADOR(8, "🌀 Ventilador"),
+    BUZZER(13, "🚨 Buzzer"),
+    LED(11, "💡 LED"),
+    VALVULA(12, "💧 Válvula"),
+    SERVO(7, "🚪 Servo");
+
+    private final int pin;
+    private final String etiqueta;
+
+    private Actuador(int pin, String etiqueta) {
+        this.pin = pin;
+        this.etiqueta = etiqueta;
+    }
+
+    public int getPin() {
+        return pin;
+    }
+
+    public String getEtiqueta() {
+        return etiqueta;
+    }
+
+    // Bit del actuador dentro de una máscara de estados (orden del enum)
+    public int getBit() {
+        return 1 << ordinal();
+    }
+}
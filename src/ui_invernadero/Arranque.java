@@ -0,0 +1,206 @@
+package ui_invernadero;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.GraphicsEnvironment;
+import java.awt.Toolkit;
+import java.awt.Window;
+import java.awt.event.AWTEventListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.swing.GroupLayout;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
+import javax.swing.JTextArea;
+
+/**
+ * Arranque de las pantallas: aspecto Nimbus una sola vez por proceso, tareas
+ * de fondo diferidas hasta que la ventana ya se ve y medición del tiempo al
+ * primer cuadro visible.
+ * Con -Dinvernadero.arranque=medir el proceso imprime "ARRANQUE" cuando se
+ * abre la primera ventana; con "entrenar" además termina, para que la
+ * corrida de entrenamiento de build.xml (ant cds) vuelque las clases de
+ * arranque a un archivo CDS (-XX:ArchiveClassesAtExit).
+ * @author Nicom
+ */
+public final class Arranque {
+
+    public static final String PROPIEDAD = "invernadero.arranque";
+    static final String MARCA = "ARRANQUE";
+
+    private static boolean aspectoConfigurado = false;
+
+    private Arranque() {
+    }
+
+    /**
+     * Nimbus, si está instalado; las llamadas siguientes no hacen nada
+     */
+    public static synchronized void configurarAspecto() {
+        if (aspectoConfigurado) return;
+        aspectoConfigurado = true;
+        medirSiSePide();
+        try {
+            for (javax.swing.UIManager.LookAndFeelInfo info : javax.swing.UIManager.getInstalledLookAndFeels()) {
+                if ("Nimbus".equals(info.getName())) {
+                    javax.swing.UIManager.setLookAndFeel(info.getClassName());
+                    break;
+                }
+            }
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException
+                 | javax.swing.UnsupportedLookAndFeelException ex) {
+            java.util.logging.Logger.getLogger(Arranque.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Corre la tarea en el EDT una vez que la ventana se abrió, detrás del
+     * primer pintado: lo que no se ve (núcleo de control, conexión con la
+     * placa, tablero) no demora el primer cuadro
+     */
+    public static void alMostrarse(final Window ventana, final Runnable tarea) {
+        ventana.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                ventana.removeWindowListener(this);
+                EventQueue.invokeLater(tarea);
+            }
+        });
+    }
+
+    private static void medirSiSePide() {
+        final String modo = System.getProperty(PROPIEDAD);
+        if (modo == null || GraphicsEnvironment.isHeadless()) return;
+        Toolkit.getDefaultToolkit().addAWTEventListener(new AWTEventListener() {
+            @Override
+            public void eventDispatched(AWTEvent evento) {
+                if (evento.getID() != WindowEvent.WINDOW_OPENED) return;
+                Toolkit.getDefaultToolkit().removeAWTEventListener(this);
+                // Después de los eventos ya encolados (el primer pintado)
+                EventQueue.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        System.out.println(MARCA);
+                        System.out.flush();
+                        if ("entrenar".equals(modo)) System.exit(0);
+                    }
+                });
+            }
+        }, AWTEvent.WINDOW_EVENT_MASK);
+    }
+
+    /**
+     * Sin pantalla no se puede abrir una ventana: se recorre lo que la
+     * ventana necesitaría (aspecto, clases de las pantallas y un panel con
+     * los mismos componentes pintado fuera de pantalla)
+     */
+    private static void sinPantalla() throws ClassNotFoundException {
+        configurarAspecto();
+        for (String pantalla : new String[] {"PanelPrincipal", "PantallaBienvenida", "ControlManual", "ControlAutomatico"}) {
+            Class.forName(Arranque.class.getPackage().getName() + "." + pantalla);
+        }
+        JPanel panel = new JPanel();
+        GroupLayout layout = new GroupLayout(panel);
+        panel.setLayout(layout);
+        JLabel etiqueta = new JLabel("🌡️ LM35: 25.0°C (Pin A0)");
+        JButton boton = new JButton("🌀 Ventilador OFF (Pin 8)");
+        JProgressBar barra = new JProgressBar(0, 100);
+        barra.setStringPainted(true);
+        JSpinner spinner = new JSpinner();
+        JComboBox<MotorControlAutomatico.ModoVentana> combo = new JComboBox<>(MotorControlAutomatico.ModoVentana.values());
+        JCheckBox casilla = new JCheckBox("Predicción");
+        JScrollPane desplazable = new JScrollPane(new JTextArea(10, 40));
+        layout.setHorizontalGroup(layout.createParallelGroup().addComponent(etiqueta).addComponent(boton).addComponent(barra)
+                .addComponent(spinner).addComponent(combo).addComponent(casilla).addComponent(desplazable));
+        layout.setVerticalGroup(layout.createSequentialGroup().addComponent(etiqueta).addComponent(boton).addComponent(barra)
+                .addComponent(spinner).addComponent(combo).addComponent(casilla).addComponent(desplazable));
+        panel.setSize(panel.getPreferredSize());
+        panel.doLayout();
+        BufferedImage imagen = new BufferedImage(Math.max(1, panel.getWidth()), Math.max(1, panel.getHeight()), BufferedImage.TYPE_INT_ARGB);
+        panel.printAll(imagen.getGraphics());
+        System.out.println(MARCA);
+    }
+
+    /**
+     * Tiempo hasta el primer cuadro visible, sin y con archivo CDS:
+     * java -cp dist/UI_Invernadero.jar ui_invernadero.Arranque [corridas] [archivo.jsa]
+     * Cada corrida es una JVM nueva que abre la pantalla principal y termina
+     * al verla; el archivo se genera con "ant cds". Sin pantalla (servidor,
+     * integración continua) se mide el mismo arranque hasta el panel pintado
+     * fuera de pantalla. "entrenar" y "medir" son las corridas hijas.
+     */
+    public static void main(String args[]) throws Exception {
+        if (args.length > 0 && (args[0].equals("entrenar") || args[0].equals("medir"))) {
+            System.setProperty(PROPIEDAD, args[0]);
+            if (GraphicsEnvironment.isHeadless()) {
+                sinPantalla();
+                return;
+            }
+            PanelPrincipal.main(new String[0]);
+            return;
+        }
+        int corridas = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        String archivo = args.length > 1 ? args[1] : "dist/UI_Invernadero.jsa";
+        Path diario = Files.createTempFile("arranque", ".wal");           // Sin pantallas recuperadas del diario real
+        try {
+            System.out.printf("%d corridas, %s%n", corridas,
+                              GraphicsEnvironment.isHeadless() ? "sin pantalla: hasta el panel pintado fuera de pantalla"
+                                                               : "hasta la pantalla principal visible");
+            medir("Sin archivo CDS", corridas, diario, null);
+            if (new File(archivo).isFile()) {
+                medir("Con " + archivo, corridas, diario, archivo);
+            } else {
+                System.out.println("No existe " + archivo + ": generarlo con \"ant cds\"");
+            }
+        } finally {
+            Files.deleteIfExists(diario);
+        }
+    }
+
+    private static void medir(String nombre, int corridas, Path diario, String archivo) throws IOException, InterruptedException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        long[] tiempos = new long[corridas];
+        for (int i = 0; i < corridas; i++) {
+            List<String> comando = new ArrayList<>(Arrays.asList(java, "-cp", System.getProperty("java.class.path"),
+                    "-D" + DiarioActuadores.PROPIEDAD_ARCHIVO + "=" + diario));
+            if (archivo != null) comando.add("-XX:SharedArchiveFile=" + archivo);
+            if (GraphicsEnvironment.isHeadless()) comando.add("-Djava.awt.headless=true");
+            comando.add(Arranque.class.getName());
+            comando.add("entrenar");
+            long inicio = System.nanoTime();
+            Process proceso = new ProcessBuilder(comando).redirectErrorStream(true).start();
+            BufferedReader salida = new BufferedReader(new InputStreamReader(proceso.getInputStream(), StandardCharsets.UTF_8));
+            String linea;
+            tiempos[i] = -1;
+            while ((linea = salida.readLine()) != null) {
+                if (linea.equals(MARCA)) {
+                    tiempos[i] = System.nanoTime() - inicio;
+                    break;
+                }
+            }
+            if (!proceso.waitFor(30, TimeUnit.SECONDS)) proceso.destroyForcibly();
+            if (tiempos[i] < 0) throw new IOException("La corrida " + i + " no llegó al primer cuadro");
+        }
+        Arrays.sort(tiempos);
+        System.out.printf("%-40s mediana %5.0f ms, mínimo %5.0f ms, máximo %5.0f ms%n", nombre + ":",
+                          tiempos[corridas / 2] / 1e6, tiempos[0] / 1e6, tiempos[corridas - 1] / 1e6);
+    }
+}
@@ -0,0 +1,576 @@
+package ui_invernadero;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comandos de actuadores en tubería, con confirmación y reenvío
+ * Cada comando lleva un número de secuencia y sale sin esperar la
+ * confirmación del anterior: hasta "ventana" comandos en vuelo a la vez y
+ * el resto espera en orden. La confirmación ("K,pin,valor,secuencia" o la
+ * trama binaria con la misma secuencia) llega por el hilo de lectura de
+ * FlotaPlacas y libera su lugar, así el ritmo lo pone el enlace y no la ida
+ * y vuelta. Un comando sin confirmar a tiempo se reenvía con la misma
+ * secuencia (fija un valor: repetirlo no cambia nada) hasta "reintentos"
+ * veces; después queda FALLIDO. El plazo sigue a la ida y vuelta medida
+ * como en TCP (media + 4 desvíos, sin medir los reenviados) y se duplica
+ * en cada reenvío: si el enlace se llena no se lo llena más de reenvíos.
+ * Un comando nuevo para el mismo pin reemplaza al anterior: si todavía
+ * esperaba ya no se envía y si estaba en vuelo ya no se reenvía, para que
+ * un reenvío atrasado no deshaga el valor más nuevo.
+ * Las tramas se escriben desde un hilo propio: quien envía (el EDT) y el
+ * vigilante solo las encolan, sin tocar el socket con el canal bloqueado.
+ * @author Nicom
+ */
+public final class CanalComandos implements Closeable {
+
+    public static final String PROPIEDAD_PLACA = "invernadero.placa";
+    public static final int VENTANA = 8;
+    public static final long ESPERA_MS = 500;
+    public static final int REINTENTOS = 3;
+
+    public enum Estado {
+        PENDIENTE, CONFIRMADO, FALLIDO, REEMPLAZADO
+    }
+
+    /**
+     * Cambios de estado de los comandos; se llama con el canal bloqueado
+     * (desde quien envía, el lector de la placa o el vigilante de esperas),
+     * así que no debe bloquear: la interfaz pasa al EDT con invokeLater
+     */
+    public interface Oyente {
+        void cambio(Comando comando);
+    }
+
+    public static final class Comando {
+        private final int secuencia;
+        private final int pin;
+        private final int valor;
+        private volatile Estado estado = Estado.PENDIENTE;
+        private volatile long idaYVueltaNs = -1;
+        private int intentos = 0;
+        private long primerEnvioNs;
+        private long envioNs;
+
+        private Comando(int secuencia, int pin, int valor) {
+            this.secuencia = secuencia;
+            this.pin = pin;
+            this.valor = valor;
+        }
+
+        public int getSecuencia() {
+            return secuencia;
+        }
+
+        public int getPin() {
+            return pin;
+        }
+
+        public int getValor() {
+            return valor;
+        }
+
+        public Estado getEstado() {
+            return estado;
+        }
+
+        // Del primer envío a la confirmación (-1 si no se confirmó)
+        public long getIdaYVueltaNs() {
+            return idaYVueltaNs;
+        }
+
+        public String getTexto() {
+            return ProtocoloArduino.formatearComando(pin, valor, secuencia);
+        }
+    }
+
+    private final FlotaPlacas flota;
+    private final int placa;
+    private final int ventana;
+    private final long esperaMinimaNs;
+    private final int reintentos;
+    private final FlotaPlacas.OyenteRespuestas respuestas;
+    private final ScheduledExecutorService vigilante;
+    private final BlockingQueue<String> porEscribir = new LinkedBlockingQueue<>();   // En orden de envío; la ventana la acota
+    private final Thread escritor;
+    private boolean enlaceCaido = false;                                    // Solo del escritor
+
+    // Con el monitor del canal
+    private final Map<Integer, Comando> enVuelo = new HashMap<>();
+    private final ArrayDeque<Comando> enEspera = new ArrayDeque<>();
+    private final Comando[] ultimos = new Comando[256];                     // Último comando por pin
+    private final List<Comando> porReenviar = new ArrayList<>();
+    private int siguienteSecuencia = 0;
+    private long idaYVueltaSuaveNs = -1;                                    // -1 hasta la primera medición
+    private long desvioNs = 0;
+    private long plazoNs;
+    private long respondidos = 0;
+    private long confirmados = 0;
+    private long fallidos = 0;
+    private long reenvios = 0;
+    private long duplicadas = 0;
+
+    private volatile Oyente oyente;
+    private volatile boolean cerrado = false;
+    private Closeable[] propios = new Closeable[0];                          // Conexión abierta por abrirConfigurado
+
+    /**
+     * @param ventana comandos en vuelo a la vez (1 = parar y esperar)
+     * @param esperaMs plazo inicial y mínimo para reenviar sin confirmación
+     * @param reintentos reenvíos antes de darlo por fallido
+     */
+    public CanalComandos(FlotaPlacas flota, final int placa, int ventana, long esperaMs, int reintentos) {
+        if (ventana < 1 || esperaMs <= 0 || reintentos < 0) throw new IllegalArgumentException("Ventana, espera o reintentos inválidos");
+        this.flota = flota;
+        this.placa = placa;
+        this.ventana = ventana;
+        this.esperaMinimaNs = TimeUnit.MILLISECONDS.toNanos(esperaMs);
+        this.plazoNs = esperaMinimaNs;
+        this.reintentos = reintentos;
+        respuestas = new FlotaPlacas.OyenteRespuestas() {
+            @Override
+            public void respuesta(int origen, String linea) {
+                recibir(linea);
+            }
+        };
+        flota.setOyenteRespuestas(placa, respuestas);
+        vigilante = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable tarea) {
+                Thread hilo = new Thread(tarea, "comandos-placa-" + placa);
+                hilo.setDaemon(true);
+                return hilo;
+            }
+        });
+        escritor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                escribir();
+            }
+        }, "escritor-placa-" + placa);
+        escritor.setDaemon(true);
+        escritor.start();
+        long periodo = Math.max(5, esperaMs / 4);
+        vigilante.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                vigilar();
+            }
+        }, periodo, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Abre la placa de -Dinvernadero.placa ("host:puerto" por TCP o la ruta
+     * de un dispositivo serie); sin la propiedad levanta un EmuladorArduino
+     * local. El canal queda dueño de la conexión y la cierra con close();
+     * las muestras de la placa quedan en getFlota().getCanal().
+     */
+    public static CanalComandos abrirConfigurado() throws IOException {
+        String destino = System.getProperty(PROPIEDAD_PLACA, "");
+        EmuladorArduino emulador = null;
+        FlotaPlacas flota = null;
+        try {
+            FlotaPlacas.ConexionPlaca conexion;
+            if (destino.isEmpty() || destino.matches("[^/\\\\]+:\\d+")) {
+                Socket socket;
+                if (destino.isEmpty()) {
+                    emulador = new EmuladorArduino(0, 1.0, 1.0, System.nanoTime());
+                    emulador.iniciar();
+                    socket = new Socket(InetAddress.getLoopbackAddress(), emulador.getPuerto());
+                } else {
+                    int dosPuntos = destino.lastIndexOf(':');
+                    socket = new Socket(destino.substring(0, dosPuntos), Integer.parseInt(destino.substring(dosPuntos + 1)));
+                }
+                socket.setTcpNoDelay(true);                 // Los comandos en tubería no esperan al ACK de TCP
+                conexion = FlotaPlacas.socket(socket);
+            } else {
+                conexion = FlotaPlacas.dispositivo(Paths.get(destino));
+            }
+            flota = new FlotaPlacas(64);
+            flota.conectar(0, conexion, true);
+            CanalComandos canal = new CanalComandos(flota, 0, VENTANA, ESPERA_MS, REINTENTOS);
+            canal.propios = emulador != null ? new Closeable[] {flota, emulador} : new Closeable[] {flota};
+            return canal;
+        } catch (IOException | RuntimeException ex) {
+            if (flota != null) flota.close();
+            if (emulador != null) emulador.close();
+            throw ex;
+        }
+    }
+
+    public Comando enviar(Actuador actuador, boolean activo) {
+        return enviar(actuador.getPin(), ProtocoloArduino.valorPin(actuador, activo));
+    }
+
+    /**
+     * Encola el comando y lo envía si hay lugar en la ventana; no espera la confirmación
+     */
+    public synchronized Comando enviar(int pin, int valor) {
+        if (cerrado) throw new IllegalStateException("El canal de comandos está cerrado");
+        if (pin < 0 || pin >= ultimos.length || valor < 0 || valor > 255) {
+            throw new IllegalArgumentException("Pin o valor inválido: " + pin + "," + valor);
+        }
+        Comando anterior = ultimos[pin];
+        if (anterior != null && anterior.estado == Estado.PENDIENTE) {
+            enEspera.remove(anterior);                      // Si estaba en vuelo, su confirmación solo libera el lugar
+            anterior.estado = Estado.REEMPLAZADO;
+            notificar(anterior);
+        }
+        Comando comando = new Comando(siguienteSecuencia, pin, valor);
+        siguienteSecuencia = (siguienteSecuencia + 1) & 0xFFFF;
+        ultimos[pin] = comando;
+        notificar(comando);
+        if (enVuelo.size() < ventana) {
+            transmitir(comando, System.nanoTime());
+        } else {
+            enEspera.add(comando);
+        }
+        return comando;
+    }
+
+    /**
+     * Espera a que haya lugar en la ventana (contando los que esperan)
+     * @return false si venció el plazo
+     */
+    public synchronized boolean esperarLugar(long plazoMs) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(plazoMs);
+        while (enVuelo.size() + enEspera.size() >= ventana) {
+            long restante = limite - System.nanoTime();
+            if (restante <= 0) return false;
+            TimeUnit.NANOSECONDS.timedWait(this, restante);
+        }
+        return true;
+    }
+
+    /**
+     * Espera a que todos los comandos tengan respuesta o se den por fallidos
+     * @return false si venció el plazo
+     */
+    public synchronized boolean esperarVacio(long plazoMs) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(plazoMs);
+        while (!enVuelo.isEmpty() || !enEspera.isEmpty()) {
+            long restante = limite - System.nanoTime();
+            if (restante <= 0) return false;
+            TimeUnit.NANOSECONDS.timedWait(this, restante);
+        }
+        return true;
+    }
+
+    // Se encola con el canal bloqueado (así los comandos de un mismo pin salen en orden) y lo escribe el escritor
+    private void transmitir(Comando comando, long ahoraNs) {
+        comando.intentos++;
+        comando.envioNs = ahoraNs;
+        if (comando.intentos == 1) comando.primerEnvioNs = ahoraNs;
+        enVuelo.put(comando.secuencia, comando);
+        porEscribir.add(comando.getTexto());
+    }
+
+    // Hilo escritor: un socket lento o trabado no retiene el monitor ni al EDT
+    private void escribir() {
+        try {
+            while (!cerrado) {
+                String texto = porEscribir.take();
+                try {
+                    flota.enviar(placa, texto);
+                    enlaceCaido = false;
+                } catch (IOException ex) {
+                    // Queda en vuelo: la espera lo reenvía o lo da por fallido
+                    if (!enlaceCaido) {
+                        java.util.logging.Logger.getLogger(CanalComandos.class.getName()).log(java.util.logging.Level.WARNING,
+                                "No se pudo enviar " + texto + " a la placa " + placa, ex);
+                    }
+                    enlaceCaido = true;
+                }
+            }
+        } catch (InterruptedException ex) {
+            // Canal cerrado
+        }
+    }
+
+    private void recibir(String linea) {
+        int[] pinValor;
+        if (linea.startsWith("K,")) {
+            pinValor = ProtocoloArduino.parsearPinValor('K', linea);
+        } else if (linea.startsWith("E,")) {
+            pinValor = ProtocoloArduino.parsearPinValor('A', linea.substring(2));    // La placa devuelve el comando rechazado
+        } else {
+            pinValor = null;
+        }
+        if (pinValor == null) return;
+        boolean aceptado = linea.charAt(0) == 'K';
+        synchronized (this) {
+            Comando comando = pinValor[2] >= 0 ? enVuelo.get(pinValor[2]) : masViejo(pinValor[0], pinValor[1]);
+            if (comando == null || comando.pin != pinValor[0] || comando.valor != pinValor[1]) {
+                duplicadas++;                                // Confirmación de un reenvío ya resuelto
+                return;
+            }
+            enVuelo.remove(comando.secuencia);
+            respondidos++;
+            long ahora = System.nanoTime();
+            if (comando.intentos == 1) medir(ahora - comando.envioNs);
+            if (comando.estado == Estado.PENDIENTE) {
+                if (aceptado) {
+                    comando.idaYVueltaNs = ahora - comando.primerEnvioNs;
+                    comando.estado = Estado.CONFIRMADO;
+                    confirmados++;
+                    Metricas.COMANDOS_CONFIRMADOS.incrementar();
+                    Metricas.IDA_VUELTA_COMANDOS.observarNanos(comando.idaYVueltaNs);
+                } else {
+                    comando.estado = Estado.FALLIDO;
+                    fallidos++;
+                    Metricas.COMANDOS_FALLIDOS.incrementar();
+                }
+                notificar(comando);
+            }
+            llenarVentana(ahora);
+            notifyAll();
+        }
+    }
+
+    // Estimador de Jacobson/Karels; los reenviados no se miden porque no se sabe a qué envío responden
+    private void medir(long muestraNs) {
+        if (idaYVueltaSuaveNs < 0) {
+            idaYVueltaSuaveNs = muestraNs;
+            desvioNs = muestraNs / 2;
+        } else {
+            desvioNs += (Math.abs(muestraNs - idaYVueltaSuaveNs) - desvioNs) / 4;
+            idaYVueltaSuaveNs += (muestraNs - idaYVueltaSuaveNs) / 8;
+        }
+        plazoNs = Math.min(Math.max(esperaMinimaNs, idaYVueltaSuaveNs + 4 * desvioNs), esperaMinimaNs * 64);
+    }
+
+    // Firmware que no devuelve la secuencia: el comando en vuelo más viejo con ese pin y valor
+    private Comando masViejo(int pin, int valor) {
+        Comando elegido = null;
+        for (Comando comando : enVuelo.values()) {
+            if (comando.pin == pin && comando.valor == valor
+                    && (elegido == null || comando.primerEnvioNs - elegido.primerEnvioNs < 0)) {
+                elegido = comando;
+            }
+        }
+        return elegido;
+    }
+
+    private synchronized void vigilar() {
+        long ahora = System.nanoTime();
+        boolean liberados = false;
+        for (Iterator<Comando> it = enVuelo.values().iterator(); it.hasNext(); ) {
+            Comando comando = it.next();
+            if (ahora - comando.envioNs < plazoNs << Math.min(comando.intentos - 1, 6)) continue;
+            if (comando.estado != Estado.PENDIENTE) {
+                it.remove();                                // Reemplazado y sin confirmar: no se reenvía
+                liberados = true;
+            } else if (comando.intentos > reintentos) {
+                it.remove();
+                liberados = true;
+                comando.estado = Estado.FALLIDO;
+                fallidos++;
+                Metricas.COMANDOS_FALLIDOS.incrementar();
+                notificar(comando);
+            } else {
+                porReenviar.add(comando);
+            }
+        }
+        for (Comando comando : porReenviar) {
+            reenvios++;
+            Metricas.COMANDOS_REENVIOS.incrementar();
+            transmitir(comando, ahora);
+        }
+        porReenviar.clear();
+        if (liberados) {
+            llenarVentana(ahora);
+            notifyAll();
+        }
+    }
+
+    private void llenarVentana(long ahoraNs) {
+        while (enVuelo.size() < ventana && !enEspera.isEmpty()) {
+            transmitir(enEspera.poll(), ahoraNs);
+        }
+    }
+
+    private void notificar(Comando comando) {
+        Oyente actual = oyente;
+        if (actual != null) actual.cambio(comando);
+    }
+
+    public void setOyente(Oyente oyente) {
+        this.oyente = oyente;
+    }
+
+    public FlotaPlacas getFlota() {
+        return flota;
+    }
+
+    public synchronized int getEnVuelo() {
+        return enVuelo.size();
+    }
+
+    public synchronized int getEnEspera() {
+        return enEspera.size();
+    }
+
+    // Confirmaciones o rechazos que correspondían a un comando en vuelo (también reemplazado)
+    public synchronized long getRespondidos() {
+        return respondidos;
+    }
+
+    public synchronized long getConfirmados() {
+        return confirmados;
+    }
+
+    public synchronized long getFallidos() {
+        return fallidos;
+    }
+
+    public synchronized long getReenvios() {
+        return reenvios;
+    }
+
+    public synchronized long getDuplicadas() {
+        return duplicadas;
+    }
+
+    // Plazo actual para reenviar sin confirmación
+    public synchronized long getPlazoMs() {
+        return TimeUnit.NANOSECONDS.toMillis(plazoNs);
+    }
+
+    @Override
+    public void close() {
+        cerrado = true;
+        vigilante.shutdownNow();
+        escritor.interrupt();
+        flota.quitarOyenteRespuestas(placa, respuestas);
+        for (Closeable propio : propios) {
+            try {
+                propio.close();
+            } catch (IOException ex) {
+                // Ya estaba cerrado
+            }
+        }
+    }
+
+    /**
+     * Parar y esperar contra tubería frente al EmuladorArduino:
+     * java ui_invernadero.CanalComandos [comandos] [idaYVueltaMs]
+     * Se alternan los cinco actuadores tan rápido como deja la ventana; al
+     * final la máscara de la placa tiene que ser la del último comando de
+     * cada pin, también con bytes perdidos en las confirmaciones.
+     */
+    public static void main(String args[]) throws Exception {
+        int comandos = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        long idaYVuelta = args.length > 1 ? Long.parseLong(args[1]) : 20;
+        System.out.printf("%,d comandos, ida y vuelta %d ms, binario%n%-34s %10s %16s %9s %s%n", comandos, idaYVuelta,
+                          "", "comandos/s", "confirm. p50/p99", "reenvíos", "máscara final");
+        probar("Parar y esperar (ventana 1)", comandos, idaYVuelta, 1, 0, 0);
+        probar("Tubería, ventana 4", comandos, idaYVuelta, 4, 0, 0);
+        probar("Tubería, ventana 8", comandos, idaYVuelta, 8, 0, 0);
+        probar("Tubería, ventana 32", comandos, idaYVuelta, 32, 0, 0);
+        probar("Parar y esperar a 9600 baudios", comandos, idaYVuelta, 1, 0, 9600);
+        probar("Ventana 32 a 9600 baudios", comandos, idaYVuelta, 32, 0, 9600);
+        probar("Parar y esperar, 1% bytes perdidos", comandos, idaYVuelta, 1, 0.01, 0);
+        probar("Ventana 4, 1% bytes perdidos", comandos, idaYVuelta, 4, 0.01, 0);
+        probarDosPlacas(comandos, idaYVuelta);
+    }
+
+    // Dos canales en la misma flota: cerrar el de la placa 1 no deja sin confirmaciones a la placa 0
+    private static void probarDosPlacas(int cantidad, long idaYVuelta) throws Exception {
+        EmuladorArduino[] emuladores = new EmuladorArduino[2];
+        CanalComandos[] canales = new CanalComandos[2];
+        FlotaPlacas flota = new FlotaPlacas(4096);
+        for (int placa = 0; placa < 2; placa++) {
+            emuladores[placa] = new EmuladorArduino(0, 1.0, 1.0, 48L + placa);
+            emuladores[placa].setIdaYVuelta(idaYVuelta);
+            emuladores[placa].iniciar();
+            flota.conectar(placa, FlotaPlacas.socket(new Socket(InetAddress.getLoopbackAddress(), emuladores[placa].getPuerto())), true);
+            canales[placa] = new CanalComandos(flota, placa, 4, Math.max(100, idaYVuelta * 5), 5);
+        }
+        int esperada = 0;
+        for (int i = 0; i < cantidad; i++) {
+            if (i == cantidad / 2) {
+                canales[1].esperarVacio(60_000);
+                canales[1].close();
+            }
+            CanalComandos canal = canales[i < cantidad / 2 ? i % 2 : 0];
+            canal.esperarLugar(Long.MAX_VALUE / 2_000_000);
+            boolean activo = (i / 2) % 2 == 0;
+            canal.enviar(Actuador.LED, activo);
+            if (canal == canales[0]) esperada = activo ? Actuador.LED.getBit() : 0;
+        }
+        boolean completo = canales[0].esperarVacio(60_000);
+        long fallidos = canales[0].getFallidos() + canales[1].getFallidos();
+        canales[0].close();
+        flota.close();
+        int mascara = emuladores[0].getMascara();
+        for (EmuladorArduino emulador : emuladores) emulador.close();
+        System.out.printf("%-34s %d fallidos, %s%n", "Dos placas, una cerrada:", fallidos,
+                          completo && fallidos == 0 && mascara == esperada ? "correcta" : "ERROR " + mascara + " != " + esperada);
+    }
+
+    private static void probar(String nombre, int cantidad, long idaYVuelta, int ventana, double perdida, int baudios) throws Exception {
+        EmuladorArduino emulador = new EmuladorArduino(0, 1.0, 1.0, 48L);
+        emulador.setIdaYVuelta(idaYVuelta);
+        emulador.iniciar();
+        FlotaPlacas flota = new FlotaPlacas(4096);
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), emulador.getPuerto());
+        socket.setTcpNoDelay(true);
+        flota.conectar(0, FlotaPlacas.socket(socket), true);
+        emulador.setProbabilidadPerdida(perdida);
+        emulador.setBaudios(baudios);
+        CanalComandos canal = new CanalComandos(flota, 0, ventana, Math.max(100, idaYVuelta * 5), 5);
+        final long[] latencias = new long[cantidad];
+        final int[] n = {0};
+        canal.setOyente(new Oyente() {
+            @Override
+            public void cambio(Comando comando) {
+                if (comando.getEstado() == Estado.CONFIRMADO) latencias[n[0]++] = comando.getIdaYVueltaNs();
+            }
+        });
+
+        Actuador[] actuadores = {Actuador.VENTILADOR, Actuador.LED, Actuador.VALVULA, Actuador.SERVO, Actuador.BUZZER};
+        int esperada = 0;
+        long inicio = System.nanoTime();
+        for (int i = 0; i < cantidad; i++) {
+            canal.esperarLugar(Long.MAX_VALUE / 2_000_000);
+            Actuador actuador = actuadores[i % actuadores.length];
+            boolean activo = (i / actuadores.length) % 2 == 0;
+            canal.enviar(actuador, activo);
+            esperada = activo ? esperada | actuador.getBit() : esperada & ~actuador.getBit();
+        }
+        boolean completo = canal.esperarVacio(60_000);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        long respondidos = canal.getRespondidos();
+        long reenvios = canal.getReenvios();
+        int confirmadas;
+        synchronized (canal) {
+            confirmadas = n[0];
+        }
+        canal.close();
+        flota.close();
+        int mascara = emulador.getMascara();
+        emulador.close();
+
+        Arrays.sort(latencias, 0, confirmadas);
+        System.out.printf("%-34s %,10.0f %7.1f/%5.1f ms %9d %s%n", nombre + ":", respondidos / segundos,
+                          confirmadas > 0 ? latencias[confirmadas / 2] / 1e6 : 0.0,
+                          confirmadas > 0 ? latencias[(int) (confirmadas * 0.99)] / 1e6 : 0.0, reenvios,
+                          completo && mascara == esperada ? "correcta" : "ERROR " + mascara + " != " + esperada);
+    }
+}
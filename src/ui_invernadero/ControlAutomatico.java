@@ -4,25 +4,30 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 
 /**
  * Control Automático - Sistema basado en umbrales de Arduino
  * Sensores: LM35(A0), Humedad(A1), LDR(A2)
  * Actuadores: Ventilador(8), LED(11), Válvula(12), Servo(7), Buzzer(13)
+ * Los rótulos que se refrescan se escriben con FormatoPantalla, desde
+ * ControlAutomatico.Rotulos (se puede ejercitar sin ventana).
  * @author Nicom
  */
 public class ControlAutomatico extends javax.swing.JFrame {
     
     private Timer updateTimer;
-    private Timer automaticTimer;
+    private Timer refrescoTimer;
+    private final Rotulos rotulos;
+    private static final Color VERDE_ACTIVO = new Color(0, 150, 0);
+    private static final Color NARANJA_ACTIVO = new Color(255, 150, 0);
     private boolean modoAutomaticoActivo = false;
     
-    // Variables del Arduino - Valores reales simulados
+    // Variables del Arduino - Última foto publicada por el núcleo de control
     private double temperaturaLM35 = 25.0;        // Sensor LM35 (Pin A0)
     private int humedadAnalogica = 450;           // Sensor humedad (Pin A1) 0-1023
     private int valorLDR = 300;                   // Sensor LDR (Pin A2) 0-1023
+    private int actuadores = 0;                   // Máscara de actuadores automáticos
+    private final java.util.List<String> eventosPendientes = new java.util.ArrayList<>();
     
     // Umbrales configurables (valores por defecto del Arduino)
     private double tempNormal = 50.0;             // ≤50°C normal
@@ -30,20 +35,57 @@ public class ControlAutomatico extends javax.swing.JFrame {
     private double tempBuzzer = 56.0;             // >56°C buzzer
     private int umbralHumedad = 500;              // ≥500 riego
     private int umbralLuz = 500;                  // ≥500 noche
+    private MotorControlAutomatico.ModoVentana modoVentana = MotorControlAutomatico.ModoVentana.INSTANTANEO;
+    private int duracionVentana = 300;            // Segundos (5 minutos)
+    private boolean prediccionActiva = false;
+    private int horizontePrediccion = 60;         // Segundos de anticipación
     
-    // Estados de actuadores automáticos
-    private boolean ventiladorAutoActivo = false;
-    private boolean buzzerAutoActivo = false;
-    private boolean ledAutoActivo = false;
-    private boolean valvulaAutoActiva = false;
-    private boolean servoAutoAbierto = false;
+    // Diario de actuadores para recuperar el estado tras un reinicio
+    private final DiarioActuadores diario = DiarioActuadores.getInstancia();
+    
+    // Sensores y motor de decisión corren en la tubería del núcleo de control,
+    // fuera del EDT; la interfaz solo lee las fotos publicadas
+    private final PublicadorEstado publicador = new PublicadorEstado(1);
+    private final NucleoControl nucleo = new NucleoControl(0, publicador, diario);
+    private ServidorTablero tablero;               // Con -Dinvernadero.tablero.puerto
+    private boolean detenido = false;
     
     public ControlAutomatico() {
         initComponents();
+        rotulos = new Rotulos(lblFechaHora, lblTemperaturaLM35, lblHumedadSuelo, lblLuminosidad,
+                lblAlertaTemperatura, lblAlertaHumedad, lblAlertaLuz,
+                              progressTemperatura, progressHumedad, lblEstadoAutomatico, btnIniciarAutomatico, btnDetenerAutomatico,
+                              lblEstadoVentilador, lblEstadoBuzzer, lblEstadoLED, lblEstadoValvula, lblEstadoServo, txtLogAutomatico);
         setupCustomComponents();
+        restaurarEstado();
         startUpdateTimer();
     }
     
+    private void restaurarEstado() {
+        if (diario == null) return;
+        actuadores = diario.getMascara(DiarioActuadores.MODO_AUTOMATICO);
+        nucleo.restaurar(actuadores);
+        if (diario.getModoActivo() == DiarioActuadores.MODO_AUTOMATICO && diario.isAutomaticoActivo()) {
+            modoAutomaticoActivo = true;
+            nucleo.setAutomaticoActivo(true);
+            addLogEntry("♻️ Estado restaurado del diario - Modo automático reanudado");
+        }
+        diario.registrarModo(DiarioActuadores.MODO_AUTOMATICO, modoAutomaticoActivo);
+        updateDisplays();
+    }
+    
+    private void registrarEnDiario() {
+        if (diario == null) return;
+        for (Actuador actuador : Actuador.values()) {
+            diario.registrarActuador(DiarioActuadores.MODO_AUTOMATICO, actuador, isActivo(actuador));
+        }
+        diario.registrarModo(DiarioActuadores.MODO_AUTOMATICO, modoAutomaticoActivo);
+    }
+    
+    private void salirDelModo() {
+        if (diario != null) diario.registrarModo(DiarioActuadores.MODO_NINGUNO, false);
+    }
+    
     private void setupCustomComponents() {
         // Configurar ventana
         setTitle("🤖 Control Automático - Arduino Invernadero Inteligente");
@@ -60,6 +102,10 @@ public class ControlAutomatico extends javax.swing.JFrame {
         spinnerTempBuzzer.setValue(tempBuzzer);
         spinnerUmbralHumedad.setValue(umbralHumedad);
         spinnerUmbralLuz.setValue(umbralLuz);
+        comboVentana.setSelectedItem(modoVentana);
+        spinnerDuracionVentana.setValue(duracionVentana);
+        chkPrediccion.setSelected(prediccionActiva);
+        spinnerHorizonte.setValue(horizontePrediccion);
         
         // Actualizar displays iniciales
         updateDisplays();
@@ -69,50 +115,68 @@ public class ControlAutomatico extends javax.swing.JFrame {
             @Override
             public void actionPerformed(ActionEvent e) {
                 updateDateTime();
-                simularSensoresArduino();
                 if (modoAutomaticoActivo) {
                     verificarCondicionesAutomaticas();
                 }
             }
         });
         
-        // Timer para control automático (cada 3 segundos)
-        automaticTimer = new Timer(3000, new ActionListener() {
+        // Repintado al ritmo de la pantalla, solo si el núcleo publicó algo nuevo
+        refrescoTimer = publicador.crearRefresco(new Runnable() {
             @Override
-            public void actionPerformed(ActionEvent e) {
-                if (modoAutomaticoActivo) {
-                    ejecutarControlAutomatico();
-                }
+            public void run() {
+                leerEstadoPublicado();
             }
         });
     }
     
     private void startUpdateTimer() {
         updateTimer.start();
+        refrescoTimer.start();
+        // El núcleo (hilos, reglas, alertas) y el tablero arrancan con la ventana ya visible
+        Arranque.alMostrarse(this, new Runnable() {
+            @Override
+            public void run() {
+                if (detenido) return;
+                nucleo.iniciar();
+                tablero = ServidorTablero.iniciarSiConfigurado(publicador);
+            }
+        });
+    }
+    
+    private void detenerTimers() {
+        detenido = true;
+        if (updateTimer != null) updateTimer.stop();
+        if (refrescoTimer != null) refrescoTimer.stop();
+        nucleo.detener();
+        if (tablero != null) tablero.detener();
     }
     
     private void updateDateTime() {
-        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
-        lblFechaHora.setText("📅 " + sdf.format(new Date()));
+        rotulos.updateDateTime(System.currentTimeMillis());
     }
     
-    private void simularSensoresArduino() {
-        // Simular variaciones reales de los sensores Arduino
-        temperaturaLM35 += (Math.random() - 0.5) * 2.0;
-        humedadAnalogica += (int)((Math.random() - 0.5) * 50);
-        valorLDR += (int)((Math.random() - 0.5) * 40);
-        
-        // Mantener rangos realistas del Arduino
-        if (temperaturaLM35 < 15) temperaturaLM35 = 15;
-        if (temperaturaLM35 > 75) temperaturaLM35 = 75;
-        if (humedadAnalogica < 200) humedadAnalogica = 200;
-        if (humedadAnalogica > 800) humedadAnalogica = 800;
-        if (valorLDR < 100) valorLDR = 100;
-        if (valorLDR > 900) valorLDR = 900;
+    private void leerEstadoPublicado() {
+        EstadoZona estado = publicador.leer(0);
+        if (estado != null) {
+            temperaturaLM35 = estado.getTemperaturaLM35();
+            humedadAnalogica = estado.getHumedadAnalogica();
+            valorLDR = estado.getValorLDR();
+            actuadores = estado.getActuadores();
+        }
+        nucleo.drenarEventos(eventosPendientes);
+        for (String evento : eventosPendientes) {
+            addLogEntry(evento);
+        }
+        eventosPendientes.clear();
         
         updateDisplays();
     }
     
+    private boolean isActivo(Actuador actuador) {
+        return (actuadores & actuador.getBit()) != 0;
+    }
+    
     private void verificarCondicionesAutomaticas() {
         // Obtener umbrales actuales de los spinners
         tempNormal = (Double) spinnerTempNormal.getValue();
@@ -120,182 +184,192 @@ public class ControlAutomatico extends javax.swing.JFrame {
         tempBuzzer = (Double) spinnerTempBuzzer.getValue();
         umbralHumedad = (Integer) spinnerUmbralHumedad.getValue();
         umbralLuz = (Integer) spinnerUmbralLuz.getValue();
+        modoVentana = (MotorControlAutomatico.ModoVentana) comboVentana.getSelectedItem();
+        duracionVentana = (Integer) spinnerDuracionVentana.getValue();
+        prediccionActiva = chkPrediccion.isSelected();
+        horizontePrediccion = (Integer) spinnerHorizonte.getValue();
+        
+        // La lógica de umbrales vive en el motor del núcleo (compartida con la reproducción)
+        nucleo.configurarUmbrales(tempNormal, tempVentilador, tempBuzzer, umbralHumedad, umbralLuz);
+        nucleo.configurarVentana(modoVentana, duracionVentana * 1000L);
+        nucleo.configurarPrediccion(prediccionActiva ? horizontePrediccion : 0);
         
         // Verificar condiciones y actualizar alertas
         updateAlertas();
     }
     
-    private void ejecutarControlAutomatico() {
-        if (!modoAutomaticoActivo) return;
+    private void updateAlertas() {
+        rotulos.updateAlertas(temperaturaLM35, humedadAnalogica, valorLDR,
+                              tempNormal, tempVentilador, tempBuzzer, umbralHumedad, umbralLuz);
+    }
+    
+    private void addLogEntry(String mensaje) {
+        rotulos.addLogEntry(System.currentTimeMillis(), mensaje);
+    }
+    
+    private void updateDisplays() {
+        rotulos.updateDisplays(temperaturaLM35, humedadAnalogica, valorLDR, actuadores, modoAutomaticoActivo, umbralLuz);
+        updateAlertas();
+    }
+    
+    // Función map como en Arduino
+    private static double map(double value, double fromLow, double fromHigh, double toLow, double toHigh) {
+        return (value - fromLow) * (toHigh - toLow) / (fromHigh - fromLow) + toLow;
+    }
+
+    /**
+     * Lo que escriben el tic y el refresco en rótulos, barras y registro,
+     * aparte de la ventana: FormatoPantalla.main lo ejercita sin pantalla,
+     * con componentes sueltos, y mide lo que asigna
+     */
+    static final class Rotulos {
         
-        boolean accionTomada = false;
+        private static final int MAX_LINEAS_LOG = 500;
+        private static final int RECORTE_LOG = 100;
         
-        // Control de temperatura (exacto como en Arduino)
-        if (temperaturaLM35 > tempBuzzer) {
-            // >56°C: Ventilador + Buzzer
-            if (!ventiladorAutoActivo) {
-                ventiladorAutoActivo = true;
-                accionTomada = true;
-                addLogEntry("🌀 Ventilador activado automáticamente (Temp: " + String.format("%.1f", temperaturaLM35) + "°C > " + tempBuzzer + "°C)");
-            }
-            if (!buzzerAutoActivo) {
-                buzzerAutoActivo = true;
-                accionTomada = true;
-                addLogEntry("🚨 Buzzer activado automáticamente (Temp: " + String.format("%.1f", temperaturaLM35) + "°C > " + tempBuzzer + "°C)");
-            }
-        } else if (temperaturaLM35 > tempVentilador) {
-            // 51-55°C: Solo ventilador
-            if (!ventiladorAutoActivo) {
-                ventiladorAutoActivo = true;
-                accionTomada = true;
-                addLogEntry("🌀 Ventilador activado automáticamente (Temp: " + String.format("%.1f", temperaturaLM35) + "°C)");
-            }
-            if (buzzerAutoActivo) {
-                buzzerAutoActivo = false;
-                accionTomada = true;
-                addLogEntry("🚨 Buzzer desactivado automáticamente");
-            }
-        } else {
-            // ≤50°C: Todo OFF
-            if (ventiladorAutoActivo) {
-                ventiladorAutoActivo = false;
-                accionTomada = true;
-                addLogEntry("🌀 Ventilador desactivado automáticamente (Temp: " + String.format("%.1f", temperaturaLM35) + "°C ≤ " + tempNormal + "°C)");
-            }
-            if (buzzerAutoActivo) {
-                buzzerAutoActivo = false;
-                accionTomada = true;
-                addLogEntry("🚨 Buzzer desactivado automáticamente");
-            }
+        private final FormatoPantalla formato = new FormatoPantalla();
+        final JLabel lblFechaHora;
+        final JLabel lblTemperaturaLM35;
+        final JLabel lblHumedadSuelo;
+        final JLabel lblLuminosidad;
+        final JLabel lblAlertaTemperatura;
+        final JLabel lblAlertaHumedad;
+        final JLabel lblAlertaLuz;
+        final JProgressBar progressTemperatura;
+        final JProgressBar progressHumedad;
+        final JLabel lblEstadoAutomatico;
+        final JButton btnIniciarAutomatico;
+        final JButton btnDetenerAutomatico;
+        final JLabel lblEstadoVentilador;
+        final JLabel lblEstadoBuzzer;
+        final JLabel lblEstadoLED;
+        final JLabel lblEstadoValvula;
+        final JLabel lblEstadoServo;
+        final JTextArea txtLogAutomatico;
+        
+        Rotulos(JLabel lblFechaHora, JLabel lblTemperaturaLM35, JLabel lblHumedadSuelo, JLabel lblLuminosidad,
+                JLabel lblAlertaTemperatura, JLabel lblAlertaHumedad, JLabel lblAlertaLuz,
+                JProgressBar progressTemperatura, JProgressBar progressHumedad,
+                JLabel lblEstadoAutomatico, JButton btnIniciarAutomatico, JButton btnDetenerAutomatico,
+                JLabel lblEstadoVentilador, JLabel lblEstadoBuzzer, JLabel lblEstadoLED, JLabel lblEstadoValvula,
+                JLabel lblEstadoServo, JTextArea txtLogAutomatico) {
+            this.lblFechaHora = lblFechaHora;
+            this.lblTemperaturaLM35 = lblTemperaturaLM35;
+            this.lblHumedadSuelo = lblHumedadSuelo;
+            this.lblLuminosidad = lblLuminosidad;
+            this.lblAlertaTemperatura = lblAlertaTemperatura;
+            this.lblAlertaHumedad = lblAlertaHumedad;
+            this.lblAlertaLuz = lblAlertaLuz;
+            this.progressTemperatura = progressTemperatura;
+            this.progressHumedad = progressHumedad;
+            this.lblEstadoAutomatico = lblEstadoAutomatico;
+            this.btnIniciarAutomatico = btnIniciarAutomatico;
+            this.btnDetenerAutomatico = btnDetenerAutomatico;
+            this.lblEstadoVentilador = lblEstadoVentilador;
+            this.lblEstadoBuzzer = lblEstadoBuzzer;
+            this.lblEstadoLED = lblEstadoLED;
+            this.lblEstadoValvula = lblEstadoValvula;
+            this.lblEstadoServo = lblEstadoServo;
+            this.txtLogAutomatico = txtLogAutomatico;
         }
         
-        // Control de humedad (exacto como en Arduino)
-        if (humedadAnalogica >= umbralHumedad) {
-            // ≥500: Activar riego
-            if (!valvulaAutoActiva) {
-                valvulaAutoActiva = true;
-                accionTomada = true;
-                addLogEntry("💧 Válvula activada automáticamente (Humedad: " + humedadAnalogica + " ≥ " + umbralHumedad + ")");
-            }
-        } else {
-            // <500: Desactivar riego
-            if (valvulaAutoActiva) {
-                valvulaAutoActiva = false;
-                accionTomada = true;
-                addLogEntry("💧 Válvula desactivada automáticamente (Humedad: " + humedadAnalogica + " < " + umbralHumedad + ")");
-            }
+        void updateDateTime(long ahora) {
+            lblFechaHora.setText(formato.limpiar().agregar("📅 ").agregarFecha(ahora).agregar(' ').agregarHora(ahora)
+                    .texto(lblFechaHora.getText()));
         }
         
-        // Control de luminosidad (exacto como en Arduino)
-        if (valorLDR >= umbralLuz) {
-            // ≥500: Noche - LED ON
-            if (!ledAutoActivo) {
-                ledAutoActivo = true;
-                accionTomada = true;
-                addLogEntry("💡 LED activado automáticamente (LDR: " + valorLDR + " ≥ " + umbralLuz + " - Noche detectada)");
+        void updateAlertas(double temperaturaLM35, int humedadAnalogica, int valorLDR, double tempNormal,
+                           double tempVentilador, double tempBuzzer, int umbralHumedad, int umbralLuz) {
+            // Una línea de texto plano por sensor: con las lecturas dentro, un rótulo HTML se volvía a interpretar en cada cambio
+            
+            // Alertas de temperatura
+            if (temperaturaLM35 > tempBuzzer) {
+                formato.limpiar().agregar("🔥 CRÍTICO: Temp > ").agregar(tempBuzzer).agregar("°C - Ventilador + Buzzer");
+                FormatoPantalla.alerta(lblAlertaTemperatura, formato.texto(lblAlertaTemperatura.getText()), FormatoPantalla.ROJO);
+            } else if (temperaturaLM35 > tempVentilador) {
+                formato.limpiar().agregar("🌡️ ALTO: Temp > ").agregar(tempVentilador).agregar("°C - Solo Ventilador");
+                FormatoPantalla.alerta(lblAlertaTemperatura, formato.texto(lblAlertaTemperatura.getText()), FormatoPantalla.NARANJA);
+            } else {
+                formato.limpiar().agregar("✅ NORMAL: Temp ≤ ").agregar(tempNormal).agregar("°C");
+                FormatoPantalla.alerta(lblAlertaTemperatura, formato.texto(lblAlertaTemperatura.getText()), FormatoPantalla.VERDE);
             }
-        } else {
-            // <500: Día - LED OFF
-            if (ledAutoActivo) {
-                ledAutoActivo = false;
-                accionTomada = true;
-                addLogEntry("💡 LED desactivado automáticamente (LDR: " + valorLDR + " < " + umbralLuz + " - Día detectado)");
+            
+            // Alertas de humedad
+            if (humedadAnalogica >= umbralHumedad) {
+                formato.limpiar().agregar("💧 HÚMEDO: ").agregar(humedadAnalogica).agregar(" ≥ ").agregar(umbralHumedad).agregar(" - Riego activo");
+                FormatoPantalla.alerta(lblAlertaHumedad, formato.texto(lblAlertaHumedad.getText()), FormatoPantalla.AZUL);
+            } else {
+                formato.limpiar().agregar("🏜️ SECO: ").agregar(humedadAnalogica).agregar(" < ").agregar(umbralHumedad).agregar(" - Sin riego");
+                FormatoPantalla.alerta(lblAlertaHumedad, formato.texto(lblAlertaHumedad.getText()), FormatoPantalla.MARRON);
+            }
+            
+            // Alertas de luminosidad
+            if (valorLDR >= umbralLuz) {
+                formato.limpiar().agregar("🌙 NOCHE: ").agregar(valorLDR).agregar(" ≥ ").agregar(umbralLuz).agregar(" - LED activo");
+                FormatoPantalla.alerta(lblAlertaLuz, formato.texto(lblAlertaLuz.getText()), FormatoPantalla.VIOLETA);
+            } else {
+                formato.limpiar().agregar("☀️ DÍA: ").agregar(valorLDR).agregar(" < ").agregar(umbralLuz).agregar(" - LED inactivo");
+                FormatoPantalla.alerta(lblAlertaLuz, formato.texto(lblAlertaLuz.getText()), FormatoPantalla.DORADO);
             }
         }
         
-        // Control de servo (ventilación extra basada en temperatura alta)
-        if (temperaturaLM35 > tempVentilador && !servoAutoAbierto) {
-            servoAutoAbierto = true;
-            accionTomada = true;
-            addLogEntry("🚪 Servo abierto automáticamente para ventilación extra (90°)");
-        } else if (temperaturaLM35 <= tempNormal && servoAutoAbierto) {
-            servoAutoAbierto = false;
-            accionTomada = true;
-            addLogEntry("🚪 Servo cerrado automáticamente (0°)");
-        }
-        
-        if (accionTomada) {
-            updateDisplays();
-        }
-    }
-    
-    private void updateAlertas() {
-        String alertas = "<html><b>🚨 ESTADO SEGÚN UMBRALES ARDUINO:</b><br>";
-        
-        // Alertas de temperatura
-        if (temperaturaLM35 > tempBuzzer) {
-            alertas += "<font color='red'>🔥 CRÍTICO: Temp > " + tempBuzzer + "°C - Ventilador + Buzzer</font><br>";
-        } else if (temperaturaLM35 > tempVentilador) {
-            alertas += "<font color='orange'>🌡️ ALTO: Temp > " + tempVentilador + "°C - Solo Ventilador</font><br>";
-        } else {
-            alertas += "<font color='green'>✅ NORMAL: Temp ≤ " + tempNormal + "°C</font><br>";
-        }
-        
-        // Alertas de humedad
-        if (humedadAnalogica >= umbralHumedad) {
-            alertas += "<font color='blue'>💧 HÚMEDO: " + humedadAnalogica + " ≥ " + umbralHumedad + " - Riego activo</font><br>";
-        } else {
-            alertas += "<font color='brown'>🏜️ SECO: " + humedadAnalogica + " < " + umbralHumedad + " - Sin riego</font><br>";
+        void addLogEntry(long ahora, String mensaje) {
+            formato.limpiar().agregar('[').agregarHora(ahora).agregar("] ").agregar(mensaje).agregar('\n');
+            txtLogAutomatico.append(formato.texto(null));
+            // Cada append recorre las líneas del documento y de su vista: se guardan las últimas, recortando de a tandas
+            int sobrantes = txtLogAutomatico.getLineCount() - 1 - MAX_LINEAS_LOG;        // Termina en \n: la última está vacía
+            if (sobrantes >= RECORTE_LOG) {
+                txtLogAutomatico.replaceRange(null, 0, txtLogAutomatico.getDocument().getDefaultRootElement()
+                        .getElement(sobrantes).getStartOffset());
+            }
+            txtLogAutomatico.setCaretPosition(txtLogAutomatico.getDocument().getLength());
         }
         
-        // Alertas de luminosidad
-        if (valorLDR >= umbralLuz) {
-            alertas += "<font color='purple'>🌙 NOCHE: " + valorLDR + " ≥ " + umbralLuz + " - LED activo</font><br>";
-        } else {
-            alertas += "<font color='gold'>☀️ DÍA: " + valorLDR + " < " + umbralLuz + " - LED inactivo</font><br>";
+        // Sin las alertas, que la ventana actualiza aparte con sus umbrales
+        void updateDisplays(double temperaturaLM35, int humedadAnalogica, int valorLDR, int actuadores,
+                            boolean modoAutomaticoActivo, int umbralLuz) {
+            // Actualizar sensores
+            lblTemperaturaLM35.setText(formato.limpiar().agregar("🌡️ LM35: ").agregarDecimal(temperaturaLM35, 1).agregar("°C")
+                    .texto(lblTemperaturaLM35.getText()));
+            int humedadPorcentaje = (int)map(humedadAnalogica, 1023, 0, 0, 100);
+            lblHumedadSuelo.setText(formato.limpiar().agregar("💧 Humedad: ").agregar(humedadPorcentaje).agregar("% (")
+                    .agregar(humedadAnalogica).agregar(')').texto(lblHumedadSuelo.getText()));
+            String estadoLuz = valorLDR >= umbralLuz ? "🌙 Noche" : "☀️ Día";
+            lblLuminosidad.setText(formato.limpiar().agregar("☀️ LDR: ").agregar(estadoLuz).agregar(" (").agregar(valorLDR).agregar(')')
+                    .texto(lblLuminosidad.getText()));
+            
+            // Actualizar barras de progreso
+            progressTemperatura.setValue((int)temperaturaLM35);
+            progressTemperatura.setString(formato.limpiar().agregarDecimal(temperaturaLM35, 1).agregar("°C")
+                    .texto(progressTemperatura.getString()));
+            progressHumedad.setValue(humedadPorcentaje);
+            progressHumedad.setString(formato.limpiar().agregar(humedadPorcentaje).agregar("% (").agregar(humedadAnalogica).agregar(')')
+                    .texto(progressHumedad.getString()));
+            
+            // Actualizar estado del modo automático
+            lblEstadoAutomatico.setText(modoAutomaticoActivo ? "Modo Automático: 🟢 ACTIVO" : "Modo Automático: 🔴 INACTIVO");
+            btnIniciarAutomatico.setEnabled(!modoAutomaticoActivo);
+            btnDetenerAutomatico.setEnabled(modoAutomaticoActivo);
+            
+            // Actualizar estado de actuadores
+            boolean ventiladorAutoActivo = (actuadores & Actuador.VENTILADOR.getBit()) != 0;
+            boolean buzzerAutoActivo = (actuadores & Actuador.BUZZER.getBit()) != 0;
+            boolean ledAutoActivo = (actuadores & Actuador.LED.getBit()) != 0;
+            boolean valvulaAutoActiva = (actuadores & Actuador.VALVULA.getBit()) != 0;
+            boolean servoAutoAbierto = (actuadores & Actuador.SERVO.getBit()) != 0;
+            lblEstadoVentilador.setText(ventiladorAutoActivo ? "🌀 Ventilador: ON" : "🌀 Ventilador: OFF");
+            lblEstadoBuzzer.setText(buzzerAutoActivo ? "🚨 Buzzer: ON" : "🚨 Buzzer: OFF");
+            lblEstadoLED.setText(ledAutoActivo ? "💡 LED: ON" : "💡 LED: OFF");
+            lblEstadoValvula.setText(valvulaAutoActiva ? "💧 Válvula: ON" : "💧 Válvula: OFF");
+            lblEstadoServo.setText(servoAutoAbierto ? "🚪 Servo: 90°" : "🚪 Servo: 0°");
+            
+            // Cambiar colores según estado
+            lblEstadoVentilador.setForeground(ventiladorAutoActivo ? VERDE_ACTIVO : Color.GRAY);
+            lblEstadoBuzzer.setForeground(buzzerAutoActivo ? Color.RED : Color.GRAY);
+            lblEstadoLED.setForeground(ledAutoActivo ? NARANJA_ACTIVO : Color.GRAY);
+            lblEstadoValvula.setForeground(valvulaAutoActiva ? Color.BLUE : Color.GRAY);
+            lblEstadoServo.setForeground(servoAutoAbierto ? Color.CYAN : Color.GRAY);
         }
-        
-        alertas += "</html>";
-        lblAlertas.setText(alertas);
-    }
-    
-    private void addLogEntry(String mensaje) {
-        SimpleDateFormat sdf = new SimpleDateFormat("HH:mm:ss");
-        String entrada = "[" + sdf.format(new Date()) + "] " + mensaje + "\n";
-        txtLogAutomatico.append(entrada);
-        txtLogAutomatico.setCaretPosition(txtLogAutomatico.getDocument().getLength());
-    }
-    
-    private void updateDisplays() {
-        // Actualizar sensores
-        lblTemperaturaLM35.setText(String.format("🌡️ LM35: %.1f°C", temperaturaLM35));
-        int humedadPorcentaje = (int)map(humedadAnalogica, 1023, 0, 0, 100);
-        lblHumedadSuelo.setText(String.format("💧 Humedad: %d%% (%d)", humedadPorcentaje, humedadAnalogica));
-        String estadoLuz = valorLDR >= umbralLuz ? "🌙 Noche" : "☀️ Día";
-        lblLuminosidad.setText(String.format("☀️ LDR: %s (%d)", estadoLuz, valorLDR));
-        
-        // Actualizar barras de progreso
-        progressTemperatura.setValue((int)temperaturaLM35);
-        progressTemperatura.setString(String.format("%.1f°C", temperaturaLM35));
-        progressHumedad.setValue(humedadPorcentaje);
-        progressHumedad.setString(String.format("%d%% (%d)", humedadPorcentaje, humedadAnalogica));
-        
-        // Actualizar estado del modo automático
-        lblEstadoAutomatico.setText("Modo Automático: " + (modoAutomaticoActivo ? "🟢 ACTIVO" : "🔴 INACTIVO"));
-        btnIniciarAutomatico.setEnabled(!modoAutomaticoActivo);
-        btnDetenerAutomatico.setEnabled(modoAutomaticoActivo);
-        
-        // Actualizar estado de actuadores
-        lblEstadoVentilador.setText("🌀 Ventilador: " + (ventiladorAutoActivo ? "ON" : "OFF"));
-        lblEstadoBuzzer.setText("🚨 Buzzer: " + (buzzerAutoActivo ? "ON" : "OFF"));
-        lblEstadoLED.setText("💡 LED: " + (ledAutoActivo ? "ON" : "OFF"));
-        lblEstadoValvula.setText("💧 Válvula: " + (valvulaAutoActiva ? "ON" : "OFF"));
-        lblEstadoServo.setText("🚪 Servo: " + (servoAutoAbierto ? "90°" : "0°"));
-        
-        // Cambiar colores según estado
-        lblEstadoVentilador.setForeground(ventiladorAutoActivo ? new Color(0, 150, 0) : Color.GRAY);
-        lblEstadoBuzzer.setForeground(buzzerAutoActivo ? Color.RED : Color.GRAY);
-        lblEstadoLED.setForeground(ledAutoActivo ? new Color(255, 150, 0) : Color.GRAY);
-        lblEstadoValvula.setForeground(valvulaAutoActiva ? Color.BLUE : Color.GRAY);
-        lblEstadoServo.setForeground(servoAutoAbierto ? Color.CYAN : Color.GRAY);
-        
-        // Actualizar alertas
-        updateAlertas();
-    }
-    
-    // Función map como en Arduino
-    private double map(double value, double fromLow, double fromHigh, double toLow, double toHigh) {
-        return (value - fromLow) * (toHigh - toLow) / (fromHigh - fromLow) + toLow;
     }
 
     @SuppressWarnings("unchecked")
@@ -316,6 +390,12 @@ public class ControlAutomatico extends javax.swing.JFrame {
         spinnerUmbralHumedad = new javax.swing.JSpinner();
         lblUmbralLuz = new javax.swing.JLabel();
         spinnerUmbralLuz = new javax.swing.JSpinner();
+        lblVentana = new javax.swing.JLabel();
+        comboVentana = new javax.swing.JComboBox<>();
+        lblDuracionVentana = new javax.swing.JLabel();
+        spinnerDuracionVentana = new javax.swing.JSpinner();
+        chkPrediccion = new javax.swing.JCheckBox();
+        spinnerHorizonte = new javax.swing.JSpinner();
         btnAplicarUmbrales = new javax.swing.JButton();
         panelSensoresAuto = new javax.swing.JPanel();
         lblTemperaturaLM35 = new javax.swing.JLabel();
@@ -323,7 +403,11 @@ public class ControlAutomatico extends javax.swing.JFrame {
         lblHumedadSuelo = new javax.swing.JLabel();
         progressHumedad = new javax.swing.JProgressBar();
         lblLuminosidad = new javax.swing.JLabel();
+        panelAlertas = new javax.swing.JPanel();
         lblAlertas = new javax.swing.JLabel();
+        lblAlertaTemperatura = new javax.swing.JLabel();
+        lblAlertaHumedad = new javax.swing.JLabel();
+        lblAlertaLuz = new javax.swing.JLabel();
         panelControlAuto = new javax.swing.JPanel();
         lblEstadoAutomatico = new javax.swing.JLabel();
         btnIniciarAutomatico = new javax.swing.JButton();
@@ -390,6 +474,27 @@ public class ControlAutomatico extends javax.swing.JFrame {
         spinnerUmbralLuz.setFont(new java.awt.Font("Arial", 0, 12));
         spinnerUmbralLuz.setModel(new javax.swing.SpinnerNumberModel(500, 300, 800, 10));
 
+        lblVentana.setFont(new java.awt.Font("Arial", 1, 12));
+        lblVentana.setText("⏱️ Comparar lectura:");
+
+        comboVentana.setFont(new java.awt.Font("Arial", 0, 12));
+        comboVentana.setModel(new javax.swing.DefaultComboBoxModel<>(MotorControlAutomatico.ModoVentana.values()));
+        comboVentana.setToolTipText("Sostenido: todas las lecturas de la ventana deben cruzar el umbral (ignora picos cortos)");
+
+        lblDuracionVentana.setFont(new java.awt.Font("Arial", 1, 12));
+        lblDuracionVentana.setText("⏳ Ventana (segundos):");
+
+        spinnerDuracionVentana.setFont(new java.awt.Font("Arial", 0, 12));
+        spinnerDuracionVentana.setModel(new javax.swing.SpinnerNumberModel(300, 5, 3600, 5));
+
+        chkPrediccion.setBackground(new java.awt.Color(245, 255, 245));
+        chkPrediccion.setFont(new java.awt.Font("Arial", 1, 12));
+        chkPrediccion.setText("🔮 Anticipar (s):");
+        chkPrediccion.setToolTipText("Enciende ventilador y servo cuando la tendencia de temperatura va a superar el umbral");
+
+        spinnerHorizonte.setFont(new java.awt.Font("Arial", 0, 12));
+        spinnerHorizonte.setModel(new javax.swing.SpinnerNumberModel(60, 10, 600, 10));
+
         btnAplicarUmbrales.setBackground(new java.awt.Color(100, 200, 100));
         btnAplicarUmbrales.setFont(new java.awt.Font("Arial", 1, 12));
         btnAplicarUmbrales.setText("⚙️ Aplicar Configuración");
@@ -407,25 +512,32 @@ public class ControlAutomatico extends javax.swing.JFrame {
                 .addGap(15, 15, 15)
                 .addGroup(panelUmbralesLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                     .addComponent(lblTempNormal)
-                    .addComponent(lblUmbralHumedad))
+                    .addComponent(lblUmbralHumedad)
+                    .addComponent(lblVentana))
                 .addGap(18, 18, 18)
                 .addGroup(panelUmbralesLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING, false)
                     .addComponent(spinnerTempNormal, javax.swing.GroupLayout.DEFAULT_SIZE, 80, Short.MAX_VALUE)
-                    .addComponent(spinnerUmbralHumedad))
+                    .addComponent(spinnerUmbralHumedad)
+                    .addComponent(comboVentana, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
                 .addGap(30, 30, 30)
                 .addGroup(panelUmbralesLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                     .addComponent(lblTempVentilador)
-                    .addComponent(lblUmbralLuz))
+                    .addComponent(lblUmbralLuz)
+                    .addComponent(lblDuracionVentana))
                 .addGap(18, 18, 18)
                 .addGroup(panelUmbralesLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING, false)
                     .addComponent(spinnerTempVentilador, javax.swing.GroupLayout.DEFAULT_SIZE, 80, Short.MAX_VALUE)
-                    .addComponent(spinnerUmbralLuz))
+                    .addComponent(spinnerUmbralLuz)
+                    .addComponent(spinnerDuracionVentana))
                 .addGap(30, 30, 30)
                 .addGroup(panelUmbralesLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                     .addComponent(lblTempBuzzer)
-                    .addComponent(btnAplicarUmbrales))
+                    .addComponent(btnAplicarUmbrales)
+                    .addComponent(chkPrediccion))
                 .addGap(18, 18, 18)
-                .addComponent(spinnerTempBuzzer, javax.swing.GroupLayout.PREFERRED_SIZE, 80, javax.swing.GroupLayout.PREFERRED_SIZE)
+                .addGroup(panelUmbralesLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+                    .addComponent(spinnerTempBuzzer, javax.swing.GroupLayout.PREFERRED_SIZE, 80, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(spinnerHorizonte, javax.swing.GroupLayout.PREFERRED_SIZE, 80, javax.swing.GroupLayout.PREFERRED_SIZE))
                 .addContainerGap(javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
         );
         panelUmbralesLayout.setVerticalGroup(
@@ -446,6 +558,14 @@ public class ControlAutomatico extends javax.swing.JFrame {
                     .addComponent(lblUmbralLuz)
                     .addComponent(spinnerUmbralLuz, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
                     .addComponent(btnAplicarUmbrales))
+                .addGap(18, 18, 18)
+                .addGroup(panelUmbralesLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(lblVentana)
+                    .addComponent(comboVentana, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(lblDuracionVentana)
+                    .addComponent(spinnerDuracionVentana, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(chkPrediccion)
+                    .addComponent(spinnerHorizonte, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
                 .addContainerGap(15, Short.MAX_VALUE))
         );
 
@@ -486,10 +606,47 @@ public class ControlAutomatico extends javax.swing.JFrame {
         lblLuminosidad.setForeground(new java.awt.Color(255, 150, 0));
         lblLuminosidad.setText("☀️ LDR: Día (300)");
 
-        lblAlertas.setFont(new java.awt.Font("Arial", 0, 12));
-        lblAlertas.setVerticalAlignment(javax.swing.SwingConstants.TOP);
-        lblAlertas.setText("<html><b>🚨 ESTADO SEGÚN UMBRALES ARDUINO:</b><br>Inicializando...</html>");
-        lblAlertas.setBorder(javax.swing.BorderFactory.createEtchedBorder());
+        panelAlertas.setOpaque(false);
+        panelAlertas.setBorder(javax.swing.BorderFactory.createEtchedBorder());
+
+        lblAlertas.setFont(new java.awt.Font("Arial", 1, 12));
+        lblAlertas.setText("🚨 ESTADO SEGÚN UMBRALES ARDUINO:");
+
+        lblAlertaTemperatura.setFont(new java.awt.Font("Arial", 0, 12));
+        lblAlertaTemperatura.setText("Inicializando...");
+
+        lblAlertaHumedad.setFont(new java.awt.Font("Arial", 0, 12));
+        lblAlertaHumedad.setText(" ");
+
+        lblAlertaLuz.setFont(new java.awt.Font("Arial", 0, 12));
+        lblAlertaLuz.setText(" ");
+
+        javax.swing.GroupLayout panelAlertasLayout = new javax.swing.GroupLayout(panelAlertas);
+        panelAlertas.setLayout(panelAlertasLayout);
+        panelAlertasLayout.setHorizontalGroup(
+            panelAlertasLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+            .addGroup(panelAlertasLayout.createSequentialGroup()
+                .addContainerGap()
+                .addGroup(panelAlertasLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+                    .addComponent(lblAlertas, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(lblAlertaTemperatura, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(lblAlertaHumedad, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(lblAlertaLuz, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
+                .addContainerGap())
+        );
+        panelAlertasLayout.setVerticalGroup(
+            panelAlertasLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+            .addGroup(panelAlertasLayout.createSequentialGroup()
+                .addContainerGap()
+                .addComponent(lblAlertas)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(lblAlertaTemperatura)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(lblAlertaHumedad)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(lblAlertaLuz)
+                .addContainerGap(javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
+        );
 
         javax.swing.GroupLayout panelSensoresAutoLayout = new javax.swing.GroupLayout(panelSensoresAuto);
         panelSensoresAuto.setLayout(panelSensoresAutoLayout);
@@ -507,7 +664,7 @@ public class ControlAutomatico extends javax.swing.JFrame {
                 .addGap(30, 30, 30)
                 .addGroup(panelSensoresAutoLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                     .addComponent(lblLuminosidad, javax.swing.GroupLayout.PREFERRED_SIZE, 200, javax.swing.GroupLayout.PREFERRED_SIZE)
-                    .addComponent(lblAlertas, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
+                    .addComponent(panelAlertas, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
                 .addGap(15, 15, 15))
         );
         panelSensoresAutoLayout.setVerticalGroup(
@@ -515,7 +672,7 @@ public class ControlAutomatico extends javax.swing.JFrame {
             .addGroup(panelSensoresAutoLayout.createSequentialGroup()
                 .addGap(15, 15, 15)
                 .addGroup(panelSensoresAutoLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
-                    .addComponent(lblAlertas, javax.swing.GroupLayout.PREFERRED_SIZE, 80, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(panelAlertas, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
                     .addGroup(panelSensoresAutoLayout.createSequentialGroup()
                         .addGroup(panelSensoresAutoLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                             .addComponent(lblTemperaturaLM35)
@@ -789,6 +946,10 @@ public class ControlAutomatico extends javax.swing.JFrame {
         tempBuzzer = (Double) spinnerTempBuzzer.getValue();
         umbralHumedad = (Integer) spinnerUmbralHumedad.getValue();
         umbralLuz = (Integer) spinnerUmbralLuz.getValue();
+        modoVentana = (MotorControlAutomatico.ModoVentana) comboVentana.getSelectedItem();
+        duracionVentana = (Integer) spinnerDuracionVentana.getValue();
+        prediccionActiva = chkPrediccion.isSelected();
+        horizontePrediccion = (Integer) spinnerHorizonte.getValue();
         
         // Validar rangos lógicos
         if (tempNormal >= tempVentilador) {
@@ -802,14 +963,23 @@ public class ControlAutomatico extends javax.swing.JFrame {
         }
         
         // Aplicar configuración
-        addLogEntry("⚙️ Umbrales actualizados: Temp(≤" + tempNormal + "°C|>" + tempVentilador + "°C|>" + tempBuzzer + "°C), Humedad(≥" + umbralHumedad + "), LDR(≥" + umbralLuz + ")");
+        nucleo.configurarUmbrales(tempNormal, tempVentilador, tempBuzzer, umbralHumedad, umbralLuz);
+        nucleo.configurarVentana(modoVentana, duracionVentana * 1000L);
+        nucleo.configurarPrediccion(prediccionActiva ? horizontePrediccion : 0);
+        addLogEntry("⚙️ Umbrales actualizados: Temp(≤" + tempNormal + "°C|>" + tempVentilador + "°C|>" + tempBuzzer + "°C), Humedad(≥" + umbralHumedad + "), LDR(≥" + umbralLuz + ")"
+                    + (modoVentana == MotorControlAutomatico.ModoVentana.INSTANTANEO ? "" : ", lectura " + modoVentana + " en " + duracionVentana + " s")
+                    + (prediccionActiva ? ", anticipación " + horizontePrediccion + " s" : ""));
         JOptionPane.showMessageDialog(this, "Configuración de umbrales aplicada correctamente", "Configuración", JOptionPane.INFORMATION_MESSAGE);
         updateDisplays();
     }                                                  
 
     private void btnIniciarAutomaticoActionPerformed(java.awt.event.ActionEvent evt) {                                                      
         modoAutomaticoActivo = true;
-        automaticTimer.start();
+        nucleo.configurarUmbrales(tempNormal, tempVentilador, tempBuzzer, umbralHumedad, umbralLuz);
+        nucleo.configurarVentana(modoVentana, duracionVentana * 1000L);
+        nucleo.configurarPrediccion(prediccionActiva ? horizontePrediccion : 0);
+        nucleo.setAutomaticoActivo(true);
+        registrarEnDiario();
         addLogEntry("🚀 MODO AUTOMÁTICO INICIADO - Control basado en umbrales Arduino");
         updateDisplays();
         JOptionPane.showMessageDialog(this, 
@@ -821,14 +991,11 @@ public class ControlAutomatico extends javax.swing.JFrame {
 
     private void btnDetenerAutomaticoActionPerformed(java.awt.event.ActionEvent evt) {                                                       
         modoAutomaticoActivo = false;
-        automaticTimer.stop();
         
-        // Detener todos los actuadores
-        ventiladorAutoActivo = false;
-        buzzerAutoActivo = false;
-        ledAutoActivo = false;
-        valvulaAutoActiva = false;
-        servoAutoAbierto = false;
+        // Detener todos los actuadores (el núcleo los apaga en su hilo)
+        nucleo.setAutomaticoActivo(false);
+        actuadores = 0;
+        registrarEnDiario();
         
         addLogEntry("⏹️ MODO AUTOMÁTICO DETENIDO - Todos los actuadores desactivados");
         updateDisplays();
@@ -842,15 +1009,14 @@ public class ControlAutomatico extends javax.swing.JFrame {
     }                                             
 
     private void btnInicioActionPerformed(java.awt.event.ActionEvent evt) {                                          
-        if (updateTimer != null) updateTimer.stop();
-        if (automaticTimer != null) automaticTimer.stop();
+        detenerTimers();
+        salirDelModo();
         new PanelPrincipal().setVisible(true);
         this.dispose();
     }                                         
 
     private void btnControlManualActionPerformed(java.awt.event.ActionEvent evt) {                                                  
-        if (updateTimer != null) updateTimer.stop();
-        if (automaticTimer != null) automaticTimer.stop();
+        detenerTimers();
         new ControlManual().setVisible(true);
         this.dispose();
     }                                                 
@@ -861,33 +1027,20 @@ public class ControlAutomatico extends javax.swing.JFrame {
             "Esto detendrá el control automático del Arduino.", 
             "Confirmar Salida", JOptionPane.YES_NO_OPTION);
         if (opcion == JOptionPane.YES_OPTION) {
-            if (updateTimer != null) updateTimer.stop();
-            if (automaticTimer != null) automaticTimer.stop();
+            detenerTimers();
+            salirDelModo();
             System.exit(0);
         }
     }                                        
 
     public static void main(String args[]) {
-        try {
-            for (javax.swing.UIManager.LookAndFeelInfo info : javax.swing.UIManager.getInstalledLookAndFeels()) {
-                if ("Nimbus".equals(info.getName())) {
-                    javax.swing.UIManager.setLookAndFeel(info.getClassName());
-                    break;
-                }
-            }
-        } catch (ClassNotFoundException ex) {
-            java.util.logging.Logger.getLogger(ControlAutomatico.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
-        } catch (InstantiationException ex) {
-            java.util.logging.Logger.getLogger(ControlAutomatico.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
-        } catch (IllegalAccessException ex) {
-            java.util.logging.Logger.getLogger(ControlAutomatico.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
-        } catch (javax.swing.UnsupportedLookAndFeelException ex) {
-            java.util.logging.Logger.getLogger(ControlAutomatico.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
-        }
+        Arranque.configurarAspecto();
+
+        ServidorMetricas.iniciarSiConfigurado();
 
         java.awt.EventQueue.invokeLater(new Runnable() {
             public void run() {
-                new ControlAutomatico().setVisible(true);
+                if (!PantallaBienvenida.abrirPantallaRecuperada()) new ControlAutomatico().setVisible(true);
             }
         });
     }
@@ -901,6 +1054,9 @@ public class ControlAutomatico extends javax.swing.JFrame {
     private javax.swing.JButton btnLimpiarLog;
     private javax.swing.JButton btnSalir;
     private javax.swing.JScrollPane jScrollPane1;
+    private javax.swing.JLabel lblAlertaHumedad;
+    private javax.swing.JLabel lblAlertaLuz;
+    private javax.swing.JLabel lblAlertaTemperatura;
     private javax.swing.JLabel lblAlertas;
     private javax.swing.JLabel lblEstadoBuzzer;
     private javax.swing.JLabel lblEstadoAutomatico;
@@ -918,6 +1074,7 @@ public class ControlAutomatico extends javax.swing.JFrame {
     private javax.swing.JLabel lblTitulo;
     private javax.swing.JLabel lblUmbralHumedad;
     private javax.swing.JLabel lblUmbralLuz;
+    private javax.swing.JPanel panelAlertas;
     private javax.swing.JPanel panelConfiguracion;
     private javax.swing.JPanel panelControlAuto;
     private javax.swing.JPanel panelEstadoActuadores;
@@ -933,6 +1090,12 @@ public class ControlAutomatico extends javax.swing.JFrame {
     private javax.swing.JSpinner spinnerTempVentilador;
     private javax.swing.JSpinner spinnerUmbralHumedad;
     private javax.swing.JSpinner spinnerUmbralLuz;
+    private javax.swing.JLabel lblVentana;
+    private javax.swing.JComboBox<MotorControlAutomatico.ModoVentana> comboVentana;
+    private javax.swing.JLabel lblDuracionVentana;
+    private javax.swing.JSpinner spinnerDuracionVentana;
+    private javax.swing.JCheckBox chkPrediccion;
+    private javax.swing.JSpinner spinnerHorizonte;
     private javax.swing.JTextArea txtLogAutomatico;
     // End of variables declaration                   
 }
\ No newline at end of file
@@ -4,23 +4,37 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
 
 /**
  * Control Manual - Interfaz para Arduino Real
  * Sensores: LM35(A0), Humedad(A1), LDR(A2)
  * Actuadores: Ventilador(8), LED(11), Válvula(12), Servo(7), Buzzer(13)
+ * Los comandos salen por un CanalComandos sin esperar la confirmación: cada
+ * botón muestra ⏳ hasta que la placa confirma y ⚠️ si no respondió.
+ * Los rótulos del tic de un segundo se escriben con FormatoPantalla, desde
+ * ControlManual.Rotulos (se puede ejercitar sin ventana).
  * @author Nicom
  */
 public class ControlManual extends javax.swing.JFrame {
     
     private Timer updateTimer;
+    private final Rotulos rotulos;
+    
+    // Colores de los botones encendidos
+    private static final Color COLOR_VENTILADOR = new Color(100, 255, 100);
+    private static final Color COLOR_BUZZER = new Color(255, 100, 100);
+    private static final Color COLOR_LED = new Color(255, 255, 100);
+    private static final Color COLOR_VALVULA = new Color(100, 150, 255);
+    private static final Color COLOR_SERVO = new Color(150, 255, 200);
     
     // Variables del Arduino - Valores reales simulados
     private double temperaturaLM35 = 25.0;        // Sensor LM35 (Pin A0)
     private int humedadAnalogica = 450;           // Sensor humedad (Pin A1) 0-1023
     private int valorLDR = 300;                   // Sensor LDR (Pin A2) 0-1023
+    private final SimuladorInvernadero simulador = new SimuladorInvernadero();
     
     // Estados de actuadores (Pines digitales Arduino)
     private boolean ventiladorActivo = false;    // Pin 8
@@ -29,17 +43,119 @@ public class ControlManual extends javax.swing.JFrame {
     private boolean valvulaActiva = false;        // Pin 12
     private boolean servoAbierto = false;         // Pin 7 (0° o 90°)
     
+    // Placa (o emulador local), solo en el EDT; el último comando de cada actuador queda en rotulos
+    private CanalComandos comandos;
+    private boolean cerrando = false;
+    
+    // Diario de actuadores para recuperar el estado tras un reinicio
+    private final DiarioActuadores diario = DiarioActuadores.getInstancia();
+    
     // Umbrales del Arduino (exactos del código que me mostraste)
-    private final int UMBRAL_HUMEDAD = 500;       // Arduino: <500 (seco), >=500 (húmedo)
-    private final int UMBRAL_LUZ = 500;           // Arduino: <500 (día), >=500 (noche)
-    private final double TEMP_NORMAL = 50.0;      // Arduino: <=50°C (normal)
-    private final double TEMP_VENTILADOR = 51.0;  // Arduino: 51-55°C (ventilador)
-    private final double TEMP_BUZZER = 56.0;      // Arduino: >56°C (buzzer)
+    private static final int UMBRAL_HUMEDAD = 500;       // Arduino: <500 (seco), >=500 (húmedo)
+    private static final int UMBRAL_LUZ = 500;           // Arduino: <500 (día), >=500 (noche)
+    private static final double TEMP_NORMAL = 50.0;      // Arduino: <=50°C (normal)
+    private static final double TEMP_VENTILADOR = 51.0;  // Arduino: 51-55°C (ventilador)
+    private static final double TEMP_BUZZER = 56.0;      // Arduino: >56°C (buzzer)
     
     public ControlManual() {
         initComponents();
+        rotulos = new Rotulos(lblFechaHora, lblTemperaturaLM35, lblHumedadSuelo, lblLuminosidad,
+                lblAlertaTemperatura, lblAlertaHumedad, lblAlertaLuz,
+                              progressTemperatura, progressHumedad, progressLuz,
+                              btnVentilador, btnBuzzer, btnLED, btnValvula, btnServo);
         setupCustomComponents();
+        restaurarEstado();
         startUpdateTimer();
+        Arranque.alMostrarse(this, new Runnable() {
+            @Override
+            public void run() {
+                abrirPlaca();
+            }
+        });
+    }
+    
+    // Conectar puede tardar (negociación con la placa): fuera del EDT y con la ventana ya visible
+    private void abrirPlaca() {
+        if (cerrando) return;
+        Thread apertura = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final CanalComandos canal = CanalComandos.abrirConfigurado();
+                    EventQueue.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            placaAbierta(canal);
+                        }
+                    });
+                } catch (IOException ex) {
+                    java.util.logging.Logger.getLogger(ControlManual.class.getName()).log(java.util.logging.Level.WARNING,
+                            "Sin placa: los comandos solo se simulan", ex);
+                }
+            }
+        }, "abrir-placa");
+        apertura.setDaemon(true);
+        apertura.start();
+    }
+    
+    private void placaAbierta(CanalComandos canal) {
+        if (cerrando) {
+            canal.close();
+            return;
+        }
+        comandos = canal;
+        rotulos.conPlaca = true;
+        comandos.setOyente(new CanalComandos.Oyente() {
+            @Override
+            public void cambio(CanalComandos.Comando comando) {
+                if (comando.getEstado() == CanalComandos.Estado.PENDIENTE) return;      // Ya se mostró al enviarlo
+                EventQueue.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        updateDisplays();
+                    }
+                });
+            }
+        });
+        // La placa recién conectada recibe el estado restaurado, los cinco en vuelo a la vez
+        enviarComando(Actuador.VENTILADOR, ventiladorActivo);
+        enviarComando(Actuador.BUZZER, buzzerActivo);
+        enviarComando(Actuador.LED, ledActivo);
+        enviarComando(Actuador.VALVULA, valvulaActiva);
+        enviarComando(Actuador.SERVO, servoAbierto);
+        updateDisplays();
+    }
+    
+    private void enviarComando(Actuador actuador, boolean activo) {
+        if (comandos != null) rotulos.ultimosComandos.put(actuador, comandos.enviar(actuador, activo));
+    }
+    
+    private void cerrarPlaca() {
+        cerrando = true;
+        if (comandos != null) {
+            comandos.close();
+            comandos = null;
+            rotulos.conPlaca = false;
+        }
+    }
+    
+    private void restaurarEstado() {
+        if (diario == null) return;
+        ventiladorActivo = diario.getEstado(DiarioActuadores.MODO_MANUAL, Actuador.VENTILADOR);
+        buzzerActivo = diario.getEstado(DiarioActuadores.MODO_MANUAL, Actuador.BUZZER);
+        ledActivo = diario.getEstado(DiarioActuadores.MODO_MANUAL, Actuador.LED);
+        valvulaActiva = diario.getEstado(DiarioActuadores.MODO_MANUAL, Actuador.VALVULA);
+        servoAbierto = diario.getEstado(DiarioActuadores.MODO_MANUAL, Actuador.SERVO);
+        diario.registrarModo(DiarioActuadores.MODO_MANUAL, false);
+        updateDisplays();
+    }
+    
+    private void registrarEnDiario(Actuador actuador, boolean activo) {
+        if (diario != null) diario.registrarActuador(DiarioActuadores.MODO_MANUAL, actuador, activo);
+    }
+    
+    private void salirDelModo() {
+        if (diario != null) diario.registrarModo(DiarioActuadores.MODO_NINGUNO, false);
     }
     
     private void setupCustomComponents() {
@@ -71,101 +187,219 @@ public class ControlManual extends javax.swing.JFrame {
     }
     
     private void updateDateTime() {
-        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
-        lblFechaHora.setText("📅 " + sdf.format(new Date()));
+        rotulos.updateDateTime(System.currentTimeMillis());
     }
     
     private void simularSensoresArduino() {
-        // Simular variaciones reales de los sensores Arduino
-        temperaturaLM35 += (Math.random() - 0.5) * 1.5;
-        humedadAnalogica += (int)((Math.random() - 0.5) * 40);
-        valorLDR += (int)((Math.random() - 0.5) * 30);
-        
-        // Mantener rangos realistas del Arduino
-        if (temperaturaLM35 < 15) temperaturaLM35 = 15;
-        if (temperaturaLM35 > 70) temperaturaLM35 = 70;
-        if (humedadAnalogica < 200) humedadAnalogica = 200;
-        if (humedadAnalogica > 800) humedadAnalogica = 800;
-        if (valorLDR < 100) valorLDR = 100;
-        if (valorLDR > 900) valorLDR = 900;
+        if (leerPlaca()) {
+            updateDisplays();
+            return;
+        }
+        // Sin placa, simulación física local: encender el ventilador enfría, la válvula riega...
+        simulador.setActuador(0, Actuador.VENTILADOR, ventiladorActivo);
+        simulador.setActuador(0, Actuador.BUZZER, buzzerActivo);
+        simulador.setActuador(0, Actuador.LED, ledActivo);
+        simulador.setActuador(0, Actuador.VALVULA, valvulaActiva);
+        simulador.setActuador(0, Actuador.SERVO, servoAbierto);
+        simulador.avanzar(1.0);
+        temperaturaLM35 = simulador.getTemperatura(0);
+        humedadAnalogica = simulador.getHumedadAnalogica(0);
+        valorLDR = simulador.getValorLDR(0);
+        Metricas.muestraRecibida();
         
         updateDisplays();
     }
     
+    // Última lectura de la placa, si mandó alguna desde el tic anterior
+    private boolean leerPlaca() {
+        if (comandos == null) return false;
+        Muestra ultima = null;
+        Muestra muestra;
+        while ((muestra = comandos.getFlota().getCanal().poll()) != null) ultima = muestra;
+        if (ultima == null) return false;
+        temperaturaLM35 = ultima.getTemperaturaLM35();
+        humedadAnalogica = ultima.getHumedadAnalogica();
+        valorLDR = ultima.getValorLDR();
+        return true;
+    }
+    
     private void verificarUmbralesArduino() {
-        // Mostrar alertas según umbrales EXACTOS del Arduino
-        String alertas = "<html><b>🚨 ALERTAS BASADAS EN CÓDIGO ARDUINO:</b><br>";
-        
-        // Temperatura (LM35) - Umbrales exactos del Arduino
-        if (temperaturaLM35 > TEMP_BUZZER) {
-            alertas += "<font color='red'>🔥 TEMPERATURA >56°C - BUZZER + VENTILADOR ACTIVOS</font><br>";
-        } else if (temperaturaLM35 > TEMP_VENTILADOR) {
-            alertas += "<font color='orange'>🌡️ TEMPERATURA 51-55°C - VENTILADOR ACTIVO</font><br>";
-        } else if (temperaturaLM35 <= TEMP_NORMAL) {
-            alertas += "<font color='green'>✅ TEMPERATURA ≤50°C - NORMAL</font><br>";
-        }
-        
-        // Humedad del suelo - Umbral exacto del Arduino
-        if (humedadAnalogica >= UMBRAL_HUMEDAD) {
-            alertas += "<font color='blue'>💧 HUMEDAD ≥500 - VÁLVULA ACTIVA</font><br>";
-        } else {
-            alertas += "<font color='brown'>🏜️ HUMEDAD <500 - VÁLVULA INACTIVA</font><br>";
-        }
-        
-        // Luminosidad (LDR) - Umbral exacto del Arduino
-        if (valorLDR >= UMBRAL_LUZ) {
-            alertas += "<font color='purple'>🌙 LDR ≥500 - NOCHE - LED ACTIVO</font><br>";
-        } else {
-            alertas += "<font color='gold'>☀️ LDR <500 - DÍA - LED INACTIVO</font><br>";
-        }
-        
-        alertas += "</html>";
-        lblAlertas.setText(alertas);
+        rotulos.verificarUmbralesArduino(temperaturaLM35, humedadAnalogica, valorLDR);
     }
     
     private void updateDisplays() {
-        // Actualizar sensores con formato Arduino
-        lblTemperaturaLM35.setText(String.format("🌡️ LM35: %.1f°C (Pin A0)", temperaturaLM35));
-        
-        // Mostrar tanto porcentaje como valor analógico (como en Arduino)
-        int humedadPorcentaje = (int)map(humedadAnalogica, 1023, 0, 0, 100);
-        lblHumedadSuelo.setText(String.format("💧 Humedad: %d%% (%d) (Pin A1)", humedadPorcentaje, humedadAnalogica));
+        rotulos.updateDisplays(temperaturaLM35, humedadAnalogica, valorLDR,
+                               ventiladorActivo, buzzerActivo, ledActivo, valvulaActiva, servoAbierto);
+    }
+    
+    // Función map idéntica a Arduino
+    private static double map(double value, double fromLow, double fromHigh, double toLow, double toHigh) {
+        return (value - fromLow) * (toHigh - toLow) / (fromHigh - fromLow) + toLow;
+    }
+
+    /**
+     * Lo que el tic de un segundo escribe en rótulos, barras y botones,
+     * aparte de la ventana: FormatoPantalla.main lo ejercita sin pantalla,
+     * con componentes sueltos, y mide lo que asigna
+     */
+    static final class Rotulos {
         
-        // Estado LDR con umbral Arduino
-        String estadoLuz = valorLDR >= UMBRAL_LUZ ? "🌙 Noche" : "☀️ Día";
-        lblLuminosidad.setText(String.format("☀️ LDR: %s (%d) (Pin A2)", estadoLuz, valorLDR));
+        private final FormatoPantalla formato = new FormatoPantalla();
+        final JLabel lblFechaHora;
+        final JLabel lblTemperaturaLM35;
+        final JLabel lblHumedadSuelo;
+        final JLabel lblLuminosidad;
+        final JLabel lblAlertaTemperatura;
+        final JLabel lblAlertaHumedad;
+        final JLabel lblAlertaLuz;
+        final JProgressBar progressTemperatura;
+        final JProgressBar progressHumedad;
+        final JProgressBar progressLuz;
+        final JButton btnVentilador;
+        final JButton btnBuzzer;
+        final JButton btnLED;
+        final JButton btnValvula;
+        final JButton btnServo;
         
-        // Actualizar barras de progreso
-        progressTemperatura.setValue((int)temperaturaLM35);
-        progressTemperatura.setString(String.format("%.1f°C", temperaturaLM35));
+        // Último comando de cada actuador y si hay placa; los actualiza la ventana, en el EDT
+        final Map<Actuador, CanalComandos.Comando> ultimosComandos = new EnumMap<>(Actuador.class);
+        boolean conPlaca = false;
         
-        progressHumedad.setValue(humedadPorcentaje);
-        progressHumedad.setString(String.format("%d%% (%d)", humedadPorcentaje, humedadAnalogica));
+        Rotulos(JLabel lblFechaHora, JLabel lblTemperaturaLM35, JLabel lblHumedadSuelo, JLabel lblLuminosidad,
+                JLabel lblAlertaTemperatura, JLabel lblAlertaHumedad, JLabel lblAlertaLuz,
+                JProgressBar progressTemperatura, JProgressBar progressHumedad, JProgressBar progressLuz,
+                JButton btnVentilador, JButton btnBuzzer, JButton btnLED, JButton btnValvula, JButton btnServo) {
+            this.lblFechaHora = lblFechaHora;
+            this.lblTemperaturaLM35 = lblTemperaturaLM35;
+            this.lblHumedadSuelo = lblHumedadSuelo;
+            this.lblLuminosidad = lblLuminosidad;
+            this.lblAlertaTemperatura = lblAlertaTemperatura;
+            this.lblAlertaHumedad = lblAlertaHumedad;
+            this.lblAlertaLuz = lblAlertaLuz;
+            this.progressTemperatura = progressTemperatura;
+            this.progressHumedad = progressHumedad;
+            this.progressLuz = progressLuz;
+            this.btnVentilador = btnVentilador;
+            this.btnBuzzer = btnBuzzer;
+            this.btnLED = btnLED;
+            this.btnValvula = btnValvula;
+            this.btnServo = btnServo;
+        }
         
-        int luzPorcentaje = (int)map(valorLDR, 0, 1023, 0, 100);
-        progressLuz.setValue(luzPorcentaje);
-        progressLuz.setString(valorLDR >= UMBRAL_LUZ ? "🌙 Noche" : "☀️ Día");
+        void updateDateTime(long ahora) {
+            lblFechaHora.setText(formato.limpiar().agregar("📅 ").agregarFecha(ahora).agregar(' ').agregarHora(ahora)
+                    .texto(lblFechaHora.getText()));
+        }
         
-        // Actualizar colores de botones según estado
-        btnVentilador.setBackground(ventiladorActivo ? new Color(100, 255, 100) : Color.LIGHT_GRAY);
-        btnVentilador.setText(ventiladorActivo ? "🌀 Ventilador ON (Pin 8)" : "🌀 Ventilador OFF (Pin 8)");
+        void verificarUmbralesArduino(double temperaturaLM35, int humedadAnalogica, int valorLDR) {
+            // Mostrar alertas según umbrales EXACTOS del Arduino, una línea de texto plano por sensor
+            
+            // Temperatura (LM35) - Umbrales exactos del Arduino
+            if (temperaturaLM35 > TEMP_BUZZER) {
+                FormatoPantalla.alerta(lblAlertaTemperatura, "🔥 TEMPERATURA >56°C - BUZZER + VENTILADOR ACTIVOS", FormatoPantalla.ROJO);
+            } else if (temperaturaLM35 > TEMP_VENTILADOR) {
+                FormatoPantalla.alerta(lblAlertaTemperatura, "🌡️ TEMPERATURA 51-55°C - VENTILADOR ACTIVO", FormatoPantalla.NARANJA);
+            } else if (temperaturaLM35 <= TEMP_NORMAL) {
+                FormatoPantalla.alerta(lblAlertaTemperatura, "✅ TEMPERATURA ≤50°C - NORMAL", FormatoPantalla.VERDE);
+            } else {
+                lblAlertaTemperatura.setText(" ");     // Entre 50 y 51°C el Arduino no avisa: la línea conserva su alto
+            }
+            
+            // Humedad del suelo - Umbral exacto del Arduino
+            if (humedadAnalogica >= UMBRAL_HUMEDAD) {
+                FormatoPantalla.alerta(lblAlertaHumedad, "💧 HUMEDAD ≥500 - VÁLVULA ACTIVA", FormatoPantalla.AZUL);
+            } else {
+                FormatoPantalla.alerta(lblAlertaHumedad, "🏜️ HUMEDAD <500 - VÁLVULA INACTIVA", FormatoPantalla.MARRON);
+            }
+            
+            // Luminosidad (LDR) - Umbral exacto del Arduino
+            if (valorLDR >= UMBRAL_LUZ) {
+                FormatoPantalla.alerta(lblAlertaLuz, "🌙 LDR ≥500 - NOCHE - LED ACTIVO", FormatoPantalla.VIOLETA);
+            } else {
+                FormatoPantalla.alerta(lblAlertaLuz, "☀️ LDR <500 - DÍA - LED INACTIVO", FormatoPantalla.DORADO);
+            }
+        }
         
-        btnBuzzer.setBackground(buzzerActivo ? new Color(255, 100, 100) : Color.LIGHT_GRAY);
-        btnBuzzer.setText(buzzerActivo ? "🚨 Buzzer ON (Pin 13)" : "🚨 Buzzer OFF (Pin 13)");
+        void updateDisplays(double temperaturaLM35, int humedadAnalogica, int valorLDR, boolean ventiladorActivo,
+                            boolean buzzerActivo, boolean ledActivo, boolean valvulaActiva, boolean servoAbierto) {
+            // Actualizar sensores con formato Arduino
+            lblTemperaturaLM35.setText(formato.limpiar().agregar("🌡️ LM35: ").agregarDecimal(temperaturaLM35, 1).agregar("°C (Pin A0)")
+                    .texto(lblTemperaturaLM35.getText()));
+            
+            // Mostrar tanto porcentaje como valor analógico (como en Arduino)
+            int humedadPorcentaje = (int)map(humedadAnalogica, 1023, 0, 0, 100);
+            lblHumedadSuelo.setText(formato.limpiar().agregar("💧 Humedad: ").agregar(humedadPorcentaje).agregar("% (")
+                    .agregar(humedadAnalogica).agregar(") (Pin A1)").texto(lblHumedadSuelo.getText()));
+            
+            // Estado LDR con umbral Arduino
+            String estadoLuz = valorLDR >= UMBRAL_LUZ ? "🌙 Noche" : "☀️ Día";
+            lblLuminosidad.setText(formato.limpiar().agregar("☀️ LDR: ").agregar(estadoLuz).agregar(" (").agregar(valorLDR)
+                    .agregar(") (Pin A2)").texto(lblLuminosidad.getText()));
+            
+            // Actualizar barras de progreso
+            progressTemperatura.setValue((int)temperaturaLM35);
+            progressTemperatura.setString(formato.limpiar().agregarDecimal(temperaturaLM35, 1).agregar("°C")
+                    .texto(progressTemperatura.getString()));
+            
+            progressHumedad.setValue(humedadPorcentaje);
+            progressHumedad.setString(formato.limpiar().agregar(humedadPorcentaje).agregar("% (").agregar(humedadAnalogica).agregar(')')
+                    .texto(progressHumedad.getString()));
+            
+            int luzPorcentaje = (int)map(valorLDR, 0, 1023, 0, 100);
+            progressLuz.setValue(luzPorcentaje);
+            progressLuz.setString(estadoLuz);
+            
+            // Actualizar colores de botones según estado
+            actualizarBoton(btnVentilador, Actuador.VENTILADOR, ventiladorActivo, COLOR_VENTILADOR, "🌀",
+                            " Ventilador ON (Pin 8)", " Ventilador OFF (Pin 8)");
+            actualizarBoton(btnBuzzer, Actuador.BUZZER, buzzerActivo, COLOR_BUZZER, "🚨", " Buzzer ON (Pin 13)", " Buzzer OFF (Pin 13)");
+            actualizarBoton(btnLED, Actuador.LED, ledActivo, COLOR_LED, "💡", " LED ON (Pin 11)", " LED OFF (Pin 11)");
+            actualizarBoton(btnValvula, Actuador.VALVULA, valvulaActiva, COLOR_VALVULA, "💧", " Válvula ON (Pin 12)", " Válvula OFF (Pin 12)");
+            actualizarBoton(btnServo, Actuador.SERVO, servoAbierto, COLOR_SERVO, "🚪", " Servo 90° (Pin 7)", " Servo 0° (Pin 7)");
+        }
         
-        btnLED.setBackground(ledActivo ? new Color(255, 255, 100) : Color.LIGHT_GRAY);
-        btnLED.setText(ledActivo ? "💡 LED ON (Pin 11)" : "💡 LED OFF (Pin 11)");
+        // setToolTipText vuelve a registrar el botón en el ToolTipManager: solo si el detalle cambió
+        private void actualizarBoton(JButton boton, Actuador actuador, boolean activo, Color color, String propio,
+                                     String textoOn, String textoOff) {
+            boton.setBackground(activo ? color : Color.LIGHT_GRAY);
+            boton.setText(formato.limpiar().agregar(icono(actuador, propio)).agregar(activo ? textoOn : textoOff).texto(boton.getText()));
+            String detalle = detalleComando(actuador, boton.getToolTipText());
+            if (detalle != boton.getToolTipText()) boton.setToolTipText(detalle);
+        }
         
-        btnValvula.setBackground(valvulaActiva ? new Color(100, 150, 255) : Color.LIGHT_GRAY);
-        btnValvula.setText(valvulaActiva ? "💧 Válvula ON (Pin 12)" : "💧 Válvula OFF (Pin 12)");
+        // El ícono propio si la placa confirmó, ⏳ mientras espera y ⚠️ si no respondió o rechazó el comando
+        private String icono(Actuador actuador, String propio) {
+            CanalComandos.Comando comando = ultimosComandos.get(actuador);
+            if (comando == null) return propio;
+            switch (comando.getEstado()) {
+                case PENDIENTE:
+                    return "⏳";
+                case FALLIDO:
+                    return "⚠️";
+                default:
+                    return propio;
+            }
+        }
         
-        btnServo.setBackground(servoAbierto ? new Color(150, 255, 200) : Color.LIGHT_GRAY);
-        btnServo.setText(servoAbierto ? "🚪 Servo 90° (Pin 7)" : "🚪 Servo 0° (Pin 7)");
-    }
-    
-    // Función map idéntica a Arduino
-    private double map(double value, double fromLow, double fromHigh, double toLow, double toHigh) {
-        return (value - fromLow) * (toHigh - toLow) / (fromHigh - fromLow) + toLow;
+        // actual si el detalle no cambió
+        private String detalleComando(Actuador actuador, String actual) {
+            CanalComandos.Comando comando = ultimosComandos.get(actuador);
+            if (comando == null) return conPlaca ? null : "Sin placa: solo simulado";
+            // El texto de comando.getTexto(), sin armar el String
+            formato.limpiar().agregar("📡 A,").agregar(comando.getPin()).agregar(',').agregar(comando.getValor()).agregar(',')
+                    .agregar(comando.getSecuencia());
+            switch (comando.getEstado()) {
+                case PENDIENTE:
+                    formato.agregar(" esperando confirmación");
+                    break;
+                case CONFIRMADO:
+                    formato.agregar(" confirmado en ").agregarDecimal(comando.getIdaYVueltaNs() / 1e6, 0).agregar(" ms");
+                    break;
+                default:
+                    formato.agregar(" sin confirmar: la placa no respondió o lo rechazó");
+            }
+            return formato.texto(actual);
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -189,6 +423,9 @@ public class ControlManual extends javax.swing.JFrame {
         btnServo = new javax.swing.JButton();
         panelAlertas = new javax.swing.JPanel();
         lblAlertas = new javax.swing.JLabel();
+        lblAlertaTemperatura = new javax.swing.JLabel();
+        lblAlertaHumedad = new javax.swing.JLabel();
+        lblAlertaLuz = new javax.swing.JLabel();
         panelUmbralesInfo = new javax.swing.JPanel();
         lblInfoUmbrales = new javax.swing.JLabel();
         panelNavegacion = new javax.swing.JPanel();
@@ -355,9 +592,17 @@ public class ControlManual extends javax.swing.JFrame {
         panelAlertas.setBackground(new java.awt.Color(255, 250, 240));
         panelAlertas.setBorder(javax.swing.BorderFactory.createTitledBorder(null, "🚨 Alertas Basadas en Código Arduino", javax.swing.border.TitledBorder.DEFAULT_JUSTIFICATION, javax.swing.border.TitledBorder.DEFAULT_POSITION, new java.awt.Font("Arial", 1, 14), new java.awt.Color(200, 100, 50)));
 
-        lblAlertas.setFont(new java.awt.Font("Arial", 0, 12));
-        lblAlertas.setVerticalAlignment(javax.swing.SwingConstants.TOP);
-        lblAlertas.setText("<html><b>🚨 ALERTAS BASADAS EN CÓDIGO ARDUINO:</b><br>Inicializando sistema...</html>");
+        lblAlertas.setFont(new java.awt.Font("Arial", 1, 12));
+        lblAlertas.setText("🚨 ALERTAS BASADAS EN CÓDIGO ARDUINO:");
+
+        lblAlertaTemperatura.setFont(new java.awt.Font("Arial", 0, 12));
+        lblAlertaTemperatura.setText("Inicializando sistema...");
+
+        lblAlertaHumedad.setFont(new java.awt.Font("Arial", 0, 12));
+        lblAlertaHumedad.setText(" ");
+
+        lblAlertaLuz.setFont(new java.awt.Font("Arial", 0, 12));
+        lblAlertaLuz.setText(" ");
 
         javax.swing.GroupLayout panelAlertasLayout = new javax.swing.GroupLayout(panelAlertas);
         panelAlertas.setLayout(panelAlertasLayout);
@@ -365,15 +610,25 @@ public class ControlManual extends javax.swing.JFrame {
             panelAlertasLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
             .addGroup(panelAlertasLayout.createSequentialGroup()
                 .addContainerGap()
-                .addComponent(lblAlertas, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                .addGroup(panelAlertasLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+                    .addComponent(lblAlertas, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(lblAlertaTemperatura, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(lblAlertaHumedad, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(lblAlertaLuz, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
                 .addContainerGap())
         );
         panelAlertasLayout.setVerticalGroup(
             panelAlertasLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
             .addGroup(panelAlertasLayout.createSequentialGroup()
                 .addContainerGap()
-                .addComponent(lblAlertas, javax.swing.GroupLayout.DEFAULT_SIZE, 108, Short.MAX_VALUE)
-                .addContainerGap())
+                .addComponent(lblAlertas)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(lblAlertaTemperatura)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(lblAlertaHumedad)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(lblAlertaLuz)
+                .addContainerGap(javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
         );
 
         panelUmbralesInfo.setBackground(new java.awt.Color(250, 255, 250));
@@ -512,80 +767,45 @@ public class ControlManual extends javax.swing.JFrame {
 
     private void btnVentiladorActionPerformed(java.awt.event.ActionEvent evt) {                                              
         ventiladorActivo = !ventiladorActivo;
+        registrarEnDiario(Actuador.VENTILADOR, ventiladorActivo);
+        enviarComando(Actuador.VENTILADOR, ventiladorActivo);
         updateDisplays();
-        String comando = ventiladorActivo ? "HIGH" : "LOW";
-        JOptionPane.showMessageDialog(this, 
-            "🌀 Ventilador " + (ventiladorActivo ? "ACTIVADO" : "DESACTIVADO") + "\n\n" +
-            "📡 Comando Arduino:\n" +
-            "pinMode(8, OUTPUT);\n" +
-            "digitalWrite(8, " + comando + ");\n\n" +
-            "🔧 En tu código Arduino, el ventilador se activa automáticamente\n" +
-            "cuando la temperatura supera los 51°C.", 
-            "Control de Ventilador", JOptionPane.INFORMATION_MESSAGE);
     }                                             
 
     private void btnBuzzerActionPerformed(java.awt.event.ActionEvent evt) {                                          
         buzzerActivo = !buzzerActivo;
+        registrarEnDiario(Actuador.BUZZER, buzzerActivo);
+        enviarComando(Actuador.BUZZER, buzzerActivo);
         updateDisplays();
-        String comando = buzzerActivo ? "HIGH" : "LOW";
-        JOptionPane.showMessageDialog(this, 
-            "🚨 Buzzer " + (buzzerActivo ? "ACTIVADO" : "DESACTIVADO") + "\n\n" +
-            "📡 Comando Arduino:\n" +
-            "pinMode(13, OUTPUT);\n" +
-            "digitalWrite(13, " + comando + ");\n\n" +
-            "🔧 En tu código Arduino, el buzzer se activa automáticamente\n" +
-            "cuando la temperatura supera los 56°C.", 
-            "Control de Buzzer", JOptionPane.INFORMATION_MESSAGE);
     }                                         
 
     private void btnLEDActionPerformed(java.awt.event.ActionEvent evt) {                                       
         ledActivo = !ledActivo;
+        registrarEnDiario(Actuador.LED, ledActivo);
+        enviarComando(Actuador.LED, ledActivo);
         updateDisplays();
-        String comando = ledActivo ? "HIGH" : "LOW";
-        JOptionPane.showMessageDialog(this, 
-            "💡 LED " + (ledActivo ? "ENCENDIDO" : "APAGADO") + "\n\n" +
-            "📡 Comando Arduino:\n" +
-            "pinMode(11, OUTPUT);\n" +
-            "digitalWrite(11, " + comando + ");\n\n" +
-            "🔧 En tu código Arduino, el LED se activa automáticamente\n" +
-            "cuando el LDR detecta valores ≥500 (noche).", 
-            "Control de LED", JOptionPane.INFORMATION_MESSAGE);
     }                                      
 
     private void btnValvulaActionPerformed(java.awt.event.ActionEvent evt) {                                           
         valvulaActiva = !valvulaActiva;
+        registrarEnDiario(Actuador.VALVULA, valvulaActiva);
+        enviarComando(Actuador.VALVULA, valvulaActiva);
         updateDisplays();
-        String comando = valvulaActiva ? "HIGH" : "LOW";
-        JOptionPane.showMessageDialog(this, 
-            "💧 Válvula de Riego " + (valvulaActiva ? "ABIERTA" : "CERRADA") + "\n\n" +
-            "📡 Comando Arduino:\n" +
-            "pinMode(12, OUTPUT);\n" +
-            "digitalWrite(12, " + comando + ");\n\n" +
-            "🔧 En tu código Arduino, la válvula se activa automáticamente\n" +
-            "cuando la humedad del suelo es ≥500 (suelo húmedo).", 
-            "Control de Válvula", JOptionPane.INFORMATION_MESSAGE);
     }                                          
 
     private void btnServoActionPerformed(java.awt.event.ActionEvent evt) {                                         
         servoAbierto = !servoAbierto;
+        registrarEnDiario(Actuador.SERVO, servoAbierto);
+        enviarComando(Actuador.SERVO, servoAbierto);
         updateDisplays();
-        int angulo = servoAbierto ? 90 : 0;
-        JOptionPane.showMessageDialog(this, 
-            "🚪 Servo movido a " + angulo + "°\n\n" +
-            "📡 Comando Arduino:\n" +
-            "#include <Servo.h>\n" +
-            "Servo miServo;\n" +
-            "miServo.attach(7);\n" +
-            "miServo.write(" + angulo + ");\n\n" +
-            "🔧 En tu código Arduino, el servo se controla con el botón\n" +
-            "conectado al pin 6, alternando entre 0° y 90°.", 
-            "Control de Servo", JOptionPane.INFORMATION_MESSAGE);
     }                                        
 
     private void btnInicioActionPerformed(java.awt.event.ActionEvent evt) {                                          
         if (updateTimer != null) {
             updateTimer.stop();
         }
+        cerrarPlaca();
+        salirDelModo();
         new PanelPrincipal().setVisible(true);
         this.dispose();
     }                                         
@@ -594,6 +814,7 @@ public class ControlManual extends javax.swing.JFrame {
         if (updateTimer != null) {
             updateTimer.stop();
         }
+        cerrarPlaca();
         new ControlAutomatico().setVisible(true);
         this.dispose();
     }                                                     
@@ -607,31 +828,20 @@ public class ControlManual extends javax.swing.JFrame {
             if (updateTimer != null) {
                 updateTimer.stop();
             }
+            cerrarPlaca();
+            salirDelModo();
             System.exit(0);
         }
     }                                        
 
     public static void main(String args[]) {
-        try {
-            for (javax.swing.UIManager.LookAndFeelInfo info : javax.swing.UIManager.getInstalledLookAndFeels()) {
-                if ("Nimbus".equals(info.getName())) {
-                    javax.swing.UIManager.setLookAndFeel(info.getClassName());
-                    break;
-                }
-            }
-        } catch (ClassNotFoundException ex) {
-            java.util.logging.Logger.getLogger(ControlManual.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
-        } catch (InstantiationException ex) {
-            java.util.logging.Logger.getLogger(ControlManual.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
-        } catch (IllegalAccessException ex) {
-            java.util.logging.Logger.getLogger(ControlManual.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
-        } catch (javax.swing.UnsupportedLookAndFeelException ex) {
-            java.util.logging.Logger.getLogger(ControlManual.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
-        }
+        Arranque.configurarAspecto();
+
+        ServidorMetricas.iniciarSiConfigurado();
 
         java.awt.EventQueue.invokeLater(new Runnable() {
             public void run() {
-                new ControlManual().setVisible(true);
+                if (!PantallaBienvenida.abrirPantallaRecuperada()) new ControlManual().setVisible(true);
             }
         });
     }
@@ -645,6 +855,9 @@ public class ControlManual extends javax.swing.JFrame {
     private javax.swing.JButton btnServo;
     private javax.swing.JButton btnValvula;
     private javax.swing.JButton btnVentilador;
+    private javax.swing.JLabel lblAlertaHumedad;
+    private javax.swing.JLabel lblAlertaLuz;
+    private javax.swing.JLabel lblAlertaTemperatura;
     private javax.swing.JLabel lblAlertas;
     private javax.swing.JLabel lblFechaHora;
     private javax.swing.JLabel lblHumedadSuelo;
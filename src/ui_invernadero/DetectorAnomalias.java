@@ -0,0 +1,224 @@
+package ui_invernadero;
+
+/**
+ * Detección de anomalías de sensores en flujo, con estado fijo por canal
+ * Marca cada muestra con banderas por canal (temperatura, humedad, LDR):
+ * valor estancado (misma lectura durante demasiado tiempo), velocidad de
+ * cambio imposible, saturación (LM35 en 0.0°C o fuera de escala; humedad y
+ * LDR en 0 / 1023 solo si además están estancados, porque suelo muy seco u
+ * oscuridad total también leen 1023) y
+ * picos por puntaje z contra media y varianza exponenciales. No reserva
+ * memoria por muestra; el control usa las banderas para pasar a un estado
+ * seguro en lugar de decidir con lecturas falsas.
+ * @author Nicom
+ */
+public final class DetectorAnomalias {
+
+    // Banderas por canal (4 bits por canal, desplazadas 4 * canal)
+    public static final int ESTANCADO = 1;
+    public static final int VELOCIDAD = 2;
+    public static final int SATURADO = 4;
+    public static final int PICO = 8;
+
+    public static final int CANAL_TEMPERATURA = 0;
+    public static final int CANAL_HUMEDAD = 1;
+    public static final int CANAL_LUZ = 2;
+    private static final int CANALES = 3;
+    private static final String[] NOMBRES_CANAL = {"LM35", "Humedad", "LDR"};
+
+    private static final double ALFA = 0.05;                // Peso de la media exponencial (~20 muestras)
+    private static final double PUNTAJE_Z = 6.0;
+    private static final int MUESTRAS_PREVIAS = 20;         // Antes no se evalúan picos
+    private static final int REPETICIONES_MINIMAS = 20;     // Con muestreo lento, el tiempo solo no alcanza
+
+    private final long estancadoMs;
+
+    // Estado fijo por canal
+    private final Canal temperatura = new Canal(0.0, 150.0, 5.0, 0.25, false);          // LM35 en 0.0°C: A0 a masa (desconectado)
+    private final Canal humedad = new Canal(0, 1023, 100.0, 3.0, true);                 // 1023: suelo completamente seco
+    private final Canal luz = new Canal(0, 1023, Double.POSITIVE_INFINITY, 10.0, true); // La luz sí cambia de golpe; el LED mueve el LDR
+    private long ultimaMs;
+    private int muestras = 0;
+
+    /**
+     * @param estancadoMs tiempo con la misma lectura (y al menos 20 lecturas)
+     *        para considerar estancado un canal; no depende del período de muestreo
+     */
+    public DetectorAnomalias(long estancadoMs) {
+        this.estancadoMs = estancadoMs;
+    }
+
+    // La misma lectura durante un minuto y al menos 20 veces
+    public DetectorAnomalias() {
+        this(60_000);
+    }
+
+    /**
+     * @return banderas de anomalía de la muestra (0 = todo normal)
+     */
+    public int evaluar(long tiempoMs, double temperaturaLM35, int humedadAnalogica, int valorLDR) {
+        int banderas;
+        if (muestras == 0) {
+            banderas = temperatura.iniciar(temperaturaLM35, tiempoMs)
+                    | humedad.iniciar(humedadAnalogica, tiempoMs) << 4
+                    | luz.iniciar(valorLDR, tiempoMs) << 8;
+        } else {
+            double dt = (tiempoMs - ultimaMs) / 1000.0;
+            boolean previas = muestras >= MUESTRAS_PREVIAS;
+            long limite = tiempoMs - estancadoMs;
+            banderas = temperatura.evaluar(temperaturaLM35, tiempoMs, dt, previas, limite)
+                    | humedad.evaluar(humedadAnalogica, tiempoMs, dt, previas, limite) << 4
+                    | luz.evaluar(valorLDR, tiempoMs, dt, previas, limite) << 8;
+        }
+        ultimaMs = tiempoMs;
+        muestras++;
+        return banderas;
+    }
+
+    private static final class Canal {
+
+        private final double minimo;
+        private final double maximo;
+        private final double velocidadMaxima;       // Por segundo
+        private final double varianzaMinima;        // Piso del desvío: ruido del ADC
+        private final double saltoRuido;            // Salto que el ruido explica aunque dt sea ~0
+        private final boolean bordeValido;          // 0 / máximo también son lecturas reales: saturado solo si se estanca
+
+        private double ultimo;
+        private int repeticiones;
+        private long desdeMs;                       // Primera lectura con el valor actual
+        private double media;
+        private double varianza;
+
+        Canal(double minimo, double maximo, double velocidadMaxima, double desvioMinimo, boolean bordeValido) {
+            this.minimo = minimo;
+            this.maximo = maximo;
+            this.velocidadMaxima = velocidadMaxima;
+            this.varianzaMinima = desvioMinimo * desvioMinimo;
+            this.saltoRuido = PUNTAJE_Z * desvioMinimo;
+            this.bordeValido = bordeValido;
+        }
+
+        int iniciar(double valor, long tiempoMs) {
+            ultimo = valor;
+            desdeMs = tiempoMs;
+            media = valor;
+            return !bordeValido && (valor <= minimo || valor >= maximo) ? SATURADO : 0;
+        }
+
+        // limiteMs: el valor tiene que repetirse desde antes de este instante
+        int evaluar(double valor, long tiempoMs, double dt, boolean previas, long limiteMs) {
+            int banderas = 0;
+            double salto = valor - ultimo;
+            if (salto == 0) {
+                if (++repeticiones >= REPETICIONES_MINIMAS && desdeMs <= limiteMs) banderas |= ESTANCADO;
+            } else {
+                repeticiones = 0;
+                desdeMs = tiempoMs;
+            }
+            if ((valor <= minimo || valor >= maximo) && (!bordeValido || (banderas & ESTANCADO) != 0)) {
+                banderas |= SATURADO;
+            }
+            if (Math.abs(salto) > velocidadMaxima * Math.max(dt, 0.0) + saltoRuido) {
+                banderas |= VELOCIDAD;
+            }
+            ultimo = valor;
+
+            // Puntaje z comparado al cuadrado (sin raíz en el caso normal);
+            // el pico entra recortado a la media para no arrastrarla
+            double diferencia = valor - media;
+            double limite = PUNTAJE_Z * PUNTAJE_Z * Math.max(varianzaMinima, varianza);
+            if (previas && diferencia * diferencia > limite) {
+                banderas |= PICO;
+                diferencia = Math.copySign(Math.sqrt(limite), diferencia);
+            }
+            media += ALFA * diferencia;
+            varianza = (1.0 - ALFA) * (varianza + ALFA * diferencia * diferencia);
+            return banderas;
+        }
+    }
+
+    public static boolean afecta(int banderas, int canal) {
+        return (banderas >>> (4 * canal) & 0xF) != 0;
+    }
+
+    /**
+     * Texto para el log, p. ej. "LM35 estancado, LDR saturado"
+     */
+    public static String describir(int banderas) {
+        StringBuilder texto = new StringBuilder();
+        for (int c = 0; c < CANALES; c++) {
+            int b = banderas >>> (4 * c) & 0xF;
+            if (b == 0) continue;
+            if (texto.length() > 0) texto.append(", ");
+            texto.append(NOMBRES_CANAL[c]);
+            if ((b & ESTANCADO) != 0) texto.append(" estancado");
+            if ((b & VELOCIDAD) != 0) texto.append(" con salto imposible");
+            if ((b & SATURADO) != 0) texto.append(" saturado");
+            if ((b & PICO) != 0) texto.append(" con pico");
+        }
+        return texto.toString();
+    }
+
+    /**
+     * Costo por muestra y detección de fallas inyectadas:
+     * java ui_invernadero.DetectorAnomalias [muestras]
+     */
+    public static void main(String args[]) {
+        int cantidad = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        SimuladorInvernadero simulador = new SimuladorInvernadero(1, 39L);
+        double[] temperaturas = new double[cantidad];
+        int[] humedades = new int[cantidad];
+        int[] valoresLDR = new int[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            // Ventilador y LED alternados cada 10 minutos; riego como el control automático
+            int mascara = (i / 600) % 2 == 0 ? 0 : Actuador.VENTILADOR.getBit() | Actuador.LED.getBit();
+            if (i > 0 && humedades[i - 1] >= 500) mascara |= Actuador.VALVULA.getBit();
+            simulador.setActuadores(0, mascara);
+            simulador.avanzar(1.0);
+            temperaturas[i] = Math.round(simulador.getTemperatura(0) * 10) / 10.0;   // Resolución del protocolo
+            humedades[i] = simulador.getHumedadAnalogica(0);
+            valoresLDR[i] = simulador.getValorLDR(0);
+        }
+
+        // Falsos positivos sobre datos sanos y costo por muestra
+        long falsos = 0;
+        double ns = 0;
+        for (int v = 0; v < 5; v++) {
+            DetectorAnomalias detector = new DetectorAnomalias();
+            falsos = 0;
+            long inicio = System.nanoTime();
+            for (int i = 0; i < cantidad; i++) {
+                if (detector.evaluar(i * 1000L, temperaturas[i], humedades[i], valoresLDR[i]) != 0) falsos++;
+            }
+            ns = (double) (System.nanoTime() - inicio) / cantidad;
+        }
+        System.out.printf("%,d muestras sanas: %.1f ns/muestra, %d falsos positivos%n", cantidad, ns, falsos);
+
+        // Fallas inyectadas sobre una copia de los datos
+        int base = Math.min(cantidad, 10_000) - 1_000;
+        String[] fallas = {"LM35 desconectado (0.0°C)", "LM35 estancado", "Pico de 20°C", "Humedad saturada (1023)", "Salto de humedad"};
+        for (int f = 0; f < fallas.length; f++) {
+            DetectorAnomalias detector = new DetectorAnomalias();
+            int detectadaEn = -1;
+            int banderas = 0;
+            for (int i = 0; i < base + 200 && detectadaEn < 0; i++) {
+                double t = temperaturas[i];
+                int h = humedades[i];
+                if (i >= base) {
+                    switch (f) {
+                        case 0: t = 0.0; break;
+                        case 1: t = temperaturas[base]; break;
+                        case 2: if (i == base) t += 20; break;
+                        case 3: h = 1023; break;
+                        default: if (i == base) h -= 300; break;
+                    }
+                }
+                banderas = detector.evaluar(i * 1000L, t, h, valoresLDR[i]);
+                if (banderas != 0) detectadaEn = i;
+            }
+            System.out.printf("%-28s %s%n", fallas[f] + ":", detectadaEn < 0 ? "NO DETECTADA"
+                              : "detectada a los " + (detectadaEn - base) + " s -> " + describir(banderas));
+        }
+    }
+}
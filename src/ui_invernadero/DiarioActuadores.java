@@ -0,0 +1,265 @@
+package ui_invernadero;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Diario de escritura anticipada (WAL) del estado de los actuadores
+ * Cada transición se agrega al diario y se sincroniza a disco en grupos
+ * (fsync cada PERIODO_SINCRONIZACION_MS), de modo que tras una caída de la
+ * JVM se recupera el último estado de cada actuador y el modo activo
+ * (manual/automático). Cuando el archivo crece se compacta a una foto del
+ * estado actual.
+ *
+ * Registro (16 bytes): tiempoMs(8) tipo(1) modo(1) actuador(1) estado(1) crc32(4)
+ * @author Nicom
+ */
+public class DiarioActuadores {
+
+    public static final String PROPIEDAD_ARCHIVO = "invernadero.diario";
+
+    public static final int MODO_MANUAL = 0;
+    public static final int MODO_AUTOMATICO = 1;
+    public static final int MODO_NINGUNO = -1;
+
+    private static final byte TIPO_ACTUADOR = 1;
+    private static final byte TIPO_MODO = 2;
+    private static final int TAMANIO_REGISTRO = 16;
+    private static final long PERIODO_SINCRONIZACION_MS = 50;
+    private static final long TAMANIO_COMPACTACION = 64 * 1024;
+
+    private static DiarioActuadores instancia;
+
+    private final Path archivo;
+    private FileChannel canal;
+    private final ByteBuffer pendientes = ByteBuffer.allocate(TAMANIO_REGISTRO * 1024);
+    private final CRC32 crc = new CRC32();
+    private final ScheduledExecutorService sincronizador;
+
+    // Estado actual (reconstruido del diario y actualizado en cada registro)
+    private final boolean[][] estados = new boolean[2][Actuador.values().length];
+    private int modoActivo = MODO_NINGUNO;
+    private boolean automaticoActivo = false;
+
+    public DiarioActuadores(Path archivo) throws IOException {
+        this.archivo = archivo;
+        if (archivo.getParent() != null) {
+            Files.createDirectories(archivo.getParent());
+        }
+        canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recuperar();
+
+        sincronizador = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable tarea) {
+                Thread hilo = new Thread(tarea, "diario-actuadores");
+                hilo.setDaemon(true);
+                return hilo;
+            }
+        });
+        sincronizador.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sincronizar();
+                } catch (IOException ex) {
+                    java.util.logging.Logger.getLogger(DiarioActuadores.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
+                }
+            }
+        }, PERIODO_SINCRONIZACION_MS, PERIODO_SINCRONIZACION_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Diario compartido de la aplicación (null si no se pudo abrir)
+     */
+    public static synchronized DiarioActuadores getInstancia() {
+        if (instancia == null) {
+            String ruta = System.getProperty(PROPIEDAD_ARCHIVO,
+                    Paths.get(System.getProperty("user.home"), ".invernadero", "actuadores.wal").toString());
+            try {
+                instancia = new DiarioActuadores(Paths.get(ruta));
+                final DiarioActuadores diario = instancia;
+                Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        diario.cerrar();
+                    }
+                }, "diario-actuadores-cierre"));
+            } catch (IOException ex) {
+                java.util.logging.Logger.getLogger(DiarioActuadores.class.getName()).log(java.util.logging.Level.SEVERE,
+                        "No se pudo abrir el diario de actuadores " + ruta, ex);
+            }
+        }
+        return instancia;
+    }
+
+    // Reconstruye el estado; un registro incompleto o corrupto al final se descarta
+    private void recuperar() throws IOException {
+        ByteBuffer registro = ByteBuffer.allocate(TAMANIO_REGISTRO);
+        long posicion = 0;
+        long tamanio = canal.size();
+        while (posicion + TAMANIO_REGISTRO <= tamanio) {
+            registro.clear();
+            while (registro.hasRemaining()) {
+                if (canal.read(registro, posicion + registro.position()) < 0) break;
+            }
+            registro.flip();
+            if (registro.remaining() < TAMANIO_REGISTRO) break;
+            crc.reset();
+            crc.update(registro.array(), 0, TAMANIO_REGISTRO - 4);
+            if ((int) crc.getValue() != registro.getInt(TAMANIO_REGISTRO - 4)) break;
+            aplicar(registro.get(8), registro.get(9), registro.get(10), registro.get(11) != 0);
+            posicion += TAMANIO_REGISTRO;
+        }
+        if (posicion < tamanio) {
+            canal.truncate(posicion);
+        }
+        canal.position(posicion);
+    }
+
+    private void aplicar(byte tipo, int modo, int actuador, boolean estado) {
+        if (tipo == TIPO_MODO && modo >= MODO_NINGUNO && modo <= MODO_AUTOMATICO) {
+            // El control automático solo sigue en marcha mientras su pantalla está activa
+            modoActivo = modo;
+            automaticoActivo = modo == MODO_AUTOMATICO && estado;
+        } else if (tipo == TIPO_ACTUADOR && (modo == MODO_MANUAL || modo == MODO_AUTOMATICO)
+                   && actuador >= 0 && actuador < estados[modo].length) {
+            estados[modo][actuador] = estado;
+        }
+    }
+
+    public synchronized void registrarActuador(int modo, Actuador actuador, boolean activo) {
+        if (estados[modo][actuador.ordinal()] == activo) return;
+        agregar(TIPO_ACTUADOR, modo, actuador.ordinal(), activo);
+    }
+
+    /**
+     * @param modo pantalla de control activa (MODO_NINGUNO al volver al inicio o salir)
+     * @param activo para el modo automático, si el control está en marcha
+     */
+    public synchronized void registrarModo(int modo, boolean activo) {
+        if (modoActivo == modo && automaticoActivo == (modo == MODO_AUTOMATICO && activo)) return;
+        agregar(TIPO_MODO, modo, 0, activo);
+    }
+
+    private void agregar(byte tipo, int modo, int actuador, boolean estado) {
+        aplicar(tipo, modo, actuador, estado);
+        if (pendientes.remaining() < TAMANIO_REGISTRO) {
+            try {
+                sincronizar();
+            } catch (IOException ex) {
+                java.util.logging.Logger.getLogger(DiarioActuadores.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
+                pendientes.clear();
+            }
+        }
+        escribirRegistro(pendientes, tipo, modo, actuador, estado);
+    }
+
+    private void escribirRegistro(ByteBuffer destino, byte tipo, int modo, int actuador, boolean estado) {
+        int inicio = destino.position();
+        destino.putLong(System.currentTimeMillis());
+        destino.put(tipo);
+        destino.put((byte) modo);
+        destino.put((byte) actuador);
+        destino.put((byte) (estado ? 1 : 0));
+        crc.reset();
+        crc.update(destino.array(), inicio, TAMANIO_REGISTRO - 4);
+        destino.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Escribe los registros pendientes y hace un único fsync para todo el grupo
+     */
+    public synchronized void sincronizar() throws IOException {
+        if (pendientes.position() == 0) return;
+        pendientes.flip();
+        while (pendientes.hasRemaining()) {
+            canal.write(pendientes);
+        }
+        pendientes.clear();
+        canal.force(false);
+        if (canal.size() > TAMANIO_COMPACTACION) {
+            compactar();
+        }
+    }
+
+    /**
+     * Reemplaza el diario por una foto del estado actual (escritura atómica)
+     */
+    public synchronized void compactar() throws IOException {
+        int registros = 2 * estados[0].length + 1;
+        ByteBuffer foto = ByteBuffer.allocate(registros * TAMANIO_REGISTRO);
+        for (int modo = MODO_MANUAL; modo <= MODO_AUTOMATICO; modo++) {
+            for (int a = 0; a < estados[modo].length; a++) {
+                escribirRegistro(foto, TIPO_ACTUADOR, modo, a, estados[modo][a]);
+            }
+        }
+        if (modoActivo != MODO_NINGUNO) {
+            escribirRegistro(foto, TIPO_MODO, modoActivo, 0, automaticoActivo);
+        }
+        foto.flip();
+
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        try (FileChannel nuevo = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (foto.hasRemaining()) nuevo.write(foto);
+            nuevo.force(true);
+        }
+        canal.close();
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        sincronizarDirectorio(archivo.toAbsolutePath().getParent());
+        canal = FileChannel.open(archivo, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        canal.position(canal.size());
+    }
+
+    // El renombre vive en el directorio: sin su fsync una caída puede devolver el diario viejo
+    private static void sincronizarDirectorio(Path directorio) {
+        if (directorio == null) return;
+        try (FileChannel canalDirectorio = FileChannel.open(directorio, StandardOpenOption.READ)) {
+            canalDirectorio.force(true);
+        } catch (IOException ex) {
+            // Windows no abre directorios como archivo; ahí NTFS ya registró el renombre
+        }
+    }
+
+    public synchronized void cerrar() {
+        sincronizador.shutdown();
+        try {
+            sincronizar();
+            canal.close();
+        } catch (IOException ex) {
+            java.util.logging.Logger.getLogger(DiarioActuadores.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
+        }
+    }
+
+    public synchronized boolean getEstado(int modo, Actuador actuador) {
+        return estados[modo][actuador.ordinal()];
+    }
+
+    // Estados de un modo como máscara de Actuador.getBit()
+    public synchronized int getMascara(int modo) {
+        int mascara = 0;
+        for (Actuador actuador : Actuador.values()) {
+            if (estados[modo][actuador.ordinal()]) mascara |= actuador.getBit();
+        }
+        return mascara;
+    }
+
+    public synchronized int getModoActivo() {
+        return modoActivo;
+    }
+
+    public synchronized boolean isAutomaticoActivo() {
+        return automaticoActivo;
+    }
+}
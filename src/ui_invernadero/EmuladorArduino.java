@@ -0,0 +1,525 @@
+package ui_invernadero;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Emulador de la placa Arduino del invernadero sobre un socket TCP local
+ * Habla el mismo protocolo de texto que la placa (ProtocoloArduino): emite
+ * "S,temp,hum,ldr" a la frecuencia configurada con lecturas del
+ * SimuladorInvernadero, acepta comandos "A,pin,valor" para los pines 8, 11,
+ * 12, 13 y 7 y responde "K,pin,valor" (o "E,comando" si no lo reconoce).
+ * Si la PC pide "P,BIN" pasa al ProtocoloBinario (tramas con secuencia y
+ * CRC). Atiende una conexión a la vez, como un puerto serie, y al cortarse
+ * vuelve a esperar otra. El enlace se puede limitar a la velocidad de un
+ * puerto serie. Para probar con un dispositivo serie real, se puede exponer
+ * como pty con socat (ver main).
+ * Inyección de fallas en caliente: bytes perdidos, demoras, ida y vuelta
+ * del enlace y desconexiones.
+ * @author Nicom
+ */
+public class EmuladorArduino implements Closeable {
+
+    private final ServerSocket servidor;
+    private final double aceleracion;             // Segundos simulados por segundo real
+    private final Thread aceptador;
+    private final ScheduledExecutorService enlace;        // Confirmaciones demoradas por la ida y vuelta
+
+    // Confinado al hilo aceptador (emite las muestras de la conexión actual)
+    private final SimuladorInvernadero simulador;
+
+    private volatile int mascara = 0;
+    private volatile long periodoNs;                       // Entre muestras (0 = tan rápido como acepte el enlace); "P,n" lo cambia
+    private volatile Socket conexion;
+    private volatile boolean cerrado = false;
+    private volatile boolean binario = false;              // Conexión actual en modo binario
+    private volatile boolean binarioDisponible = true;
+    private volatile int baudios = 0;                      // 0 = sin límite
+    private long siguienteByteNs;                          // Con el bloqueo de la salida
+
+    // Fallas
+    private volatile double probabilidadPerdida = 0;      // Por byte enviado
+    private volatile long retardoMs = 0;
+    private volatile long variacionMs = 0;
+    private volatile long idaYVueltaMs = 0;
+    private volatile int desconectarCada = 0;             // Líneas (0 = nunca)
+
+    private final AtomicLong lineasEnviadas = new AtomicLong();
+    private final AtomicLong bytesPerdidos = new AtomicLong();
+    private final AtomicLong comandosRecibidos = new AtomicLong();
+    private final AtomicLong conexiones = new AtomicLong();
+
+    /**
+     * @param puerto puerto TCP en la interfaz local (0 = uno libre)
+     * @param muestrasPorSegundo frecuencia de las lecturas (0 = sin pausa)
+     * @param aceleracion segundos simulados por segundo real
+     */
+    public EmuladorArduino(int puerto, double muestrasPorSegundo, double aceleracion, long semilla) throws IOException {
+        if (muestrasPorSegundo < 0 || !(aceleracion > 0)) {
+            throw new IllegalArgumentException("Frecuencia o aceleración inválida");
+        }
+        this.periodoNs = muestrasPorSegundo > 0 ? (long) (1e9 / muestrasPorSegundo) : 0;
+        this.aceleracion = aceleracion;
+        this.simulador = new SimuladorInvernadero(1, semilla);
+        this.servidor = new ServerSocket(puerto, 1, InetAddress.getLoopbackAddress());
+        this.aceptador = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                aceptar();
+            }
+        }, "emulador-arduino-" + servidor.getLocalPort());
+        aceptador.setDaemon(true);
+        this.enlace = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable tarea) {
+                Thread hilo = new Thread(tarea, "emulador-enlace-" + servidor.getLocalPort());
+                hilo.setDaemon(true);
+                return hilo;
+            }
+        });
+    }
+
+    public void iniciar() {
+        aceptador.start();
+    }
+
+    public int getPuerto() {
+        return servidor.getLocalPort();
+    }
+
+    private void aceptar() {
+        while (!cerrado) {
+            try (Socket socket = servidor.accept()) {
+                socket.setTcpNoDelay(true);
+                conexion = socket;
+                conexiones.incrementAndGet();
+                emitir(socket);
+            } catch (IOException ex) {
+                // Conexión cortada (por el cliente o por una falla inyectada): esperar otra
+            } catch (InterruptedException ex) {
+                return;
+            } finally {
+                conexion = null;
+            }
+        }
+    }
+
+    private void emitir(final Socket socket) throws IOException, InterruptedException {
+        final OutputStream salida = new BufferedOutputStream(socket.getOutputStream(), 4096);
+        binario = false;                                    // Cada conexión empieza en texto
+        Thread lector = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                leerComandos(socket, salida);
+            }
+        }, "emulador-comandos-" + getPuerto());
+        lector.setDaemon(true);
+        lector.start();
+
+        long inicio = System.nanoTime();
+        long siguiente = inicio;
+        byte[] trama = new byte[ProtocoloBinario.LARGO_MUESTRA];
+        int secuencia = 0;
+        int lineas = 0;
+        while (!cerrado && !socket.isClosed()) {
+            long periodo = periodoNs;
+            int actuadores = mascara;
+            simulador.setActuadores(0, actuadores);
+            simulador.avanzar(aceleracion * (periodo > 0 ? periodo / 1e9 : 0.01));
+            demorar();
+            synchronized (salida) {
+                if (binario) {
+                    int largo = ProtocoloBinario.codificarMuestra(trama, 0, secuencia++, (System.nanoTime() - inicio) / 1_000_000,
+                            ProtocoloBinario.adcTemperatura(simulador.getTemperatura(0)), simulador.getHumedadAnalogica(0),
+                            simulador.getValorLDR(0), actuadores);
+                    enviar(salida, trama, largo);
+                } else {
+                    enviar(salida, ProtocoloArduino.formatearMuestra(
+                            simulador.getTemperatura(0), simulador.getHumedadAnalogica(0), simulador.getValorLDR(0)));
+                }
+            }
+            lineasEnviadas.incrementAndGet();
+            int cada = desconectarCada;
+            if (cada > 0 && ++lineas >= cada) {
+                socket.close();
+                return;
+            }
+            if (periodo > 0) {
+                siguiente += periodo;
+                long espera = siguiente - System.nanoTime();
+                if (espera > 0) {
+                    TimeUnit.NANOSECONDS.sleep(espera);
+                } else if (espera < -1_000_000_000L) {
+                    siguiente = System.nanoTime();            // Atraso de más de 1 s: no recuperar en ráfaga
+                }
+            }
+        }
+    }
+
+    // Hilo de comandos de la conexión actual: líneas de texto hasta negociar el modo binario
+    private void leerComandos(Socket socket, OutputStream salida) {
+        try (InputStream entrada = new BufferedInputStream(socket.getInputStream(), 256)) {
+            StringBuilder linea = new StringBuilder(32);
+            ProtocoloBinario.Decodificador decodificador = new ProtocoloBinario.Decodificador();
+            byte[] respuesta = new byte[ProtocoloBinario.LARGO_COMANDO];
+            int dato;
+            while ((dato = entrada.read()) >= 0) {
+                if (binario) {
+                    int recibido = decodificador.agregar(dato);
+                    if (recibido == ProtocoloBinario.PERIODO) {
+                        comandosRecibidos.incrementAndGet();
+                        int pasos = cambiarPeriodo(decodificador.getValor()) ? decodificador.getValor() : 0;
+                        demorar();
+                        responder(salida, respuesta, ProtocoloBinario.codificarComando(respuesta, 0, ProtocoloBinario.PERIODO,
+                                decodificador.getSecuencia(), 0, pasos));
+                        continue;
+                    }
+                    if (recibido != ProtocoloBinario.COMANDO) continue;
+                    comandosRecibidos.incrementAndGet();
+                    int tipo = aplicar(decodificador.getPin(), decodificador.getValor())
+                            ? ProtocoloBinario.CONFIRMACION : ProtocoloBinario.ERROR;
+                    demorar();
+                    responder(salida, respuesta, ProtocoloBinario.codificarComando(respuesta, 0, tipo,
+                            decodificador.getSecuencia(), decodificador.getPin(), decodificador.getValor()));
+                    continue;
+                }
+                if (dato != '\n') {
+                    if (dato != '\r' && linea.length() < 256) linea.append((char) dato);
+                    continue;
+                }
+                String texto = linea.toString().trim();
+                linea.setLength(0);
+                if (texto.isEmpty()) continue;
+                comandosRecibidos.incrementAndGet();
+                if (texto.equals(ProtocoloBinario.PEDIDO) && binarioDisponible) {
+                    // La confirmación y el cambio de modo van juntos: la muestra siguiente ya sale en binario
+                    synchronized (salida) {
+                        enviar(salida, ProtocoloBinario.ACEPTADO);
+                        binario = true;
+                    }
+                    continue;
+                }
+                int pasos = ProtocoloArduino.parsearPeriodo(texto);
+                if (pasos > 0 || texto.startsWith("P,")) {
+                    boolean cambiado = cambiarPeriodo(pasos);
+                    demorar();
+                    byte[] datos = ((cambiado ? "K,P," + pasos : "E," + texto) + "\n").getBytes(StandardCharsets.US_ASCII);
+                    responder(salida, datos, datos.length);
+                    continue;
+                }
+                int[] comando = ProtocoloArduino.parsearPinValor('A', texto);
+                boolean aplicado = comando != null && aplicar(comando[0], comando[1]);
+                demorar();
+                byte[] datos = ((aplicado ? ProtocoloArduino.formatearConfirmacion(comando[0], comando[1], comando[2]) : "E," + texto)
+                                + "\n").getBytes(StandardCharsets.US_ASCII);
+                responder(salida, datos, datos.length);
+            }
+        } catch (IOException | InterruptedException ex) {
+            // Conexión cerrada
+        }
+    }
+
+    // Con ida y vuelta la confirmación sale más tarde sin frenar la lectura de los comandos siguientes
+    private void responder(final OutputStream salida, byte[] datos, int largo) throws IOException, InterruptedException {
+        long demora = idaYVueltaMs;
+        if (demora <= 0) {
+            synchronized (salida) {
+                enviar(salida, datos, largo);
+            }
+            return;
+        }
+        final byte[] copia = Arrays.copyOf(datos, largo);
+        enlace.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    synchronized (salida) {
+                        enviar(salida, copia, copia.length);
+                    }
+                } catch (IOException | InterruptedException ex) {
+                    // Conexión cerrada
+                }
+            }
+        }, demora, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean cambiarPeriodo(int pasos) {
+        if (pasos <= 0) return false;
+        periodoNs = pasos * ProtocoloArduino.UNIDAD_PERIODO_MS * 1_000_000L;
+        return true;
+    }
+
+    private boolean aplicar(int pin, int valor) {
+        Actuador actuador = ProtocoloArduino.actuadorDelPin(pin);
+        if (actuador == null || valor != ProtocoloArduino.valorPin(actuador, valor != 0)) return false;
+        if (valor != 0) {
+            mascara |= actuador.getBit();
+        } else {
+            mascara &= ~actuador.getBit();
+        }
+        return true;
+    }
+
+    private void demorar() throws InterruptedException {
+        long retardo = retardoMs;
+        long variacion = variacionMs;
+        if (retardo > 0 || variacion > 0) {
+            Thread.sleep(retardo + (variacion > 0 ? ThreadLocalRandom.current().nextLong(variacion + 1) : 0));
+        }
+    }
+
+    private void enviar(OutputStream salida, String linea) throws IOException, InterruptedException {
+        byte[] datos = (linea + "\n").getBytes(StandardCharsets.US_ASCII);
+        enviar(salida, datos, datos.length);
+    }
+
+    // Escritura con las fallas y la velocidad del enlace (se llama con el bloqueo de salida tomado)
+    private void enviar(OutputStream salida, byte[] datos, int largo) throws IOException, InterruptedException {
+        double perdida = probabilidadPerdida;
+        if (perdida > 0) {
+            ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+            for (int i = 0; i < largo; i++) {
+                if (aleatorio.nextDouble() < perdida) {
+                    bytesPerdidos.incrementAndGet();
+                } else {
+                    salida.write(datos[i]);
+                }
+            }
+        } else {
+            salida.write(datos, 0, largo);
+        }
+        salida.flush();
+        int velocidad = baudios;
+        if (velocidad > 0) {
+            // 8N1: 10 bits por byte; lo atrasado por dormir de más se recupera hasta 2 ms (buffer de la UART)
+            long ahora = System.nanoTime();
+            siguienteByteNs = Math.max(siguienteByteNs, ahora - 2_000_000) + largo * 10_000_000_000L / velocidad;
+            long espera = siguienteByteNs - ahora;
+            if (espera > 0) TimeUnit.NANOSECONDS.sleep(espera);
+        }
+    }
+
+    /**
+     * Limita la salida a la velocidad de un puerto serie 8N1 (0 = sin límite)
+     */
+    public void setBaudios(int baudios) {
+        this.baudios = baudios;
+    }
+
+    /**
+     * false emula un firmware viejo que solo habla texto (rechaza "P,BIN")
+     */
+    public void setBinarioDisponible(boolean disponible) {
+        this.binarioDisponible = disponible;
+    }
+
+    /**
+     * Pierde cada byte enviado con esa probabilidad (0 = enlace limpio)
+     */
+    public void setProbabilidadPerdida(double probabilidad) {
+        this.probabilidadPerdida = probabilidad;
+    }
+
+    /**
+     * Demora cada línea enviada (muestras y confirmaciones) retardoMs + [0, variacionMs]
+     */
+    public void setRetardo(long retardoMs, long variacionMs) {
+        this.retardoMs = retardoMs;
+        this.variacionMs = variacionMs;
+    }
+
+    /**
+     * Ida y vuelta del enlace para las confirmaciones: a diferencia de
+     * setRetardo no frena la lectura, varios comandos pueden estar en vuelo
+     */
+    public void setIdaYVuelta(long idaYVueltaMs) {
+        this.idaYVueltaMs = idaYVueltaMs;
+    }
+
+    /**
+     * Corta la conexión cada tantas muestras (0 = nunca)
+     */
+    public void setDesconectarCada(int lineas) {
+        this.desconectarCada = lineas;
+    }
+
+    // Corta la conexión actual ya
+    public void desconectar() {
+        Socket socket = conexion;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                // Ya estaba cerrada
+            }
+        }
+    }
+
+    public int getMascara() {
+        return mascara;
+    }
+
+    public long getPeriodoMs() {
+        return periodoNs / 1_000_000;
+    }
+
+    public long getLineasEnviadas() {
+        return lineasEnviadas.get();
+    }
+
+    public long getBytesPerdidos() {
+        return bytesPerdidos.get();
+    }
+
+    public long getComandosRecibidos() {
+        return comandosRecibidos.get();
+    }
+
+    public long getConexiones() {
+        return conexiones.get();
+    }
+
+    @Override
+    public void close() {
+        cerrado = true;
+        desconectar();
+        try {
+            servidor.close();
+        } catch (IOException ex) {
+            // Ya estaba cerrado
+        }
+        aceptador.interrupt();
+        enlace.shutdownNow();
+    }
+
+    /**
+     * Emulador suelto: java ui_invernadero.EmuladorArduino servir [puerto] [muestrasPorSegundo]
+     *   Como pty: socat pty,raw,echo=0,link=/tmp/ttyINV tcp:127.0.0.1:puerto
+     *   y FlotaPlacas.dispositivo(Paths.get("/tmp/ttyINV")).
+     * Prueba de punta a punta con FlotaPlacas (muestras/s, latencia de
+     * confirmación y fallas): java ui_invernadero.EmuladorArduino [segundos]
+     */
+    public static void main(String args[]) throws Exception {
+        if (args.length > 0 && args[0].equals("servir")) {
+            int puerto = args.length > 1 ? Integer.parseInt(args[1]) : 5555;
+            double tasa = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
+            EmuladorArduino emulador = new EmuladorArduino(puerto, tasa, 1.0, System.nanoTime());
+            emulador.iniciar();
+            System.out.println("Emulador Arduino en 127.0.0.1:" + emulador.getPuerto() + " a " + tasa + " muestras/s");
+            Thread.currentThread().join();
+        }
+        int segundos = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        probar("Sin pausa, enlace limpio", 0, segundos, new double[] {0, 0, 0, 0});
+        probar("1 kHz, 0.1% bytes perdidos", 1000, segundos, new double[] {0.001, 0, 0, 0});
+        probar("100 Hz, demora 5±5 ms", 100, segundos, new double[] {0, 5, 5, 0});
+        probar("1 kHz, corte cada 500 líneas", 1000, segundos, new double[] {0, 0, 0, 500});
+    }
+
+    // fallas = {probabilidadPerdida, retardoMs, variacionMs, desconectarCada}
+    private static void probar(String nombre, double tasa, int segundos, double[] fallas) throws Exception {
+        final EmuladorArduino emulador = new EmuladorArduino(0, tasa, 1.0, 42L);
+        emulador.setProbabilidadPerdida(fallas[0]);
+        emulador.setRetardo((long) fallas[1], (long) fallas[2]);
+        emulador.setDesconectarCada((int) fallas[3]);
+        emulador.iniciar();
+
+        final FlotaPlacas flota = new FlotaPlacas(4096);
+        final long[] latencias = new long[100_000];
+        final int[] confirmadas = new int[1];
+        final long[] enviadoNs = new long[1];
+        flota.setOyenteRespuestas(0, new FlotaPlacas.OyenteRespuestas() {
+            @Override
+            public void respuesta(int placa, String linea) {
+                synchronized (confirmadas) {
+                    if (linea.charAt(0) == 'K' && confirmadas[0] < latencias.length) {
+                        latencias[confirmadas[0]++] = System.nanoTime() - enviadoNs[0];
+                    }
+                    confirmadas.notifyAll();
+                }
+            }
+        });
+
+        // Consumidor aparte: el lector de la placa no debe quedar frenado mientras se espera una confirmación
+        final AtomicLong recibidas = new AtomicLong();
+        Thread consumidor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                java.util.List<Muestra> lote = new java.util.ArrayList<>(4096);
+                try {
+                    while (true) {
+                        lote.add(flota.getCanal().take());
+                        flota.getCanal().drainTo(lote);
+                        recibidas.addAndGet(lote.size());
+                        lote.clear();
+                    }
+                } catch (InterruptedException ex) {
+                    // Fin de la prueba
+                }
+            }
+        }, "consumidor-prueba");
+        consumidor.setDaemon(true);
+        consumidor.start();
+
+        int reconexiones = -1;
+        int comandos = 0;
+        Actuador[] actuadores = Actuador.values();
+        long inicio = System.nanoTime();
+        long fin = inicio + TimeUnit.SECONDS.toNanos(segundos);
+        long proximoComando = inicio;
+        while (System.nanoTime() < fin) {
+            if (flota.getPlacasConectadas() == 0) {
+                flota.conectar(0, FlotaPlacas.socket(new Socket(InetAddress.getLoopbackAddress(), emulador.getPuerto())));
+                reconexiones++;
+            }
+            // Un comando cada 10 ms, de a uno: latencia de ida y vuelta
+            if (System.nanoTime() >= proximoComando) {
+                Actuador actuador = actuadores[comandos % actuadores.length];
+                synchronized (confirmadas) {
+                    int antes = confirmadas[0];
+                    enviadoNs[0] = System.nanoTime();
+                    try {
+                        flota.enviar(0, ProtocoloArduino.formatearComando(actuador, (comandos / actuadores.length) % 2 == 0));
+                        comandos++;
+                        confirmadas.wait(100);
+                    } catch (IOException ex) {
+                        // Corte: se reconecta en la próxima vuelta
+                    }
+                    if (confirmadas[0] == antes) enviadoNs[0] = 0;
+                }
+                proximoComando += 10_000_000L;
+            }
+            Thread.sleep(1);
+        }
+        double transcurrido = (System.nanoTime() - inicio) / 1e9;
+        consumidor.interrupt();
+        flota.close();
+        emulador.close();
+
+        int n;
+        synchronized (confirmadas) {
+            n = confirmadas[0];
+        }
+        Arrays.sort(latencias, 0, n);
+        System.out.printf("%-30s %,9.0f muestras/s (%,d enviadas, %,d líneas inválidas, %,d bytes perdidos), %d reconexiones%n",
+                          nombre + ":", recibidas.get() / transcurrido, emulador.getLineasEnviadas(), flota.getLineasInvalidas(),
+                          emulador.getBytesPerdidos(), Math.max(reconexiones, 0));
+        System.out.printf("%-30s %d/%d comandos confirmados%s%n", "", n, comandos,
+                          n > 0 ? String.format(", ida y vuelta p50 %.3f ms, p99 %.3f ms", latencias[n / 2] / 1e6,
+                                                latencias[(int) (n * 0.99)] / 1e6) : "");
+    }
+}
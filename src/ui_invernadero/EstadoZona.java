@@ -0,0 +1,55 @@
+package ui_invernadero;
+
+/**
+ * Foto inmutable del estado de una zona publicada por el núcleo de control
+ * La interfaz la lee completa de una sola vez, así que nunca ve un estado a
+ * medio actualizar.
+ * @author Nicom
+ */
+public final class EstadoZona {
+
+    private final long secuencia;
+    private final double temperaturaLM35;
+    private final int humedadAnalogica;
+    private final int valorLDR;
+    private final int actuadores;          // Máscara de Actuador.getBit()
+    private final boolean automaticoActivo;
+
+    public EstadoZona(long secuencia, double temperaturaLM35, int humedadAnalogica, int valorLDR,
+                      int actuadores, boolean automaticoActivo) {
+        this.secuencia = secuencia;
+        this.temperaturaLM35 = temperaturaLM35;
+        this.humedadAnalogica = humedadAnalogica;
+        this.valorLDR = valorLDR;
+        this.actuadores = actuadores;
+        this.automaticoActivo = automaticoActivo;
+    }
+
+    public long getSecuencia() {
+        return secuencia;
+    }
+
+    public double getTemperaturaLM35() {
+        return temperaturaLM35;
+    }
+
+    public int getHumedadAnalogica() {
+        return humedadAnalogica;
+    }
+
+    public int getValorLDR() {
+        return valorLDR;
+    }
+
+    public int getActuadores() {
+        return actuadores;
+    }
+
+    public boolean isActivo(Actuador actuador) {
+        return (actuadores & actuador.getBit()) != 0;
+    }
+
+    public boolean isAutomaticoActivo() {
+        return automaticoActivo;
+    }
+}
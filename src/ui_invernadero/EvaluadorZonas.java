@@ -0,0 +1,316 @@
+package ui_invernadero;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Evaluación en paralelo del control automático para miles de zonas
+ * Aplica la misma lógica que MotorControlAutomatico (ventilador, buzzer,
+ * válvula, LED y servo) sobre arreglos primitivos. Cada tick se divide con
+ * fork/join en rangos contiguos de zonas; cada hoja junta sus transiciones en
+ * una lista compacta y las listas se concatenan en orden de zona.
+ * @author Nicom
+ */
+public class EvaluadorZonas {
+
+    // Zonas por hoja: suficientes para amortizar el fork, pocas para balancear
+    private static final int ZONAS_POR_TAREA = 8192;
+
+    private static final int VENTILADOR = Actuador.VENTILADOR.getBit();
+    private static final int BUZZER = Actuador.BUZZER.getBit();
+    private static final int LED = Actuador.LED.getBit();
+    private static final int VALVULA = Actuador.VALVULA.getBit();
+    private static final int SERVO = Actuador.SERVO.getBit();
+
+    /**
+     * Cambios de un tick: zona, máscara nueva y bits que cambiaron
+     */
+    public static final class Transiciones {
+        private int[] zonas;
+        private int[] mascaras;
+        private int[] cambios;
+        private int tamanio = 0;
+
+        Transiciones(int capacidad) {
+            zonas = new int[Math.max(capacidad, 16)];
+            mascaras = new int[zonas.length];
+            cambios = new int[zonas.length];
+        }
+
+        void agregar(int zona, int mascara, int cambio) {
+            if (tamanio == zonas.length) crecer(tamanio + 1);
+            zonas[tamanio] = zona;
+            mascaras[tamanio] = mascara;
+            cambios[tamanio] = cambio;
+            tamanio++;
+        }
+
+        // Concatena otra lista (de zonas posteriores) al final
+        void agregarTodas(Transiciones otras) {
+            if (tamanio + otras.tamanio > zonas.length) crecer(tamanio + otras.tamanio);
+            System.arraycopy(otras.zonas, 0, zonas, tamanio, otras.tamanio);
+            System.arraycopy(otras.mascaras, 0, mascaras, tamanio, otras.tamanio);
+            System.arraycopy(otras.cambios, 0, cambios, tamanio, otras.tamanio);
+            tamanio += otras.tamanio;
+        }
+
+        private void crecer(int minimo) {
+            int capacidad = Math.max(minimo, zonas.length * 2);
+            zonas = Arrays.copyOf(zonas, capacidad);
+            mascaras = Arrays.copyOf(mascaras, capacidad);
+            cambios = Arrays.copyOf(cambios, capacidad);
+        }
+
+        public int getTamanio() {
+            return tamanio;
+        }
+
+        public int getZona(int i) {
+            return zonas[i];
+        }
+
+        public int getMascara(int i) {
+            return mascaras[i];
+        }
+
+        public int getCambios(int i) {
+            return cambios[i];
+        }
+
+        public boolean isActivo(int i, Actuador actuador) {
+            return (mascaras[i] & actuador.getBit()) != 0;
+        }
+
+        public boolean cambio(int i, Actuador actuador) {
+            return (cambios[i] & actuador.getBit()) != 0;
+        }
+    }
+
+    private final int zonas;
+    private final int[] actuadores;
+    private final ForkJoinPool pool;
+
+    // Umbrales configurables (valores por defecto del Arduino)
+    private double tempNormal = 50.0;
+    private double tempVentilador = 51.0;
+    private double tempBuzzer = 56.0;
+    private int umbralHumedad = 500;
+    private int umbralLuz = 500;
+
+    public EvaluadorZonas(int zonas, ForkJoinPool pool) {
+        if (zonas <= 0) {
+            throw new IllegalArgumentException("El número de zonas debe ser mayor que 0: " + zonas);
+        }
+        this.zonas = zonas;
+        this.actuadores = new int[zonas];
+        this.pool = pool;
+    }
+
+    public EvaluadorZonas(int zonas) {
+        this(zonas, ForkJoinPool.commonPool());
+    }
+
+    public void configurarUmbrales(double tempNormal, double tempVentilador, double tempBuzzer,
+                                   int umbralHumedad, int umbralLuz) {
+        this.tempNormal = tempNormal;
+        this.tempVentilador = tempVentilador;
+        this.tempBuzzer = tempBuzzer;
+        this.umbralHumedad = umbralHumedad;
+        this.umbralLuz = umbralLuz;
+    }
+
+    public int getZonas() {
+        return zonas;
+    }
+
+    public int getMascara(int zona) {
+        return actuadores[zona];
+    }
+
+    public void setMascara(int zona, int mascara) {
+        actuadores[zona] = mascara;
+    }
+
+    /**
+     * Evalúa un tick de todas las zonas con las lecturas dadas (índice = zona)
+     * @return transiciones ordenadas por zona
+     */
+    public Transiciones evaluar(double[] temperaturas, int[] humedades, int[] valoresLDR) {
+        if (temperaturas.length < zonas || humedades.length < zonas || valoresLDR.length < zonas) {
+            throw new IllegalArgumentException("Faltan lecturas: se esperan " + zonas + " zonas");
+        }
+        Transiciones transiciones = pool.invoke(new Tramo(temperaturas, humedades, valoresLDR, 0, zonas));
+        Metricas.EVALUACIONES_REGLAS.sumar(zonas);
+        contarTransiciones(transiciones);
+        return transiciones;
+    }
+
+    /**
+     * Rango contiguo de zonas; se divide a la mitad hasta ZONAS_POR_TAREA
+     */
+    private final class Tramo extends RecursiveTask<Transiciones> {
+        private static final long serialVersionUID = 1L;
+        private final double[] temperaturas;
+        private final int[] humedades;
+        private final int[] valoresLDR;
+        private final int desde;
+        private final int hasta;
+
+        Tramo(double[] temperaturas, int[] humedades, int[] valoresLDR, int desde, int hasta) {
+            this.temperaturas = temperaturas;
+            this.humedades = humedades;
+            this.valoresLDR = valoresLDR;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected Transiciones compute() {
+            if (hasta - desde <= ZONAS_POR_TAREA) {
+                return evaluarRango(temperaturas, humedades, valoresLDR, desde, hasta);
+            }
+            int medio = (desde + hasta) >>> 1;
+            Tramo derecha = new Tramo(temperaturas, humedades, valoresLDR, medio, hasta);
+            derecha.fork();
+            Transiciones izquierda = new Tramo(temperaturas, humedades, valoresLDR, desde, medio).compute();
+            Transiciones resto = derecha.join();
+            if (izquierda.tamanio == 0) return resto;
+            izquierda.agregarTodas(resto);
+            return izquierda;
+        }
+    }
+
+    private Transiciones evaluarRango(double[] temperaturas, int[] humedades, int[] valoresLDR, int desde, int hasta) {
+        // Umbrales a variables locales: el bucle no relee campos
+        final double tn = tempNormal, tv = tempVentilador, tb = tempBuzzer;
+        final int uh = umbralHumedad, ul = umbralLuz;
+        final int[] estado = actuadores;
+        Transiciones transiciones = new Transiciones((hasta - desde) >> 6);
+        for (int z = desde; z < hasta; z++) {
+            int anterior = estado[z];
+            int mascara = siguienteMascara(anterior, temperaturas[z], humedades[z], valoresLDR[z], tn, tv, tb, uh, ul);
+            if (mascara != anterior) {
+                estado[z] = mascara;
+                transiciones.agregar(z, mascara, mascara ^ anterior);
+            }
+        }
+        return transiciones;
+    }
+
+    /**
+     * Misma escalera de umbrales que MotorControlAutomatico.ejecutar(),
+     * expresada sobre la máscara de actuadores
+     */
+    static int siguienteMascara(int mascara, double temperatura, int humedad, int ldr,
+                                double tempNormal, double tempVentilador, double tempBuzzer,
+                                int umbralHumedad, int umbralLuz) {
+        int nueva = mascara & SERVO;
+        if (temperatura > tempBuzzer) {
+            nueva |= VENTILADOR | BUZZER;
+        } else if (temperatura > tempVentilador) {
+            nueva |= VENTILADOR;
+        }
+        if (humedad >= umbralHumedad) nueva |= VALVULA;
+        if (ldr >= umbralLuz) nueva |= LED;
+        if (temperatura > tempVentilador) {
+            nueva |= SERVO;
+        } else if (temperatura <= tempNormal) {
+            nueva &= ~SERVO;
+        }
+        return nueva;
+    }
+
+    private static void contarTransiciones(Transiciones transiciones) {
+        int[] porActuador = new int[Actuador.values().length];
+        for (int i = 0; i < transiciones.tamanio; i++) {
+            int cambio = transiciones.cambios[i];
+            while (cambio != 0) {
+                porActuador[Integer.numberOfTrailingZeros(cambio)]++;
+                cambio &= cambio - 1;
+            }
+        }
+        for (Actuador actuador : Actuador.values()) {
+            if (porActuador[actuador.ordinal()] > 0) Metricas.transiciones(actuador).sumar(porActuador[actuador.ordinal()]);
+        }
+    }
+
+    /**
+     * Benchmark: java ui_invernadero.EvaluadorZonas [ticks]
+     * Verifica que coincide con MotorControlAutomatico y mide zonas/s con
+     * 1, 2, 4... hilos hasta el número de núcleos para 10k, 100k y 1M zonas.
+     */
+    public static void main(String args[]) {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        verificar(2000, 200);
+
+        int nucleos = Runtime.getRuntime().availableProcessors();
+        for (int zonas : new int[] {10_000, 100_000, 1_000_000}) {
+            // Dos juegos de lecturas alternados (el segundo con ruido de sensor)
+            // para que algunas zonas crucen umbrales en cada tick
+            double[][] temperaturas = new double[2][zonas];
+            int[][] humedades = new int[2][zonas];
+            int[][] valoresLDR = new int[2][zonas];
+            SplittableRandom aleatorio = new SplittableRandom(zonas);
+            for (int z = 0; z < zonas; z++) {
+                temperaturas[0][z] = 45 + aleatorio.nextDouble() * 15;
+                humedades[0][z] = 400 + aleatorio.nextInt(200);
+                valoresLDR[0][z] = 400 + aleatorio.nextInt(200);
+                temperaturas[1][z] = temperaturas[0][z] + aleatorio.nextDouble() - 0.5;
+                humedades[1][z] = humedades[0][z] + aleatorio.nextInt(11) - 5;
+                valoresLDR[1][z] = valoresLDR[0][z] + aleatorio.nextInt(11) - 5;
+            }
+
+            double base = 0;
+            for (int hilos = 1; hilos <= nucleos; hilos = hilos < nucleos && hilos * 2 > nucleos ? nucleos : hilos * 2) {
+                ForkJoinPool pool = new ForkJoinPool(hilos);
+                EvaluadorZonas evaluador = new EvaluadorZonas(zonas, pool);
+                int repeticiones = Math.max(ticks, 20_000_000 / zonas);
+                for (int i = 0; i < repeticiones; i++) {           // Calentamiento del JIT
+                    evaluador.evaluar(temperaturas[i & 1], humedades[i & 1], valoresLDR[i & 1]);
+                }
+                long transiciones = 0;
+                long inicio = System.nanoTime();
+                for (int i = 0; i < repeticiones; i++) {
+                    transiciones += evaluador.evaluar(temperaturas[i & 1], humedades[i & 1], valoresLDR[i & 1]).getTamanio();
+                }
+                long duracion = System.nanoTime() - inicio;
+                pool.shutdown();
+
+                double zonasPorSegundo = (double) zonas * repeticiones / (duracion / 1e9);
+                if (hilos == 1) base = zonasPorSegundo;
+                System.out.printf("%,9d zonas, %2d hilos: %8.3f ms/tick, %,14.0f zonas/s, aceleración %.2fx (%,d transiciones/tick)%n",
+                                  zonas, hilos, duracion / 1e6 / repeticiones, zonasPorSegundo, zonasPorSegundo / base,
+                                  transiciones / repeticiones);
+                if (hilos == nucleos) break;
+            }
+        }
+    }
+
+    // Compara tick a tick contra el motor original con lecturas aleatorias
+    private static void verificar(int zonas, int ticks) {
+        EvaluadorZonas evaluador = new EvaluadorZonas(zonas);
+        MotorControlAutomatico[] motores = new MotorControlAutomatico[zonas];
+        for (int z = 0; z < zonas; z++) motores[z] = new MotorControlAutomatico(null);
+        double[] temperaturas = new double[zonas];
+        int[] humedades = new int[zonas];
+        int[] valoresLDR = new int[zonas];
+        SplittableRandom aleatorio = new SplittableRandom(1);
+        for (int t = 0; t < ticks; t++) {
+            for (int z = 0; z < zonas; z++) {
+                temperaturas[z] = 40 + aleatorio.nextDouble() * 25;
+                humedades[z] = 400 + aleatorio.nextInt(200);
+                valoresLDR[z] = 400 + aleatorio.nextInt(200);
+            }
+            evaluador.evaluar(temperaturas, humedades, valoresLDR);
+            for (int z = 0; z < zonas; z++) {
+                motores[z].ejecutar(temperaturas[z], humedades[z], valoresLDR[z]);
+                if (motores[z].getMascara() != evaluador.getMascara(z)) {
+                    throw new IllegalStateException("Diferencia con MotorControlAutomatico en la zona " + z + ", tick " + t);
+                }
+            }
+        }
+        System.out.println("Verificación contra MotorControlAutomatico: OK (" + zonas + " zonas, " + ticks + " ticks)");
+    }
+}
@@ -0,0 +1,276 @@
+package ui_invernadero;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Cadena de filtros de un canal de sensor: mediana móvil de k muestras →
+ * EWMA → Kalman 1-D (cada etapa es opcional y se aplican en ese orden)
+ * Todo el estado son campos y arreglos primitivos creados al construir el
+ * filtro; filtrar() no reserva memoria. La mediana mantiene una copia
+ * ordenada de la ventana: el valor nuevo reemplaza al más viejo y se
+ * desplaza hasta su lugar, O(k) con k chico (3 a 15).
+ * Se configura con texto, p. ej. "mediana(5)+kalman(0.001,0.08)".
+ * @author Nicom
+ */
+public final class FiltroSensor {
+
+    public static final String PROPIEDAD = "invernadero.filtros";
+    public static final String POR_DEFECTO = "temp=mediana(5)+kalman(0.001,0.08);hum=mediana(5);ldr=mediana(5)";
+    private static final String[] CANALES = {"temp", "hum", "ldr"};
+
+    // Mediana: anillo en orden de llegada y copia ordenada
+    private final double[] llegada;
+    private final double[] ordenada;
+    private int siguiente = 0;
+    private int cantidad = 0;
+
+    // EWMA
+    private final double alfa;                    // NaN = sin EWMA
+    private double promedio = Double.NaN;
+
+    // Kalman de paseo aleatorio: x(k) = x(k-1) + w, z = x + v
+    private final double ruidoProceso;            // Varianza de w por muestra (NaN = sin Kalman)
+    private final double ruidoMedicion;           // Varianza de v
+    private double estimacion = Double.NaN;
+    private double covarianza;
+
+    private final String descripcion;
+
+    /**
+     * @param ventanaMediana muestras de la mediana (0 o 1 = sin mediana)
+     * @param alfa peso de la muestra nueva en el EWMA, (0, 1] (NaN = sin EWMA)
+     * @param ruidoProceso varianza por muestra del valor real (NaN = sin Kalman)
+     * @param ruidoMedicion varianza del ruido del sensor
+     */
+    public FiltroSensor(int ventanaMediana, double alfa, double ruidoProceso, double ruidoMedicion) {
+        if (ventanaMediana < 0 || ventanaMediana > 255) {
+            throw new IllegalArgumentException("Ventana de mediana fuera de rango: " + ventanaMediana);
+        }
+        if (!Double.isNaN(alfa) && !(alfa > 0 && alfa <= 1)) {
+            throw new IllegalArgumentException("El alfa del EWMA debe estar en (0, 1]: " + alfa);
+        }
+        if (!Double.isNaN(ruidoProceso) && !(ruidoProceso > 0 && ruidoMedicion > 0)) {
+            throw new IllegalArgumentException("Las varianzas del Kalman deben ser positivas");
+        }
+        int k = ventanaMediana > 1 ? ventanaMediana : 0;
+        this.llegada = new double[k];
+        this.ordenada = new double[k];
+        this.alfa = alfa;
+        this.ruidoProceso = ruidoProceso;
+        this.ruidoMedicion = ruidoMedicion;
+
+        StringBuilder texto = new StringBuilder();
+        if (k > 0) texto.append("mediana(").append(k).append(')');
+        if (!Double.isNaN(alfa)) texto.append(texto.length() > 0 ? "+" : "").append("ewma(").append(alfa).append(')');
+        if (!Double.isNaN(ruidoProceso)) {
+            texto.append(texto.length() > 0 ? "+" : "").append("kalman(").append(ruidoProceso).append(',').append(ruidoMedicion).append(')');
+        }
+        this.descripcion = texto.length() > 0 ? texto.toString() : "ninguno";
+    }
+
+    /**
+     * @return la lectura filtrada
+     */
+    public double filtrar(double valor) {
+        if (llegada.length > 0) {
+            valor = mediana(valor);
+        }
+        if (alfa == alfa) {                         // No es NaN
+            promedio = promedio == promedio ? promedio + alfa * (valor - promedio) : valor;
+            valor = promedio;
+        }
+        if (ruidoProceso == ruidoProceso) {
+            if (estimacion != estimacion) {
+                estimacion = valor;
+                covarianza = ruidoMedicion;
+            } else {
+                double prediccion = covarianza + ruidoProceso;
+                double ganancia = prediccion / (prediccion + ruidoMedicion);
+                estimacion += ganancia * (valor - estimacion);
+                covarianza = (1.0 - ganancia) * prediccion;
+            }
+            valor = estimacion;
+        }
+        return valor;
+    }
+
+    private double mediana(double valor) {
+        if (valor != valor) return valor;          // NaN: no entra a la ventana
+        int k = llegada.length;
+        int n = cantidad;
+        int i;
+        if (n == k) {
+            // El valor nuevo ocupa el lugar del más viejo y se desplaza hasta quedar en orden
+            double viejo = llegada[siguiente];
+            i = 0;
+            while (i < n - 1 && ordenada[i] != viejo) i++;
+            if (valor > viejo) {
+                while (i < n - 1 && ordenada[i + 1] < valor) {
+                    ordenada[i] = ordenada[i + 1];
+                    i++;
+                }
+            } else {
+                while (i > 0 && ordenada[i - 1] > valor) {
+                    ordenada[i] = ordenada[i - 1];
+                    i--;
+                }
+            }
+        } else {
+            i = n++;
+            cantidad = n;
+            while (i > 0 && ordenada[i - 1] > valor) {
+                ordenada[i] = ordenada[i - 1];
+                i--;
+            }
+        }
+        ordenada[i] = valor;
+        llegada[siguiente] = valor;
+        siguiente = siguiente + 1 == k ? 0 : siguiente + 1;
+        return (n & 1) != 0 ? ordenada[n >>> 1] : 0.5 * (ordenada[(n >>> 1) - 1] + ordenada[n >>> 1]);
+    }
+
+    public void reiniciar() {
+        siguiente = cantidad = 0;
+        promedio = estimacion = Double.NaN;
+    }
+
+    @Override
+    public String toString() {
+        return descripcion;
+    }
+
+    /**
+     * Cadena de un canal: "mediana(5)+ewma(0.3)+kalman(0.001,0.08)" o "ninguno"
+     */
+    public static FiltroSensor crear(String cadena) {
+        int mediana = 0;
+        double alfa = Double.NaN;
+        double proceso = Double.NaN;
+        double medicion = Double.NaN;
+        for (String etapa : cadena.trim().toLowerCase(Locale.ROOT).split("\\s*\\+\\s*")) {
+            if (etapa.equals("ninguno") || etapa.isEmpty()) continue;
+            int abre = etapa.indexOf('(');
+            if (abre < 0 || !etapa.endsWith(")")) {
+                throw new IllegalArgumentException("Etapa de filtro inválida: \"" + etapa + "\"");
+            }
+            String nombre = etapa.substring(0, abre).trim();
+            String[] parametros = etapa.substring(abre + 1, etapa.length() - 1).split("\\s*,\\s*");
+            try {
+                switch (nombre) {
+                    case "mediana":
+                        mediana = Integer.parseInt(parametros[0].trim());
+                        break;
+                    case "ewma":
+                        alfa = Double.parseDouble(parametros[0].trim());
+                        break;
+                    case "kalman":
+                        if (parametros.length != 2) {
+                            throw new IllegalArgumentException("kalman necesita (ruidoProceso, ruidoMedicion): \"" + etapa + "\"");
+                        }
+                        proceso = Double.parseDouble(parametros[0].trim());
+                        medicion = Double.parseDouble(parametros[1].trim());
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Filtro desconocido \"" + nombre + "\" (mediana, ewma, kalman)");
+                }
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Parámetro inválido en \"" + etapa + "\"", ex);
+            }
+        }
+        return new FiltroSensor(mediana, alfa, proceso, medicion);
+    }
+
+    /**
+     * Filtros de temp, hum y ldr: "temp=...;hum=...;ldr=..." (canal omitido = sin filtro)
+     */
+    public static FiltroSensor[] crearCanales(String especificacion) {
+        FiltroSensor[] filtros = new FiltroSensor[CANALES.length];
+        for (String parte : especificacion.split(";")) {
+            if (parte.trim().isEmpty()) continue;
+            int igual = parte.indexOf('=');
+            String canal = igual < 0 ? "" : parte.substring(0, igual).trim().toLowerCase(Locale.ROOT);
+            int indice = Arrays.asList(CANALES).indexOf(canal);
+            if (indice < 0) {
+                throw new IllegalArgumentException("Canal de filtro desconocido en \"" + parte.trim() + "\" (temp, hum, ldr)");
+            }
+            filtros[indice] = crear(parte.substring(igual + 1));
+        }
+        for (int c = 0; c < filtros.length; c++) {
+            if (filtros[c] == null) filtros[c] = crear("ninguno");
+        }
+        return filtros;
+    }
+
+    /**
+     * Filtros de -Dinvernadero.filtros, o POR_DEFECTO si no está o es inválida
+     */
+    public static FiltroSensor[] cargarConfigurados() {
+        String especificacion = System.getProperty(PROPIEDAD, POR_DEFECTO);
+        try {
+            return crearCanales(especificacion);
+        } catch (IllegalArgumentException ex) {
+            java.util.logging.Logger.getLogger(FiltroSensor.class.getName()).log(java.util.logging.Level.WARNING,
+                    "Filtros inválidos en " + PROPIEDAD + ", se usan los por defecto", ex);
+            return crearCanales(POR_DEFECTO);
+        }
+    }
+
+    /**
+     * Costo por muestra y efecto sobre el control:
+     * java ui_invernadero.FiltroSensor [muestras]
+     */
+    public static void main(String args[]) {
+        int cantidad = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        SplittableRandom aleatorio = new SplittableRandom(40);
+        double[] lecturas = new double[1 << 16];
+        for (int i = 0; i < lecturas.length; i++) {
+            lecturas[i] = 50 + 3 * Math.sin(i / 500.0) + (aleatorio.nextDouble() - 0.5);
+        }
+
+        String[] cadenas = {"ninguno", "mediana(5)", "mediana(15)", "ewma(0.2)", "kalman(0.001,0.08)",
+                            "mediana(5)+kalman(0.001,0.08)", "mediana(5)+ewma(0.2)+kalman(0.001,0.08)"};
+        for (String cadena : cadenas) {
+            double ns = 0;
+            double control = 0;
+            for (int v = 0; v < 3; v++) {                          // Las primeras vueltas calientan el JIT
+                FiltroSensor filtro = crear(cadena);
+                long inicio = System.nanoTime();
+                for (int i = 0; i < cantidad; i++) {
+                    control += filtro.filtrar(lecturas[i & (lecturas.length - 1)]);
+                }
+                ns = (double) (System.nanoTime() - inicio) / cantidad;
+            }
+            System.out.printf("%-42s %6.1f ns/muestra (%,6.1f M muestras/s por canal)  [control %.0f]%n",
+                              cadena, ns, 1000.0 / ns, control / 3 / cantidad);
+        }
+
+        // Control reactivo con y sin filtros: actuaciones del ventilador en 3 días simulados
+        for (String especificacion : new String[] {"", POR_DEFECTO}) {
+            FiltroSensor[] filtros = crearCanales(especificacion);
+            SimuladorInvernadero simulador = new SimuladorInvernadero(1, 40L);
+            simulador.setClimaExterior(30.0, 8.0, 0.1);
+            simulador.setHoraDelDia(0.0);
+            final int[] actuaciones = new int[1];
+            MotorControlAutomatico motor = new MotorControlAutomatico(new OyenteControl() {
+                @Override
+                public void transicion(Actuador actuador, boolean activo, String mensaje) {
+                    actuaciones[0]++;
+                }
+            });
+            for (int s = 0; s < 3 * 86_400; s++) {
+                simulador.avanzar(1.0);
+                double t = filtros[0].filtrar(simulador.getTemperatura(0));
+                double h = filtros[1].filtrar(simulador.getHumedadAnalogica(0));
+                double l = filtros[2].filtrar(simulador.getValorLDR(0));
+                if (s % 3 == 0) {
+                    motor.ejecutar(t, (int) Math.round(h), (int) Math.round(l));
+                    simulador.setActuadores(0, motor.getMascara());
+                }
+            }
+            System.out.printf("Control con filtros [%s]: %,d actuaciones en 3 días%n",
+                              especificacion.isEmpty() ? "ninguno" : especificacion, actuaciones[0]);
+        }
+    }
+}
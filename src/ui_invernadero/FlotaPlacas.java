@@ -0,0 +1,513 @@
+package ui_invernadero;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Capa de conexión con una flota de placas Arduino
+ * Cada placa tiene su propio hilo de lectura con E/S bloqueante (un hilo
+ * virtual cuando la JVM los soporta, Java 21+; si no, un hilo de plataforma
+ * con pila pequeña). Todas las lecturas se publican en un único canal
+ * acotado de muestras: si el consumidor se atrasa, los lectores se bloquean
+ * y el control de flujo del enlace frena a las placas. Al conectar se puede
+ * negociar el ProtocoloBinario; si la placa no lo soporta se sigue en texto.
+ * @author Nicom
+ */
+public class FlotaPlacas implements Closeable {
+
+    /**
+     * Enlace con una placa: puerto serie (pty/tty) o socket TCP
+     */
+    public interface ConexionPlaca extends Closeable {
+        InputStream getEntrada() throws IOException;
+
+        OutputStream getSalida() throws IOException;
+    }
+
+    public static ConexionPlaca socket(final Socket socket) {
+        return new ConexionPlaca() {
+            @Override
+            public InputStream getEntrada() throws IOException {
+                return socket.getInputStream();
+            }
+
+            @Override
+            public OutputStream getSalida() throws IOException {
+                return socket.getOutputStream();
+            }
+
+            @Override
+            public void close() throws IOException {
+                socket.close();
+            }
+        };
+    }
+
+    // Dispositivo serie ya configurado (ej. /dev/ttyACM0 o un pty de pruebas)
+    public static ConexionPlaca dispositivo(Path ruta) throws IOException {
+        final FileInputStream entrada = new FileInputStream(ruta.toFile());
+        final FileOutputStream salida = new FileOutputStream(ruta.toFile());
+        return new ConexionPlaca() {
+            @Override
+            public InputStream getEntrada() {
+                return entrada;
+            }
+
+            @Override
+            public OutputStream getSalida() {
+                return salida;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    entrada.close();
+                } finally {
+                    salida.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Respuestas de la placa que no son muestras: confirmaciones ("K,pin,valor",
+     * con ",secuencia" si el comando la llevaba; en binario siempre) y errores
+     * ("E,..."); se llama en el hilo de lectura de la placa. Cada placa tiene
+     * su propio oyente
+     */
+    public interface OyenteRespuestas {
+        void respuesta(int placa, String linea);
+    }
+
+    private final BlockingQueue<Muestra> canal;
+    private final ThreadFactory fabricaHilos;
+    private final Map<Integer, ConexionPlaca> conexiones = new ConcurrentHashMap<>();
+    // ReentrantLock en vez de synchronized: no fija el hilo virtual a su portador
+    private final Map<Integer, ReentrantLock> bloqueosEscritura = new ConcurrentHashMap<>();
+    private final AtomicInteger lineasInvalidas = new AtomicInteger();
+    private final Set<Integer> placasBinarias = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, Integer> mascarasInformadas = new ConcurrentHashMap<>();
+    private final AtomicInteger secuenciaComandos = new AtomicInteger();
+    private final AtomicLong tramasPerdidas = new AtomicLong();
+    private final Map<Integer, OyenteRespuestas> oyentesRespuestas = new ConcurrentHashMap<>();
+    private volatile boolean cerrada = false;
+
+    public FlotaPlacas(int capacidadCanal) {
+        this.canal = new ArrayBlockingQueue<>(capacidadCanal);
+        this.fabricaHilos = crearFabricaHilos();
+    }
+
+    /**
+     * Hilos virtuales si están disponibles (se buscan por reflexión porque el
+     * proyecto compila para Java 17); si no, hilos demonio con pila de 256 KB.
+     */
+    static ThreadFactory crearFabricaHilos() {
+        try {
+            Object constructor = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> tipoVirtual = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            constructor = tipoVirtual.getMethod("name", String.class, long.class).invoke(constructor, "placa-", 0L);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(constructor);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            final AtomicInteger contador = new AtomicInteger();
+            return new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable tarea) {
+                    Thread hilo = new Thread(null, tarea, "placa-" + contador.getAndIncrement(), 256 * 1024);
+                    hilo.setDaemon(true);
+                    return hilo;
+                }
+            };
+        }
+    }
+
+    public static boolean isHilosVirtualesDisponibles() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Inicia el ciclo de lectura bloqueante de la placa en su propio hilo (protocolo de texto)
+     */
+    public void conectar(int placa, ConexionPlaca conexion) {
+        conectar(placa, conexion, false);
+    }
+
+    /**
+     * @param negociarBinario pedir el ProtocoloBinario; espera hasta 1 s la
+     *        respuesta y, si la placa no lo soporta, sigue en texto
+     * @return true si la placa quedó en modo binario
+     */
+    public boolean conectar(final int placa, final ConexionPlaca conexion, final boolean negociarBinario) {
+        if (cerrada) throw new IllegalStateException("La flota está cerrada");
+        if (conexiones.putIfAbsent(placa, conexion) != null) {
+            throw new IllegalArgumentException("La placa " + placa + " ya está conectada");
+        }
+        bloqueosEscritura.put(placa, new ReentrantLock());
+        final CountDownLatch negociacion = new CountDownLatch(negociarBinario ? 1 : 0);
+        fabricaHilos.newThread(new Runnable() {
+            @Override
+            public void run() {
+                leer(placa, conexion, negociacion);
+            }
+        }).start();
+        if (!negociarBinario) return false;
+        try {
+            enviar(placa, ProtocoloBinario.PEDIDO);
+            negociacion.await(1, TimeUnit.SECONDS);
+        } catch (IOException ex) {
+            java.util.logging.Logger.getLogger(FlotaPlacas.class.getName()).log(java.util.logging.Level.WARNING,
+                    "No se pudo negociar el modo binario con la placa " + placa, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return placasBinarias.contains(placa);
+    }
+
+    // Lee líneas de texto byte a byte: tras "K,BIN" el mismo flujo sigue en tramas binarias
+    private void leer(int placa, ConexionPlaca conexion, CountDownLatch negociacion) {
+        try (InputStream entrada = conexion.getEntrada()) {
+            byte[] bufer = new byte[256];
+            StringBuilder linea = new StringBuilder(32);
+            ProtocoloBinario.Decodificador decodificador = null;
+            long perdidas = 0;
+            long corruptas = 0;
+            int leidos;
+            while (!cerrada && (leidos = entrada.read(bufer)) >= 0) {
+                for (int i = 0; i < leidos; i++) {
+                    int dato = bufer[i] & 0xFF;
+                    if (decodificador != null) {
+                        int tipo = decodificador.agregar(dato);
+                        if (tipo == ProtocoloBinario.MUESTRA) {
+                            canal.put(new Muestra(placa, System.currentTimeMillis(),
+                                                  ProtocoloBinario.temperaturaDeAdc(decodificador.getAdcTemperatura()),
+                                                  decodificador.getAdcHumedad(), decodificador.getAdcLuz()));
+                            Metricas.muestraRecibida();
+                            mascarasInformadas.put(placa, decodificador.getActuadores());
+                        } else if (tipo == ProtocoloBinario.PERIODO) {
+                            OyenteRespuestas oyente = oyentesRespuestas.get(placa);
+                            if (oyente != null) {
+                                oyente.respuesta(placa, (decodificador.getValor() != 0 ? "K,P," : "E,P,") + decodificador.getValor());
+                            }
+                        } else if (tipo != 0) {
+                            OyenteRespuestas oyente = oyentesRespuestas.get(placa);
+                            if (oyente != null) {
+                                oyente.respuesta(placa, (tipo == ProtocoloBinario.ERROR ? "E,A," : "K,") + decodificador.getPin() + ","
+                                                 + decodificador.getValor() + "," + decodificador.getSecuencia());
+                            }
+                        }
+                        if (decodificador.getPerdidas() != perdidas || decodificador.getCorruptas() != corruptas) {
+                            tramasPerdidas.addAndGet(decodificador.getPerdidas() - perdidas);
+                            Metricas.TRAMAS_PERDIDAS.sumar(decodificador.getPerdidas() - perdidas);
+                            lineasInvalidas.addAndGet((int) (decodificador.getCorruptas() - corruptas));
+                            Metricas.TRAMAS_CORRUPTAS.sumar(decodificador.getCorruptas() - corruptas);
+                            perdidas = decodificador.getPerdidas();
+                            corruptas = decodificador.getCorruptas();
+                        }
+                        continue;
+                    }
+                    if (dato != '\n') {
+                        if (dato != '\r' && linea.length() < 256) linea.append((char) dato);
+                        continue;
+                    }
+                    String texto = linea.toString();
+                    linea.setLength(0);
+                    if (negociacion.getCount() > 0) {
+                        if (texto.equals(ProtocoloBinario.ACEPTADO)) {
+                            decodificador = new ProtocoloBinario.Decodificador();
+                            placasBinarias.add(placa);
+                            negociacion.countDown();
+                            continue;
+                        }
+                        if (texto.startsWith("E," + ProtocoloBinario.PEDIDO)) {
+                            negociacion.countDown();            // Placa sin modo binario: sigue en texto
+                            continue;
+                        }
+                    }
+                    Muestra muestra = ProtocoloArduino.parsearMuestra(placa, System.currentTimeMillis(), texto);
+                    if (muestra == null) {
+                        OyenteRespuestas oyente = oyentesRespuestas.get(placa);
+                        if (oyente != null && !texto.isEmpty() && (texto.charAt(0) == 'K' || texto.charAt(0) == 'E')) {
+                            oyente.respuesta(placa, texto);
+                        } else {
+                            lineasInvalidas.incrementAndGet();
+                        }
+                        continue;
+                    }
+                    canal.put(muestra);
+                    Metricas.muestraRecibida();
+                }
+            }
+        } catch (IOException ex) {
+            if (!cerrada) {
+                java.util.logging.Logger.getLogger(FlotaPlacas.class.getName()).log(java.util.logging.Level.WARNING,
+                        "Placa " + placa + " desconectada", ex);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            negociacion.countDown();
+            desconectar(placa, conexion);
+        }
+    }
+
+    /**
+     * Envía una línea de comando a la placa (escritura bloqueante); en modo
+     * binario los comandos "A,pin,valor[,secuencia]" y los pedidos de período
+     * "P,n" salen como trama (sin secuencia se numeran aquí)
+     */
+    public void enviar(int placa, String comando) throws IOException {
+        ConexionPlaca conexion = conexiones.get(placa);
+        ReentrantLock bloqueo = bloqueosEscritura.get(placa);
+        if (conexion == null || bloqueo == null) throw new IOException("La placa " + placa + " no está conectada");
+        OutputStream salida = conexion.getSalida();
+        boolean binaria = placasBinarias.contains(placa);
+        int[] pinValor = binaria ? ProtocoloArduino.parsearPinValor('A', comando) : null;
+        int pasos = binaria && pinValor == null ? ProtocoloArduino.parsearPeriodo(comando) : -1;
+        byte[] datos;
+        if (pinValor != null) {
+            datos = new byte[ProtocoloBinario.LARGO_COMANDO];
+            ProtocoloBinario.codificarComando(datos, 0, ProtocoloBinario.COMANDO,
+                                              pinValor[2] >= 0 ? pinValor[2] : secuenciaComandos.getAndIncrement() & 0xFFFF,
+                                              pinValor[0], pinValor[1]);
+        } else if (pasos > 0) {
+            datos = new byte[ProtocoloBinario.LARGO_COMANDO];
+            ProtocoloBinario.codificarComando(datos, 0, ProtocoloBinario.PERIODO,
+                                              secuenciaComandos.getAndIncrement() & 0xFFFF, 0, pasos);
+        } else {
+            datos = (comando + "\n").getBytes(StandardCharsets.US_ASCII);
+        }
+        bloqueo.lock();
+        try {
+            salida.write(datos);
+            salida.flush();
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    public void desconectar(int placa) {
+        ConexionPlaca conexion = conexiones.get(placa);
+        if (conexion != null) desconectar(placa, conexion);
+    }
+
+    // Solo si la conexión sigue siendo la de la placa: un lector viejo no cierra la de una reconexión
+    private void desconectar(int placa, ConexionPlaca conexion) {
+        if (!conexiones.remove(placa, conexion)) return;
+        bloqueosEscritura.remove(placa);
+        placasBinarias.remove(placa);
+        mascarasInformadas.remove(placa);
+        try {
+            conexion.close();
+        } catch (IOException ex) {
+            // Ya estaba cerrada
+        }
+    }
+
+    public void setOyenteRespuestas(int placa, OyenteRespuestas oyente) {
+        oyentesRespuestas.put(placa, oyente);
+    }
+
+    // Solo si sigue siendo el oyente de la placa: no borra el de otro canal
+    public void quitarOyenteRespuestas(int placa, OyenteRespuestas oyente) {
+        oyentesRespuestas.remove(placa, oyente);
+    }
+
+    public BlockingQueue<Muestra> getCanal() {
+        return canal;
+    }
+
+    public int getPlacasConectadas() {
+        return conexiones.size();
+    }
+
+    // Líneas de texto inválidas y tramas binarias con CRC incorrecto
+    public int getLineasInvalidas() {
+        return lineasInvalidas.get();
+    }
+
+    // Tramas binarias que faltan según la secuencia de las muestras
+    public long getTramasPerdidas() {
+        return tramasPerdidas.get();
+    }
+
+    public boolean isBinaria(int placa) {
+        return placasBinarias.contains(placa);
+    }
+
+    /**
+     * Actuadores según la última trama binaria de la placa (-1 en texto o sin datos)
+     */
+    public int getMascaraInformada(int placa) {
+        Integer mascara = mascarasInformadas.get(placa);
+        return mascara != null ? mascara : -1;
+    }
+
+    @Override
+    public void close() {
+        cerrada = true;
+        for (Integer placa : conexiones.keySet()) {
+            desconectar(placa);
+        }
+    }
+
+    /**
+     * Prueba de carga con placas simuladas por sockets locales:
+     * java ui_invernadero.FlotaPlacas [placas] [muestrasPorSegundoPorPlaca] [segundos]
+     */
+    public static void main(String args[]) throws Exception {
+        final int placas = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        final int tasa = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final int segundos = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        final FlotaPlacas flota = new FlotaPlacas(4096);
+        final OutputStream[] placasSimuladas = new OutputStream[placas];
+        final long[] enviado = new long[placas];
+        ServerSocket servidor = new ServerSocket(0, placas, InetAddress.getLoopbackAddress());
+        for (int p = 0; p < placas; p++) {
+            Socket lado = new Socket(InetAddress.getLoopbackAddress(), servidor.getLocalPort());
+            Socket ladoPlaca = servidor.accept();
+            lado.setTcpNoDelay(true);
+            ladoPlaca.setTcpNoDelay(true);
+            placasSimuladas[p] = ladoPlaca.getOutputStream();
+            flota.conectar(p, socket(lado));
+        }
+        servidor.close();
+
+        // Un solo hilo hace de todas las placas: escribe una línea en cada socket
+        Thread emisor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                GeneradorCarga generador = new GeneradorCarga(placas, 7L);
+                LoteMuestras lote = new LoteMuestras(placas);
+                long periodo = 1_000_000_000L / tasa;
+                long siguiente = System.nanoTime();
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        lote.limpiar();
+                        generador.generar(lote, 0, placas, 0);
+                        for (int p = 0; p < placas; p++) {
+                            byte[] linea = (ProtocoloArduino.formatearMuestra(lote.getTemperatura(p), lote.getHumedad(p), lote.getValorLDR(p)) + "\n")
+                                    .getBytes(StandardCharsets.US_ASCII);
+                            enviado[p] = System.nanoTime();
+                            placasSimuladas[p].write(linea);
+                        }
+                        siguiente += periodo;
+                        long espera = siguiente - System.nanoTime();
+                        if (espera > 0) TimeUnit.NANOSECONDS.sleep(espera);
+                    }
+                } catch (IOException | InterruptedException ex) {
+                    // Fin de la prueba
+                }
+            }
+        }, "placas-simuladas");
+        emisor.setDaemon(true);
+
+        long[] latencias = new long[placas * tasa * segundos + placas * 16];
+        int recibidas = 0;
+        long fin = System.nanoTime() + TimeUnit.SECONDS.toNanos(segundos);
+        emisor.start();
+        while (System.nanoTime() < fin) {
+            Muestra muestra = flota.getCanal().poll(100, TimeUnit.MILLISECONDS);
+            if (muestra == null) continue;
+            if (recibidas < latencias.length) {
+                latencias[recibidas] = System.nanoTime() - enviado[muestra.getPlaca()];
+            }
+            recibidas++;
+        }
+        emisor.interrupt();
+        int hilosPlataforma = ManagementFactory.getThreadMXBean().getPeakThreadCount();
+        flota.close();
+
+        int n = Math.min(recibidas, latencias.length);
+        Arrays.sort(latencias, 0, n);
+        System.out.printf("%d placas a %d muestras/s: %,d muestras en %d s (%s)%n", placas, tasa, recibidas, segundos,
+                          isHilosVirtualesDisponibles() ? "hilos virtuales" : "hilos de plataforma");
+        if (n > 0) {
+            System.out.printf("Latencia placa→canal: p50 %.3f ms, p99 %.3f ms, máx %.3f ms%n",
+                              latencias[n / 2] / 1e6, latencias[(int) (n * 0.99)] / 1e6, latencias[n - 1] / 1e6);
+        }
+        System.out.printf("Pico de hilos de plataforma: %d, líneas inválidas: %d%n", hilosPlataforma, flota.getLineasInvalidas());
+        probarReconexion();
+    }
+
+    // La placa se reconecta mientras el lector de la conexión anterior todavía no terminó
+    private static void probarReconexion() throws Exception {
+        final CountDownLatch soltar = new CountDownLatch(1);
+        final CountDownLatch terminado = new CountDownLatch(1);
+        final InputStream trabada = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                try {
+                    soltar.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return -1;
+            }
+
+            @Override
+            public void close() {
+                terminado.countDown();
+            }
+        };
+        FlotaPlacas flota = new FlotaPlacas(16);
+        flota.conectar(0, new ConexionPlaca() {
+            @Override
+            public InputStream getEntrada() {
+                return trabada;
+            }
+
+            @Override
+            public OutputStream getSalida() {
+                return new java.io.ByteArrayOutputStream();
+            }
+
+            @Override
+            public void close() {
+                // El lector no se entera: sigue trabado hasta que se lo suelta
+            }
+        });
+        flota.desconectar(0);
+        ServerSocket servidor = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Socket lado = new Socket(InetAddress.getLoopbackAddress(), servidor.getLocalPort());
+        Socket ladoPlaca = servidor.accept();
+        servidor.close();
+        flota.conectar(0, socket(lado));
+        soltar.countDown();
+        terminado.await();
+        Thread.sleep(100);                                  // El finally del lector viejo corre después de cerrar su entrada
+        ladoPlaca.getOutputStream().write("S,25.0,500,300\n".getBytes(StandardCharsets.US_ASCII));
+        boolean recibida = flota.getCanal().poll(1, TimeUnit.SECONDS) != null;
+        int conectadas = flota.getPlacasConectadas();
+        flota.close();
+        ladoPlaca.close();
+        System.out.println(recibida && conectadas == 1 ? "Reconexión: el lector viejo no cerró la conexión nueva"
+                                                       : "ERROR: el lector viejo cerró la conexión nueva");
+    }
+}
@@ -0,0 +1,406 @@
+package ui_invernadero;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Flujo binario compacto del estado de las zonas: solo viajan los campos que
+ * cambiaron, como diferencias en varint
+ *
+ * Trama:  tipo u8 | versión varint | zonas varint | por zona:
+ *         salto varint | máscara u8 | campos marcados en la máscara
+ * tipo 1 = clave (todas las zonas, diferencias contra cero) y 2 = cambios.
+ * El salto es la distancia a la zona anterior de la trama menos uno, así
+ * zonas seguidas ocupan un byte. Bits de la máscara: 0 temperatura (décimas,
+ * diferencia zigzag), 1 humedad y 2 LDR (diferencia zigzag), 3 actuadores
+ * (XOR con los anteriores), 4 automático cambió y 5 su valor nuevo.
+ *
+ * Cada intervaloClave tramas se emite una clave en lugar de cambios: un
+ * cliente que se une tarde (o que perdió una trama) se sincroniza con la
+ * próxima clave sin pedir nada; hasta entonces descarta los cambios.
+ * @author Nicom
+ */
+public final class FlujoDeltas {
+
+    public static final int CLAVE = 1;
+    public static final int CAMBIOS = 2;
+    public static final int INTERVALO_CLAVE = 30;
+
+    private static final int TEMPERATURA = 1;
+    private static final int HUMEDAD = 1 << 1;
+    private static final int LUZ = 1 << 2;
+    private static final int ACTUADORES = 1 << 3;
+    private static final int AUTOMATICO = 1 << 4;
+    private static final int AUTOMATICO_ACTIVO = 1 << 5;
+
+    private FlujoDeltas() {
+    }
+
+    /**
+     * Lado del servidor: recuerda lo último enviado de cada zona
+     */
+    public static final class Codificador {
+
+        private final int intervaloClave;
+        private final int[] decimas;
+        private final int[] humedad;
+        private final int[] luz;
+        private final int[] actuadores;
+        private final boolean[] automatico;
+        private final boolean[] conocida;
+        private byte[] bufer = new byte[256];
+        private int largo;
+        private int desdeClave;
+
+        public Codificador(int zonas, int intervaloClave) {
+            this.intervaloClave = intervaloClave;
+            this.decimas = new int[zonas];
+            this.humedad = new int[zonas];
+            this.luz = new int[zonas];
+            this.actuadores = new int[zonas];
+            this.automatico = new boolean[zonas];
+            this.conocida = new boolean[zonas];
+            this.desdeClave = intervaloClave;                      // La primera trama es clave
+        }
+
+        /**
+         * Compara estados con lo último enviado (null = zona sin datos)
+         * @return la trama (clave si tocaba), o null si no cambió nada
+         */
+        public byte[] codificar(EstadoZona[] estados, long version) {
+            if (++desdeClave >= intervaloClave) {
+                for (int zona = 0; zona < estados.length; zona++) {
+                    if (estados[zona] != null) recordar(zona, estados[zona]);
+                }
+                desdeClave = 0;
+                return clave(version);
+            }
+            iniciar(CAMBIOS, version);
+            int cantidad = 0;
+            int anterior = -1;
+            int posicionCantidad = largo;
+            largo += 3;                                            // Lugar para la cantidad (hasta 2^21 zonas)
+            for (int zona = 0; zona < estados.length; zona++) {
+                EstadoZona estado = estados[zona];
+                if (estado == null) continue;
+                int mascara = conocida[zona] ? 0 : TEMPERATURA | HUMEDAD | LUZ | ACTUADORES | AUTOMATICO;
+                int t = (int) Math.round(estado.getTemperaturaLM35() * 10);
+                if (t != decimas[zona]) mascara |= TEMPERATURA;
+                if (estado.getHumedadAnalogica() != humedad[zona]) mascara |= HUMEDAD;
+                if (estado.getValorLDR() != luz[zona]) mascara |= LUZ;
+                if (estado.getActuadores() != actuadores[zona]) mascara |= ACTUADORES;
+                if (estado.isAutomaticoActivo() != automatico[zona]) mascara |= AUTOMATICO;
+                if (mascara == 0) continue;
+                escribirVarint(zona - anterior - 1);
+                anterior = zona;
+                escribirCampos(mascara, t - decimas[zona], estado.getHumedadAnalogica() - humedad[zona],
+                               estado.getValorLDR() - luz[zona], estado.getActuadores() ^ actuadores[zona],
+                               estado.isAutomaticoActivo());
+                recordar(zona, estado);
+                cantidad++;
+            }
+            if (cantidad == 0) return null;
+            // Cantidad en varint de ancho fijo (3 bytes) para no mover lo ya escrito
+            bufer[posicionCantidad] = (byte) (cantidad & 0x7F | 0x80);
+            bufer[posicionCantidad + 1] = (byte) (cantidad >>> 7 & 0x7F | 0x80);
+            bufer[posicionCantidad + 2] = (byte) (cantidad >>> 14 & 0x7F);
+            return Arrays.copyOf(bufer, largo);
+        }
+
+        /**
+         * Trama clave con lo último enviado, para un cliente que recién se une
+         * (no corre la clave periódica)
+         */
+        public byte[] clave(long version) {
+            iniciar(CLAVE, version);
+            int cantidad = 0;
+            for (int zona = 0; zona < conocida.length; zona++) {
+                if (conocida[zona]) cantidad++;
+            }
+            escribirVarint(cantidad);
+            int anterior = -1;
+            for (int zona = 0; zona < conocida.length; zona++) {
+                if (!conocida[zona]) continue;
+                escribirVarint(zona - anterior - 1);
+                anterior = zona;
+                escribirCampos(TEMPERATURA | HUMEDAD | LUZ | ACTUADORES | AUTOMATICO, decimas[zona], humedad[zona],
+                               luz[zona], actuadores[zona], automatico[zona]);
+            }
+            return Arrays.copyOf(bufer, largo);
+        }
+
+        private void recordar(int zona, EstadoZona estado) {
+            decimas[zona] = (int) Math.round(estado.getTemperaturaLM35() * 10);
+            humedad[zona] = estado.getHumedadAnalogica();
+            luz[zona] = estado.getValorLDR();
+            actuadores[zona] = estado.getActuadores();
+            automatico[zona] = estado.isAutomaticoActivo();
+            conocida[zona] = true;
+        }
+
+        private void iniciar(int tipo, long version) {
+            largo = 0;
+            asegurar(16);
+            bufer[largo++] = (byte) tipo;
+            escribirVarint(version);
+        }
+
+        private void escribirCampos(int mascara, int dt, int dh, int dl, int xorActuadores, boolean activo) {
+            if (activo && (mascara & AUTOMATICO) != 0) mascara |= AUTOMATICO_ACTIVO;
+            asegurar(1);
+            bufer[largo++] = (byte) mascara;
+            if ((mascara & TEMPERATURA) != 0) escribirVarint(zigzag(dt));
+            if ((mascara & HUMEDAD) != 0) escribirVarint(zigzag(dh));
+            if ((mascara & LUZ) != 0) escribirVarint(zigzag(dl));
+            if ((mascara & ACTUADORES) != 0) escribirVarint(xorActuadores);
+        }
+
+        private void escribirVarint(long valor) {
+            asegurar(10);
+            while ((valor & ~0x7FL) != 0) {
+                bufer[largo++] = (byte) (valor & 0x7F | 0x80);
+                valor >>>= 7;
+            }
+            bufer[largo++] = (byte) valor;
+        }
+
+        private void asegurar(int bytes) {
+            if (largo + bytes > bufer.length) bufer = Arrays.copyOf(bufer, Math.max(bufer.length * 2, largo + bytes));
+        }
+    }
+
+    /**
+     * Lado del cliente: aplica las tramas sobre su copia del estado
+     */
+    public static final class Decodificador {
+
+        private final int[] decimas;
+        private final int[] humedad;
+        private final int[] luz;
+        private final int[] actuadores;
+        private final boolean[] automatico;
+        private boolean sincronizado = false;
+        private long version = -1;
+        private long descartadas = 0;
+
+        // Posición de lectura de la trama en curso
+        private byte[] trama;
+        private int posicion;
+        private int fin;
+
+        public Decodificador(int zonas) {
+            this.decimas = new int[zonas];
+            this.humedad = new int[zonas];
+            this.luz = new int[zonas];
+            this.actuadores = new int[zonas];
+            this.automatico = new boolean[zonas];
+        }
+
+        /**
+         * @return false si la trama se descartó (cambios antes de la primera
+         *         clave) o está mal formada; en ese caso espera la próxima clave
+         */
+        public boolean aplicar(byte[] datos, int desde, int largo) {
+            trama = datos;
+            posicion = desde;
+            fin = desde + largo;
+            try {
+                int tipo = datos[posicion++];
+                if (tipo != CLAVE && (tipo != CAMBIOS || !sincronizado)) {
+                    descartadas++;
+                    return false;
+                }
+                long nueva = leerVarint();
+                long cantidad = leerVarint();
+                int zona = -1;
+                for (long i = 0; i < cantidad; i++) {
+                    zona += (int) leerVarint() + 1;
+                    int mascara = trama[posicion++] & 0xFF;
+                    if (tipo == CLAVE) {
+                        decimas[zona] = humedad[zona] = luz[zona] = actuadores[zona] = 0;
+                    }
+                    if ((mascara & TEMPERATURA) != 0) decimas[zona] += dezigzag(leerVarint());
+                    if ((mascara & HUMEDAD) != 0) humedad[zona] += dezigzag(leerVarint());
+                    if ((mascara & LUZ) != 0) luz[zona] += dezigzag(leerVarint());
+                    if ((mascara & ACTUADORES) != 0) actuadores[zona] ^= (int) leerVarint();
+                    if ((mascara & AUTOMATICO) != 0) automatico[zona] = (mascara & AUTOMATICO_ACTIVO) != 0;
+                }
+                if (posicion != fin) throw new ArrayIndexOutOfBoundsException("Bytes de más en la trama");
+                version = nueva;
+                sincronizado = true;
+                return true;
+            } catch (ArrayIndexOutOfBoundsException ex) {
+                // Trama cortada o zona fuera de rango: el estado ya no es confiable
+                sincronizado = false;
+                descartadas++;
+                return false;
+            }
+        }
+
+        private long leerVarint() {
+            long valor = 0;
+            for (int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7) {
+                if (posicion >= fin) throw new ArrayIndexOutOfBoundsException("Varint cortado");
+                byte dato = trama[posicion++];
+                valor |= (long) (dato & 0x7F) << desplazamiento;
+                if (dato >= 0) return valor;
+            }
+            throw new ArrayIndexOutOfBoundsException("Varint demasiado largo");
+        }
+
+        public boolean isSincronizado() {
+            return sincronizado;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public long getDescartadas() {
+            return descartadas;
+        }
+
+        public double getTemperatura(int zona) {
+            return decimas[zona] / 10.0;
+        }
+
+        public int getHumedadAnalogica(int zona) {
+            return humedad[zona];
+        }
+
+        public int getValorLDR(int zona) {
+            return luz[zona];
+        }
+
+        public int getActuadores(int zona) {
+            return actuadores[zona];
+        }
+
+        public boolean isAutomaticoActivo(int zona) {
+            return automatico[zona];
+        }
+    }
+
+    /**
+     * Lee una trama del flujo de /deltas (largo en varint y la trama)
+     * @return la trama, vacía para un latido, o null al terminar el flujo
+     */
+    public static byte[] leerTrama(InputStream entrada) throws IOException {
+        int largo = 0;
+        for (int desplazamiento = 0; ; desplazamiento += 7) {
+            int dato = entrada.read();
+            if (dato < 0) return null;
+            if (desplazamiento > 28) throw new IOException("Largo de trama inválido");
+            largo |= (dato & 0x7F) << desplazamiento;
+            if (dato < 0x80) break;
+        }
+        byte[] trama = new byte[largo];
+        int leidos = 0;
+        while (leidos < largo) {
+            int n = entrada.read(trama, leidos, largo - leidos);
+            if (n < 0) return null;
+            leidos += n;
+        }
+        return trama;
+    }
+
+    private static long zigzag(int valor) {
+        return (valor << 1 ^ valor >> 31) & 0xFFFFFFFFL;
+    }
+
+    private static int dezigzag(long valor) {
+        int v = (int) valor;
+        return v >>> 1 ^ -(v & 1);
+    }
+
+    /**
+     * Bytes por actualización con 1000 zonas:
+     * java ui_invernadero.FlujoDeltas [zonas] [actualizaciones]
+     * Una actualización por segundo simulado; se compara el estado completo en
+     * JSON (como la foto del tablero), en binario de ancho fijo (7 bytes por
+     * zona) y el flujo de cambios con una clave cada 30 tramas. Un cliente que
+     * se une a mitad de camino tiene que coincidir con el servidor.
+     */
+    public static void main(String args[]) {
+        int zonas = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int actualizaciones = args.length > 1 ? Integer.parseInt(args[1]) : 3600;
+        SimuladorInvernadero simulador = new SimuladorInvernadero(zonas, 46L);
+        simulador.setHoraDelDia(6.0);
+        EstadoZona[] estados = new EstadoZona[zonas];
+        Codificador codificador = new Codificador(zonas, INTERVALO_CLAVE);
+        Decodificador tempranero = new Decodificador(zonas);
+        Decodificador tardio = new Decodificador(zonas);
+        int unionTardia = actualizaciones / 2 + 7;                 // A mitad de un intervalo de clave
+
+        long bytesJson = 0, bytesFijo = 0, bytesDeltas = 0, bytesClaves = 0, claves = 0, nanos = 0;
+        int[] mascaras = new int[zonas];
+        StringBuilder json = new StringBuilder(zonas * 64);
+        int errores = 0;
+        for (int a = 0; a < actualizaciones; a++) {
+            simulador.avanzar(1.0);
+            for (int z = 0; z < zonas; z++) {
+                double t = simulador.getTemperatura(z);
+                int h = simulador.getHumedadAnalogica(z);
+                int l = simulador.getValorLDR(z);
+                int mascara = mascaras[z];
+                // Histéresis simple, como el motor: los actuadores cambian poco
+                if (t > 51) mascara |= Actuador.VENTILADOR.getBit(); else if (t < 50) mascara &= ~Actuador.VENTILADOR.getBit();
+                if (h >= 500) mascara |= Actuador.VALVULA.getBit(); else if (h < 480) mascara &= ~Actuador.VALVULA.getBit();
+                if (l >= 500) mascara |= Actuador.LED.getBit(); else if (l < 480) mascara &= ~Actuador.LED.getBit();
+                mascaras[z] = mascara;
+                simulador.setActuadores(z, mascara);
+                estados[z] = new EstadoZona(a, t, h, l, mascara, true);
+            }
+
+            long inicio = System.nanoTime();
+            byte[] trama = codificador.codificar(estados, a);
+            nanos += System.nanoTime() - inicio;
+            if (trama != null) {
+                bytesDeltas += trama.length;
+                if (trama[0] == CLAVE) {
+                    claves++;
+                    bytesClaves += trama.length;
+                }
+                tempranero.aplicar(trama, 0, trama.length);
+                if (a >= unionTardia) tardio.aplicar(trama, 0, trama.length);
+            }
+
+            json.setLength(0);
+            json.append('[');
+            for (int z = 0; z < zonas; z++) {
+                EstadoZona e = estados[z];
+                json.append(z > 0 ? "," : "").append("{\"z\":").append(z).append(",\"t\":").append(Math.round(e.getTemperaturaLM35() * 10) / 10.0)
+                    .append(",\"h\":").append(e.getHumedadAnalogica()).append(",\"l\":").append(e.getValorLDR())
+                    .append(",\"a\":").append(e.getActuadores()).append(",\"auto\":").append(e.isAutomaticoActivo()).append('}');
+            }
+            bytesJson += json.append(']').length();
+            bytesFijo += 7L * zonas;
+
+            for (Decodificador cliente : new Decodificador[] {tempranero, tardio}) {
+                if (!cliente.isSincronizado()) continue;
+                for (int z = 0; z < zonas; z++) {
+                    if (Math.round(estados[z].getTemperaturaLM35() * 10) != Math.round(cliente.getTemperatura(z) * 10)
+                            || estados[z].getHumedadAnalogica() != cliente.getHumedadAnalogica(z)
+                            || estados[z].getValorLDR() != cliente.getValorLDR(z)
+                            || estados[z].getActuadores() != cliente.getActuadores(z)) {
+                        errores++;
+                    }
+                }
+            }
+        }
+        System.out.printf(Locale.ROOT, "%,d zonas, %,d actualizaciones (1 por segundo simulado)%n", zonas, actualizaciones);
+        System.out.printf(Locale.ROOT, "Estado completo en JSON:      %,10d bytes/actualización%n", bytesJson / actualizaciones);
+        System.out.printf(Locale.ROOT, "Estado completo binario fijo: %,10d bytes/actualización%n", bytesFijo / actualizaciones);
+        System.out.printf(Locale.ROOT, "Cambios con clave cada %d:    %,10d bytes/actualización (%.1f%% del JSON, %.1f%% del binario fijo)%n",
+                          INTERVALO_CLAVE, bytesDeltas / actualizaciones, 100.0 * bytesDeltas / bytesJson, 100.0 * bytesDeltas / bytesFijo);
+        System.out.printf(Locale.ROOT, "  claves: %,d de %,d bytes; cambios: %,d bytes de media; codificar %.1f µs/actualización%n",
+                          claves, claves > 0 ? bytesClaves / claves : 0,
+                          (bytesDeltas - bytesClaves) / Math.max(1, actualizaciones - claves), nanos / 1e3 / actualizaciones);
+        System.out.printf(Locale.ROOT, "Cliente tardío (se une en la actualización %,d): sincronizado en la versión %,d, %d tramas descartadas%n",
+                          unionTardia, tardio.getVersion(), tardio.getDescartadas());
+        System.out.println(errores == 0 ? "Los dos clientes coinciden con el servidor en cada actualización"
+                                        : "ERROR: " + errores + " diferencias entre cliente y servidor");
+    }
+}
@@ -0,0 +1,471 @@
+package ui_invernadero;
+
+import java.awt.Color;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JProgressBar;
+import javax.swing.JTextArea;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Texto de los rótulos que se actualizan en cada tic, sin asignar memoria
+ * Números, fechas y horas se escriben en un búfer reutilizable y el String
+ * se crea solo si el texto cambió respecto del que ya muestra el componente
+ * (setText con el mismo String no hace nada: ni repinta ni vuelve a
+ * interpretar el HTML). La hora local sale de aritmética sobre el
+ * desplazamiento de la zona, que se consulta de nuevo solo al pasar un
+ * cambio de horario. No es segura entre hilos: una por pantalla, en el EDT.
+ * @author Nicom
+ */
+public final class FormatoPantalla {
+
+    private static final long MS_DIA = 86_400_000L;
+
+    // Colores de las líneas de alerta de las pantallas
+    static final Color ROJO = Color.RED;
+    static final Color NARANJA = new Color(255, 165, 0);
+    static final Color VERDE = new Color(0, 128, 0);
+    static final Color AZUL = Color.BLUE;
+    static final Color MARRON = new Color(165, 42, 42);
+    static final Color VIOLETA = new Color(128, 0, 128);
+    static final Color DORADO = new Color(255, 215, 0);
+    static final Color GRIS = new Color(128, 128, 128);
+
+    private final StringBuilder texto = new StringBuilder(512);
+    private final char separadorDecimal = DecimalFormatSymbols.getInstance().getDecimalSeparator();    // Como String.format
+    private final ZoneRules reglasZona = ZoneId.systemDefault().getRules();
+    private long desplazamientoMs;
+    private long desplazamientoDesdeMs = Long.MAX_VALUE;                   // Vigencia del desplazamiento
+    private long desplazamientoHastaMs = Long.MIN_VALUE;
+
+    public FormatoPantalla limpiar() {
+        texto.setLength(0);
+        return this;
+    }
+
+    public FormatoPantalla agregar(String parte) {
+        texto.append(parte);
+        return this;
+    }
+
+    public FormatoPantalla agregar(char caracter) {
+        texto.append(caracter);
+        return this;
+    }
+
+    public FormatoPantalla agregar(long valor) {
+        texto.append(valor);
+        return this;
+    }
+
+    // Como Double.toString (lo que da la concatenación "..." + valor)
+    public FormatoPantalla agregar(double valor) {
+        texto.append(valor);
+        return this;
+    }
+
+    /**
+     * Como String.format("%.nf"): redondeo a la mitad hacia arriba y el
+     * separador decimal del idioma del sistema
+     */
+    public FormatoPantalla agregarDecimal(double valor, int decimales) {
+        if (Double.isNaN(valor) || Double.isInfinite(valor)) {
+            texto.append(valor);
+            return this;
+        }
+        long escala = 1;
+        for (int i = 0; i < decimales; i++) escala *= 10;
+        long escalado = Math.round(Math.abs(valor) * escala);
+        if (valor < 0) texto.append('-');
+        texto.append(escalado / escala);
+        if (decimales > 0) {
+            texto.append(separadorDecimal);
+            long fraccion = escalado % escala;
+            for (long digito = escala / 10; digito > fraccion && digito > 1; digito /= 10) texto.append('0');
+            texto.append(fraccion);
+        }
+        return this;
+    }
+
+    // dd/MM/yyyy en hora local
+    public FormatoPantalla agregarFecha(long epochMs) {
+        long dias = Math.floorDiv(epochMs + desplazamiento(epochMs), MS_DIA);
+        // Días desde 1970 a fecha civil (algoritmo de Howard Hinnant)
+        long z = dias + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long diaDeEra = z - era * 146_097;
+        long anioDeEra = (diaDeEra - diaDeEra / 1460 + diaDeEra / 36_524 - diaDeEra / 146_096) / 365;
+        long diaDelAnio = diaDeEra - (365 * anioDeEra + anioDeEra / 4 - anioDeEra / 100);
+        long mesDesdeMarzo = (5 * diaDelAnio + 2) / 153;
+        long dia = diaDelAnio - (153 * mesDesdeMarzo + 2) / 5 + 1;
+        long mes = mesDesdeMarzo < 10 ? mesDesdeMarzo + 3 : mesDesdeMarzo - 9;
+        long anio = anioDeEra + era * 400 + (mes <= 2 ? 1 : 0);
+        dosDigitos(dia).agregar('/');
+        dosDigitos(mes).agregar('/');
+        texto.append(anio);
+        return this;
+    }
+
+    // HH:mm:ss en hora local
+    public FormatoPantalla agregarHora(long epochMs) {
+        long msDelDia = Math.floorMod(epochMs + desplazamiento(epochMs), MS_DIA);
+        long segundos = msDelDia / 1000;
+        dosDigitos(segundos / 3600).agregar(':');
+        dosDigitos(segundos / 60 % 60).agregar(':');
+        return dosDigitos(segundos % 60);
+    }
+
+    private FormatoPantalla dosDigitos(long valor) {
+        if (valor < 10) texto.append('0');
+        texto.append(valor);
+        return this;
+    }
+
+    // Se recalcula (con asignaciones) solo al salir del tramo entre dos cambios de horario
+    private long desplazamiento(long epochMs) {
+        if (epochMs < desplazamientoDesdeMs || epochMs >= desplazamientoHastaMs) {
+            Instant instante = Instant.ofEpochMilli(epochMs);
+            desplazamientoMs = reglasZona.getOffset(instante).getTotalSeconds() * 1000L;
+            ZoneOffsetTransition anterior = reglasZona.previousTransition(instante);
+            ZoneOffsetTransition siguiente = reglasZona.nextTransition(instante);
+            desplazamientoDesdeMs = anterior != null ? anterior.toEpochSecond() * 1000 : Long.MIN_VALUE;
+            desplazamientoHastaMs = siguiente != null ? siguiente.toEpochSecond() * 1000 : Long.MAX_VALUE;
+        }
+        return desplazamientoMs;
+    }
+
+    /**
+     * @return actual si el búfer tiene el mismo texto; si no, un String nuevo
+     */
+    public String texto(String actual) {
+        return actual != null && actual.contentEquals(texto) ? actual : texto.toString();
+    }
+
+    /**
+     * Una línea de alerta en texto plano, sin HTML que Swing vuelva a
+     * interpretar cuando cambia; con el mismo texto y color no hace nada
+     */
+    static void alerta(JLabel rotulo, String texto, Color color) {
+        rotulo.setText(texto);
+        rotulo.setForeground(color);
+    }
+
+    /**
+     * Asignaciones por tic de las tres pantallas, con su propio código de
+     * rótulos (ControlManual.Rotulos, ControlAutomatico.Rotulos y
+     * PanelPrincipal.Rotulos) sobre componentes sueltos, sin ventana, medidas
+     * con JFR (jdk.ThreadAllocationStatistics):
+     * java ui_invernadero.FormatoPantalla [tics] [presupuestoManual] [presupuestoAutomatico] [presupuestoPrincipal]
+     * Las alertas son rótulos de texto plano, así que la medición incluye lo
+     * que Swing hace con cada cambio de texto. Termina con código 1 si una
+     * pantalla supera su presupuesto o si un rótulo no coincide con el
+     * formateo de referencia (String.format y SimpleDateFormat).
+     */
+    public static void main(String args[]) throws Exception {
+        int tics = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        long[] presupuestos = {
+            args.length > 1 ? Long.parseLong(args[1]) : 1024,
+            args.length > 2 ? Long.parseLong(args[2]) : 4000,
+            args.length > 3 ? Long.parseLong(args[3]) : 560
+        };
+        System.setProperty("java.awt.headless", "true");
+
+        // Un día de lecturas reales del simulador, un tic por segundo
+        SimuladorInvernadero simulador = new SimuladorInvernadero(1, 50L);
+        Lecturas lecturas = new Lecturas(tics);
+        MotorControlAutomatico motor = new MotorControlAutomatico(null);
+        for (int i = 0; i < tics; i++) {
+            motor.ejecutar(simulador.getTemperatura(0), simulador.getHumedadAnalogica(0), simulador.getValorLDR(0));
+            simulador.setActuadores(0, motor.getMascara());
+            simulador.avanzar(1.0);
+            lecturas.temperaturas[i] = simulador.getTemperatura(0);
+            lecturas.humedades[i] = simulador.getHumedadAnalogica(0);
+            lecturas.luces[i] = simulador.getValorLDR(0);
+            lecturas.mascaras[i] = motor.getMascara();
+        }
+        Map<Actuador, CanalComandos.Comando> comandos = comandosDePrueba();
+
+        String[] nombres = {"Control manual", "Control automático", "Panel principal"};
+        int distintos = 0;
+        long[] asignados = new long[3];
+        for (int p = 0; p < 3; p++) {
+            // Mismo texto que el formateo de referencia
+            Pantalla pantalla = crear(p, lecturas, comandos);
+            for (int i = 0; i < tics; i++) {
+                long ahoraMs = 1_700_000_000_000L + i * 997_003L;                // Recorre días, años y cambios de horario
+                pantalla.tic(ahoraMs, i);
+                String textos = pantalla.textos();
+                String esperados = pantalla.esperados(ahoraMs, i);
+                if (!textos.equals(esperados)) {
+                    if (distintos++ == 0) System.out.println("ERROR en " + nombres[p] + ": " + textos + " <> " + esperados);
+                }
+            }
+            asignados[p] = medir(crear(p, lecturas, comandos), tics);
+        }
+
+        System.out.printf("%,d tics (uno por segundo simulado), sin ventana, bytes por tic%n", tics);
+        System.out.printf("%-20s %10s %12s%n", "", "asignados", "presupuesto");
+        boolean excedido = false;
+        for (int p = 0; p < 3; p++) {
+            System.out.printf("%-20s %,10d %,12d%n", nombres[p] + ":", asignados[p] / tics, presupuestos[p]);
+            if (asignados[p] / tics > presupuestos[p]) {
+                System.out.println("ERROR: " + nombres[p] + " supera el presupuesto de asignaciones por tic");
+                excedido = true;
+            }
+        }
+        System.out.println(distintos == 0 ? "Los textos coinciden con el formateo de referencia"
+                                          : "ERROR: " + distintos + " tics con textos distintos");
+        if (distintos > 0 || excedido) System.exit(1);
+    }
+
+    // Lecturas del simulador y máscara del motor en cada tic
+    private static final class Lecturas {
+        final double[] temperaturas;
+        final int[] humedades;
+        final int[] luces;
+        final int[] mascaras;
+
+        Lecturas(int tics) {
+            temperaturas = new double[tics];
+            humedades = new int[tics];
+            luces = new int[tics];
+            mascaras = new int[tics];
+        }
+    }
+
+    // Los Rotulos de una pantalla: un tic como el de su Timer, lo que muestran y lo que deberían mostrar
+    private interface Pantalla {
+        void tic(long ahoraMs, int i);
+
+        String textos();
+
+        String esperados(long ahoraMs, int i);
+    }
+
+    // Un evento por tic para que pese lo que asigna addLogEntry; sin emoji, porque con emoji el JTextArea
+    // maqueta cada línea nueva con TextLayout (decenas de KB) y eso taparía al formateo
+    private static final String EVENTO = "Actuadores cambiados por el motor";
+
+    private static Pantalla crear(int pantalla, final Lecturas lecturas, Map<Actuador, CanalComandos.Comando> comandos) {
+        switch (pantalla) {
+            case 0: {
+                final ControlManual.Rotulos rotulos = new ControlManual.Rotulos(
+                        new JLabel(), new JLabel(), new JLabel(), new JLabel(), new JLabel(), new JLabel(), new JLabel(),
+                        barra(), barra(), barra(), new JButton(), new JButton(), new JButton(), new JButton(), new JButton());
+                rotulos.ultimosComandos.putAll(comandos);
+                rotulos.conPlaca = true;
+                final CanalComandos.Comando ventilador = comandos.get(Actuador.VENTILADOR);
+                final CanalComandos.Comando valvula = comandos.get(Actuador.VALVULA);
+                final CanalComandos.Comando servo = comandos.get(Actuador.SERVO);
+                return new Pantalla() {
+                    @Override
+                    public void tic(long ahoraMs, int i) {
+                        int mascara = lecturas.mascaras[i];
+                        rotulos.updateDateTime(ahoraMs);
+                        rotulos.updateDisplays(lecturas.temperaturas[i], lecturas.humedades[i], lecturas.luces[i],
+                                               (mascara & Actuador.VENTILADOR.getBit()) != 0, (mascara & Actuador.BUZZER.getBit()) != 0,
+                                               (mascara & Actuador.LED.getBit()) != 0, (mascara & Actuador.VALVULA.getBit()) != 0,
+                                               (mascara & Actuador.SERVO.getBit()) != 0);
+                        rotulos.verificarUmbralesArduino(lecturas.temperaturas[i], lecturas.humedades[i], lecturas.luces[i]);
+                    }
+
+                    @Override
+                    public String textos() {
+                        return rotulos.lblFechaHora.getText() + "|" + rotulos.lblTemperaturaLM35.getText() + "|"
+                               + rotulos.lblHumedadSuelo.getText() + "|" + rotulos.progressTemperatura.getString() + "|"
+                               + rotulos.progressHumedad.getString() + "|" + rotulos.btnVentilador.getToolTipText() + "|"
+                               + rotulos.btnValvula.getToolTipText() + "|" + rotulos.btnServo.getToolTipText();
+                    }
+
+                    @Override
+                    public String esperados(long ahoraMs, int i) {
+                        double t = lecturas.temperaturas[i];
+                        int h = lecturas.humedades[i];
+                        int porcentaje = (int) ((h - 1023) * (100.0 - 0) / (0 - 1023));
+                        return new SimpleDateFormat("'📅 'dd/MM/yyyy HH:mm:ss").format(new Date(ahoraMs)) + "|"
+                               + String.format("🌡️ LM35: %.1f°C (Pin A0)", t) + "|"
+                               + String.format("💧 Humedad: %d%% (%d) (Pin A1)", porcentaje, h) + "|"
+                               + String.format("%.1f°C", t) + "|" + String.format("%d%% (%d)", porcentaje, h) + "|"
+                               + String.format("📡 %s confirmado en %.0f ms", ventilador.getTexto(), ventilador.getIdaYVueltaNs() / 1e6) + "|"
+                               + "📡 " + valvula.getTexto() + " sin confirmar: la placa no respondió o lo rechazó|"
+                               + "📡 " + servo.getTexto() + " esperando confirmación";
+                    }
+                };
+            }
+            case 1: {
+                final ControlAutomatico.Rotulos rotulos = new ControlAutomatico.Rotulos(
+                        new JLabel(), new JLabel(), new JLabel(), new JLabel(), new JLabel(), new JLabel(), new JLabel(),
+                        barra(), barra(), new JLabel(), new JButton(), new JButton(),
+                        new JLabel(), new JLabel(), new JLabel(), new JLabel(), new JLabel(),
+                        new JTextArea());
+                return new Pantalla() {
+                    @Override
+                    public void tic(long ahoraMs, int i) {
+                        double t = lecturas.temperaturas[i];
+                        int h = lecturas.humedades[i];
+                        int l = lecturas.luces[i];
+                        int mascara = lecturas.mascaras[i];
+                        // Timer de un segundo, y el refresco con lo que publicó el núcleo
+                        rotulos.updateDateTime(ahoraMs);
+                        rotulos.updateAlertas(t, h, l, 50.0, 51.0, 56.0, 500, 500);
+                        rotulos.addLogEntry(ahoraMs, EVENTO);
+                        rotulos.updateDisplays(t, h, l, mascara, true, 500);
+                        rotulos.updateAlertas(t, h, l, 50.0, 51.0, 56.0, 500, 500);
+                    }
+
+                    @Override
+                    public String textos() {
+                        String registro = rotulos.txtLogAutomatico.getText();
+                        int ultima = registro.lastIndexOf('\n', registro.length() - 2) + 1;
+                        return rotulos.lblFechaHora.getText() + "|" + rotulos.lblTemperaturaLM35.getText() + "|"
+                               + rotulos.lblHumedadSuelo.getText() + "|" + rotulos.progressTemperatura.getString() + "|"
+                               + rotulos.lblAlertaHumedad.getText() + "|" + registro.substring(ultima);
+                    }
+
+                    @Override
+                    public String esperados(long ahoraMs, int i) {
+                        double t = lecturas.temperaturas[i];
+                        int h = lecturas.humedades[i];
+                        int porcentaje = (int) ((h - 1023) * (100.0 - 0) / (0 - 1023));
+                        String registro = "[" + new SimpleDateFormat("HH:mm:ss").format(new Date(ahoraMs)) + "] " + EVENTO + "\n";
+                        return new SimpleDateFormat("'📅 'dd/MM/yyyy HH:mm:ss").format(new Date(ahoraMs)) + "|"
+                               + String.format("🌡️ LM35: %.1f°C", t) + "|" + String.format("💧 Humedad: %d%% (%d)", porcentaje, h) + "|"
+                               + String.format("%.1f°C", t) + "|"
+                               + (h >= 500 ? String.format("💧 HÚMEDO: %d ≥ 500 - Riego activo", h)
+                                           : String.format("🏜️ SECO: %d < 500 - Sin riego", h)) + "|" + registro;
+                    }
+                };
+            }
+            default: {
+                final PanelPrincipal.Rotulos rotulos = new PanelPrincipal.Rotulos(
+                        new JLabel(), new JLabel(), new JLabel(), new JLabel(), new JLabel(), new JLabel(), new JLabel(), new JLabel());
+                return new Pantalla() {
+                    @Override
+                    public void tic(long ahoraMs, int i) {
+                        rotulos.updateClock(ahoraMs);
+                        rotulos.updateSystemInfo(lecturas.temperaturas[i], lecturas.humedades[i], lecturas.luces[i], true);
+                    }
+
+                    @Override
+                    public String textos() {
+                        return rotulos.lblFechaHora.getText() + "|" + rotulos.lblTemperatura.getText() + "|" + rotulos.lblHumedad.getText();
+                    }
+
+                    @Override
+                    public String esperados(long ahoraMs, int i) {
+                        int h = lecturas.humedades[i];
+                        int porcentaje = (int) ((h - 1023) * (100.0 - 0) / (0 - 1023));
+                        return new SimpleDateFormat("dd/MM/yyyy - HH:mm:ss").format(new Date(ahoraMs)) + "|"
+                               + String.format("🌡️ %.1f°C", lecturas.temperaturas[i]) + "|" + String.format("💧 %d%% (%d)", porcentaje, h);
+                    }
+                };
+            }
+        }
+    }
+
+    private static JProgressBar barra() {
+        JProgressBar barra = new JProgressBar(0, 100);
+        barra.setStringPainted(true);
+        return barra;
+    }
+
+    /**
+     * Comandos reales en los tres estados que muestran los botones: tres
+     * confirmados por el EmuladorArduino, uno fallido y uno esperando
+     * (contra una flota sin placa)
+     */
+    private static Map<Actuador, CanalComandos.Comando> comandosDePrueba() throws Exception {
+        Map<Actuador, CanalComandos.Comando> comandos = new EnumMap<>(Actuador.class);
+        try (CanalComandos canal = CanalComandos.abrirConfigurado()) {
+            for (Actuador actuador : new Actuador[] {Actuador.VENTILADOR, Actuador.BUZZER, Actuador.LED}) {
+                comandos.put(actuador, canal.enviar(actuador, true));
+            }
+            if (!canal.esperarVacio(10_000)) throw new IllegalStateException("El emulador no confirmó los comandos");
+        }
+        Logger.getLogger(CanalComandos.class.getName()).setLevel(Level.SEVERE);      // Sin placa: el envío falla a propósito
+        FlotaPlacas sinPlaca = new FlotaPlacas(1);
+        try (CanalComandos canal = new CanalComandos(sinPlaca, 0, 2, 20, 0)) {
+            CanalComandos.Comando valvula = canal.enviar(Actuador.VALVULA, true);
+            canal.esperarVacio(10_000);
+            comandos.put(Actuador.VALVULA, valvula);
+            comandos.put(Actuador.SERVO, canal.enviar(Actuador.SERVO, true));     // Al cerrar el canal queda esperando
+        }
+        sinPlaca.close();
+        return comandos;
+    }
+
+    // Bytes asignados por el hilo de los tics mientras corre la grabación (después de calentar el JIT)
+    private static long medir(final Pantalla pantalla, final int tics) throws Exception {
+        final CountDownLatch calentado = new CountDownLatch(1);
+        final CountDownLatch grabando = new CountDownLatch(1);
+        final CountDownLatch terminado = new CountDownLatch(1);
+        final CountDownLatch grabacionCerrada = new CountDownLatch(1);
+        Thread hilo = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long inicioMs = 1_760_000_000_000L;
+                    for (int vuelta = 0; vuelta < 3; vuelta++) {
+                        for (int i = 0; i < tics; i++) pantalla.tic(inicioMs + i * 1000L, i);
+                    }
+                    calentado.countDown();
+                    grabando.await();
+                    inicioMs += 3L * tics * 1000;
+                    for (int i = 0; i < tics; i++) pantalla.tic(inicioMs + i * 1000L, i);
+                    terminado.countDown();
+                    grabacionCerrada.await();              // Vivo hasta el cierre: la estadística final lo incluye
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "tics-pantalla");
+        hilo.start();
+        calentado.await();
+        Path archivo = Files.createTempFile("asignaciones", ".jfr");
+        try {
+            long asignados;
+            try (Recording grabacion = new Recording()) {
+                grabacion.enable("jdk.ThreadAllocationStatistics").with("period", "everyChunk");
+                grabacion.start();
+                grabando.countDown();
+                terminado.await();
+                grabacion.stop();
+                grabacion.dump(archivo);
+            }
+            grabacionCerrada.countDown();
+            long minimo = Long.MAX_VALUE;
+            long maximo = Long.MIN_VALUE;
+            for (RecordedEvent evento : RecordingFile.readAllEvents(archivo)) {
+                RecordedThread hiloEvento = evento.getValue("thread");
+                if (hiloEvento == null || !"tics-pantalla".equals(hiloEvento.getJavaName())) continue;
+                long valor = evento.getLong("allocated");
+                minimo = Math.min(minimo, valor);
+                maximo = Math.max(maximo, valor);
+            }
+            if (minimo == Long.MAX_VALUE) throw new IllegalStateException("JFR no informó las asignaciones del hilo");
+            asignados = maximo - minimo;
+            hilo.join();
+            return asignados;
+        } finally {
+            grabacionCerrada.countDown();
+            Files.deleteIfExists(archivo);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package ui_invernadero;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Generador de carga sintética determinista para pruebas de capacidad
+ * Emite muestras de muchas placas Arduino virtuales en los mismos rangos que
+ * la simulación original (LM35 15-75°C, Humedad 200-800, LDR 100-900).
+ * Cada placa tiene su propio SplittableRandom derivado de la semilla, así que
+ * la secuencia de una placa no depende de cuántos hilos generen la carga.
+ * @author Nicom
+ */
+public class GeneradorCarga {
+
+    private final int placas;
+
+    // Estado de cada placa virtual
+    private final SplittableRandom[] aleatorios;
+    private final double[] temperaturas;
+    private final int[] humedades;
+    private final int[] valoresLDR;
+
+    public GeneradorCarga(int placas, long semilla) {
+        if (placas <= 0) {
+            throw new IllegalArgumentException("El número de placas debe ser mayor que 0: " + placas);
+        }
+        this.placas = placas;
+        aleatorios = new SplittableRandom[placas];
+        temperaturas = new double[placas];
+        humedades = new int[placas];
+        valoresLDR = new int[placas];
+        SplittableRandom raiz = new SplittableRandom(semilla);
+        for (int p = 0; p < placas; p++) {
+            aleatorios[p] = raiz.split();
+            temperaturas[p] = 25.0;
+            humedades[p] = 450;
+            valoresLDR[p] = 300;
+        }
+    }
+
+    public int getPlacas() {
+        return placas;
+    }
+
+    /**
+     * Genera la siguiente muestra de cada placa en [desde, hasta) con el mismo
+     * tiempo, hasta llenar el lote. Rangos disjuntos pueden generarse en
+     * hilos distintos.
+     * @return la siguiente placa a generar (hasta si se completó la ronda)
+     */
+    public int generar(LoteMuestras lote, int desde, int hasta, long tiempoMs) {
+        int p = desde;
+        while (p < hasta && !lote.isLleno()) {
+            SplittableRandom aleatorio = aleatorios[p];
+
+            // Variaciones como las del Arduino simulado
+            double temperatura = temperaturas[p] + (aleatorio.nextDouble() - 0.5) * 2.0;
+            int humedad = humedades[p] + (int) ((aleatorio.nextDouble() - 0.5) * 50);
+            int ldr = valoresLDR[p] + (int) ((aleatorio.nextDouble() - 0.5) * 40);
+
+            // Mantener rangos realistas del Arduino
+            if (temperatura < 15) temperatura = 15;
+            if (temperatura > 75) temperatura = 75;
+            if (humedad < 200) humedad = 200;
+            if (humedad > 800) humedad = 800;
+            if (ldr < 100) ldr = 100;
+            if (ldr > 900) ldr = 900;
+
+            temperaturas[p] = temperatura;
+            humedades[p] = humedad;
+            valoresLDR[p] = ldr;
+            lote.agregar(p, tiempoMs, temperatura, humedad, ldr);
+            p++;
+        }
+        return p;
+    }
+
+    /**
+     * Etapa de la prueba de estrés: mide tiempo ocupado y tiempo que su
+     * productor pasó bloqueado esperando lugar en la cola (contrapresión)
+     */
+    private static class Etapa {
+        final String nombre;
+        final BlockingQueue<LoteMuestras> entrada;
+        long nanosOcupado = 0;
+        long nanosBloqueadoEntrada = 0;   // Escrito por el productor de la etapa anterior
+        long muestras = 0;
+        int profundidadMaxima = 0;        // Aproximada si hay varios productores
+
+        Etapa(String nombre, int capacidad) {
+            this.nombre = nombre;
+            this.entrada = new ArrayBlockingQueue<>(capacidad);
+        }
+
+        // Llamado por la etapa anterior
+        void entregar(LoteMuestras lote, long[] bloqueado) throws InterruptedException {
+            if (!entrada.offer(lote)) {
+                long inicio = System.nanoTime();
+                entrada.put(lote);
+                bloqueado[0] += System.nanoTime() - inicio;
+            }
+            int profundidad = entrada.size();
+            if (profundidad > profundidadMaxima) profundidadMaxima = profundidad;
+        }
+    }
+
+    /**
+     * Prueba de estrés: java ui_invernadero.GeneradorCarga [placas] [segundos] [hilosGeneradores]
+     * Generación → Reglas (MotorControlAutomatico por placa) → Registro → Persistencia
+     */
+    public static void main(String args[]) throws Exception {
+        final int placas = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        final int segundos = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final int hilos = args.length > 2 ? Integer.parseInt(args[2]) : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        final int tamanioLote = 4096;
+        final int capacidadCola = 16;
+
+        final GeneradorCarga generador = new GeneradorCarga(placas, 42L);
+        final BlockingQueue<LoteMuestras> libres = new ArrayBlockingQueue<>(hilos * 4 + capacidadCola * 3);
+        while (libres.remainingCapacity() > 0) libres.add(new LoteMuestras(tamanioLote));
+
+        final Etapa reglas = new Etapa("Reglas", capacidadCola);
+        final Etapa registro = new Etapa("Registro", capacidadCola);
+        final Etapa persistencia = new Etapa("Persistencia", capacidadCola);
+        final long[][] bloqueoProductores = new long[hilos][1];
+        final long[] bloqueoReglas = new long[1];
+        final long[] bloqueoRegistro = new long[1];
+        final long[] esperaLotesLibres = new long[hilos];
+        final AtomicBoolean corriendo = new AtomicBoolean(true);
+        final LoteMuestras fin = new LoteMuestras(0);
+
+        final MotorControlAutomatico[] motores = new MotorControlAutomatico[placas];
+        final LoteMuestras[] loteActual = new LoteMuestras[1];
+        for (int p = 0; p < placas; p++) {
+            motores[p] = new MotorControlAutomatico(new OyenteControl() {
+                @Override
+                public void transicion(Actuador actuador, boolean activo, String mensaje) {
+                    loteActual[0].eventos.add(mensaje);
+                }
+            });
+        }
+
+        Metricas.medidor("invernadero_cola_profundidad", "Lotes en espera por etapa", "etapa=\"reglas\"", new Metricas.Medidor() {
+            @Override
+            public double valor() {
+                return reglas.entrada.size();
+            }
+        });
+        Metricas.medidor("invernadero_cola_profundidad", "Lotes en espera por etapa", "etapa=\"registro\"", new Metricas.Medidor() {
+            @Override
+            public double valor() {
+                return registro.entrada.size();
+            }
+        });
+        Metricas.medidor("invernadero_cola_profundidad", "Lotes en espera por etapa", "etapa=\"persistencia\"", new Metricas.Medidor() {
+            @Override
+            public double valor() {
+                return persistencia.entrada.size();
+            }
+        });
+        ServidorMetricas.iniciarSiConfigurado();
+
+        final Path archivoLog = Files.createTempFile("invernadero-carga", ".log");
+        final Path archivoDatos = Files.createTempFile("invernadero-carga", ".bin");
+        archivoLog.toFile().deleteOnExit();
+        archivoDatos.toFile().deleteOnExit();
+
+        // Generadores: cada hilo es dueño de un rango contiguo de placas
+        Thread[] productores = new Thread[hilos];
+        for (int h = 0; h < hilos; h++) {
+            final int indice = h;
+            final int desde = (int) ((long) placas * h / hilos);
+            final int hasta = (int) ((long) placas * (h + 1) / hilos);
+            productores[h] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        long tiempo = 0;
+                        int siguiente = desde;
+                        while (corriendo.get()) {
+                            long inicio = System.nanoTime();
+                            LoteMuestras lote = libres.take();
+                            esperaLotesLibres[indice] += System.nanoTime() - inicio;
+                            lote.limpiar();
+                            while (!lote.isLleno()) {
+                                siguiente = generador.generar(lote, siguiente, hasta, tiempo);
+                                if (siguiente == hasta) {
+                                    siguiente = desde;
+                                    tiempo += 1000;    // Cada placa muestrea a 1 Hz virtual
+                                }
+                            }
+                            reglas.entregar(lote, bloqueoProductores[indice]);
+                        }
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, "generador-" + h);
+        }
+
+        Thread hiloReglas = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    LoteMuestras lote;
+                    while ((lote = reglas.entrada.take()) != fin) {
+                        long inicio = System.nanoTime();
+                        loteActual[0] = lote;
+                        for (int i = 0; i < lote.tamanio; i++) {
+                            motores[lote.placas[i]].ejecutar(lote.temperaturas[i], lote.humedades[i], lote.valoresLDR[i]);
+                        }
+                        reglas.muestras += lote.tamanio;
+                        Metricas.MUESTRAS_TEMPERATURA.sumar(lote.tamanio);
+                        Metricas.MUESTRAS_HUMEDAD.sumar(lote.tamanio);
+                        Metricas.MUESTRAS_LDR.sumar(lote.tamanio);
+                        reglas.nanosOcupado += System.nanoTime() - inicio;
+                        registro.entregar(lote, bloqueoReglas);
+                    }
+                    registro.entrada.put(fin);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "reglas");
+
+        Thread hiloRegistro = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (Writer log = new BufferedWriter(Files.newBufferedWriter(archivoLog, StandardCharsets.UTF_8), 1 << 16)) {
+                    LoteMuestras lote;
+                    while ((lote = registro.entrada.take()) != fin) {
+                        long inicio = System.nanoTime();
+                        for (String evento : lote.eventos) {
+                            log.write(evento);
+                            log.write('\n');
+                        }
+                        registro.muestras += lote.tamanio;
+                        registro.nanosOcupado += System.nanoTime() - inicio;
+                        persistencia.entregar(lote, bloqueoRegistro);
+                    }
+                    persistencia.entrada.put(fin);
+                } catch (IOException ex) {
+                    System.err.println("Error en el registro: " + ex.getMessage());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "registro");
+
+        Thread hiloPersistencia = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(tamanioLote * 24);
+                try (FileChannel canal = FileChannel.open(archivoDatos, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    LoteMuestras lote;
+                    while ((lote = persistencia.entrada.take()) != fin) {
+                        long inicio = System.nanoTime();
+                        buffer.clear();
+                        for (int i = 0; i < lote.tamanio; i++) {
+                            buffer.putInt(lote.placas[i]);
+                            buffer.putLong(lote.tiempos[i]);
+                            buffer.putDouble(lote.temperaturas[i]);
+                            buffer.putShort((short) lote.humedades[i]);
+                            buffer.putShort((short) lote.valoresLDR[i]);
+                        }
+                        buffer.flip();
+                        long inicioEscritura = System.nanoTime();
+                        while (buffer.hasRemaining()) canal.write(buffer);
+                        Metricas.LATENCIA_PERSISTENCIA.observarNanos(System.nanoTime() - inicioEscritura);
+                        persistencia.muestras += lote.tamanio;
+                        persistencia.nanosOcupado += System.nanoTime() - inicio;
+                        libres.put(lote);
+                    }
+                } catch (IOException ex) {
+                    System.err.println("Error en la persistencia: " + ex.getMessage());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "persistencia");
+
+        hiloReglas.start();
+        hiloRegistro.start();
+        hiloPersistencia.start();
+        long inicio = System.nanoTime();
+        for (Thread productor : productores) productor.start();
+
+        TimeUnit.SECONDS.sleep(segundos);
+        corriendo.set(false);
+        for (Thread productor : productores) productor.join();
+        reglas.entrada.put(fin);
+        hiloReglas.join();
+        hiloRegistro.join();
+        hiloPersistencia.join();
+        long duracion = System.nanoTime() - inicio;
+
+        reglas.nanosBloqueadoEntrada = suma(bloqueoProductores) / hilos;   // Promedio por generador
+        registro.nanosBloqueadoEntrada = bloqueoReglas[0];
+        persistencia.nanosBloqueadoEntrada = bloqueoRegistro[0];
+
+        System.out.printf("%d placas, %d hilos generadores, %d s%n", placas, hilos, segundos);
+        System.out.printf("Throughput sostenido: %,.0f muestras/s (%,d muestras)%n",
+                          persistencia.muestras / (duracion / 1e9), persistencia.muestras);
+        System.out.printf("Generadores esperando lotes libres: %.1f%% del tiempo%n",
+                          100.0 * suma(esperaLotesLibres) / hilos / duracion);
+        Etapa cuello = null;
+        for (Etapa etapa : new Etapa[] {reglas, registro, persistencia}) {
+            System.out.printf("  %-12s ocupada %5.1f%%  productor bloqueado %5.1f%%  cola máx %d/%d%n",
+                              etapa.nombre,
+                              100.0 * etapa.nanosOcupado / duracion,
+                              100.0 * etapa.nanosBloqueadoEntrada / duracion,
+                              etapa.profundidadMaxima, capacidadCola);
+            if (cuello == null || etapa.nanosOcupado > cuello.nanosOcupado) cuello = etapa;
+        }
+        System.out.println("Contrapresión originada en la etapa: " + cuello.nombre);
+    }
+
+    private static long suma(long[][] valores) {
+        long total = 0;
+        for (long[] valor : valores) total += valor[0];
+        return total;
+    }
+
+    private static long suma(long[] valores) {
+        long total = 0;
+        for (long valor : valores) total += valor;
+        return total;
+    }
+}
@@ -0,0 +1,520 @@
+package ui_invernadero;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gestor de alertas: elimina duplicados, agrupa repeticiones, limita la
+ * frecuencia por destino y reparte en segundo plano
+ * publicar() solo encola (sin bloqueo) y puede llamarse desde el hilo de
+ * control; la entrada es acotada y si se llena la alerta se descarta y se
+ * cuenta. Un hilo despachador agrupa por clave de condición: la primera
+ * alerta de una clave se entrega enseguida y las repeticiones dentro de la
+ * ventana se resumen en una sola ("... ×37 en 10 min"). Cada destino tiene
+ * su propio hilo, su cola acotada, un cupo de alertas por minuto y
+ * reintentos con espera exponencial si la entrega falla.
+ * @author Nicom
+ */
+public class GestorAlertas {
+
+    public static final String PROPIEDAD_ARCHIVO = "invernadero.alertas";
+    private static final long PERIODO_DESPACHO_MS = 250;
+    private static final int REINTENTOS_MAXIMOS = 5;
+    private static final long ESPERA_INICIAL_MS = 500;
+    private static final int CAPACIDAD_ENTRADA = 4096;       // Alertas sin despachar (unos 250 ms de control muy ruidoso)
+
+    /**
+     * Destino de notificaciones (log, pantalla, archivo, webhook...);
+     * una excepción hace que la alerta se reintente más tarde
+     */
+    public interface Destino {
+        void entregar(Alerta alerta) throws Exception;
+    }
+
+    public static final class Alerta {
+
+        private final String clave;
+        private final String mensaje;
+        private final int repeticiones;           // 0 = primera aparición
+        private final long ventanaMs;
+        private final long tiempoMs;
+
+        Alerta(String clave, String mensaje, int repeticiones, long ventanaMs, long tiempoMs) {
+            this.clave = clave;
+            this.mensaje = mensaje;
+            this.repeticiones = repeticiones;
+            this.ventanaMs = ventanaMs;
+            this.tiempoMs = tiempoMs;
+        }
+
+        public String getClave() {
+            return clave;
+        }
+
+        public String getMensaje() {
+            return mensaje;
+        }
+
+        public int getRepeticiones() {
+            return repeticiones;
+        }
+
+        public long getTiempoMs() {
+            return tiempoMs;
+        }
+
+        // Mensaje con el resumen de repeticiones, si las hubo
+        public String getTexto() {
+            if (repeticiones == 0) return mensaje;
+            long minutos = Math.max(1, Math.round(ventanaMs / 60_000.0));
+            return mensaje + " ×" + repeticiones + " en " + (ventanaMs < 60_000 ? ventanaMs / 1000 + " s" : minutos + " min");
+        }
+    }
+
+    // Condición vista dentro de la ventana actual (solo en el hilo despachador)
+    private static final class Agrupacion {
+        long inicioMs;
+        int repeticiones;
+        String ultimoMensaje;
+    }
+
+    private static final class Entrante {
+        final String clave;                       // null: se deduce del mensaje en el despachador
+        final String mensaje;
+        final long tiempoMs;
+
+        Entrante(String clave, String mensaje, long tiempoMs) {
+            this.clave = clave;
+            this.mensaje = mensaje;
+            this.tiempoMs = tiempoMs;
+        }
+    }
+
+    private final long ventanaMs;
+    private final ConcurrentLinkedQueue<Entrante> entrantes = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger enEntrada = new AtomicInteger();      // Acota entrantes sin bloquear a quien publica
+    private final AtomicInteger desbordadas = new AtomicInteger();
+    private final Map<String, Agrupacion> agrupaciones = new HashMap<>();
+    private final List<Salida> salidas = new ArrayList<>();
+    private final ScheduledExecutorService despachador;
+    private volatile boolean cerrado = false;
+
+    /**
+     * @param ventanaMs ventana de agrupación por clave (p. ej. 10 minutos)
+     */
+    public GestorAlertas(long ventanaMs) {
+        this.ventanaMs = ventanaMs;
+        this.despachador = Executors.newSingleThreadScheduledExecutor(hilos("alertas-despacho"));
+        despachador.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                despachar(System.currentTimeMillis(), false);
+            }
+        }, PERIODO_DESPACHO_MS, PERIODO_DESPACHO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Agrega un destino con su propio cupo; conviene hacerlo antes de publicar
+     * @param porMinuto alertas por minuto que acepta el destino
+     * @param capacidad alertas en espera; al llenarse se descarta la más vieja
+     */
+    public void agregarDestino(String nombre, int porMinuto, int capacidad, Destino destino) {
+        synchronized (salidas) {
+            salidas.add(new Salida(nombre, porMinuto, capacidad, destino));
+        }
+    }
+
+    /**
+     * Encola la alerta sin bloquear; la clave se deduce del mensaje en el
+     * hilo despachador
+     */
+    public void publicar(String mensaje) {
+        publicar(null, mensaje);
+    }
+
+    public void publicar(String clave, String mensaje) {
+        if (cerrado) return;
+        if (enEntrada.incrementAndGet() > CAPACIDAD_ENTRADA) {
+            enEntrada.decrementAndGet();
+            desbordadas.incrementAndGet();
+            Metricas.ALERTAS_DESCARTADAS.incrementar();
+            return;
+        }
+        entrantes.add(new Entrante(clave, mensaje, System.currentTimeMillis()));
+    }
+
+    // Alertas descartadas por entrada llena desde que se creó el gestor
+    public int getDesbordadas() {
+        return desbordadas.get();
+    }
+
+    /**
+     * Clave de condición: el mensaje con los números reemplazados, para que
+     * "Temp: 51.3°C" y "Temp: 51.8°C" cuenten como la misma alerta
+     */
+    public static String clave(String mensaje) {
+        StringBuilder clave = new StringBuilder(mensaje.length());
+        boolean enNumero = false;
+        for (int i = 0; i < mensaje.length(); i++) {
+            char c = mensaje.charAt(i);
+            boolean digito = Character.isDigit(c) || (enNumero && (c == '.' || c == ','));
+            if (digito) {
+                if (!enNumero) clave.append('#');
+            } else {
+                clave.append(c);
+            }
+            enNumero = digito;
+        }
+        return clave.toString();
+    }
+
+    // Hilo despachador
+    private void despachar(long ahora, boolean vaciar) {
+        Entrante entrante;
+        while ((entrante = entrantes.poll()) != null) {
+            enEntrada.decrementAndGet();
+            String clave = entrante.clave != null ? entrante.clave : clave(entrante.mensaje);
+            Agrupacion agrupacion = agrupaciones.get(clave);
+            if (agrupacion == null) {
+                agrupacion = new Agrupacion();
+                agrupacion.inicioMs = entrante.tiempoMs;
+                agrupaciones.put(clave, agrupacion);
+                repartir(new Alerta(clave, entrante.mensaje, 0, ventanaMs, entrante.tiempoMs));
+            } else {
+                agrupacion.repeticiones++;
+                agrupacion.ultimoMensaje = entrante.mensaje;
+                Metricas.ALERTAS_AGRUPADAS.incrementar();
+            }
+        }
+
+        // Fin de ventana: resumen de las repeticiones, o se olvida la clave
+        Iterator<Map.Entry<String, Agrupacion>> it = agrupaciones.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Agrupacion> entrada = it.next();
+            Agrupacion agrupacion = entrada.getValue();
+            if (!vaciar && ahora - agrupacion.inicioMs < ventanaMs) continue;
+            if (agrupacion.repeticiones > 0) {
+                repartir(new Alerta(entrada.getKey(), agrupacion.ultimoMensaje, agrupacion.repeticiones,
+                                    Math.max(ahora - agrupacion.inicioMs, 1000), ahora));
+                agrupacion.inicioMs = ahora;
+                agrupacion.repeticiones = 0;
+            } else {
+                it.remove();
+            }
+        }
+    }
+
+    private void repartir(Alerta alerta) {
+        synchronized (salidas) {
+            for (Salida salida : salidas) {
+                salida.encolar(alerta);
+            }
+        }
+    }
+
+    /**
+     * Entrega los resúmenes pendientes y detiene los hilos (espera hasta
+     * esperaMs). Al cerrar se entrega sin cupo y sin reintentos: lo que un
+     * destino no acepta queda en el log en lugar de perderse en silencio.
+     */
+    public void cerrar(long esperaMs) {
+        cerrado = true;
+        despachador.execute(new Runnable() {
+            @Override
+            public void run() {
+                despachar(System.currentTimeMillis(), true);
+            }
+        });
+        despachador.shutdown();
+        try {
+            despachador.awaitTermination(esperaMs, TimeUnit.MILLISECONDS);
+            synchronized (salidas) {
+                for (Salida salida : salidas) {
+                    salida.cerrar();
+                }
+                for (Salida salida : salidas) {
+                    salida.hilo.awaitTermination(esperaMs, TimeUnit.MILLISECONDS);
+                    salida.registrarPendientes();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPendientes(String destino) {
+        synchronized (salidas) {
+            for (Salida salida : salidas) {
+                if (salida.nombre.equals(destino)) return salida.getPendientes();
+            }
+        }
+        return 0;
+    }
+
+    private static ThreadFactory hilos(final String nombre) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable tarea) {
+                Thread hilo = new Thread(tarea, nombre);
+                hilo.setDaemon(true);
+                return hilo;
+            }
+        };
+    }
+
+    /**
+     * Un destino: cola acotada, cupo por minuto (balde de fichas) y reintentos
+     */
+    private static final class Salida {
+
+        final String nombre;
+        final Destino destino;
+        final ScheduledExecutorService hilo;
+        private final int capacidad;
+        private final double fichasPorMs;
+        private final double fichasMaximas;
+
+        // Cola: la llena el despachador, la vacía el hilo del destino
+        private final ArrayDeque<Alerta> cola = new ArrayDeque<>();
+        private int descartadas = 0;
+
+        // Solo en el hilo del destino
+        private double fichas;
+        private long ultimaRecargaMs = System.currentTimeMillis();
+        private int intentos = 0;
+        private final AtomicInteger programadas = new AtomicInteger();
+        private volatile boolean cerrando = false;
+
+        Salida(String nombre, int porMinuto, int capacidad, Destino destino) {
+            this.nombre = nombre;
+            this.destino = destino;
+            this.capacidad = capacidad;
+            this.fichasPorMs = porMinuto / 60_000.0;
+            this.fichasMaximas = Math.max(1, porMinuto / 6.0);    // Ráfaga: hasta 10 s de cupo
+            this.fichas = fichasMaximas;
+            this.hilo = Executors.newSingleThreadScheduledExecutor(hilos("alertas-" + nombre));
+        }
+
+        void encolar(Alerta alerta) {
+            synchronized (cola) {
+                if (cola.size() == capacidad) {
+                    cola.poll();
+                    descartadas++;
+                    Metricas.ALERTAS_DESCARTADAS.incrementar();
+                }
+                cola.add(alerta);
+            }
+            programar(0);
+        }
+
+        int getPendientes() {
+            synchronized (cola) {
+                return cola.size();
+            }
+        }
+
+        // Un último intento con todo lo que queda, después el hilo termina
+        void cerrar() {
+            cerrando = true;
+            try {
+                hilo.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        entregarPendientes();
+                    }
+                });
+            } catch (java.util.concurrent.RejectedExecutionException ex) {
+                // Ya cerrado
+            }
+            hilo.shutdown();
+        }
+
+        // Después de cerrar: lo que el destino no aceptó va al log
+        void registrarPendientes() {
+            java.util.logging.Logger registro = java.util.logging.Logger.getLogger(GestorAlertas.class.getName());
+            if (!hilo.isTerminated()) {
+                registro.log(java.util.logging.Level.WARNING, "{0} alertas sin entregar en {1}: el destino no terminó a tiempo",
+                             new Object[] {getPendientes(), nombre});
+                return;
+            }
+            synchronized (cola) {
+                Alerta alerta;
+                while ((alerta = cola.poll()) != null) {
+                    registro.log(java.util.logging.Level.WARNING, "Alerta sin entregar en {0} al cerrar: {1}",
+                                 new Object[] {nombre, alerta.getTexto()});
+                    Metricas.ALERTAS_DESCARTADAS.incrementar();
+                }
+                if (descartadas > 0) {
+                    registro.log(java.util.logging.Level.WARNING, "{0} alertas descartadas en {1} por cola llena",
+                                 new Object[] {descartadas, nombre});
+                    descartadas = 0;
+                }
+            }
+        }
+
+        // Una sola entrega programada a la vez
+        private void programar(long esperaMs) {
+            if (programadas.getAndIncrement() > 0) return;
+            try {
+                hilo.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        programadas.set(0);
+                        entregarPendientes();
+                    }
+                }, esperaMs, TimeUnit.MILLISECONDS);
+            } catch (java.util.concurrent.RejectedExecutionException ex) {
+                // Destino cerrado: lo pendiente lo registra registrarPendientes()
+            }
+        }
+
+        private void entregarPendientes() {
+            while (true) {
+                long ahora = System.currentTimeMillis();
+                fichas = Math.min(fichasMaximas, fichas + (ahora - ultimaRecargaMs) * fichasPorMs);
+                ultimaRecargaMs = ahora;
+
+                Alerta alerta;
+                int omitidas;
+                synchronized (cola) {
+                    alerta = cola.peek();
+                    omitidas = descartadas;
+                }
+                if (alerta == null) return;
+                if (fichas < 1 && !cerrando) {
+                    programar((long) Math.ceil((1 - fichas) / fichasPorMs));
+                    return;
+                }
+                if (omitidas > 0) {
+                    alerta = new Alerta(alerta.clave, alerta.mensaje + " (" + omitidas + " alertas anteriores descartadas)",
+                                        alerta.repeticiones, alerta.ventanaMs, alerta.tiempoMs);
+                }
+                try {
+                    destino.entregar(alerta);
+                    fichas -= 1;
+                    intentos = 0;
+                    Metricas.ALERTAS_ENTREGADAS.incrementar();
+                    synchronized (cola) {
+                        cola.poll();
+                        descartadas -= omitidas;
+                    }
+                } catch (Exception ex) {
+                    if (cerrando) return;                  // Sin reintentos: queda para registrarPendientes()
+                    if (++intentos > REINTENTOS_MAXIMOS) {
+                        java.util.logging.Logger.getLogger(GestorAlertas.class.getName()).log(java.util.logging.Level.WARNING,
+                                "Alerta descartada tras " + REINTENTOS_MAXIMOS + " reintentos en " + nombre + ": " + alerta.getTexto(), ex);
+                        intentos = 0;
+                        Metricas.ALERTAS_DESCARTADAS.incrementar();
+                        synchronized (cola) {
+                            cola.poll();
+                            descartadas -= omitidas;       // Ya figuran en el texto registrado
+                        }
+                        continue;
+                    }
+                    Metricas.ALERTAS_REINTENTOS.incrementar();
+                    programar(ESPERA_INICIAL_MS << (intentos - 1));
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Destino de archivo (sustituto local de un webhook): una línea por alerta
+     * en -Dinvernadero.alertas o ~/.invernadero/alertas.log
+     */
+    public static Destino archivo() {
+        final Path archivo = Paths.get(System.getProperty(PROPIEDAD_ARCHIVO,
+                Paths.get(System.getProperty("user.home"), ".invernadero", "alertas.log").toString()));
+        return new Destino() {
+            private final SimpleDateFormat formato = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
+
+            @Override
+            public void entregar(Alerta alerta) throws Exception {
+                if (archivo.getParent() != null) {
+                    Files.createDirectories(archivo.getParent());
+                }
+                String linea = "[" + formato.format(new Date(alerta.getTiempoMs())) + "] " + alerta.getTexto() + System.lineSeparator();
+                Files.write(archivo, linea.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+        };
+    }
+
+    /**
+     * Condición oscilante contra un destino lento y otro que falla:
+     * java ui_invernadero.GestorAlertas [alertas]
+     * Mide lo que tarda publicar() en el hilo que simula el control.
+     */
+    public static void main(String args[]) throws InterruptedException {
+        int cantidad = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        GestorAlertas gestor = new GestorAlertas(2_000);
+        final AtomicInteger lentas = new AtomicInteger();
+        final AtomicInteger fallidas = new AtomicInteger();
+        final List<String> recibidas = new ArrayList<>();
+        gestor.agregarDestino("lento", 600, 64, new Destino() {
+            @Override
+            public void entregar(Alerta alerta) throws Exception {
+                Thread.sleep(50);                                  // Webhook lento
+                lentas.incrementAndGet();
+            }
+        });
+        gestor.agregarDestino("inestable", 600, 64, new Destino() {
+            private int llamadas = 0;
+
+            @Override
+            public void entregar(Alerta alerta) throws Exception {
+                if (++llamadas % 3 != 0) {
+                    fallidas.incrementAndGet();
+                    throw new java.io.IOException("Sin conexión");
+                }
+                synchronized (recibidas) {
+                    recibidas.add(alerta.getTexto());
+                }
+            }
+        });
+
+        // Control: ventilador oscilando y temperatura crítica repetida
+        long peor = 0;
+        long inicio = System.nanoTime();
+        for (int i = 0; i < cantidad; i++) {
+            long t0 = System.nanoTime();
+            switch (i % 3) {
+                case 0: gestor.publicar("🌀 Ventilador activado automáticamente (Temp: " + (51 + i % 10 / 10.0) + "°C)"); break;
+                case 1: gestor.publicar("🌀 Ventilador desactivado automáticamente (Temp: 50.9°C ≤ 50.0°C)"); break;
+                default: gestor.publicar("🚨 Buzzer activado automáticamente (Temp: 56." + i % 10 + "°C > 56.0°C)"); break;
+            }
+            if (i >= 3) peor = Math.max(peor, System.nanoTime() - t0);   // La primera de cada mensaje arma su concatenación
+            if (i % 100_000 == 0) Thread.sleep(300);               // Varias ventanas de agrupación
+        }
+        double nsPorAlerta = (double) (System.nanoTime() - inicio - (cantidad / 100_000 + 1) * 300_000_000L) / cantidad;
+        Thread.sleep(2_500);
+        gestor.cerrar(10_000);
+
+        System.out.printf("%,d alertas publicadas: %.0f ns/alerta, peor publicar() %.1f µs, %,d descartadas por entrada llena%n",
+                          cantidad, nsPorAlerta, peor / 1000.0, gestor.getDesbordadas());
+        System.out.printf("Destino lento: %d entregas; destino inestable: %d entregas, %d fallas reintentadas%n",
+                          lentas.get(), recibidas.size(), fallidas.get());
+        synchronized (recibidas) {
+            for (String texto : recibidas) {
+                System.out.println("  " + texto);
+            }
+        }
+    }
+}
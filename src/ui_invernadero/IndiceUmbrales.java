@@ -0,0 +1,304 @@
+package ui_invernadero;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Índice de cruces de umbral para programas de reglas grandes
+ * Guarda los umbrales de cada sensor ordenados en arreglos primitivos y, con
+ * el valor anterior y el actual, busca por búsqueda binaria solo los
+ * umbrales cruzados; únicamente se reevalúan las reglas que dependen de
+ * ellos. El costo por muestra es O(log T + cruzados) en vez de O(reglas).
+ * Da el mismo resultado que ProgramaReglas.evaluar(): para cada actuador
+ * manda la última regla verdadera que lo menciona.
+ * @author Nicom
+ */
+public final class IndiceUmbrales {
+
+    private static final int SENSORES = 3;          // temp, hum, ldr (ReglasDSL.Comparacion.sensor)
+    private static final Actuador[] ACTUADORES = Actuador.values();
+
+    private final int reglas;
+    private final ReglasDSL.Condicion[] condiciones;
+    private final int[] encender;
+    private final int[] apagar;
+
+    // Por sensor: umbrales distintos ordenados y reglas de cada umbral (CSR)
+    private final double[][] umbrales = new double[SENSORES][];
+    private final int[][] inicioReglas = new int[SENSORES][];
+    private final int[][] reglasPorUmbral = new int[SENSORES][];
+
+    // Estado incremental
+    private final boolean[] cumple;
+    private final long[][] verdaderas;              // Por actuador: bits de reglas verdaderas que lo mencionan
+    private final int[] visitada;
+    private int ronda = 0;
+    private final double[] anterior = new double[SENSORES];
+    private boolean inicializado = false;
+    private int mascara = 0;
+    private int evaluadas = 0;
+
+    public IndiceUmbrales(ProgramaReglas programa) {
+        List<ReglasDSL.Regla> analizadas = programa.getAnalizadas();
+        reglas = analizadas.size();
+        condiciones = new ReglasDSL.Condicion[reglas];
+        encender = new int[reglas];
+        apagar = new int[reglas];
+        cumple = new boolean[reglas];
+        visitada = new int[reglas];
+        verdaderas = new long[ACTUADORES.length][(reglas + 63) >>> 6];
+
+        // Pares (umbral, regla) por sensor, sin repetir la regla en un mismo umbral
+        List<List<double[]>> pares = new ArrayList<>();
+        for (int s = 0; s < SENSORES; s++) pares.add(new ArrayList<double[]>());
+        List<ReglasDSL.Comparacion> comparaciones = new ArrayList<>();
+        for (int r = 0; r < reglas; r++) {
+            ReglasDSL.Regla regla = analizadas.get(r);
+            condiciones[r] = regla.condicion;
+            encender[r] = regla.encender;
+            apagar[r] = regla.apagar;
+            comparaciones.clear();
+            regla.condicion.comparaciones(comparaciones);
+            for (ReglasDSL.Comparacion comparacion : comparaciones) {
+                pares.get(comparacion.sensor).add(new double[] {comparacion.valor, r});
+            }
+        }
+        for (int s = 0; s < SENSORES; s++) {
+            construirSensor(s, pares.get(s));
+        }
+    }
+
+    public static IndiceUmbrales compilar(String texto) {
+        return new IndiceUmbrales(ReglasDSL.compilar(texto));
+    }
+
+    private void construirSensor(int sensor, List<double[]> pares) {
+        double[][] ordenados = pares.toArray(new double[0][]);
+        Arrays.sort(ordenados, new java.util.Comparator<double[]>() {
+            @Override
+            public int compare(double[] a, double[] b) {
+                int porUmbral = Double.compare(a[0], b[0]);
+                return porUmbral != 0 ? porUmbral : Double.compare(a[1], b[1]);
+            }
+        });
+        double[] distintos = new double[ordenados.length];
+        int[] inicio = new int[ordenados.length + 1];
+        int[] ids = new int[ordenados.length];
+        int t = -1;
+        int n = 0;
+        for (double[] par : ordenados) {
+            if (t < 0 || par[0] != distintos[t]) {
+                distintos[++t] = par[0];
+                inicio[t] = n;
+            } else if (ids[n - 1] == (int) par[1]) {
+                continue;                           // Misma regla, mismo umbral
+            }
+            ids[n++] = (int) par[1];
+        }
+        umbrales[sensor] = Arrays.copyOf(distintos, t + 1);
+        inicio[t + 1] = n;
+        inicioReglas[sensor] = Arrays.copyOf(inicio, t + 2);
+        reglasPorUmbral[sensor] = Arrays.copyOf(ids, n);
+    }
+
+    /**
+     * Aplica las reglas a una nueva muestra
+     * @return máscara de actuadores resultante
+     */
+    public int evaluar(double temperatura, int humedad, int ldr) {
+        if (!inicializado) {
+            for (int r = 0; r < reglas; r++) {
+                marcar(r, probar(r, temperatura, humedad, ldr));
+            }
+            evaluadas = reglas;
+            anterior[0] = temperatura;
+            anterior[1] = humedad;
+            anterior[2] = ldr;
+            inicializado = true;
+            recalcular(-1);
+            return mascara;
+        }
+
+        ronda++;
+        evaluadas = 0;
+        int afectados = 0;
+        for (int s = 0; s < SENSORES; s++) {
+            double actual = s == 0 ? temperatura : s == 1 ? humedad : ldr;
+            double previo = anterior[s];
+            if (actual == previo) continue;
+            anterior[s] = actual;
+            double[] lista = umbrales[s];
+            if (lista.length == 0) continue;
+
+            // Umbrales en [min, max]: las únicas comparaciones que pueden cambiar
+            double desde = Math.min(previo, actual);
+            double hasta = Math.max(previo, actual);
+            int[] inicio = inicioReglas[s];
+            int[] ids = reglasPorUmbral[s];
+            for (int u = primeroMayorIgual(lista, desde); u < lista.length && lista[u] <= hasta; u++) {
+                for (int i = inicio[u]; i < inicio[u + 1]; i++) {
+                    int r = ids[i];
+                    if (visitada[r] == ronda) continue;
+                    visitada[r] = ronda;
+                    evaluadas++;
+                    boolean ahora = probar(r, temperatura, humedad, ldr);
+                    if (ahora != cumple[r]) {
+                        marcar(r, ahora);
+                        afectados |= encender[r] | apagar[r];
+                    }
+                }
+            }
+        }
+        if (afectados != 0) recalcular(afectados);
+        return mascara;
+    }
+
+    /**
+     * Estado fijado desde afuera (restauración, apagado manual): los
+     * actuadores con alguna regla verdadera vuelven a quedar como dice la regla
+     */
+    public void reiniciar(int mascara) {
+        this.mascara = mascara;
+        if (inicializado) recalcular(-1);
+    }
+
+    // Umbrales distintos de un sensor (0 temp, 1 hum, 2 ldr), ordenados
+    public double[] getUmbrales(int sensor) {
+        return umbrales[sensor].clone();
+    }
+
+    public int getMascara() {
+        return mascara;
+    }
+
+    public int getTamanio() {
+        return reglas;
+    }
+
+    // Reglas reevaluadas en la última muestra
+    public int getEvaluadas() {
+        return evaluadas;
+    }
+
+    // Interpretada: con pocas reglas por muestra no compensa un MethodHandle por regla
+    private boolean probar(int regla, double temperatura, int humedad, int ldr) {
+        return condiciones[regla].interpretar(temperatura, humedad, ldr);
+    }
+
+    private void marcar(int regla, boolean verdadera) {
+        cumple[regla] = verdadera;
+        int menciona = encender[regla] | apagar[regla];
+        for (int a = 0; a < ACTUADORES.length; a++) {
+            if ((menciona & (1 << a)) == 0) continue;
+            if (verdadera) {
+                verdaderas[a][regla >>> 6] |= 1L << regla;
+            } else {
+                verdaderas[a][regla >>> 6] &= ~(1L << regla);
+            }
+        }
+    }
+
+    // La última regla verdadera que menciona al actuador decide su estado
+    private void recalcular(int actuadores) {
+        for (int a = 0; a < ACTUADORES.length; a++) {
+            int bit = 1 << a;
+            if ((actuadores & bit) == 0) continue;
+            int ultima = ultimaVerdadera(verdaderas[a]);
+            if (ultima < 0) continue;               // Ninguna regla lo menciona: conserva su estado
+            if ((encender[ultima] & bit) != 0) {
+                mascara |= bit;
+            } else {
+                mascara &= ~bit;
+            }
+        }
+    }
+
+    private static int ultimaVerdadera(long[] bits) {
+        for (int w = bits.length - 1; w >= 0; w--) {
+            if (bits[w] != 0) return (w << 6) + 63 - Long.numberOfLeadingZeros(bits[w]);
+        }
+        return -1;
+    }
+
+    private static int primeroMayorIgual(double[] lista, double valor) {
+        int bajo = 0;
+        int alto = lista.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (lista[medio] < valor) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    /**
+     * Benchmark contra la evaluación completa: java ui_invernadero.IndiceUmbrales [muestras]
+     * Sensores con deriva lenta (como en el invernadero) y 100, 1.000 y
+     * 10.000 reglas; verifica que ambos dan la misma máscara en cada muestra.
+     */
+    public static void main(String args[]) {
+        int muestras = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        for (int cantidad : new int[] {100, 1_000, 10_000}) {
+            SplittableRandom aleatorio = new SplittableRandom(cantidad);
+            List<ReglasDSL.Regla> analizadas = ReglasDSL.analizar(ReglasDSL.reglasAleatorias(cantidad, aleatorio));
+
+            // Lecturas: caminata aleatoria con el ruido típico de cada sensor
+            double[] temperaturas = new double[muestras];
+            int[] humedades = new int[muestras];
+            int[] valoresLDR = new int[muestras];
+            double temperatura = 50;
+            int humedad = 500;
+            int ldr = 500;
+            for (int i = 0; i < muestras; i++) {
+                temperatura = Math.max(35, Math.min(70, temperatura + (aleatorio.nextDouble() - 0.5) * 0.4));
+                humedad = Math.max(250, Math.min(750, humedad + aleatorio.nextInt(7) - 3));
+                ldr = Math.max(250, Math.min(750, ldr + aleatorio.nextInt(7) - 3));
+                temperaturas[i] = Math.round(temperatura * 10) / 10.0;     // Resolución del protocolo serie
+                humedades[i] = humedad;
+                valoresLDR[i] = ldr;
+            }
+
+            // Referencia: todas las reglas en cada muestra
+            int[] esperadas = new int[muestras];
+            int completa = 0;
+            long inicio = 0;
+            for (int v = 0; v < 2; v++) {                   // Primera vuelta: calentamiento
+                if (v == 1) inicio = System.nanoTime();
+                completa = 0;
+                for (int i = 0; i < muestras; i++) {
+                    for (int r = 0; r < analizadas.size(); r++) {
+                        ReglasDSL.Regla regla = analizadas.get(r);
+                        if (regla.condicion.interpretar(temperaturas[i], humedades[i], valoresLDR[i])) {
+                            completa = (completa | regla.encender) & ~regla.apagar;
+                        }
+                    }
+                    esperadas[i] = completa;
+                }
+            }
+            double nsCompleta = (double) (System.nanoTime() - inicio) / muestras;
+
+            long evaluadas = 0;
+            double nsIndice = 0;
+            for (int v = 0; v < 2; v++) {
+                IndiceUmbrales indice = new IndiceUmbrales(new ProgramaReglas(null, analizadas));
+                evaluadas = 0;
+                inicio = System.nanoTime();
+                for (int i = 0; i < muestras; i++) {
+                    int obtenida = indice.evaluar(temperaturas[i], humedades[i], valoresLDR[i]);
+                    evaluadas += indice.getEvaluadas();
+                    if (obtenida != esperadas[i]) {
+                        throw new IllegalStateException("Diferencia con la evaluación completa en la muestra " + i);
+                    }
+                }
+                nsIndice = (double) (System.nanoTime() - inicio) / muestras;
+            }
+            System.out.printf("%,6d reglas: completa %,9.0f ns/muestra, índice %,7.0f ns/muestra (%.1f reglas reevaluadas por muestra, %.0fx)%n",
+                              cantidad, nsCompleta, nsIndice, (double) evaluadas / muestras, nsCompleta / nsIndice);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ui_invernadero;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lote de muestras de varias placas Arduino en arreglos primitivos
+ * Se reutiliza entre etapas para no crear un objeto por muestra.
+ * @author Nicom
+ */
+public class LoteMuestras {
+
+    final int[] placas;
+    final long[] tiempos;
+    final double[] temperaturas;
+    final int[] humedades;
+    final int[] valoresLDR;
+    int tamanio = 0;
+
+    // Mensajes de transición producidos por las reglas para este lote
+    final List<String> eventos = new ArrayList<>();
+
+    public LoteMuestras(int capacidad) {
+        placas = new int[capacidad];
+        tiempos = new long[capacidad];
+        temperaturas = new double[capacidad];
+        humedades = new int[capacidad];
+        valoresLDR = new int[capacidad];
+    }
+
+    public void agregar(int placa, long tiempoMs, double temperaturaLM35, int humedadAnalogica, int valorLDR) {
+        placas[tamanio] = placa;
+        tiempos[tamanio] = tiempoMs;
+        temperaturas[tamanio] = temperaturaLM35;
+        humedades[tamanio] = humedadAnalogica;
+        valoresLDR[tamanio] = valorLDR;
+        tamanio++;
+    }
+
+    public void limpiar() {
+        tamanio = 0;
+        eventos.clear();
+    }
+
+    public boolean isLleno() {
+        return tamanio == placas.length;
+    }
+
+    public int getCapacidad() {
+        return placas.length;
+    }
+
+    public int getTamanio() {
+        return tamanio;
+    }
+
+    public int getPlaca(int i) {
+        return placas[i];
+    }
+
+    public long getTiempo(int i) {
+        return tiempos[i];
+    }
+
+    public double getTemperatura(int i) {
+        return temperaturas[i];
+    }
+
+    public int getHumedad(int i) {
+        return humedades[i];
+    }
+
+    public int getValorLDR(int i) {
+        return valoresLDR[i];
+    }
+
+    public List<String> getEventos() {
+        return eventos;
+    }
+}
@@ -0,0 +1,291 @@
+package ui_invernadero;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas de ejecución del sistema en formato de texto de Prometheus
+ * Los contadores e histogramas usan LongAdder (contadores segmentados), así
+ * que actualizarlos en el camino caliente cuesta unos pocos ns y la lectura
+ * para exponerlos nunca bloquea a quien los incrementa.
+ * @author Nicom
+ */
+public final class Metricas {
+
+    private static final List<Metrica> registradas = new CopyOnWriteArrayList<>();
+
+    // Muestras ingeridas por canal
+    public static final Contador MUESTRAS_TEMPERATURA = contador("invernadero_muestras_total", "Muestras de sensores ingeridas por canal", "canal=\"temperatura\"");
+    public static final Contador MUESTRAS_HUMEDAD = contador("invernadero_muestras_total", "Muestras de sensores ingeridas por canal", "canal=\"humedad\"");
+    public static final Contador MUESTRAS_LDR = contador("invernadero_muestras_total", "Muestras de sensores ingeridas por canal", "canal=\"ldr\"");
+
+    // Evaluaciones del motor de reglas
+    public static final Contador EVALUACIONES_REGLAS = contador("invernadero_evaluaciones_reglas_total", "Evaluaciones del control automático", "");
+
+    // Muestras marcadas por el DetectorAnomalias, por tipo
+    private static final String AYUDA_ANOMALIAS = "Muestras con anomalías de sensores por tipo";
+    public static final Contador ANOMALIAS_ESTANCADO = contador("invernadero_anomalias_total", AYUDA_ANOMALIAS, "tipo=\"estancado\"");
+    public static final Contador ANOMALIAS_VELOCIDAD = contador("invernadero_anomalias_total", AYUDA_ANOMALIAS, "tipo=\"velocidad\"");
+    public static final Contador ANOMALIAS_SATURADO = contador("invernadero_anomalias_total", AYUDA_ANOMALIAS, "tipo=\"saturado\"");
+    public static final Contador ANOMALIAS_PICO = contador("invernadero_anomalias_total", AYUDA_ANOMALIAS, "tipo=\"pico\"");
+
+    // Protocolo binario: tramas faltantes por secuencia y tramas con CRC incorrecto
+    public static final Contador TRAMAS_PERDIDAS = contador("invernadero_tramas_total", "Tramas binarias con problemas", "resultado=\"perdida\"");
+    public static final Contador TRAMAS_CORRUPTAS = contador("invernadero_tramas_total", "Tramas binarias con problemas", "resultado=\"corrupta\"");
+
+    // Alertas del GestorAlertas
+    public static final Contador ALERTAS_ENTREGADAS = contador("invernadero_alertas_total", "Alertas por resultado", "resultado=\"entregada\"");
+    public static final Contador ALERTAS_AGRUPADAS = contador("invernadero_alertas_total", "Alertas por resultado", "resultado=\"agrupada\"");
+    public static final Contador ALERTAS_DESCARTADAS = contador("invernadero_alertas_total", "Alertas por resultado", "resultado=\"descartada\"");
+    public static final Contador ALERTAS_REINTENTOS = contador("invernadero_alertas_reintentos_total", "Entregas de alertas fallidas y reintentadas", "");
+
+    // Comandos de actuadores del CanalComandos
+    public static final Contador COMANDOS_CONFIRMADOS = contador("invernadero_comandos_total", "Comandos de actuadores por resultado", "resultado=\"confirmado\"");
+    public static final Contador COMANDOS_FALLIDOS = contador("invernadero_comandos_total", "Comandos de actuadores por resultado", "resultado=\"fallido\"");
+    public static final Contador COMANDOS_REENVIOS = contador("invernadero_comandos_reenvios_total", "Comandos reenviados por falta de confirmación", "");
+
+    // Transiciones de actuadores por pin (indexado por Actuador.ordinal())
+    private static final Contador[] TRANSICIONES = new Contador[Actuador.values().length];
+
+    // Latencias en segundos
+    public static final Histograma RETRASO_EDT = histograma("invernadero_retraso_edt_segundos", "Retraso del hilo de eventos de Swing", "",
+            0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1.0);
+    public static final Histograma LATENCIA_PERSISTENCIA = histograma("invernadero_persistencia_escritura_segundos", "Latencia de escritura de persistencia", "",
+            0.0001, 0.0005, 0.001, 0.005, 0.01, 0.05, 0.1, 0.5);
+    public static final Histograma IDA_VUELTA_COMANDOS = histograma("invernadero_comandos_ida_vuelta_segundos", "Del envío de un comando a su confirmación", "",
+            0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1.0);
+
+    static {
+        for (Actuador actuador : Actuador.values()) {
+            TRANSICIONES[actuador.ordinal()] = contador("invernadero_transiciones_actuador_total", "Cambios de estado de actuadores por pin",
+                    "pin=\"" + actuador.getPin() + "\",actuador=\"" + actuador.name().toLowerCase() + "\"");
+        }
+        final MemoryMXBean memoria = ManagementFactory.getMemoryMXBean();
+        medidor("invernadero_heap_usado_bytes", "Memoria heap en uso", "", new Medidor() {
+            @Override
+            public double valor() {
+                return memoria.getHeapMemoryUsage().getUsed();
+            }
+        });
+        medidor("invernadero_heap_maximo_bytes", "Memoria heap máxima", "", new Medidor() {
+            @Override
+            public double valor() {
+                return memoria.getHeapMemoryUsage().getMax();
+            }
+        });
+    }
+
+    private Metricas() {
+    }
+
+    /**
+     * Valor instantáneo calculado al momento de exponer (gauge)
+     */
+    public interface Medidor {
+        double valor();
+    }
+
+    /**
+     * Una serie registrada; sirve para retirarla sin tocar las de otros
+     * componentes con el mismo nombre
+     */
+    public abstract static class Metrica {
+        final String nombre;
+        final String ayuda;
+        final String etiquetas;
+
+        Metrica(String nombre, String ayuda, String etiquetas) {
+            this.nombre = nombre;
+            this.ayuda = ayuda;
+            this.etiquetas = etiquetas;
+        }
+
+        abstract String tipo();
+
+        abstract void exponer(StringBuilder salida);
+    }
+
+    public static final class Contador extends Metrica {
+        private final LongAdder valor = new LongAdder();
+
+        Contador(String nombre, String ayuda, String etiquetas) {
+            super(nombre, ayuda, etiquetas);
+        }
+
+        public void incrementar() {
+            valor.increment();
+        }
+
+        public void sumar(long cantidad) {
+            valor.add(cantidad);
+        }
+
+        public long getValor() {
+            return valor.sum();
+        }
+
+        @Override
+        String tipo() {
+            return "counter";
+        }
+
+        @Override
+        void exponer(StringBuilder salida) {
+            linea(salida, nombre, etiquetas, valor.sum());
+        }
+    }
+
+    public static final class Histograma extends Metrica {
+        private final double[] limites;
+        private final LongAdder[] cubetas;        // No acumuladas; se acumulan al exponer
+        private final LongAdder cuenta = new LongAdder();
+        private final DoubleAdder suma = new DoubleAdder();
+
+        Histograma(String nombre, String ayuda, String etiquetas, double[] limites) {
+            super(nombre, ayuda, etiquetas);
+            this.limites = limites.clone();
+            this.cubetas = new LongAdder[limites.length + 1];
+            for (int i = 0; i < cubetas.length; i++) cubetas[i] = new LongAdder();
+        }
+
+        public void observar(double valor) {
+            int i = 0;
+            while (i < limites.length && valor > limites[i]) i++;
+            cubetas[i].increment();
+            cuenta.increment();
+            suma.add(valor);
+        }
+
+        public void observarNanos(long nanos) {
+            observar(nanos / 1e9);
+        }
+
+        public long getCuenta() {
+            return cuenta.sum();
+        }
+
+        @Override
+        String tipo() {
+            return "histogram";
+        }
+
+        @Override
+        void exponer(StringBuilder salida) {
+            String separador = etiquetas.isEmpty() ? "" : etiquetas + ",";
+            long acumulado = 0;
+            for (int i = 0; i < limites.length; i++) {
+                acumulado += cubetas[i].sum();
+                linea(salida, nombre + "_bucket", separador + "le=\"" + limites[i] + "\"", acumulado);
+            }
+            acumulado += cubetas[limites.length].sum();
+            linea(salida, nombre + "_bucket", separador + "le=\"+Inf\"", acumulado);
+            linea(salida, nombre + "_sum", etiquetas, suma.sum());
+            linea(salida, nombre + "_count", etiquetas, acumulado);
+        }
+    }
+
+    private static final class MedidorRegistrado extends Metrica {
+        private final Medidor medidor;
+
+        MedidorRegistrado(String nombre, String ayuda, String etiquetas, Medidor medidor) {
+            super(nombre, ayuda, etiquetas);
+            this.medidor = medidor;
+        }
+
+        @Override
+        String tipo() {
+            return "gauge";
+        }
+
+        @Override
+        void exponer(StringBuilder salida) {
+            linea(salida, nombre, etiquetas, medidor.valor());
+        }
+    }
+
+    public static Contador contador(String nombre, String ayuda, String etiquetas) {
+        Contador contador = new Contador(nombre, ayuda, etiquetas);
+        registradas.add(contador);
+        return contador;
+    }
+
+    public static Histograma histograma(String nombre, String ayuda, String etiquetas, double... limites) {
+        Histograma histograma = new Histograma(nombre, ayuda, etiquetas, limites);
+        registradas.add(histograma);
+        return histograma;
+    }
+
+    public static Metrica medidor(String nombre, String ayuda, String etiquetas, Medidor medidor) {
+        MedidorRegistrado registrado = new MedidorRegistrado(nombre, ayuda, etiquetas, medidor);
+        registradas.add(registrado);
+        return registrado;
+    }
+
+    /**
+     * Quita una serie (ej. al cerrar el componente que la registró); las de
+     * otras zonas o instancias con el mismo nombre siguen expuestas
+     */
+    public static void retirar(Metrica metrica) {
+        registradas.remove(metrica);
+    }
+
+    public static Contador transiciones(Actuador actuador) {
+        return TRANSICIONES[actuador.ordinal()];
+    }
+
+    // Una muestra completa del Arduino (LM35, Humedad y LDR)
+    public static void muestraRecibida() {
+        MUESTRAS_TEMPERATURA.incrementar();
+        MUESTRAS_HUMEDAD.incrementar();
+        MUESTRAS_LDR.incrementar();
+    }
+
+    // Banderas de DetectorAnomalias.evaluar() (cualquier canal)
+    public static void anomalias(int banderas) {
+        int tipos = banderas | banderas >>> 4 | banderas >>> 8;
+        if ((tipos & DetectorAnomalias.ESTANCADO) != 0) ANOMALIAS_ESTANCADO.incrementar();
+        if ((tipos & DetectorAnomalias.VELOCIDAD) != 0) ANOMALIAS_VELOCIDAD.incrementar();
+        if ((tipos & DetectorAnomalias.SATURADO) != 0) ANOMALIAS_SATURADO.incrementar();
+        if ((tipos & DetectorAnomalias.PICO) != 0) ANOMALIAS_PICO.incrementar();
+    }
+
+    /**
+     * Texto de exposición de Prometheus (versión 0.0.4) con todas las métricas
+     */
+    public static String exponer() {
+        StringBuilder salida = new StringBuilder(4096);
+        List<Metrica> pendientes = new ArrayList<>(registradas);
+        for (int i = 0; i < pendientes.size(); i++) {
+            Metrica metrica = pendientes.get(i);
+            if (metrica == null) continue;
+            // HELP/TYPE una sola vez por familia, aunque sus series se hayan registrado en distintos momentos
+            salida.append("# HELP ").append(metrica.nombre).append(' ').append(metrica.ayuda).append('\n');
+            salida.append("# TYPE ").append(metrica.nombre).append(' ').append(metrica.tipo()).append('\n');
+            for (int j = i; j < pendientes.size(); j++) {
+                Metrica serie = pendientes.get(j);
+                if (serie != null && serie.nombre.equals(metrica.nombre)) {
+                    serie.exponer(salida);
+                    pendientes.set(j, null);
+                }
+            }
+        }
+        return salida.toString();
+    }
+
+    private static void linea(StringBuilder salida, String nombre, String etiquetas, double valor) {
+        salida.append(nombre);
+        if (!etiquetas.isEmpty()) salida.append('{').append(etiquetas).append('}');
+        salida.append(' ');
+        if (valor == Math.rint(valor) && !Double.isInfinite(valor)) {
+            salida.append((long) valor);
+        } else {
+            salida.append(valor);
+        }
+        salida.append('\n');
+    }
+}
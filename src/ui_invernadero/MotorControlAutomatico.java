@@ -0,0 +1,407 @@
+package ui_invernadero;
+
+/**
+ * Motor de decisión del Control Automático - Lógica exacta del Arduino
+ * Separado de la interfaz para poder reutilizarlo en la pantalla y en la
+ * reproducción de telemetría grabada.
+ * @author Nicom
+ */
+public class MotorControlAutomatico {
+
+    private static final Actuador[] ACTUADORES = Actuador.values();
+    private static final long PERIODO_MINIMO_MS = 250;      // Dimensiona las ventanas
+    private static final double TAU_NIVEL_SEG = 20.0;       // Suavizado del pronóstico de temperatura
+    private static final double TAU_PENDIENTE_SEG = 60.0;
+
+    /**
+     * Cómo se comparan los sensores con los umbrales
+     * SOSTENIDO: todas las lecturas de la ventana del mismo lado del umbral
+     * PROMEDIO / MAXIMO: el promedio o el pico de la ventana
+     */
+    public enum ModoVentana {
+        INSTANTANEO("Instantáneo"),
+        SOSTENIDO("Sostenido"),
+        PROMEDIO("Promedio"),
+        MAXIMO("Máximo");
+
+        private final String etiqueta;
+
+        ModoVentana(String etiqueta) {
+            this.etiqueta = etiqueta;
+        }
+
+        @Override
+        public String toString() {
+            return etiqueta;
+        }
+    }
+
+    // Umbrales configurables (valores por defecto del Arduino)
+    private double tempNormal = 50.0;             // ≤50°C normal
+    private double tempVentilador = 51.0;         // 51-55°C ventilador
+    private double tempBuzzer = 56.0;             // >56°C buzzer
+    private int umbralHumedad = 500;              // ≥500 riego
+    private int umbralLuz = 500;                  // ≥500 noche
+
+    // Ventanas de tiempo (null en modo instantáneo)
+    private ModoVentana modoVentana = ModoVentana.INSTANTANEO;
+    private VentanaDeslizante ventanaTemperatura;
+    private VentanaDeslizante ventanaHumedad;
+    private VentanaDeslizante ventanaLuz;
+
+    // Modo predictivo: ventilador y servo se adelantan al pronóstico (null = reactivo)
+    private PronosticoTendencia pronostico;
+    private double horizonteSeg;
+
+    // Estados de actuadores automáticos
+    private boolean ventiladorAutoActivo = false;
+    private boolean buzzerAutoActivo = false;
+    private boolean ledAutoActivo = false;
+    private boolean valvulaAutoActiva = false;
+    private boolean servoAutoAbierto = false;
+
+    private final OyenteControl oyente;
+
+    public MotorControlAutomatico(OyenteControl oyente) {
+        this.oyente = oyente;
+    }
+
+    public void configurarUmbrales(double tempNormal, double tempVentilador, double tempBuzzer,
+                                   int umbralHumedad, int umbralLuz) {
+        this.tempNormal = tempNormal;
+        this.tempVentilador = tempVentilador;
+        this.tempBuzzer = tempBuzzer;
+        this.umbralHumedad = umbralHumedad;
+        this.umbralLuz = umbralLuz;
+    }
+
+    /**
+     * Compara contra una ventana de tiempo en lugar de la lectura puntual
+     * (evita activar por picos cortos). Las ventanas se llenan con observar().
+     * @param duracionMs largo de la ventana (ignorado en modo INSTANTANEO)
+     */
+    public void configurarVentana(ModoVentana modo, long duracionMs) {
+        modoVentana = modo;
+        if (modo == ModoVentana.INSTANTANEO) {
+            ventanaTemperatura = ventanaHumedad = ventanaLuz = null;
+        } else if (ventanaTemperatura == null || ventanaTemperatura.getDuracionMs() != duracionMs) {
+            ventanaTemperatura = new VentanaDeslizante(duracionMs, PERIODO_MINIMO_MS);
+            ventanaHumedad = new VentanaDeslizante(duracionMs, PERIODO_MINIMO_MS);
+            ventanaLuz = new VentanaDeslizante(duracionMs, PERIODO_MINIMO_MS);
+        }
+    }
+
+    /**
+     * Enciende ventilador y servo cuando la temperatura pronosticada a
+     * horizonteSeg supera el umbral, y los apaga recién cuando tanto la
+     * lectura como la tendencia suavizada quedan bajo el umbral.
+     * @param horizonteSeg 0 vuelve al control reactivo
+     */
+    public void configurarPrediccion(double horizonteSeg) {
+        this.horizonteSeg = horizonteSeg;
+        if (horizonteSeg <= 0) {
+            pronostico = null;
+        } else if (pronostico == null) {
+            pronostico = new PronosticoTendencia(TAU_NIVEL_SEG, TAU_PENDIENTE_SEG);
+        }
+    }
+
+    /**
+     * Registra una lectura en las ventanas y el pronóstico (llamar con cada
+     * muestra, aunque ejecutar() se evalúe con menos frecuencia)
+     */
+    public void observar(long tiempoMs, double temperaturaLM35, int humedadAnalogica, int valorLDR) {
+        if (pronostico != null) {
+            pronostico.agregar(tiempoMs, temperaturaLM35);
+        }
+        if (ventanaTemperatura == null) return;
+        ventanaTemperatura.agregar(tiempoMs, temperaturaLM35);
+        ventanaHumedad.agregar(tiempoMs, humedadAnalogica);
+        ventanaLuz.agregar(tiempoMs, valorLDR);
+    }
+
+    /**
+     * Evalúa una muestra de sensores y aplica las transiciones necesarias.
+     * @return true si algún actuador cambió de estado
+     */
+    public boolean ejecutar(double temperaturaLM35, int humedadAnalogica, int valorLDR) {
+        return ejecutar(temperaturaLM35, humedadAnalogica, valorLDR, 0);
+    }
+
+    /**
+     * Como ejecutar(), sin decidir por umbral los actuadores de los canales
+     * cuyo sensor falla (los deja como están, p. ej. en su estado seguro)
+     * @param canalesSinLectura bit {@code 1 << canal} (DetectorAnomalias.CANAL_*)
+     */
+    public boolean ejecutar(double temperaturaLM35, int humedadAnalogica, int valorLDR, int canalesSinLectura) {
+        boolean accionTomada = false;
+        Metricas.EVALUACIONES_REGLAS.incrementar();
+
+        // Valor para decidir encender (Alta) y para decidir apagar (Baja); NaN = sin decisión
+        double tempAlta = valorAlto(ventanaTemperatura, temperaturaLM35);
+        double tempBaja = valorBajo(ventanaTemperatura, temperaturaLM35);
+        double humedadAlta = valorAlto(ventanaHumedad, humedadAnalogica);
+        double humedadBaja = valorBajo(ventanaHumedad, humedadAnalogica);
+        double luzAlta = valorAlto(ventanaLuz, valorLDR);
+        double luzBaja = valorBajo(ventanaLuz, valorLDR);
+        String ventana = descripcionVentana();
+
+        // Ventilador y servo: el pronóstico adelanta el encendido y retiene el apagado
+        double prevista = pronostico != null ? pronostico.pronosticar(horizonteSeg) : Double.NaN;
+        double tempAltaPrevista = mayor(tempAlta, prevista);
+        double tempBajaPrevista = mayor(tempBaja, pronostico != null ? Math.max(pronostico.getNivel(), prevista) : Double.NaN);
+
+        // Canal sin lectura: NaN no cumple ninguna comparación y sus actuadores no cambian
+        if ((canalesSinLectura & 1 << DetectorAnomalias.CANAL_TEMPERATURA) != 0) {
+            tempAlta = tempBaja = tempAltaPrevista = tempBajaPrevista = Double.NaN;
+        }
+        if ((canalesSinLectura & 1 << DetectorAnomalias.CANAL_HUMEDAD) != 0) {
+            humedadAlta = humedadBaja = Double.NaN;
+        }
+        if ((canalesSinLectura & 1 << DetectorAnomalias.CANAL_LUZ) != 0) {
+            luzAlta = luzBaja = Double.NaN;
+        }
+
+        // Control de temperatura (exacto como en Arduino)
+        if (tempAlta > tempBuzzer) {
+            // >56°C: Ventilador + Buzzer
+            if (!ventiladorAutoActivo) {
+                ventiladorAutoActivo = true;
+                accionTomada = true;
+                notificar(Actuador.VENTILADOR, true, "🌀 Ventilador activado automáticamente (Temp: " + String.format("%.1f", temperaturaLM35) + "°C > " + tempBuzzer + "°C" + ventana + ")");
+            }
+            if (!buzzerAutoActivo) {
+                buzzerAutoActivo = true;
+                accionTomada = true;
+                notificar(Actuador.BUZZER, true, "🚨 Buzzer activado automáticamente (Temp: " + String.format("%.1f", temperaturaLM35) + "°C > " + tempBuzzer + "°C" + ventana + ")");
+            }
+        } else if (tempAltaPrevista > tempVentilador) {
+            // 51-55°C: Solo ventilador
+            if (!ventiladorAutoActivo) {
+                ventiladorAutoActivo = true;
+                accionTomada = true;
+                notificar(Actuador.VENTILADOR, true, "🌀 Ventilador activado automáticamente (Temp: " + String.format("%.1f", temperaturaLM35) + "°C"
+                          + (tempAlta > tempVentilador ? "" : ", prevista " + String.format("%.1f", prevista) + "°C en " + (int) horizonteSeg + " s") + ventana + ")");
+            }
+        }
+        if (tempBaja <= tempBuzzer && tempBajaPrevista <= tempVentilador && ventiladorAutoActivo) {
+            // ≤50°C: Todo OFF
+            ventiladorAutoActivo = false;
+            accionTomada = true;
+            notificar(Actuador.VENTILADOR, false, "🌀 Ventilador desactivado automáticamente (Temp: " + String.format("%.1f", temperaturaLM35) + "°C ≤ " + tempNormal + "°C" + ventana + ")");
+        }
+        if (tempBaja <= tempBuzzer && buzzerAutoActivo) {
+            buzzerAutoActivo = false;
+            accionTomada = true;
+            notificar(Actuador.BUZZER, false, "🚨 Buzzer desactivado automáticamente");
+        }
+
+        // Control de humedad (exacto como en Arduino)
+        if (humedadAlta >= umbralHumedad) {
+            // ≥500: Activar riego
+            if (!valvulaAutoActiva) {
+                valvulaAutoActiva = true;
+                accionTomada = true;
+                notificar(Actuador.VALVULA, true, "💧 Válvula activada automáticamente (Humedad: " + humedadAnalogica + " ≥ " + umbralHumedad + ventana + ")");
+            }
+        } else if (humedadBaja < umbralHumedad) {
+            // <500: Desactivar riego
+            if (valvulaAutoActiva) {
+                valvulaAutoActiva = false;
+                accionTomada = true;
+                notificar(Actuador.VALVULA, false, "💧 Válvula desactivada automáticamente (Humedad: " + humedadAnalogica + " < " + umbralHumedad + ventana + ")");
+            }
+        }
+
+        // Control de luminosidad (exacto como en Arduino)
+        if (luzAlta >= umbralLuz) {
+            // ≥500: Noche - LED ON
+            if (!ledAutoActivo) {
+                ledAutoActivo = true;
+                accionTomada = true;
+                notificar(Actuador.LED, true, "💡 LED activado automáticamente (LDR: " + valorLDR + " ≥ " + umbralLuz + " - Noche detectada" + ventana + ")");
+            }
+        } else if (luzBaja < umbralLuz) {
+            // <500: Día - LED OFF
+            if (ledAutoActivo) {
+                ledAutoActivo = false;
+                accionTomada = true;
+                notificar(Actuador.LED, false, "💡 LED desactivado automáticamente (LDR: " + valorLDR + " < " + umbralLuz + " - Día detectado" + ventana + ")");
+            }
+        }
+
+        // Control de servo (ventilación extra basada en temperatura alta)
+        if (tempAltaPrevista > tempVentilador && !servoAutoAbierto) {
+            servoAutoAbierto = true;
+            accionTomada = true;
+            notificar(Actuador.SERVO, true, "🚪 Servo abierto automáticamente para ventilación extra (90°)");
+        } else if (tempBajaPrevista <= tempNormal && servoAutoAbierto) {
+            servoAutoAbierto = false;
+            accionTomada = true;
+            notificar(Actuador.SERVO, false, "🚪 Servo cerrado automáticamente (0°)");
+        }
+
+        return accionTomada;
+    }
+
+    /**
+     * Estado seguro cuando un sensor no es confiable: sin lectura no se
+     * decide por umbral. Temperatura: ventilador, servo y buzzer encendidos
+     * (enfría y avisa); humedad: válvula cerrada (no inundar); luz: LED apagado.
+     * @return true si algún actuador cambió de estado
+     */
+    public boolean aplicarEstadoSeguro(boolean temperatura, boolean humedad, boolean luz, String causa) {
+        boolean accionTomada = false;
+        if (temperatura) {
+            if (!ventiladorAutoActivo) {
+                ventiladorAutoActivo = true;
+                accionTomada = true;
+                notificar(Actuador.VENTILADOR, true, "🌀 Ventilador activado por seguridad (" + causa + ")");
+            }
+            if (!buzzerAutoActivo) {
+                buzzerAutoActivo = true;
+                accionTomada = true;
+                notificar(Actuador.BUZZER, true, "🚨 Buzzer activado: revisar sensor (" + causa + ")");
+            }
+            if (!servoAutoAbierto) {
+                servoAutoAbierto = true;
+                accionTomada = true;
+                notificar(Actuador.SERVO, true, "🚪 Servo abierto por seguridad (90°)");
+            }
+        }
+        if (humedad && valvulaAutoActiva) {
+            valvulaAutoActiva = false;
+            accionTomada = true;
+            notificar(Actuador.VALVULA, false, "💧 Válvula cerrada por seguridad (" + causa + ")");
+        }
+        if (luz && ledAutoActivo) {
+            ledAutoActivo = false;
+            accionTomada = true;
+            notificar(Actuador.LED, false, "💡 LED apagado por seguridad (" + causa + ")");
+        }
+        return accionTomada;
+    }
+
+    /**
+     * Actuadores que aplicarEstadoSeguro() fija para esos canales
+     * @param canalesSinLectura bit {@code 1 << canal} (DetectorAnomalias.CANAL_*)
+     */
+    public static int actuadoresSeguros(int canalesSinLectura) {
+        int actuadores = 0;
+        if ((canalesSinLectura & 1 << DetectorAnomalias.CANAL_TEMPERATURA) != 0) {
+            actuadores |= Actuador.VENTILADOR.getBit() | Actuador.BUZZER.getBit() | Actuador.SERVO.getBit();
+        }
+        if ((canalesSinLectura & 1 << DetectorAnomalias.CANAL_HUMEDAD) != 0) actuadores |= Actuador.VALVULA.getBit();
+        if ((canalesSinLectura & 1 << DetectorAnomalias.CANAL_LUZ) != 0) actuadores |= Actuador.LED.getBit();
+        return actuadores;
+    }
+
+    // Detener todos los actuadores (sin notificar, como al detener el modo automático)
+    public void apagarTodo() {
+        ventiladorAutoActivo = false;
+        buzzerAutoActivo = false;
+        ledAutoActivo = false;
+        valvulaAutoActiva = false;
+        servoAutoAbierto = false;
+    }
+
+    // Restaurar estados recuperados del diario (sin notificar)
+    public void restaurar(int mascara) {
+        ventiladorAutoActivo = (mascara & Actuador.VENTILADOR.getBit()) != 0;
+        buzzerAutoActivo = (mascara & Actuador.BUZZER.getBit()) != 0;
+        ledAutoActivo = (mascara & Actuador.LED.getBit()) != 0;
+        valvulaAutoActiva = (mascara & Actuador.VALVULA.getBit()) != 0;
+        servoAutoAbierto = (mascara & Actuador.SERVO.getBit()) != 0;
+    }
+
+    // Sostenido: para encender, el mínimo de la ventana; para apagar, el máximo
+    private double valorAlto(VentanaDeslizante ventana, double actual) {
+        switch (modoVentana) {
+            case SOSTENIDO: return ventana.isCompleta() ? ventana.getMinimo() : Double.NaN;
+            case PROMEDIO: return ventana.getPromedio();
+            case MAXIMO: return ventana.getMaximo();
+            default: return actual;
+        }
+    }
+
+    private double valorBajo(VentanaDeslizante ventana, double actual) {
+        switch (modoVentana) {
+            case SOSTENIDO: return ventana.isCompleta() ? ventana.getMaximo() : Double.NaN;
+            case PROMEDIO: return ventana.getPromedio();
+            case MAXIMO: return ventana.getMaximo();
+            default: return actual;
+        }
+    }
+
+    // Máximo que ignora un pronóstico todavía sin datos (NaN)
+    private static double mayor(double valor, double prevista) {
+        return Double.isNaN(prevista) ? valor : Math.max(valor, prevista);
+    }
+
+    private String descripcionVentana() {
+        if (modoVentana == ModoVentana.INSTANTANEO) return "";
+        return ", " + modoVentana.toString().toLowerCase() + " " + ventanaTemperatura.getDuracionMs() / 1000 + " s";
+    }
+
+    public ModoVentana getModoVentana() {
+        return modoVentana;
+    }
+
+    /**
+     * Umbrales vigentes de un canal (DetectorAnomalias.CANAL_*)
+     */
+    public double[] getUmbrales(int canal) {
+        switch (canal) {
+            case DetectorAnomalias.CANAL_TEMPERATURA: return new double[] {tempNormal, tempVentilador, tempBuzzer};
+            case DetectorAnomalias.CANAL_HUMEDAD: return new double[] {umbralHumedad};
+            default: return new double[] {umbralLuz};
+        }
+    }
+
+    private void notificar(Actuador actuador, boolean activo, String mensaje) {
+        Metricas.transiciones(actuador).incrementar();
+        if (oyente != null) {
+            oyente.transicion(actuador, activo, mensaje);
+        }
+    }
+
+    public boolean isActivo(Actuador actuador) {
+        switch (actuador) {
+            case VENTILADOR: return ventiladorAutoActivo;
+            case BUZZER: return buzzerAutoActivo;
+            case LED: return ledAutoActivo;
+            case VALVULA: return valvulaAutoActiva;
+            case SERVO: return servoAutoAbierto;
+            default: return false;
+        }
+    }
+
+    // Estados como máscara de Actuador.getBit()
+    public int getMascara() {
+        int mascara = 0;
+        for (Actuador actuador : ACTUADORES) {
+            if (isActivo(actuador)) mascara |= actuador.getBit();
+        }
+        return mascara;
+    }
+
+    public boolean isVentiladorActivo() {
+        return ventiladorAutoActivo;
+    }
+
+    public boolean isBuzzerActivo() {
+        return buzzerAutoActivo;
+    }
+
+    public boolean isLedActivo() {
+        return ledAutoActivo;
+    }
+
+    public boolean isValvulaActiva() {
+        return valvulaAutoActiva;
+    }
+
+    public boolean isServoAbierto() {
+        return servoAutoAbierto;
+    }
+}
@@ -0,0 +1,42 @@
+package ui_invernadero;
+
+/**
+ * Lectura de sensores de una placa Arduino: LM35(A0), Humedad(A1), LDR(A2)
+ * @author Nicom
+ */
+public final class Muestra {
+
+    private final int placa;
+    private final long tiempoMs;
+    private final double temperaturaLM35;
+    private final int humedadAnalogica;
+    private final int valorLDR;
+
+    public Muestra(int placa, long tiempoMs, double temperaturaLM35, int humedadAnalogica, int valorLDR) {
+        this.placa = placa;
+        this.tiempoMs = tiempoMs;
+        this.temperaturaLM35 = temperaturaLM35;
+        this.humedadAnalogica = humedadAnalogica;
+        this.valorLDR = valorLDR;
+    }
+
+    public int getPlaca() {
+        return placa;
+    }
+
+    public long getTiempoMs() {
+        return tiempoMs;
+    }
+
+    public double getTemperaturaLM35() {
+        return temperaturaLM35;
+    }
+
+    public int getHumedadAnalogica() {
+        return humedadAnalogica;
+    }
+
+    public int getValorLDR() {
+        return valorLDR;
+    }
+}
@@ -0,0 +1,188 @@
+package ui_invernadero;
+
+/**
+ * Período de muestreo adaptativo según la cercanía a los umbrales
+ * Pide el período rápido cuando algún canal está a menos de su margen de un
+ * umbral, contando también lo que avanzaría con su pendiente actual durante
+ * un período lento (un canal que cambia rápido "está cerca" antes de
+ * llegar). Vuelve al período lento recién después de permanenciaMs sin
+ * acercarse, para no oscilar entre los dos. La pendiente de cada canal sale
+ * de un PronosticoTendencia, que tolera muestras a intervalos irregulares.
+ * @author Nicom
+ */
+public final class MuestreoAdaptativo {
+
+    public static final long PERIODO_RAPIDO_MS = 250;
+    public static final long PERIODO_LENTO_MS = 5000;
+    private static final long PERMANENCIA_MS = 30_000;
+    private static final int CANALES = 3;
+    private static final double TAU_NIVEL_SEG = 10.0;      // Quita el ruido del ADC antes de medir la distancia
+    private static final double TAU_PENDIENTE_SEG = 30.0;
+
+    private final long periodoRapidoMs;
+    private final long periodoLentoMs;
+    private final long permanenciaMs;
+    private final double[] margenes;
+    private final double[][] umbrales = new double[CANALES][];
+    private final PronosticoTendencia[] tendencias = new PronosticoTendencia[CANALES];
+    private final double[] valores = new double[CANALES];
+
+    private long periodoMs;
+    private long ultimaCercaniaMs = Long.MIN_VALUE;           // La permanencia cuenta desde la primera muestra
+    private int canalCercano = -1;
+
+    /**
+     * @param margenes distancia a un umbral que pide el período rápido, por
+     *        canal (°C, cuentas de humedad, cuentas de LDR)
+     */
+    public MuestreoAdaptativo(long periodoRapidoMs, long periodoLentoMs, long permanenciaMs, double... margenes) {
+        if (periodoRapidoMs <= 0 || periodoLentoMs < periodoRapidoMs || margenes.length != CANALES) {
+            throw new IllegalArgumentException("Períodos o márgenes inválidos");
+        }
+        this.periodoRapidoMs = periodoRapidoMs;
+        this.periodoLentoMs = periodoLentoMs;
+        this.permanenciaMs = permanenciaMs;
+        this.margenes = margenes.clone();
+        for (int c = 0; c < CANALES; c++) {
+            umbrales[c] = new double[0];
+            tendencias[c] = new PronosticoTendencia(TAU_NIVEL_SEG, TAU_PENDIENTE_SEG);
+        }
+        this.periodoMs = periodoRapidoMs;                      // Rápido hasta conocer la tendencia
+    }
+
+    // 250 ms / 5 s; márgenes de 1°C, 2 cuentas de humedad (la válvula la mantiene junto al umbral) y 20 de LDR
+    public MuestreoAdaptativo() {
+        this(PERIODO_RAPIDO_MS, PERIODO_LENTO_MS, PERMANENCIA_MS, 1.0, 2, 20);
+    }
+
+    /**
+     * Umbrales de un canal (DetectorAnomalias.CANAL_*)
+     */
+    public void setUmbrales(int canal, double[] valores) {
+        umbrales[canal] = valores.clone();
+    }
+
+    /**
+     * Registra una muestra
+     * @return el período de muestreo a pedir a la placa
+     */
+    public long actualizar(long tiempoMs, double temperaturaLM35, double humedadAnalogica, double valorLDR) {
+        if (ultimaCercaniaMs == Long.MIN_VALUE) ultimaCercaniaMs = tiempoMs;
+        valores[DetectorAnomalias.CANAL_TEMPERATURA] = temperaturaLM35;
+        valores[DetectorAnomalias.CANAL_HUMEDAD] = humedadAnalogica;
+        valores[DetectorAnomalias.CANAL_LUZ] = valorLDR;
+        double lentoSeg = periodoLentoMs / 1000.0;
+        int cercano = -1;
+        for (int c = 0; c < CANALES; c++) {
+            PronosticoTendencia tendencia = tendencias[c];
+            tendencia.agregar(tiempoMs, valores[c]);
+            double nivel = tendencia.getNivel();
+            double avance = tendencia.getPendiente() * lentoSeg;
+            for (double umbral : umbrales[c]) {
+                // Distancia del nivel suavizado; la pendiente solo suma si va hacia el umbral
+                double distancia = umbral - nivel;
+                double alcance = margenes[c] + (distancia * avance > 0 ? Math.abs(avance) : 0.0);
+                if (Math.abs(distancia) <= alcance) {
+                    cercano = c;
+                    break;
+                }
+            }
+        }
+        if (cercano >= 0) {
+            ultimaCercaniaMs = tiempoMs;
+            canalCercano = cercano;
+            periodoMs = periodoRapidoMs;
+        } else if (tiempoMs - ultimaCercaniaMs >= permanenciaMs) {
+            canalCercano = -1;
+            periodoMs = periodoLentoMs;
+        }
+        return periodoMs;
+    }
+
+    public long getPeriodoMs() {
+        return periodoMs;
+    }
+
+    public boolean isRapido() {
+        return periodoMs == periodoRapidoMs;
+    }
+
+    // Canal que pidió el período rápido la última vez (-1 si está en lento)
+    public int getCanalCercano() {
+        return canalCercano;
+    }
+
+    /**
+     * Período fijo contra adaptativo en lazo cerrado, en clima templado y en verano:
+     * java ui_invernadero.MuestreoAdaptativo [días]
+     * La física avanza cada 250 ms; la placa muestrea con el período vigente y
+     * el control evalúa con cada muestra (al menos cada 3 s, como NucleoControl).
+     */
+    public static void main(String args[]) {
+        int dias = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+        for (double tempMedia : new double[] {22.0, 30.0}) {
+            System.out.printf("%nClima exterior %.0f±8°C%n%-22s %12s %12s %26s %18s%n", tempMedia, "Muestreo", "muestras/día",
+                              "bytes/día", "s sobre 51°C sin ventilar", "reacción p50/máx");
+            for (String modo : new String[] {"Fijo 1 s", "Adaptativo 1 s/5 s", "Fijo 250 ms", "Adaptativo 250 ms/5 s"}) {
+                simular(modo, tempMedia, dias);
+            }
+        }
+    }
+
+    private static void simular(String modo, double tempMedia, int dias) {
+        MuestreoAdaptativo adaptativo = null;
+        if (modo.startsWith("Adaptativo 1 s")) {
+            adaptativo = new MuestreoAdaptativo(1000, PERIODO_LENTO_MS, PERMANENCIA_MS, 1.0, 2, 20);
+        } else if (modo.startsWith("Adaptativo")) {
+            adaptativo = new MuestreoAdaptativo();
+        }
+        long periodoFijo = modo.equals("Fijo 1 s") ? 1000 : 250;
+        SimuladorInvernadero simulador = new SimuladorInvernadero(1, 44L);
+        simulador.setClimaExterior(tempMedia, 8.0, 0.1);
+        simulador.setHoraDelDia(0.0);
+        MotorControlAutomatico motor = new MotorControlAutomatico(null);
+        if (adaptativo != null) {
+            for (int c = 0; c < CANALES; c++) adaptativo.setUmbrales(c, motor.getUmbrales(c));
+        }
+
+        long muestras = 0;
+        long periodo = adaptativo != null ? adaptativo.getPeriodoMs() : periodoFijo;
+        long proximaMuestra = 0;
+        long ultimoControl = Long.MIN_VALUE / 2;
+        long sobreSinVentilar = 0;                              // En pasos de 250 ms
+        long cruceMs = -1;
+        long[] reacciones = new long[100_000];
+        int cantidadReacciones = 0;
+        for (long ms = 0; ms < dias * 86_400_000L; ms += 250) {
+            simulador.avanzar(0.25);
+            double t = simulador.getTemperatura(0);
+            boolean ventilando = motor.isVentiladorActivo();
+            if (t > 51.0 && !ventilando) {
+                sobreSinVentilar++;
+                if (cruceMs < 0) cruceMs = ms;
+            } else if (ventilando && cruceMs >= 0) {
+                if (cantidadReacciones < reacciones.length) reacciones[cantidadReacciones++] = ms - cruceMs;
+                cruceMs = -1;
+            } else if (t <= 51.0) {
+                cruceMs = -1;
+            }
+            if (ms < proximaMuestra) continue;
+
+            muestras++;
+            int hum = simulador.getHumedadAnalogica(0);
+            int ldr = simulador.getValorLDR(0);
+            if (adaptativo != null) periodo = adaptativo.actualizar(ms, t, hum, ldr);
+            proximaMuestra = ms + periodo;
+            if (ms - ultimoControl >= Math.min(3000, periodo)) {
+                ultimoControl = ms;
+                motor.ejecutar(t, hum, ldr);
+                simulador.setActuadores(0, motor.getMascara());
+            }
+        }
+        java.util.Arrays.sort(reacciones, 0, cantidadReacciones);
+        System.out.printf("%-22s %,12d %,12d %,26.0f %11.2f/%.2f s%n", modo, muestras / dias,
+                          muestras / dias * ProtocoloBinario.LARGO_MUESTRA, sobreSinVentilar / 4.0,
+                          cantidadReacciones > 0 ? reacciones[cantidadReacciones / 2] / 1000.0 : 0.0,
+                          cantidadReacciones > 0 ? reacciones[cantidadReacciones - 1] / 1000.0 : 0.0);
+    }
+}
@@ -0,0 +1,474 @@
+package ui_invernadero;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Núcleo de control de una zona fuera del EDT
+ * Cada segundo lee los sensores y entrega la línea serie a la TuberiaControl;
+ * el control automático se evalúa en la etapa de reglas cada 3 segundos y las
+ * decisiones salen hacia la interfaz (última foto en el PublicadorEstado), el
+ * log, el diario de actuadores y las métricas. El motor solo se modifica
+ * desde la etapa de reglas: los comandos de la interfaz se encolan.
+ * Si se configuró un archivo de reglas (-Dinvernadero.reglas), esas reglas
+ * reemplazan a la lógica fija del Arduino y a los umbrales de la pantalla.
+ * Las ventanas de tiempo del motor reciben todas las muestras (cada segundo).
+ * Antes de decidir, el DetectorAnomalias marca los canales con lecturas
+ * imposibles: ese canal sostiene su última lectura sana y, si la falla es
+ * persistente, solo sus actuadores pasan al estado seguro; los demás canales
+ * pasan por sus filtros (-Dinvernadero.filtros) y se deciden como siempre.
+ * El período de lectura lo decide MuestreoAdaptativo: rápido cerca de los
+ * umbrales, lento con lecturas estables (-Dinvernadero.muestreo=fijo: 1 s).
+ * Los mensajes de decisión pasan por el GestorAlertas, que agrupa las
+ * repeticiones y los reparte a la pantalla y al archivo de alertas.
+ * Con -Dinvernadero.horarios las ventanas diarias de ProgramaHorarios se
+ * combinan con la decisión del motor (OFF por horario > ON por horario >
+ * umbrales, reglas y estado seguro) mientras el modo automático está activo.
+ * @author Nicom
+ */
+public class NucleoControl {
+
+    private static final long PERIODO_SENSORES_MS = 1000;                 // Con -Dinvernadero.muestreo=fijo
+    private static final long TIC_LECTURA_MS = MuestreoAdaptativo.PERIODO_RAPIDO_MS;
+    public static final String PROPIEDAD_MUESTREO = "invernadero.muestreo";
+    private static final long PERIODO_CONTROL_MS = 3000;
+    private static final long VENTANA_ALERTAS_MS = 10 * 60_000;
+    private static final String METRICA_LOG = "invernadero_log_pendientes";
+    private static final int PERSISTENTES = (DetectorAnomalias.ESTANCADO | DetectorAnomalias.SATURADO) * 0x111;   // Los 3 canales
+
+    private final int zona;
+    private final PublicadorEstado publicador;
+    private final DiarioActuadores diario;
+    private final ConcurrentLinkedQueue<String> eventos = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Runnable> comandos = new ConcurrentLinkedQueue<>();
+    private final GestorAlertas alertas = new GestorAlertas(VENTANA_ALERTAS_MS);
+    private final TuberiaControl tuberia;
+    private final ScheduledExecutorService hilo;
+    private volatile Metricas.Metrica metricaLog;
+
+    // Confinados al hilo de lectura
+    private final SimuladorInvernadero simulador = new SimuladorInvernadero();
+    private long ultimaLecturaMs;
+
+    // Confinados a la etapa de reglas
+    private final MotorControlAutomatico motor;
+    private final ProgramaReglas programa = ReglasDSL.cargarConfigurado();
+    private final IndiceUmbrales indice = programa != null ? new IndiceUmbrales(programa) : null;
+    private final DetectorAnomalias detector = new DetectorAnomalias();
+    private final FiltroSensor[] filtros = FiltroSensor.cargarConfigurados();     // temp, hum, ldr
+    private final MuestreoAdaptativo muestreo = "fijo".equals(System.getProperty(PROPIEDAD_MUESTREO)) ? null : new MuestreoAdaptativo();
+    private final ProgramaHorarios horarios = ProgramaHorarios.cargarConfigurado(System.currentTimeMillis());
+    private int anomaliasAnteriores = 0;
+    private double temperaturaSana = Double.NaN;         // Última lectura filtrada sana de cada canal
+    private int humedadSana = -1;
+    private int luzSana = -1;
+    private final ProgramaHorarios.OyenteHorarios oyenteHorarios = new ProgramaHorarios.OyenteHorarios() {
+        @Override
+        public void cambio(ProgramaHorarios.Horario horario, boolean abierto) {
+            if (automaticoActivo && horario.getZona() == zona) {
+                eventosActuales.add("🕕 " + horario + (abierto ? " - empieza el horario" : " - termina el horario"));
+            }
+        }
+    };
+    private List<String> eventosActuales;
+    private long ultimoControlMs = Long.MIN_VALUE / 2;     // Primera muestra: evaluar ya
+
+    private volatile int mascara = 0;
+    private volatile long periodoMuestreoMs = PERIODO_SENSORES_MS;     // Lo pide la etapa de reglas a la "placa"
+    private volatile boolean automaticoActivo = false;
+
+    /**
+     * @param diario donde persistir los cambios de actuadores (puede ser null)
+     */
+    public NucleoControl(int zona, PublicadorEstado publicador, DiarioActuadores diario) {
+        this.zona = zona;
+        this.publicador = publicador;
+        this.diario = diario;
+        this.motor = new MotorControlAutomatico(new OyenteControl() {
+            @Override
+            public void transicion(Actuador actuador, boolean activo, String mensaje) {
+                eventosActuales.add(mensaje);
+            }
+        });
+        this.tuberia = new TuberiaControl(64, new TuberiaControl.Reglas() {
+            @Override
+            public int evaluar(Muestra muestra, List<String> eventos) {
+                return evaluarMuestra(muestra, eventos);
+            }
+        });
+        agregarSumideros();
+        agregarDestinosAlertas();
+        if (programa != null) {
+            eventos.add("📜 " + programa.getTamanio() + " reglas cargadas de " + System.getProperty(ReglasDSL.PROPIEDAD_ARCHIVO)
+                        + " - Los umbrales de la pantalla no se usan");
+        }
+        if (horarios != null) {
+            eventos.add("🕕 " + horarios.getTamanio() + " horarios cargados de " + System.getProperty(ProgramaHorarios.PROPIEDAD_ARCHIVO));
+        }
+        eventos.add("🎚️ Filtros de sensores: LM35 " + filtros[0] + ", Humedad " + filtros[1] + ", LDR " + filtros[2]);
+        if (muestreo != null) {
+            actualizarUmbralesMuestreo();
+            periodoMuestreoMs = muestreo.getPeriodoMs();
+        }
+        this.hilo = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable tarea) {
+                Thread hilo = new Thread(tarea, "nucleo-control-" + NucleoControl.this.zona);
+                hilo.setDaemon(true);
+                return hilo;
+            }
+        });
+    }
+
+    private void agregarSumideros() {
+        // Interfaz: solo importa la foto más reciente
+        tuberia.agregarSumidero("interfaz", TuberiaControl.Politica.ULTIMO_VALOR, 16, 1, new TuberiaControl.Sumidero() {
+            private long secuencia = 0;
+
+            @Override
+            public void consumir(List<TuberiaControl.Decision> lote) {
+                TuberiaControl.Decision decision = lote.get(lote.size() - 1);
+                Muestra muestra = decision.getMuestra();
+                publicador.publicar(zona, new EstadoZona(++secuencia, muestra.getTemperaturaLM35(), muestra.getHumedadAnalogica(),
+                                                         muestra.getValorLDR(), decision.getActuadores(), automaticoActivo));
+            }
+        });
+        // Log: no se pierde ningún mensaje mientras quepa en el buffer; el gestor agrupa y reparte
+        tuberia.agregarSumidero("log", TuberiaControl.Politica.AGRUPAR, 256, 64, new TuberiaControl.Sumidero() {
+            @Override
+            public void consumir(List<TuberiaControl.Decision> lote) {
+                for (TuberiaControl.Decision decision : lote) {
+                    for (String evento : decision.getEventos()) {
+                        alertas.publicar(evento);
+                    }
+                }
+            }
+        });
+        // Diario: con un lote basta escribir el estado final
+        if (diario != null) {
+            tuberia.agregarSumidero("persistencia", TuberiaControl.Politica.AGRUPAR, 256, 256, new TuberiaControl.Sumidero() {
+                private int persistida = -1;
+
+                @Override
+                public void consumir(List<TuberiaControl.Decision> lote) {
+                    int actuadores = lote.get(lote.size() - 1).getActuadores();
+                    if (actuadores == persistida) return;
+                    for (Actuador actuador : Actuador.values()) {
+                        diario.registrarActuador(DiarioActuadores.MODO_AUTOMATICO, actuador, (actuadores & actuador.getBit()) != 0);
+                    }
+                    persistida = actuadores;
+                }
+            });
+        }
+        tuberia.agregarSumidero("metricas", TuberiaControl.Politica.DESCARTAR, 64, 1, new TuberiaControl.Sumidero() {
+            @Override
+            public void consumir(List<TuberiaControl.Decision> lote) {
+                Metricas.muestraRecibida();
+            }
+        });
+    }
+
+    private void agregarDestinosAlertas() {
+        // Pantalla: el log de la interfaz drena la cola de eventos
+        alertas.agregarDestino("pantalla", 30, 256, new GestorAlertas.Destino() {
+            @Override
+            public void entregar(GestorAlertas.Alerta alerta) {
+                eventos.add(alerta.getTexto());
+            }
+        });
+        alertas.agregarDestino("archivo", 60, 1024, GestorAlertas.archivo());
+    }
+
+    public void iniciar() {
+        tuberia.iniciar();
+        // size() recorre la cola, pero el log la drena cada segundo y solo se mide al exponer
+        metricaLog = Metricas.medidor(METRICA_LOG, "Mensajes esperando que el log de la interfaz los drene", "zona=\"" + zona + "\"",
+                                      new Metricas.Medidor() {
+            @Override
+            public double valor() {
+                return eventos.size();
+            }
+        });
+        hilo.execute(new Runnable() {
+            @Override
+            public void run() {
+                ultimaLecturaMs = System.currentTimeMillis();
+                adquirir(0.0);
+            }
+        });
+        // Como el loop() de la placa: revisa seguido y lee cuando vence el período pedido
+        hilo.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                long ahora = System.currentTimeMillis();
+                if (ahora - ultimaLecturaMs >= periodoMuestreoMs - TIC_LECTURA_MS / 2) {
+                    adquirir((ahora - ultimaLecturaMs) / 1000.0);
+                    ultimaLecturaMs = ahora;
+                }
+            }
+        }, TIC_LECTURA_MS, TIC_LECTURA_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public void detener() {
+        hilo.shutdownNow();
+        tuberia.close();
+        alertas.cerrar(1000);
+        if (metricaLog != null) Metricas.retirar(metricaLog);
+    }
+
+    // Lectura serie (simulada): los actuadores vigentes afectan al invernadero
+    private void adquirir(double dtSegundos) {
+        simulador.setActuadores(0, mascara);
+        simulador.avanzar(dtSegundos);
+        tuberia.recibirLinea(zona, System.currentTimeMillis(), ProtocoloArduino.formatearMuestra(
+                simulador.getTemperatura(0), simulador.getHumedadAnalogica(0), simulador.getValorLDR(0)));
+    }
+
+    // Etapa de reglas
+    private int evaluarMuestra(Muestra muestra, List<String> eventos) {
+        eventosActuales = eventos;
+        Runnable comando;
+        while ((comando = comandos.poll()) != null) {
+            comando.run();
+        }
+        if (horarios != null) {
+            horarios.avanzar(muestra.getTiempoMs(), oyenteHorarios);
+        }
+        int anomalias = detectarAnomalias(muestra);
+
+        // Las decisiones usan las lecturas filtradas (mediana / EWMA / Kalman por canal); un canal
+        // con anomalía no pasa por su filtro y sostiene su última lectura sana, los demás siguen
+        if (!DetectorAnomalias.afecta(anomalias, DetectorAnomalias.CANAL_TEMPERATURA)) {
+            temperaturaSana = filtros[0].filtrar(muestra.getTemperaturaLM35());
+        } else if (Double.isNaN(temperaturaSana)) {
+            temperaturaSana = muestra.getTemperaturaLM35();            // Todavía sin lectura sana
+        }
+        if (!DetectorAnomalias.afecta(anomalias, DetectorAnomalias.CANAL_HUMEDAD)) {
+            humedadSana = (int) Math.round(filtros[1].filtrar(muestra.getHumedadAnalogica()));
+        } else if (humedadSana < 0) {
+            humedadSana = muestra.getHumedadAnalogica();
+        }
+        if (!DetectorAnomalias.afecta(anomalias, DetectorAnomalias.CANAL_LUZ)) {
+            luzSana = (int) Math.round(filtros[2].filtrar(muestra.getValorLDR()));
+        } else if (luzSana < 0) {
+            luzSana = muestra.getValorLDR();
+        }
+        double temperatura = temperaturaSana;
+        int humedad = humedadSana;
+        int ldr = luzSana;
+
+        // Falla persistente (estancado / saturado): esos canales no deciden por umbral y van a su
+        // estado seguro; transitoria (salto, pico): solo se sostiene la lectura anterior del canal
+        int persistentes = automaticoActivo ? anomalias & PERSISTENTES : 0;
+        int canalesSinLectura = 0;
+        for (int canal = 0; canal < 3; canal++) {
+            if (DetectorAnomalias.afecta(persistentes, canal)) canalesSinLectura |= 1 << canal;
+        }
+        motor.observar(muestra.getTiempoMs(), temperatura, humedad, ldr);
+        if (muestreo != null) {
+            ajustarMuestreo(muestra.getTiempoMs(), temperatura, humedad, ldr);
+        }
+        // Cada 3 s como siempre; solo con muestreo rápido (cerca de un umbral) se decide con cada muestra
+        long periodoControlMs = periodoMuestreoMs < PERIODO_SENSORES_MS ? periodoMuestreoMs : PERIODO_CONTROL_MS;
+        if (automaticoActivo && muestra.getTiempoMs() - ultimoControlMs >= periodoControlMs) {
+            ultimoControlMs = muestra.getTiempoMs();
+            if (programa != null) {
+                aplicarReglas(temperatura, humedad, ldr, canalesSinLectura);
+            } else {
+                motor.ejecutar(temperatura, humedad, ldr, canalesSinLectura);
+            }
+        }
+        if (persistentes != 0) {
+            motor.aplicarEstadoSeguro(DetectorAnomalias.afecta(persistentes, DetectorAnomalias.CANAL_TEMPERATURA),
+                                      DetectorAnomalias.afecta(persistentes, DetectorAnomalias.CANAL_HUMEDAD),
+                                      DetectorAnomalias.afecta(persistentes, DetectorAnomalias.CANAL_LUZ),
+                                      DetectorAnomalias.describir(persistentes));
+        }
+        return combinarHorarios();
+    }
+
+    // Prioridad: ventana OFF por horario > ventana ON por horario > umbrales, reglas y estado seguro
+    private int combinarHorarios() {
+        int decision = motor.getMascara();
+        mascara = automaticoActivo && horarios != null ? horarios.combinar(zona, decision) : decision;
+        return mascara;
+    }
+
+    private void ajustarMuestreo(long tiempoMs, double temperatura, int humedad, int ldr) {
+        long periodo = muestreo.actualizar(tiempoMs, temperatura, humedad, ldr);
+        if (periodo == periodoMuestreoMs) return;
+        periodoMuestreoMs = periodo;
+        String[] canales = {"LM35", "Humedad", "LDR"};
+        eventosActuales.add(muestreo.isRapido()
+                ? "📶 Muestreo rápido (" + periodo + " ms): " + canales[muestreo.getCanalCercano()] + " cerca de un umbral"
+                : "📶 Muestreo lento (" + periodo / 1000 + " s): lecturas lejos de los umbrales");
+    }
+
+    private void actualizarUmbralesMuestreo() {
+        for (int canal = 0; canal < 3; canal++) {
+            muestreo.setUmbrales(canal, indice != null ? indice.getUmbrales(canal) : motor.getUmbrales(canal));
+        }
+    }
+
+    private int detectarAnomalias(Muestra muestra) {
+        int anomalias = detector.evaluar(muestra.getTiempoMs(), muestra.getTemperaturaLM35(), muestra.getHumedadAnalogica(), muestra.getValorLDR());
+        if (anomalias != 0) {
+            Metricas.anomalias(anomalias);
+        }
+        if (anomalias != anomaliasAnteriores) {
+            eventosActuales.add(anomalias != 0 ? "⚠️ Anomalía de sensores: " + DetectorAnomalias.describir(anomalias)
+                                               : "✅ Lecturas de sensores normales");
+            anomaliasAnteriores = anomalias;
+        }
+        return anomalias;
+    }
+
+    private void aplicarReglas(double temperatura, int humedad, int ldr, int canalesSinLectura) {
+        int anterior = motor.getMascara();
+        if (indice.getMascara() != anterior) {
+            indice.reiniciar(anterior);           // Apagado, restauración desde la interfaz o estado seguro
+        }
+        // Solo se reevalúan las reglas cuyos umbrales cruzó la muestra; los actuadores en estado seguro no se tocan
+        int seguros = MotorControlAutomatico.actuadoresSeguros(canalesSinLectura);
+        int nueva = indice.evaluar(temperatura, humedad, ldr) & ~seguros | anterior & seguros;
+        Metricas.EVALUACIONES_REGLAS.incrementar();
+        if (nueva == anterior) return;
+        for (Actuador actuador : Actuador.values()) {
+            if (((nueva ^ anterior) & actuador.getBit()) == 0) continue;
+            boolean activo = (nueva & actuador.getBit()) != 0;
+            Metricas.transiciones(actuador).incrementar();
+            eventosActuales.add(actuador.getEtiqueta() + (activo ? " ON" : " OFF") + " por reglas (Temp: "
+                                + String.format("%.1f", temperatura) + "°C, Humedad: " + humedad + ", LDR: " + ldr + ")");
+        }
+        motor.restaurar(nueva);
+    }
+
+    // Comandos desde la interfaz: se aplican en la etapa de reglas con una lectura inmediata
+
+    public void configurarUmbrales(final double tempNormal, final double tempVentilador, final double tempBuzzer,
+                                   final int umbralHumedad, final int umbralLuz) {
+        comandos.add(new Runnable() {
+            @Override
+            public void run() {
+                motor.configurarUmbrales(tempNormal, tempVentilador, tempBuzzer, umbralHumedad, umbralLuz);
+                if (muestreo != null) actualizarUmbralesMuestreo();
+            }
+        });
+    }
+
+    public void configurarVentana(final MotorControlAutomatico.ModoVentana modo, final long duracionMs) {
+        comandos.add(new Runnable() {
+            @Override
+            public void run() {
+                motor.configurarVentana(modo, duracionMs);
+            }
+        });
+    }
+
+    /**
+     * @param horizonteSeg 0 desactiva el modo predictivo
+     */
+    public void configurarPrediccion(final double horizonteSeg) {
+        comandos.add(new Runnable() {
+            @Override
+            public void run() {
+                motor.configurarPrediccion(horizonteSeg);
+            }
+        });
+    }
+
+    /**
+     * Al detener el modo automático se apagan todos los actuadores
+     */
+    public void setAutomaticoActivo(final boolean activo) {
+        ejecutar(new Runnable() {
+            @Override
+            public void run() {
+                automaticoActivo = activo;
+                if (!activo) motor.apagarTodo();
+            }
+        });
+    }
+
+    public void restaurar(final int mascara) {
+        ejecutar(new Runnable() {
+            @Override
+            public void run() {
+                motor.restaurar(mascara);
+            }
+        });
+    }
+
+    private void ejecutar(Runnable comando) {
+        comandos.add(comando);
+        if (!hilo.isShutdown()) {
+            hilo.execute(new Runnable() {
+                @Override
+                public void run() {
+                    adquirir(0.0);
+                }
+            });
+        }
+    }
+
+    /**
+     * Pasa a la lista los mensajes de transición pendientes (sin bloquear)
+     */
+    public void drenarEventos(List<String> destino) {
+        String evento;
+        while ((evento = eventos.poll()) != null) {
+            destino.add(evento);
+        }
+    }
+
+    /**
+     * Reproducción por la etapa de reglas con el sensor de humedad trabado:
+     * java ui_invernadero.NucleoControl [minutos]
+     * Desde el minuto 10 la humedad queda fija en 620 (pediría riego). La
+     * válvula tiene que quedar cerrada por seguridad y el ventilador seguir
+     * conmutando con la temperatura; si no, termina con código 1.
+     */
+    public static void main(String args[]) {
+        int minutos = args.length > 0 ? Integer.parseInt(args[0]) : 120;
+        int falla = 600;                                  // Segundo en que se traba la humedad
+        int detectada = falla + 120;                      // Estancado: un minuto y 20 lecturas iguales, con margen
+        NucleoControl nucleo = new NucleoControl(0, new PublicadorEstado(1), null);
+        nucleo.automaticoActivo = true;                   // Sin hilos: la reproducción llama a la etapa de reglas
+        SimuladorInvernadero simulador = new SimuladorInvernadero(1, 50L);
+        simulador.setHoraDelDia(9.0);                     // Mañana: el sol hace conmutar el ventilador durante la falla
+        List<String> eventos = new ArrayList<>();
+        int mascara = 0;
+        int conmutaciones = 0;
+        int conmutacionesAntes = 0;
+        int segundosValvula = 0;
+        for (int s = 0; s < minutos * 60; s++) {
+            simulador.setActuadores(0, mascara);
+            simulador.avanzar(1.0);
+            int humedad = s >= falla ? 620 : simulador.getHumedadAnalogica(0);
+            int nueva = nucleo.evaluarMuestra(new Muestra(0, s * 1000L, Math.round(simulador.getTemperatura(0) * 10) / 10.0,
+                                                          humedad, simulador.getValorLDR(0)), eventos);
+            boolean conmuta = ((nueva ^ mascara) & Actuador.VENTILADOR.getBit()) != 0;
+            if (s < falla && conmuta) conmutacionesAntes++;
+            if (s >= detectada && conmuta) conmutaciones++;
+            if (s >= detectada && (nueva & Actuador.VALVULA.getBit()) != 0) segundosValvula++;
+            mascara = nueva;
+        }
+        nucleo.detener();
+        for (String evento : eventos) {
+            if (evento.contains("Anomalía") || evento.contains("seguridad")) System.out.println(evento);
+        }
+        System.out.printf("%d min, humedad fija en 620 desde el minuto %d%n", minutos, falla / 60);
+        System.out.printf("Ventilador: %d conmutaciones antes de la falla, %d con la humedad trabada%n", conmutacionesAntes, conmutaciones);
+        System.out.printf("Válvula abierta con la humedad trabada: %d s%n", segundosValvula);
+        if (conmutaciones == 0 || segundosValvula > 0) {
+            System.out.println("ERROR: la falla de un canal detuvo el control de los otros o no cerró su actuador");
+            System.exit(1);
+        }
+        System.out.println("El control de temperatura siguió con el canal de humedad en estado seguro");
+    }
+}
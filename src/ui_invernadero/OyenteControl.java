@@ -0,0 +1,10 @@
+package ui_invernadero;
+
+/**
+ * Recibe cada cambio de estado de un actuador decidido por el control automático
+ * @author Nicom
+ */
+public interface OyenteControl {
+
+    void transicion(Actuador actuador, boolean activo, String mensaje);
+}
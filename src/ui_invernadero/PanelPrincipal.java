@@ -4,31 +4,37 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 
 /**
  * Panel Principal - Menú Central del Sistema de Invernadero Inteligente
  * Adaptado para Hardware Arduino Real
+ * Los rótulos del tic de un segundo se escriben con FormatoPantalla, desde
+ * PanelPrincipal.Rotulos (se puede ejercitar sin ventana).
  * @author Nicom
  */
 public class PanelPrincipal extends javax.swing.JFrame {
 
     private Timer clockTimer;
+    private final Rotulos rotulos;
+    private static final Color VERDE_CONECTADO = new Color(0, 150, 0);
     // Valores reales basados en el Arduino
     private double temperaturaActual = 25.0;  // Temperatura normal de invernadero
     private int humedadSuelo = 450;           // Valor analógico del sensor (0-1023)
     private int valorLDR = 300;               // Valor LDR (día)
     private boolean sistemaConectado = true;
+    private final SimuladorInvernadero simulador = new SimuladorInvernadero();
+    private final MotorControlAutomatico arduino = new MotorControlAutomatico(null);
     
     // Umbrales del Arduino
-    private final int UMBRAL_HUMEDAD = 500;   // Umbral humedad suelo
-    private final int UMBRAL_LUZ = 500;       // Umbral LDR día/noche
-    private final double TEMP_VENTILADOR = 51.0;  // Activar ventilador
-    private final double TEMP_ALARMA = 56.0;      // Activar alarma
+    private static final int UMBRAL_HUMEDAD = 500;   // Umbral humedad suelo
+    private static final int UMBRAL_LUZ = 500;       // Umbral LDR día/noche
+    private static final double TEMP_VENTILADOR = 51.0;  // Activar ventilador
+    private static final double TEMP_ALARMA = 56.0;      // Activar alarma
     
     public PanelPrincipal() {
         initComponents();
+        rotulos = new Rotulos(lblFechaHora, lblTemperatura, lblHumedad, lblLuminosidad, lblEstadoConexion,
+                lblAlertaTemperatura, lblAlertaHumedad, lblAlertaLuz);
         setupCustomComponents();
         startClockTimer();
     }
@@ -61,80 +67,111 @@ public class PanelPrincipal extends javax.swing.JFrame {
     }
     
     private void updateClock() {
-        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy - HH:mm:ss");
-        lblFechaHora.setText(sdf.format(new Date()));
+        rotulos.updateClock(System.currentTimeMillis());
     }
     
     private void simulateArduinoData() {
-        // Simular datos reales del Arduino
-        temperaturaActual += (Math.random() - 0.5) * 2.0;
-        humedadSuelo += (int)((Math.random() - 0.5) * 50);
-        valorLDR += (int)((Math.random() - 0.5) * 30);
-        
-        // Mantener rangos realistas del Arduino
-        if (temperaturaActual < 15) temperaturaActual = 15;
-        if (temperaturaActual > 60) temperaturaActual = 60;
-        if (humedadSuelo < 200) humedadSuelo = 200;
-        if (humedadSuelo > 800) humedadSuelo = 800;
-        if (valorLDR < 100) valorLDR = 100;
-        if (valorLDR > 900) valorLDR = 900;
+        // El Arduino aplica sus umbrales por defecto sobre el invernadero simulado
+        arduino.ejecutar(temperaturaActual, humedadSuelo, valorLDR);
+        simulador.setActuadores(0, arduino.getMascara());
+        simulador.avanzar(1.0);
+        temperaturaActual = simulador.getTemperatura(0);
+        humedadSuelo = simulador.getHumedadAnalogica(0);
+        valorLDR = simulador.getValorLDR(0);
+        Metricas.muestraRecibida();
         
         updateSystemInfo();
     }
     
     private void updateSystemInfo() {
-        // Mostrar temperatura
-        lblTemperatura.setText(String.format("🌡️ %.1f°C", temperaturaActual));
-        
-        // Convertir humedad analógica a porcentaje (invertido)
-        int humedadPorcentaje = (int)map(humedadSuelo, 1023, 0, 0, 100);
-        lblHumedad.setText(String.format("💧 %d%% (%d)", humedadPorcentaje, humedadSuelo));
-        
-        // Estado de iluminación
-        String estadoLuz = valorLDR >= UMBRAL_LUZ ? "🌙 Noche" : "☀️ Día";
-        lblLuminosidad.setText(String.format("%s (%d)", estadoLuz, valorLDR));
-        
-        // Estado de conexión
-        lblEstadoConexion.setText("🔗 " + (sistemaConectado ? "ARDUINO CONECTADO" : "DESCONECTADO"));
-        lblEstadoConexion.setForeground(sistemaConectado ? new Color(0, 150, 0) : Color.RED);
-        
-        // Alertas del sistema
-        updateAlertas();
+        rotulos.updateSystemInfo(temperaturaActual, humedadSuelo, valorLDR, sistemaConectado);
     }
     
-    private void updateAlertas() {
-        String alertas = "<html><b>🚨 ESTADO DEL SISTEMA:</b><br>";
+    // Función para mapear valores (como en Arduino)
+    private static double map(double value, double fromLow, double fromHigh, double toLow, double toHigh) {
+        return (value - fromLow) * (toHigh - toLow) / (fromHigh - fromLow) + toLow;
+    }
+
+    /**
+     * Lo que el tic de un segundo escribe en los rótulos, aparte de la
+     * ventana: FormatoPantalla.main lo ejercita sin pantalla, con rótulos
+     * sueltos, y mide lo que asigna
+     */
+    static final class Rotulos {
+        
+        private final FormatoPantalla formato = new FormatoPantalla();
+        final JLabel lblFechaHora;
+        final JLabel lblTemperatura;
+        final JLabel lblHumedad;
+        final JLabel lblLuminosidad;
+        final JLabel lblEstadoConexion;
+        final JLabel lblAlertaTemperatura;
+        final JLabel lblAlertaHumedad;
+        final JLabel lblAlertaLuz;
         
-        // Alertas de temperatura
-        if (temperaturaActual > TEMP_ALARMA) {
-            alertas += "<font color='red'>⚠️ TEMPERATURA CRÍTICA - BUZZER ACTIVO</font><br>";
-        } else if (temperaturaActual > TEMP_VENTILADOR) {
-            alertas += "<font color='orange'>🌀 VENTILADOR ACTIVO</font><br>";
-        } else {
-            alertas += "<font color='green'>✅ Temperatura normal</font><br>";
+        Rotulos(JLabel lblFechaHora, JLabel lblTemperatura, JLabel lblHumedad, JLabel lblLuminosidad,
+                JLabel lblEstadoConexion, JLabel lblAlertaTemperatura, JLabel lblAlertaHumedad, JLabel lblAlertaLuz) {
+            this.lblFechaHora = lblFechaHora;
+            this.lblTemperatura = lblTemperatura;
+            this.lblHumedad = lblHumedad;
+            this.lblLuminosidad = lblLuminosidad;
+            this.lblEstadoConexion = lblEstadoConexion;
+            this.lblAlertaTemperatura = lblAlertaTemperatura;
+            this.lblAlertaHumedad = lblAlertaHumedad;
+            this.lblAlertaLuz = lblAlertaLuz;
         }
         
-        // Alertas de humedad
-        if (humedadSuelo >= UMBRAL_HUMEDAD) {
-            alertas += "<font color='blue'>💧 VÁLVULA DE RIEGO ACTIVA</font><br>";
-        } else {
-            alertas += "<font color='brown'>🏜️ Suelo seco - Sin riego</font><br>";
+        void updateClock(long ahora) {
+            lblFechaHora.setText(formato.limpiar().agregarFecha(ahora).agregar(" - ").agregarHora(ahora).texto(lblFechaHora.getText()));
         }
         
-        // Estado de iluminación
-        if (valorLDR >= UMBRAL_LUZ) {
-            alertas += "<font color='purple'>💡 LED NOCTURNO ENCENDIDO</font><br>";
-        } else {
-            alertas += "<font color='gray'>☀️ Iluminación natural</font><br>";
+        void updateSystemInfo(double temperaturaActual, int humedadSuelo, int valorLDR, boolean sistemaConectado) {
+            // Mostrar temperatura
+            lblTemperatura.setText(formato.limpiar().agregar("🌡️ ").agregarDecimal(temperaturaActual, 1).agregar("°C")
+                    .texto(lblTemperatura.getText()));
+            
+            // Convertir humedad analógica a porcentaje (invertido)
+            int humedadPorcentaje = (int)map(humedadSuelo, 1023, 0, 0, 100);
+            lblHumedad.setText(formato.limpiar().agregar("💧 ").agregar(humedadPorcentaje).agregar("% (").agregar(humedadSuelo).agregar(')')
+                    .texto(lblHumedad.getText()));
+            
+            // Estado de iluminación
+            String estadoLuz = valorLDR >= UMBRAL_LUZ ? "🌙 Noche" : "☀️ Día";
+            lblLuminosidad.setText(formato.limpiar().agregar(estadoLuz).agregar(" (").agregar(valorLDR).agregar(')')
+                    .texto(lblLuminosidad.getText()));
+            
+            // Estado de conexión
+            lblEstadoConexion.setText(sistemaConectado ? "🔗 ARDUINO CONECTADO" : "🔗 DESCONECTADO");
+            lblEstadoConexion.setForeground(sistemaConectado ? VERDE_CONECTADO : Color.RED);
+            
+            // Alertas del sistema
+            updateAlertas(temperaturaActual, humedadSuelo, valorLDR);
         }
         
-        alertas += "</html>";
-        lblAlertas.setText(alertas);
-    }
-    
-    // Función para mapear valores (como en Arduino)
-    private double map(double value, double fromLow, double fromHigh, double toLow, double toHigh) {
-        return (value - fromLow) * (toHigh - toLow) / (fromHigh - fromLow) + toLow;
+        private void updateAlertas(double temperaturaActual, int humedadSuelo, int valorLDR) {
+            // Alertas de temperatura
+            if (temperaturaActual > TEMP_ALARMA) {
+                FormatoPantalla.alerta(lblAlertaTemperatura, "⚠️ TEMPERATURA CRÍTICA - BUZZER ACTIVO", FormatoPantalla.ROJO);
+            } else if (temperaturaActual > TEMP_VENTILADOR) {
+                FormatoPantalla.alerta(lblAlertaTemperatura, "🌀 VENTILADOR ACTIVO", FormatoPantalla.NARANJA);
+            } else {
+                FormatoPantalla.alerta(lblAlertaTemperatura, "✅ Temperatura normal", FormatoPantalla.VERDE);
+            }
+            
+            // Alertas de humedad
+            if (humedadSuelo >= UMBRAL_HUMEDAD) {
+                FormatoPantalla.alerta(lblAlertaHumedad, "💧 VÁLVULA DE RIEGO ACTIVA", FormatoPantalla.AZUL);
+            } else {
+                FormatoPantalla.alerta(lblAlertaHumedad, "🏜️ Suelo seco - Sin riego", FormatoPantalla.MARRON);
+            }
+            
+            // Estado de iluminación
+            if (valorLDR >= UMBRAL_LUZ) {
+                FormatoPantalla.alerta(lblAlertaLuz, "💡 LED NOCTURNO ENCENDIDO", FormatoPantalla.VIOLETA);
+            } else {
+                FormatoPantalla.alerta(lblAlertaLuz, "☀️ Iluminación natural", FormatoPantalla.GRIS);
+            }
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -157,6 +194,9 @@ public class PanelPrincipal extends javax.swing.JFrame {
         btnSalir = new javax.swing.JButton();
         panelAlertas = new javax.swing.JPanel();
         lblAlertas = new javax.swing.JLabel();
+        lblAlertaTemperatura = new javax.swing.JLabel();
+        lblAlertaHumedad = new javax.swing.JLabel();
+        lblAlertaLuz = new javax.swing.JLabel();
         panelUmbralesArduino = new javax.swing.JPanel();
         lblTituloUmbrales = new javax.swing.JLabel();
         lblUmbralTemp = new javax.swing.JLabel();
@@ -315,9 +355,17 @@ public class PanelPrincipal extends javax.swing.JFrame {
         panelAlertas.setBackground(new java.awt.Color(255, 250, 240));
         panelAlertas.setBorder(javax.swing.BorderFactory.createTitledBorder(null, "🚨 Estado de Actuadores Arduino", javax.swing.border.TitledBorder.DEFAULT_JUSTIFICATION, javax.swing.border.TitledBorder.DEFAULT_POSITION, new java.awt.Font("Arial", 1, 14), new java.awt.Color(200, 100, 50)));
 
-        lblAlertas.setFont(new java.awt.Font("Arial", 0, 12));
-        lblAlertas.setVerticalAlignment(javax.swing.SwingConstants.TOP);
-        lblAlertas.setText("<html><b>🚨 ESTADO DEL SISTEMA:</b><br>Inicializando...</html>");
+        lblAlertas.setFont(new java.awt.Font("Arial", 1, 12));
+        lblAlertas.setText("🚨 ESTADO DEL SISTEMA:");
+
+        lblAlertaTemperatura.setFont(new java.awt.Font("Arial", 0, 12));
+        lblAlertaTemperatura.setText("Inicializando...");
+
+        lblAlertaHumedad.setFont(new java.awt.Font("Arial", 0, 12));
+        lblAlertaHumedad.setText(" ");
+
+        lblAlertaLuz.setFont(new java.awt.Font("Arial", 0, 12));
+        lblAlertaLuz.setText(" ");
 
         javax.swing.GroupLayout panelAlertasLayout = new javax.swing.GroupLayout(panelAlertas);
         panelAlertas.setLayout(panelAlertasLayout);
@@ -325,15 +373,25 @@ public class PanelPrincipal extends javax.swing.JFrame {
             panelAlertasLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
             .addGroup(panelAlertasLayout.createSequentialGroup()
                 .addContainerGap()
-                .addComponent(lblAlertas, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                .addGroup(panelAlertasLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+                    .addComponent(lblAlertas, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(lblAlertaTemperatura, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(lblAlertaHumedad, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(lblAlertaLuz, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
                 .addContainerGap())
         );
         panelAlertasLayout.setVerticalGroup(
             panelAlertasLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
             .addGroup(panelAlertasLayout.createSequentialGroup()
                 .addContainerGap()
-                .addComponent(lblAlertas, javax.swing.GroupLayout.DEFAULT_SIZE, 118, Short.MAX_VALUE)
-                .addContainerGap())
+                .addComponent(lblAlertas)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(lblAlertaTemperatura)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(lblAlertaHumedad)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(lblAlertaLuz)
+                .addContainerGap(javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
         );
 
         panelUmbralesArduino.setBackground(new java.awt.Color(240, 255, 240));
@@ -497,26 +555,13 @@ public class PanelPrincipal extends javax.swing.JFrame {
     }                                        
 
     public static void main(String args[]) {
-        try {
-            for (javax.swing.UIManager.LookAndFeelInfo info : javax.swing.UIManager.getInstalledLookAndFeels()) {
-                if ("Nimbus".equals(info.getName())) {
-                    javax.swing.UIManager.setLookAndFeel(info.getClassName());
-                    break;
-                }
-            }
-        } catch (ClassNotFoundException ex) {
-            java.util.logging.Logger.getLogger(PanelPrincipal.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
-        } catch (InstantiationException ex) {
-            java.util.logging.Logger.getLogger(PanelPrincipal.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
-        } catch (IllegalAccessException ex) {
-            java.util.logging.Logger.getLogger(PanelPrincipal.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
-        } catch (javax.swing.UnsupportedLookAndFeelException ex) {
-            java.util.logging.Logger.getLogger(PanelPrincipal.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
-        }
+        Arranque.configurarAspecto();
+
+        ServidorMetricas.iniciarSiConfigurado();
 
         java.awt.EventQueue.invokeLater(new Runnable() {
             public void run() {
-                new PanelPrincipal().setVisible(true);
+                if (!PantallaBienvenida.abrirPantallaRecuperada()) new PanelPrincipal().setVisible(true);
             }
         });
     }
@@ -527,6 +572,9 @@ public class PanelPrincipal extends javax.swing.JFrame {
     private javax.swing.JButton btnMonitoreoSerial;
     private javax.swing.JButton btnSalir;
     private javax.swing.JLabel iconoPrincipal;
+    private javax.swing.JLabel lblAlertaHumedad;
+    private javax.swing.JLabel lblAlertaLuz;
+    private javax.swing.JLabel lblAlertaTemperatura;
     private javax.swing.JLabel lblAlertas;
     private javax.swing.JLabel lblEstadoConexion;
     private javax.swing.JLabel lblFechaHora;
@@ -72,6 +72,26 @@ public class PantallaBienvenida extends javax.swing.JFrame {
         timer.start();
     }
     
+    /**
+     * Si el diario indica que una pantalla de control estaba activa (p. ej. tras
+     * una caída de la JVM), la abre directamente con su estado restaurado.
+     * @return true si se abrió una pantalla de control
+     */
+    public static boolean abrirPantallaRecuperada() {
+        DiarioActuadores diario = DiarioActuadores.getInstancia();
+        if (diario == null) return false;
+        switch (diario.getModoActivo()) {
+            case DiarioActuadores.MODO_AUTOMATICO:
+                new ControlAutomatico().setVisible(true);
+                return true;
+            case DiarioActuadores.MODO_MANUAL:
+                new ControlManual().setVisible(true);
+                return true;
+            default:
+                return false;
+        }
+    }
+    
     private void abrirPanelPrincipal() {
         try {
             new PanelPrincipal().setVisible(true);
@@ -212,26 +232,13 @@ public class PantallaBienvenida extends javax.swing.JFrame {
     }// </editor-fold>                        
 
     public static void main(String args[]) {
-        try {
-            for (javax.swing.UIManager.LookAndFeelInfo info : javax.swing.UIManager.getInstalledLookAndFeels()) {
-                if ("Nimbus".equals(info.getName())) {
-                    javax.swing.UIManager.setLookAndFeel(info.getClassName());
-                    break;
-                }
-            }
-        } catch (ClassNotFoundException ex) {
-            java.util.logging.Logger.getLogger(PantallaBienvenida.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
-        } catch (InstantiationException ex) {
-            java.util.logging.Logger.getLogger(PantallaBienvenida.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
-        } catch (IllegalAccessException ex) {
-            java.util.logging.Logger.getLogger(PantallaBienvenida.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
-        } catch (javax.swing.UnsupportedLookAndFeelException ex) {
-            java.util.logging.Logger.getLogger(PantallaBienvenida.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
-        }
+        Arranque.configurarAspecto();
+
+        ServidorMetricas.iniciarSiConfigurado();
 
         java.awt.EventQueue.invokeLater(new Runnable() {
             public void run() {
-                new PantallaBienvenida().setVisible(true);
+                if (!PantallaBienvenida.abrirPantallaRecuperada()) new PantallaBienvenida().setVisible(true);
             }
         });
     }
@@ -0,0 +1,389 @@
+package ui_invernadero;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Horarios diarios de actuadores por zona (ej. válvula de 06:00 a 06:10)
+ * Un archivo de texto (-Dinvernadero.horarios) con una ventana por línea y
+ * '#' para comentarios:
+ *   0 valve 06:00-06:10
+ *   0 led 20:00-23:30 ON
+ *   1 led 00:00-05:00 OFF
+ * ON (por defecto) enciende el actuador dentro de la ventana; OFF lo
+ * mantiene apagado aunque los umbrales lo pidan. Una ventana puede cruzar
+ * la medianoche. El buzzer no se programa: es la alarma.
+ *
+ * Cada ventana tiene un único temporizador pendiente en una
+ * RuedaTemporizadores (su próximo inicio o fin), así que agregar y quitar
+ * ventanas es O(1) y avanzar el tiempo solo toca las que cambian.
+ * Prioridad al combinar con la decisión de los umbrales: ventana OFF >
+ * ventana ON > umbrales, reglas y estado seguro del motor.
+ * @author Nicom
+ */
+public final class ProgramaHorarios {
+
+    public static final String PROPIEDAD_ARCHIVO = "invernadero.horarios";
+    private static final long RESOLUCION_MS = 1000;
+    private static final int ACTUADORES = Actuador.values().length;
+
+    /**
+     * Aviso de una ventana que se abre o se cierra
+     */
+    public interface OyenteHorarios {
+        void cambio(Horario horario, boolean abierto);
+    }
+
+    public static final class Horario {
+        private final int zona;
+        private final Actuador actuador;
+        private final LocalTime inicio;
+        private final LocalTime fin;
+        private final boolean encender;
+        private boolean abierto = false;
+        private RuedaTemporizadores.Temporizador proximo;
+
+        private Horario(int zona, Actuador actuador, LocalTime inicio, LocalTime fin, boolean encender) {
+            this.zona = zona;
+            this.actuador = actuador;
+            this.inicio = inicio;
+            this.fin = fin;
+            this.encender = encender;
+        }
+
+        public int getZona() {
+            return zona;
+        }
+
+        public Actuador getActuador() {
+            return actuador;
+        }
+
+        public LocalTime getInicio() {
+            return inicio;
+        }
+
+        public LocalTime getFin() {
+            return fin;
+        }
+
+        public boolean isEncender() {
+            return encender;
+        }
+
+        public boolean isAbierto() {
+            return abierto;
+        }
+
+        // La hora local está dentro de la ventana [inicio, fin)
+        boolean contiene(LocalTime hora) {
+            return inicio.isBefore(fin) ? !hora.isBefore(inicio) && hora.isBefore(fin)
+                                        : !hora.isBefore(inicio) || hora.isBefore(fin);
+        }
+
+        @Override
+        public String toString() {
+            return actuador.getEtiqueta() + (encender ? " ON " : " OFF ") + inicio + "–" + fin;
+        }
+    }
+
+    private final int zonas;
+    private final ZoneId zonaHoraria;
+    private final RuedaTemporizadores rueda;
+    private final int[] abiertosEncender;          // Ventanas abiertas por [zona * ACTUADORES + actuador]
+    private final int[] abiertosApagar;
+    private final int[] forzarEncendido;           // Máscaras por zona
+    private final int[] forzarApagado;
+    private long ahoraMs;
+    private int tamanio = 0;
+    private OyenteHorarios oyente;
+
+    private final RuedaTemporizadores.Vencimiento vencimiento = new RuedaTemporizadores.Vencimiento() {
+        @Override
+        public void vencer(RuedaTemporizadores.Temporizador temporizador, long ahora) {
+            Horario horario = (Horario) temporizador.getDato();
+            boolean abrir = !horario.abierto;
+            marcar(horario, abrir);
+            // El próximo borde se cuenta desde este (no desde ahora): una ventana salteada se abre y se cierra
+            horario.proximo = rueda.programar(proximo(temporizador.getVencimientoMs(), abrir ? horario.fin : horario.inicio), horario);
+            if (oyente != null) oyente.cambio(horario, abrir);
+        }
+    };
+
+    /**
+     * @param ahoraMs hora actual (las ventanas que la contienen empiezan abiertas)
+     */
+    public ProgramaHorarios(int zonas, long ahoraMs, ZoneId zonaHoraria) {
+        this.zonas = zonas;
+        this.zonaHoraria = zonaHoraria;
+        this.ahoraMs = ahoraMs;
+        this.rueda = new RuedaTemporizadores(RESOLUCION_MS, ahoraMs);
+        this.abiertosEncender = new int[zonas * ACTUADORES];
+        this.abiertosApagar = new int[zonas * ACTUADORES];
+        this.forzarEncendido = new int[zonas];
+        this.forzarApagado = new int[zonas];
+    }
+
+    public Horario agregar(int zona, Actuador actuador, LocalTime inicio, LocalTime fin, boolean encender) {
+        if (zona < 0 || zona >= zonas) throw new IllegalArgumentException("zona fuera de rango: " + zona);
+        if (actuador == Actuador.BUZZER) throw new IllegalArgumentException("el buzzer es la alarma, no se programa");
+        if (inicio.equals(fin)) throw new IllegalArgumentException("la ventana " + inicio + "–" + fin + " está vacía");
+        Horario horario = new Horario(zona, actuador, inicio, fin, encender);
+        boolean abierto = horario.contiene(Instant.ofEpochMilli(ahoraMs).atZone(zonaHoraria).toLocalTime());
+        if (abierto) marcar(horario, true);
+        horario.proximo = rueda.programar(proximo(ahoraMs, abierto ? fin : inicio), horario);
+        tamanio++;
+        return horario;
+    }
+
+    /**
+     * @return false si ya se había quitado
+     */
+    public boolean quitar(Horario horario) {
+        if (!rueda.cancelar(horario.proximo)) return false;
+        if (horario.abierto) marcar(horario, false);
+        tamanio--;
+        return true;
+    }
+
+    /**
+     * Avanza el reloj y abre o cierra las ventanas que correspondan
+     * @return cantidad de ventanas que cambiaron
+     */
+    public int avanzar(long ahoraMs, OyenteHorarios oyente) {
+        this.ahoraMs = ahoraMs;
+        this.oyente = oyente;
+        try {
+            return rueda.avanzar(ahoraMs, vencimiento);
+        } finally {
+            this.oyente = null;
+        }
+    }
+
+    /**
+     * Máscara final de una zona a partir de la decisión de los umbrales
+     */
+    public int combinar(int zona, int mascaraUmbrales) {
+        if (zona >= zonas) return mascaraUmbrales;
+        return (mascaraUmbrales | forzarEncendido[zona]) & ~forzarApagado[zona];
+    }
+
+    public int getForzadoEncendido(int zona) {
+        return zona < zonas ? forzarEncendido[zona] : 0;
+    }
+
+    public int getForzadoApagado(int zona) {
+        return zona < zonas ? forzarApagado[zona] : 0;
+    }
+
+    public int getTamanio() {
+        return tamanio;
+    }
+
+    public int getZonas() {
+        return zonas;
+    }
+
+    private void marcar(Horario horario, boolean abrir) {
+        horario.abierto = abrir;
+        int indice = horario.zona * ACTUADORES + horario.actuador.ordinal();
+        int[] abiertos = horario.encender ? abiertosEncender : abiertosApagar;
+        int[] forzados = horario.encender ? forzarEncendido : forzarApagado;
+        abiertos[indice] += abrir ? 1 : -1;                    // Ventanas superpuestas se cuentan
+        if (abiertos[indice] > 0) {
+            forzados[horario.zona] |= horario.actuador.getBit();
+        } else {
+            forzados[horario.zona] &= ~horario.actuador.getBit();
+        }
+    }
+
+    // Primera vez después de desdeMs que el reloj local marca la hora indicada
+    private long proximo(long desdeMs, LocalTime hora) {
+        ZonedDateTime desde = Instant.ofEpochMilli(desdeMs).atZone(zonaHoraria);
+        ZonedDateTime candidato = ZonedDateTime.of(desde.toLocalDate(), hora, zonaHoraria);
+        if (!candidato.isAfter(desde)) candidato = ZonedDateTime.of(desde.toLocalDate().plusDays(1), hora, zonaHoraria);
+        return candidato.toInstant().toEpochMilli();
+    }
+
+    /**
+     * Analiza un archivo de horarios; las zonas son las que aparecen en él
+     * @throws IllegalArgumentException con el número de línea si hay errores
+     */
+    public static ProgramaHorarios compilar(String texto, long ahoraMs, ZoneId zonaHoraria) {
+        List<Object[]> ventanas = new ArrayList<>();
+        int zonas = 0;
+        String[] lineas = texto.split("\r?\n");
+        for (int i = 0; i < lineas.length; i++) {
+            String linea = lineas[i];
+            int comentario = linea.indexOf('#');
+            String contenido = (comentario >= 0 ? linea.substring(0, comentario) : linea).trim().toLowerCase(Locale.ROOT);
+            if (contenido.isEmpty()) continue;
+            try {
+                String[] partes = contenido.split("\\s+");
+                if (partes.length < 3 || partes.length > 4) throw new IllegalArgumentException("se esperaba 'zona actuador HH:mm-HH:mm [ON|OFF]'");
+                int zona = Integer.parseInt(partes[0]);
+                if (zona < 0) throw new IllegalArgumentException("zona negativa");
+                Actuador actuador = ReglasDSL.actuador(partes[1]);
+                String[] horas = partes[2].split("-");
+                if (horas.length != 2) throw new IllegalArgumentException("ventana inválida '" + partes[2] + "'");
+                boolean encender = partes.length < 4 || partes[3].equals("on");
+                if (partes.length == 4 && !encender && !partes[3].equals("off")) {
+                    throw new IllegalArgumentException("se esperaba ON u OFF y se encontró '" + partes[3] + "'");
+                }
+                ventanas.add(new Object[] {zona, actuador, LocalTime.parse(horas[0]), LocalTime.parse(horas[1]), encender});
+                zonas = Math.max(zonas, zona + 1);
+            } catch (NumberFormatException | DateTimeParseException ex) {
+                throw new IllegalArgumentException("Línea " + (i + 1) + ": número u hora inválida en \"" + linea.trim() + "\"", ex);
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Línea " + (i + 1) + ": " + ex.getMessage() + " en \"" + linea.trim() + "\"", ex);
+            }
+        }
+        ProgramaHorarios programa = new ProgramaHorarios(zonas, ahoraMs, zonaHoraria);
+        for (Object[] v : ventanas) {
+            programa.agregar((Integer) v[0], (Actuador) v[1], (LocalTime) v[2], (LocalTime) v[3], (Boolean) v[4]);
+        }
+        return programa;
+    }
+
+    public static ProgramaHorarios cargar(Path archivo, long ahoraMs) throws IOException {
+        try {
+            return compilar(new String(Files.readAllBytes(archivo), StandardCharsets.UTF_8), ahoraMs, ZoneId.systemDefault());
+        } catch (IllegalArgumentException ex) {
+            throw new IOException(archivo + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Horarios del archivo indicado en -Dinvernadero.horarios, o null si no
+     * se configuró o no se pudo cargar (solo deciden los umbrales)
+     */
+    public static ProgramaHorarios cargarConfigurado(long ahoraMs) {
+        String ruta = System.getProperty(PROPIEDAD_ARCHIVO);
+        if (ruta == null) return null;
+        try {
+            return cargar(Paths.get(ruta), ahoraMs);
+        } catch (IOException ex) {
+            java.util.logging.Logger.getLogger(ProgramaHorarios.class.getName()).log(java.util.logging.Level.WARNING,
+                    "No se pudieron cargar los horarios de " + ruta, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Cientos de miles de ventanas en 1000 zonas durante un día simulado:
+     * java ui_invernadero.ProgramaHorarios [zonas] [ventanasPorActuador]
+     * Se compara avanzar la rueda cada segundo contra recorrer todas las
+     * ventanas preguntando si la hora está dentro, y se verifican las
+     * máscaras de la rueda contra ese recorrido.
+     */
+    public static void main(String args[]) {
+        int zonas = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int porActuador = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        ZoneId utc = ZoneId.of("UTC");
+        long inicioMs = 1_700_006_400_000L;                          // Una medianoche UTC
+        SplittableRandom aleatorio = new SplittableRandom(47);
+        Actuador[] programables = {Actuador.VALVULA, Actuador.LED};
+
+        long inicio = System.nanoTime();
+        ProgramaHorarios programa = new ProgramaHorarios(zonas, inicioMs, utc);
+        List<Horario> todos = new ArrayList<>();
+        for (int z = 0; z < zonas; z++) {
+            for (Actuador actuador : programables) {
+                for (int v = 0; v < porActuador; v++) {
+                    int minuto = aleatorio.nextInt(24 * 60);
+                    LocalTime desde = LocalTime.of(minuto / 60, minuto % 60);
+                    todos.add(programa.agregar(z, actuador, desde, desde.plusMinutes(1 + aleatorio.nextInt(10)), aleatorio.nextInt(10) != 0));
+                }
+            }
+        }
+        long cargarNs = System.nanoTime() - inicio;
+        inicio = System.nanoTime();
+        int quitadas = 0;
+        for (int i = 0; i < todos.size(); i += 10) {
+            if (programa.quitar(todos.get(i))) quitadas++;
+        }
+        long quitarNs = System.nanoTime() - inicio;
+
+        final int[] cambios = new int[1];
+        OyenteHorarios contar = new OyenteHorarios() {
+            @Override
+            public void cambio(Horario horario, boolean abierto) {
+                cambios[0]++;
+            }
+        };
+        long maximoTicNs = 0;
+        inicio = System.nanoTime();
+        for (long ahora = inicioMs + 1000; ahora <= inicioMs + 86_400_000L; ahora += 1000) {
+            long tic = System.nanoTime();
+            programa.avanzar(ahora, contar);
+            maximoTicNs = Math.max(maximoTicNs, System.nanoTime() - tic);
+        }
+        long diaNs = System.nanoTime() - inicio;
+
+        // Recorrido completo a ciertas horas: lo que haría un control que revisa todas las ventanas cada tic
+        int errores = 0;
+        long recorridoNs = 0;
+        int recorridos = 0;
+        ProgramaHorarios verificado = new ProgramaHorarios(zonas, inicioMs, utc);
+        List<Horario> vigentes = new ArrayList<>();
+        for (int i = 0; i < todos.size(); i++) {
+            if (i % 10 == 0) continue;
+            Horario h = todos.get(i);
+            vigentes.add(verificado.agregar(h.zona, h.actuador, h.inicio, h.fin, h.encender));
+        }
+        int[] encender = new int[zonas];
+        int[] apagar = new int[zonas];
+        for (long ahora = inicioMs + 1000; ahora <= inicioMs + 86_400_000L; ahora += 1000) {
+            verificado.avanzar(ahora, null);
+            if ((ahora / 1000) % 997 != 0) continue;
+            long tic = System.nanoTime();
+            LocalTime hora = Instant.ofEpochMilli(ahora).atZone(utc).toLocalTime();
+            java.util.Arrays.fill(encender, 0);
+            java.util.Arrays.fill(apagar, 0);
+            for (Horario h : vigentes) {
+                if (!h.contiene(hora)) continue;
+                if (h.encender) encender[h.zona] |= h.actuador.getBit(); else apagar[h.zona] |= h.actuador.getBit();
+            }
+            recorridoNs += System.nanoTime() - tic;
+            recorridos++;
+            for (int z = 0; z < zonas; z++) {
+                if (verificado.getForzadoEncendido(z) != encender[z] || verificado.getForzadoApagado(z) != apagar[z]) errores++;
+            }
+        }
+
+        System.out.printf("%,d ventanas en %,d zonas (válvula y LED, %d por actuador)%n", todos.size(), zonas, porActuador);
+        System.out.printf("Agregar: %.2f µs/ventana (con el cálculo de la próxima hora local); quitar %,d: %.0f ns/ventana%n",
+                          cargarNs / 1e3 / todos.size(), quitadas, (double) quitarNs / quitadas);
+        System.out.printf("Rueda, un día de a 1 s: %,d ms en total, %.1f µs/tic de media, %.2f ms el peor tic, %,d aperturas y cierres%n",
+                          diaNs / 1_000_000, diaNs / 1e3 / 86_400, maximoTicNs / 1e6, cambios[0]);
+        System.out.printf("Recorrer todas las ventanas: %.2f ms/tic (%,d ms por día de a 1 s)%n",
+                          recorridoNs / 1e6 / recorridos, recorridoNs / recorridos * 86_400 / 1_000_000);
+        System.out.println(errores == 0 ? "Las máscaras de la rueda coinciden con el recorrido en " + recorridos + " controles"
+                                        : "ERROR: " + errores + " máscaras distintas");
+
+        // Prioridad frente a los umbrales
+        ProgramaHorarios ejemplo = compilar("0 valve 06:00-06:10\n0 led 06:05-06:20 OFF\n", inicioMs + 6 * 3_600_000L + 7 * 60_000L, utc);
+        int umbrales = Actuador.LED.getBit() | Actuador.VENTILADOR.getBit();
+        System.out.printf(Locale.ROOT, "06:07, umbrales piden %s -> final %s%n", nombres(umbrales), nombres(ejemplo.combinar(0, umbrales)));
+    }
+
+    private static String nombres(int mascara) {
+        StringBuilder texto = new StringBuilder();
+        for (Actuador actuador : Actuador.values()) {
+            if ((mascara & actuador.getBit()) != 0) texto.append(texto.length() > 0 ? ", " : "").append(actuador.name());
+        }
+        return "[" + texto + "]";
+    }
+}
@@ -0,0 +1,52 @@
+package ui_invernadero;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reglas del DSL ya compiladas a un único MethodHandle
+ * (máscara, temperatura, humedad, ldr) → máscara nueva. Las reglas se aplican
+ * en orden y una regla posterior pisa a una anterior; los actuadores que
+ * ninguna regla menciona conservan su estado.
+ * @author Nicom
+ */
+public final class ProgramaReglas {
+
+    private final MethodHandle programa;
+    private final List<ReglasDSL.Regla> reglas;
+
+    ProgramaReglas(MethodHandle programa, List<ReglasDSL.Regla> reglas) {
+        this.programa = programa;
+        this.reglas = Collections.unmodifiableList(reglas);
+    }
+
+    /**
+     * @return máscara de actuadores (Actuador.getBit()) tras aplicar las reglas
+     */
+    public int evaluar(int mascara, double temperaturaLM35, int humedadAnalogica, int valorLDR) {
+        try {
+            return (int) programa.invokeExact(mascara, temperaturaLM35, humedadAnalogica, valorLDR);
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public int getTamanio() {
+        return reglas.size();
+    }
+
+    // Texto de cada regla, en orden
+    public List<String> getReglas() {
+        List<String> textos = new ArrayList<>(reglas.size());
+        for (ReglasDSL.Regla regla : reglas) textos.add(regla.texto);
+        return textos;
+    }
+
+    List<ReglasDSL.Regla> getAnalizadas() {
+        return reglas;
+    }
+}
@@ -0,0 +1,126 @@
+package ui_invernadero;
+
+/**
+ * Pronóstico de tendencia de un sensor (suavizado exponencial doble de Holt)
+ * Mantiene un nivel (EWMA de la lectura) y una pendiente (EWMA de la
+ * variación por segundo) con costo O(1) por muestra y sin guardar
+ * historial. Las constantes se dan en segundos para que el suavizado no
+ * dependa de la frecuencia de muestreo: con muestras irregulares el peso
+ * de cada una se ajusta al tiempo transcurrido.
+ * @author Nicom
+ */
+public final class PronosticoTendencia {
+
+    private final double tauNivelSeg;
+    private final double tauPendienteSeg;
+
+    private double nivel = Double.NaN;
+    private double pendiente = 0.0;               // Unidades por segundo
+    private long ultimaMs;
+
+    /**
+     * @param tauNivelSeg constante de tiempo del nivel (más alta = menos ruido, más retraso)
+     * @param tauPendienteSeg constante de tiempo de la pendiente
+     */
+    public PronosticoTendencia(double tauNivelSeg, double tauPendienteSeg) {
+        if (!(tauNivelSeg > 0) || !(tauPendienteSeg > 0)) {
+            throw new IllegalArgumentException("Las constantes de tiempo deben ser positivas");
+        }
+        this.tauNivelSeg = tauNivelSeg;
+        this.tauPendienteSeg = tauPendienteSeg;
+    }
+
+    public void agregar(long tiempoMs, double valor) {
+        if (Double.isNaN(nivel)) {
+            nivel = valor;
+            ultimaMs = tiempoMs;
+            return;
+        }
+        double dt = (tiempoMs - ultimaMs) / 1000.0;
+        if (dt <= 0) {
+            return;                                 // Muestra repetida o desordenada
+        }
+        ultimaMs = tiempoMs;
+        double alfa = 1.0 - Math.exp(-dt / tauNivelSeg);
+        double beta = 1.0 - Math.exp(-dt / tauPendienteSeg);
+        double anterior = nivel;
+        double previsto = nivel + pendiente * dt;
+        nivel = previsto + alfa * (valor - previsto);
+        pendiente += beta * ((nivel - anterior) / dt - pendiente);
+    }
+
+    /**
+     * @return valor esperado dentro de horizonteSeg (NaN sin muestras)
+     */
+    public double pronosticar(double horizonteSeg) {
+        return nivel + pendiente * horizonteSeg;
+    }
+
+    public double getNivel() {
+        return nivel;
+    }
+
+    public double getPendiente() {
+        return pendiente;
+    }
+
+    public void reiniciar() {
+        nivel = Double.NaN;
+        pendiente = 0.0;
+    }
+
+    /**
+     * Comparación en lazo cerrado contra el control reactivo:
+     * java ui_invernadero.PronosticoTendencia [días] [horizonteSeg]
+     * Reproduce los mismos días simulados (misma semilla) con ambos modos y
+     * reporta tiempo sobre el umbral del ventilador y cantidad de actuaciones.
+     */
+    public static void main(String args[]) {
+        int dias = args.length > 0 ? Integer.parseInt(args[0]) : 14;
+        double horizonte = args.length > 1 ? Double.parseDouble(args[1]) : 60.0;
+        for (double h : new double[] {0.0, horizonte}) {
+            long inicio = System.nanoTime();
+            double[] resultado = simular(dias, h);
+            System.out.printf("%-22s %,8.0f s sobre 51°C (%,8.0f °C·s), %,6.0f actuaciones ventilador/servo, pico %.1f°C  [%d ms]%n",
+                              h == 0 ? "Reactivo:" : "Predictivo (" + (int) h + " s):", resultado[0], resultado[1], resultado[2],
+                              resultado[3], (System.nanoTime() - inicio) / 1_000_000);
+        }
+    }
+
+    // {segundos sobre tempVentilador, °C·s sobre tempVentilador, actuaciones, pico}
+    private static double[] simular(int dias, double horizonteSeg) {
+        SimuladorInvernadero simulador = new SimuladorInvernadero(1, 38L);
+        simulador.setClimaExterior(30.0, 8.0, 0.1);              // Verano: el sol lleva el interior a más de 60°C
+        simulador.setHoraDelDia(0.0);
+        final int[] actuaciones = new int[1];
+        MotorControlAutomatico motor = new MotorControlAutomatico(new OyenteControl() {
+            @Override
+            public void transicion(Actuador actuador, boolean activo, String mensaje) {
+                if (actuador == Actuador.VENTILADOR || actuador == Actuador.SERVO) actuaciones[0]++;
+            }
+        });
+        motor.configurarPrediccion(horizonteSeg);
+
+        double tempVentilador = 51.0;
+        double segundosSobre = 0;
+        double gradosSegundo = 0;
+        double pico = Double.NEGATIVE_INFINITY;
+        for (long s = 0; s < dias * 86_400L; s++) {
+            simulador.avanzar(1.0);
+            double t = simulador.getTemperatura(0);
+            int hum = simulador.getHumedadAnalogica(0);
+            int ldr = simulador.getValorLDR(0);
+            motor.observar(s * 1000, t, hum, ldr);
+            if (s % 3 == 0) {                                  // Control cada 3 s, como NucleoControl
+                motor.ejecutar(t, hum, ldr);
+                simulador.setActuadores(0, motor.getMascara());
+            }
+            if (t > tempVentilador) {
+                segundosSobre++;
+                gradosSegundo += t - tempVentilador;
+            }
+            pico = Math.max(pico, t);
+        }
+        return new double[] {segundosSobre, gradosSegundo, actuaciones[0], pico};
+    }
+}
@@ -0,0 +1,167 @@
+package ui_invernadero;
+
+/**
+ * Protocolo de texto del Arduino por puerto serie (una línea por mensaje)
+ * Placa → PC:  S,temperatura,humedad,ldr     (ej. "S,25.4,450,300")
+ * PC → Placa:  A,pin,valor                  (ej. "A,8,1"; servo "A,7,90")
+ *              A,pin,valor,secuencia        con número de secuencia (0-65535) para tener varios en vuelo
+ *              P,periodo                    período de muestreo en pasos de 20 ms (ej. "P,50" = 1 s)
+ * Placa → PC:  K,pin,valor[,secuencia]      confirmación del comando (con la secuencia si vino)
+ *              K,P,periodo                  confirmación del período
+ *              E,comando                    pin desconocido o comando inválido
+ * @author Nicom
+ */
+public final class ProtocoloArduino {
+
+    public static final int BAUDIOS = 9600;
+    public static final int UNIDAD_PERIODO_MS = 20;
+    private static final double[] POTENCIAS_10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+
+    private ProtocoloArduino() {
+    }
+
+    /**
+     * Interpreta una línea de muestra sin crear objetos intermedios (salvo
+     * una temperatura con exponente o más de 15 dígitos, que pasa por
+     * Double.parseDouble).
+     * @return la muestra, o null si la línea no es una muestra válida
+     */
+    public static Muestra parsearMuestra(int placa, long tiempoMs, CharSequence linea) {
+        int n = linea.length();
+        if (n < 7 || linea.charAt(0) != 'S' || linea.charAt(1) != ',') return null;
+        int c1 = indiceComa(linea, 2);
+        int c2 = c1 < 0 ? -1 : indiceComa(linea, c1 + 1);
+        if (c2 < 0) return null;
+        try {
+            double temperatura = parsearDecimal(linea, 2, c1);
+            int humedad = parsearEntero(linea, c1 + 1, c2);
+            int ldr = parsearEntero(linea, c2 + 1, n);
+            if (humedad < 0 || ldr < 0) return null;
+            return new Muestra(placa, tiempoMs, temperatura, humedad, ldr);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    public static String formatearMuestra(double temperaturaLM35, int humedadAnalogica, int valorLDR) {
+        return "S," + (Math.round(temperaturaLM35 * 10) / 10.0) + "," + humedadAnalogica + "," + valorLDR;
+    }
+
+    /**
+     * Comando de actuador; el servo va en grados (0 / 90), el resto 0 / 1
+     */
+    public static String formatearComando(Actuador actuador, boolean activo) {
+        return "A," + actuador.getPin() + "," + valorPin(actuador, activo);
+    }
+
+    /**
+     * Pedido de período de muestreo; los pasos entran en un byte también en
+     * el protocolo binario (hasta 5,1 s). Un firmware sin este mensaje
+     * responde "E,P,n" y sigue con su período.
+     */
+    public static String formatearPeriodo(long periodoMs) {
+        return "P," + Math.max(1, Math.min(255, periodoMs / UNIDAD_PERIODO_MS));
+    }
+
+    /**
+     * @return los pasos de 20 ms de un "P,periodo" (1-255), o -1 si la línea
+     *         no es un pedido de período válido
+     */
+    public static int parsearPeriodo(CharSequence linea) {
+        if (linea.length() < 3 || linea.charAt(0) != 'P' || linea.charAt(1) != ',') return -1;
+        int pasos = parsearEntero(linea, 2, linea.length());
+        return pasos >= 1 && pasos <= 255 ? pasos : -1;
+    }
+
+    // Comando con número de secuencia: la confirmación lo repite
+    public static String formatearComando(int pin, int valor, int secuencia) {
+        return "A," + pin + "," + valor + "," + secuencia;
+    }
+
+    public static String formatearConfirmacion(int pin, int valor) {
+        return "K," + pin + "," + valor;
+    }
+
+    public static String formatearConfirmacion(int pin, int valor, int secuencia) {
+        return secuencia < 0 ? formatearConfirmacion(pin, valor) : "K," + pin + "," + valor + "," + secuencia;
+    }
+
+    static int valorPin(Actuador actuador, boolean activo) {
+        if (actuador == Actuador.SERVO) return activo ? 90 : 0;
+        return activo ? 1 : 0;
+    }
+
+    /**
+     * Interpreta "A,pin,valor[,secuencia]" o "K,pin,valor[,secuencia]" (según tipo)
+     * @return {pin, valor, secuencia} (secuencia -1 si no vino), o null si la
+     *         línea no es de ese tipo o es inválida
+     */
+    public static int[] parsearPinValor(char tipo, CharSequence linea) {
+        int n = linea.length();
+        if (n < 5 || linea.charAt(0) != tipo || linea.charAt(1) != ',') return null;
+        int coma = indiceComa(linea, 2);
+        if (coma < 0) return null;
+        int coma2 = indiceComa(linea, coma + 1);
+        int pin = parsearEntero(linea, 2, coma);
+        int valor = parsearEntero(linea, coma + 1, coma2 < 0 ? n : coma2);
+        int secuencia = coma2 < 0 ? -1 : parsearEntero(linea, coma2 + 1, n);
+        if (pin < 0 || valor < 0 || (coma2 >= 0 && (secuencia < 0 || secuencia > 0xFFFF))) return null;
+        return new int[] {pin, valor, secuencia};
+    }
+
+    public static Actuador actuadorDelPin(int pin) {
+        for (Actuador actuador : Actuador.values()) {
+            if (actuador.getPin() == pin) return actuador;
+        }
+        return null;
+    }
+
+    private static int indiceComa(CharSequence linea, int desde) {
+        for (int i = desde; i < linea.length(); i++) {
+            if (linea.charAt(i) == ',') return i;
+        }
+        return -1;
+    }
+
+    // Signo, dígitos y a lo sumo un punto: mantisa y potencia de 10 exactas en double, así la división da
+    // el mismo valor redondeado que Double.parseDouble; lo demás (exponente, NaN, muchos dígitos) va a parseDouble
+    static double parsearDecimal(CharSequence linea, int desde, int hasta) {
+        int i = desde;
+        int fin = hasta;
+        while (i < fin && Character.isWhitespace(linea.charAt(i))) i++;
+        while (fin > i && Character.isWhitespace(linea.charAt(fin - 1))) fin--;
+        boolean negativo = i < fin && linea.charAt(i) == '-';
+        if (i < fin && (linea.charAt(i) == '-' || linea.charAt(i) == '+')) i++;
+        long mantisa = 0;
+        int digitos = 0;
+        int decimales = -1;
+        for (; i < fin; i++) {
+            char c = linea.charAt(i);
+            if (c >= '0' && c <= '9' && digitos < 15) {
+                mantisa = mantisa * 10 + (c - '0');
+                digitos++;
+                if (decimales >= 0) decimales++;
+            } else if (c == '.' && decimales < 0) {
+                decimales = 0;
+            } else {
+                return Double.parseDouble(linea.subSequence(desde, hasta).toString());
+            }
+        }
+        if (digitos == 0) throw new NumberFormatException("Temperatura vacía");
+        double valor = decimales > 0 ? mantisa / POTENCIAS_10[decimales] : mantisa;
+        return negativo ? -valor : valor;
+    }
+
+    // Entero decimal sin signo (lecturas del ADC 0-1023); -1 si no es válido
+    static int parsearEntero(CharSequence linea, int desde, int hasta) {
+        while (hasta > desde && Character.isWhitespace(linea.charAt(hasta - 1))) hasta--;
+        if (desde >= hasta) return -1;
+        int valor = 0;
+        for (int i = desde; i < hasta; i++) {
+            char c = linea.charAt(i);
+            if (c < '0' || c > '9' || valor > 100_000) return -1;
+            valor = valor * 10 + (c - '0');
+        }
+        return valor;
+    }
+}
@@ -0,0 +1,331 @@
+package ui_invernadero;
+
+/**
+ * Protocolo binario de tramas con CRC para muestreo de alta frecuencia
+ * Se negocia sobre el protocolo de texto al conectar: la PC envía "P,BIN" y
+ * la placa que lo soporta responde "K,BIN" y desde el byte siguiente ambos
+ * lados hablan en tramas; una placa que no lo soporta responde "E,P,BIN" (o
+ * nada) y se sigue en texto.
+ *
+ * Trama de muestra (placa → PC, 15 bytes):
+ *   A5 | 01 | secuencia u16 | tiempo ms u32 | ADC A0,A1,A2 10 bits c/u (4 bytes) | actuadores u8 | CRC-16
+ * Comando (PC → placa) y confirmación / error (placa → PC), 8 bytes:
+ *   A5 | 02 / 03 / 04 | secuencia u16 | pin u8 | valor u8 | CRC-16
+ * Período de muestreo (PC → placa, como "P,n" en texto), 8 bytes; la placa
+ * devuelve la misma trama con los pasos aplicados (0 si no lo aceptó):
+ *   A5 | 05 | secuencia u16 | 00 | pasos de 20 ms u8 | CRC-16
+ * Enteros en big-endian; CRC-16/CCITT-FALSE sobre todo lo que sigue a A5.
+ * La secuencia de las muestras es consecutiva: un salto indica tramas
+ * perdidas. La confirmación repite la secuencia del comando.
+ * A 115200 baudios (11520 bytes/s) caben 768 muestras/s.
+ * @author Nicom
+ */
+public final class ProtocoloBinario {
+
+    public static final int BAUDIOS = 115200;
+    public static final String PEDIDO = "P,BIN";
+    public static final String ACEPTADO = "K,BIN";
+
+    public static final int SINCRONIA = 0xA5;
+    public static final int MUESTRA = 1;
+    public static final int COMANDO = 2;
+    public static final int CONFIRMACION = 3;
+    public static final int ERROR = 4;
+    public static final int PERIODO = 5;
+
+    public static final int LARGO_MUESTRA = 15;
+    public static final int LARGO_COMANDO = 8;
+
+    private static final char[] TABLA_CRC = new char[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 8;
+            for (int b = 0; b < 8; b++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+            TABLA_CRC[i] = (char) crc;
+        }
+    }
+
+    private ProtocoloBinario() {
+    }
+
+    static int crc16(byte[] datos, int desde, int hasta) {
+        int crc = 0xFFFF;
+        for (int i = desde; i < hasta; i++) {
+            crc = (crc << 8 ^ TABLA_CRC[(crc >>> 8 ^ datos[i]) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+
+    // LM35 con referencia de 5 V: 10 mV/°C → 500°C a fondo de escala (0.49°C por cuenta)
+    public static int adcTemperatura(double celsius) {
+        return Math.max(0, Math.min(1023, (int) Math.round(celsius * 1024.0 / 500.0)));
+    }
+
+    public static double temperaturaDeAdc(int adc) {
+        return adc * 500.0 / 1024.0;
+    }
+
+    /**
+     * @return bytes escritos en destino desde posicion (LARGO_MUESTRA)
+     */
+    public static int codificarMuestra(byte[] destino, int posicion, int secuencia, long tiempoMs,
+                                       int adcTemperatura, int adcHumedad, int adcLuz, int actuadores) {
+        int adc = (adcTemperatura & 0x3FF) << 20 | (adcHumedad & 0x3FF) << 10 | (adcLuz & 0x3FF);
+        destino[posicion] = (byte) SINCRONIA;
+        destino[posicion + 1] = MUESTRA;
+        escribir16(destino, posicion + 2, secuencia);
+        escribir16(destino, posicion + 4, (int) (tiempoMs >>> 16));
+        escribir16(destino, posicion + 6, (int) tiempoMs);
+        escribir16(destino, posicion + 8, adc >>> 16);
+        escribir16(destino, posicion + 10, adc);
+        destino[posicion + 12] = (byte) actuadores;
+        escribir16(destino, posicion + 13, crc16(destino, posicion + 1, posicion + 13));
+        return LARGO_MUESTRA;
+    }
+
+    /**
+     * Comando, confirmación o error
+     * @return bytes escritos en destino desde posicion (LARGO_COMANDO)
+     */
+    public static int codificarComando(byte[] destino, int posicion, int tipo, int secuencia, int pin, int valor) {
+        destino[posicion] = (byte) SINCRONIA;
+        destino[posicion + 1] = (byte) tipo;
+        escribir16(destino, posicion + 2, secuencia);
+        destino[posicion + 4] = (byte) pin;
+        destino[posicion + 5] = (byte) valor;
+        escribir16(destino, posicion + 6, crc16(destino, posicion + 1, posicion + 6));
+        return LARGO_COMANDO;
+    }
+
+    private static void escribir16(byte[] destino, int posicion, int valor) {
+        destino[posicion] = (byte) (valor >>> 8);
+        destino[posicion + 1] = (byte) valor;
+    }
+
+    private static int leer16(byte[] origen, int posicion) {
+        return (origen[posicion] & 0xFF) << 8 | origen[posicion + 1] & 0xFF;
+    }
+
+    /**
+     * Decodificador de un flujo de bytes, uno a la vez y sin reservar memoria
+     * Si el CRC no coincide busca la siguiente sincronía dentro de los bytes ya
+     * recibidos, así una trama cortada no arrastra a la siguiente.
+     */
+    public static final class Decodificador {
+
+        private final byte[] trama = new byte[LARGO_MUESTRA];
+        private int largo = 0;
+
+        private int ultimaSecuencia = -1;
+        private long perdidas = 0;
+        private long corruptas = 0;
+
+        // Campos de la última trama completa
+        private int tipo;
+        private int secuencia;
+        private long tiempoMs;
+        private int adc;
+        private int actuadores;
+        private int pin;
+        private int valor;
+
+        /**
+         * @return el tipo de la trama que este byte completa, o 0
+         */
+        public int agregar(int dato) {
+            if (largo == 0 && dato != SINCRONIA) return 0;
+            trama[largo++] = (byte) dato;
+            while (largo >= 2) {
+                int esperado = largoDe(trama[1]);
+                if (esperado != 0 && largo < esperado) return 0;
+                if (esperado != 0 && crc16(trama, 1, esperado - 2) == leer16(trama, esperado - 2)) {
+                    decodificar();
+                    quitar(esperado);
+                    return tipo;
+                }
+                if (esperado != 0) corruptas++;
+                quitar(1);                          // Sincronía falsa o trama rota: probar la próxima A5
+            }
+            return 0;
+        }
+
+        private void decodificar() {
+            tipo = trama[1];
+            secuencia = leer16(trama, 2);
+            if (tipo == MUESTRA) {
+                tiempoMs = (long) leer16(trama, 4) << 16 | leer16(trama, 6);
+                adc = leer16(trama, 8) << 16 | leer16(trama, 10);
+                actuadores = trama[12] & 0xFF;
+                if (ultimaSecuencia >= 0) {
+                    int salto = (secuencia - ultimaSecuencia) & 0xFFFF;
+                    if (salto > 1 && salto < 0x8000) perdidas += salto - 1;
+                }
+                ultimaSecuencia = secuencia;
+            } else {
+                pin = trama[4] & 0xFF;
+                valor = trama[5] & 0xFF;
+            }
+        }
+
+        // Descarta n bytes y lo que siga hasta la próxima sincronía
+        private void quitar(int n) {
+            while (n < largo && (trama[n] & 0xFF) != SINCRONIA) n++;
+            System.arraycopy(trama, n, trama, 0, largo - n);
+            largo -= n;
+        }
+
+        private static int largoDe(byte tipo) {
+            switch (tipo) {
+                case MUESTRA: return LARGO_MUESTRA;
+                case COMANDO:
+                case CONFIRMACION:
+                case ERROR:
+                case PERIODO: return LARGO_COMANDO;
+                default: return 0;
+            }
+        }
+
+        public int getTipo() {
+            return tipo;
+        }
+
+        public int getSecuencia() {
+            return secuencia;
+        }
+
+        public long getTiempoMs() {
+            return tiempoMs;
+        }
+
+        public int getAdcTemperatura() {
+            return adc >>> 20 & 0x3FF;
+        }
+
+        public int getAdcHumedad() {
+            return adc >>> 10 & 0x3FF;
+        }
+
+        public int getAdcLuz() {
+            return adc & 0x3FF;
+        }
+
+        public int getActuadores() {
+            return actuadores;
+        }
+
+        public int getPin() {
+            return pin;
+        }
+
+        public int getValor() {
+            return valor;
+        }
+
+        // Muestras que faltan según la secuencia
+        public long getPerdidas() {
+            return perdidas;
+        }
+
+        public long getCorruptas() {
+            return corruptas;
+        }
+    }
+
+    /**
+     * Verificación del decodificador y prueba de punta a punta con el EmuladorArduino:
+     * java ui_invernadero.ProtocoloBinario [segundos]
+     */
+    public static void main(String args[]) throws Exception {
+        int segundos = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        byte[] prueba = "123456789".getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+        if (crc16(prueba, 0, prueba.length) != 0x29B1) {
+            throw new IllegalStateException("CRC-16/CCITT-FALSE incorrecto");
+        }
+
+        // Flujo con bytes perdidos y alterados: ninguna trama mala pasa y las faltantes se cuentan
+        java.util.SplittableRandom aleatorio = new java.util.SplittableRandom(43);
+        int tramas = 1_000_000;
+        byte[] flujo = new byte[tramas * LARGO_MUESTRA];
+        int largo = 0;
+        for (int i = 0; i < tramas; i++) {
+            largo += codificarMuestra(flujo, largo, i, i * 5L, i & 0x3FF, (i >> 3) & 0x3FF, (i >> 6) & 0x3FF, i & 0x1F);
+        }
+        Decodificador decodificador = new Decodificador();
+        int buenas = 0;
+        int alteradas = 0;
+        for (int i = 0; i < largo; i++) {
+            int dato = flujo[i] & 0xFF;
+            int azar = aleatorio.nextInt(20_000);
+            if (azar == 0) continue;                                   // Byte perdido
+            if (azar == 1) {
+                dato ^= 1 << aleatorio.nextInt(8);                     // Bit alterado
+                alteradas++;
+            }
+            if (decodificador.agregar(dato) == MUESTRA) {
+                int n = decodificador.getSecuencia();
+                long esperado = n;
+                for (int vuelta = 1; esperado * 5 % (1L << 32) != decodificador.getTiempoMs() && vuelta < 16; vuelta++) {
+                    esperado = n + vuelta * 65_536L;
+                }
+                int e = (int) esperado;
+                if (decodificador.getAdcTemperatura() != (e & 0x3FF) || decodificador.getAdcHumedad() != ((e >> 3) & 0x3FF)
+                        || decodificador.getAdcLuz() != ((e >> 6) & 0x3FF) || decodificador.getActuadores() != (e & 0x1F)) {
+                    throw new IllegalStateException("Trama aceptada con datos incorrectos: " + n);
+                }
+                buenas++;
+            }
+        }
+        System.out.printf("Decodificador: %,d de %,d tramas válidas, %,d perdidas por secuencia, %,d con CRC incorrecto (%,d bits alterados)%n",
+                          buenas, tramas, decodificador.getPerdidas(), decodificador.getCorruptas(), alteradas);
+        if (buenas + decodificador.getPerdidas() != tramas) {
+            throw new IllegalStateException("Las perdidas no cierran: " + (tramas - buenas - decodificador.getPerdidas()));
+        }
+
+        double ns = 0;
+        for (int v = 0; v < 3; v++) {
+            decodificador = new Decodificador();
+            long inicio = System.nanoTime();
+            for (int i = 0; i < largo; i++) {
+                decodificador.agregar(flujo[i] & 0xFF);
+            }
+            ns = (double) (System.nanoTime() - inicio) / tramas;
+        }
+        System.out.printf("Decodificación: %.0f ns/trama%n", ns);
+
+        // Emulador a la velocidad del puerto serie, sin pausa entre muestras
+        probar("Texto a 9600", ProtocoloArduino.BAUDIOS, false, true, 0, segundos);
+        probar("Texto a 115200", BAUDIOS, false, true, 0, segundos);
+        probar("Binario a 9600", ProtocoloArduino.BAUDIOS, true, true, 0, segundos);
+        probar("Binario a 115200", BAUDIOS, true, true, 0, segundos);
+        probar("Binario a 115200, 0.1% bytes perdidos", BAUDIOS, true, true, 0.001, segundos);
+        probar("Placa solo texto, se pide binario", BAUDIOS, true, false, 0, segundos);
+    }
+
+    private static void probar(String nombre, int baudios, boolean binario, boolean soportado, double perdida,
+                               int segundos) throws Exception {
+        EmuladorArduino emulador = new EmuladorArduino(0, 0, 1.0, 43L);
+        emulador.setBaudios(baudios);
+        emulador.setBinarioDisponible(soportado);
+        emulador.setProbabilidadPerdida(perdida);
+        emulador.iniciar();
+        FlotaPlacas flota = new FlotaPlacas(4096);
+        boolean negociado = flota.conectar(0, FlotaPlacas.socket(new java.net.Socket(java.net.InetAddress.getLoopbackAddress(),
+                                                                                          emulador.getPuerto())), binario);
+        flota.getCanal().clear();
+        long recibidas = 0;
+        long inicio = System.nanoTime();
+        long fin = inicio + java.util.concurrent.TimeUnit.SECONDS.toNanos(segundos);
+        while (System.nanoTime() < fin) {
+            if (flota.getCanal().poll(10, java.util.concurrent.TimeUnit.MILLISECONDS) != null) recibidas++;
+        }
+        double transcurrido = (System.nanoTime() - inicio) / 1e9;
+        flota.close();
+        emulador.close();
+        System.out.printf("%-40s %s: %,6.0f muestras/s, %d perdidas, %d inválidas%n", nombre,
+                          negociado ? "binario" : "texto  ", recibidas / transcurrido, flota.getTramasPerdidas(),
+                          flota.getLineasInvalidas());
+    }
+}
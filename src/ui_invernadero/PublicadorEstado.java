@@ -0,0 +1,80 @@
+package ui_invernadero;
+
+import java.awt.DisplayMode;
+import java.awt.GraphicsEnvironment;
+import java.awt.HeadlessException;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.swing.Timer;
+
+/**
+ * Publicación sin bloqueos del último estado de cada zona hacia la interfaz
+ * El núcleo de control reemplaza la foto de la zona con una sola escritura
+ * atómica (gana el último valor) y nunca espera a la interfaz. La interfaz
+ * revisa a la frecuencia de refresco de la pantalla si hubo cambios y repinta
+ * como máximo una vez por cuadro, sin importar cuántas fotos llegaron.
+ * @author Nicom
+ */
+public class PublicadorEstado {
+
+    private static final int REFRESCO_POR_DEFECTO_HZ = 60;
+
+    private final AtomicReferenceArray<EstadoZona> zonas;
+    private final AtomicLong version = new AtomicLong();
+
+    public PublicadorEstado(int zonas) {
+        this.zonas = new AtomicReferenceArray<>(zonas);
+    }
+
+    // Llamado por el núcleo de control (cualquier hilo)
+    public void publicar(int zona, EstadoZona estado) {
+        zonas.set(zona, estado);
+        version.incrementAndGet();
+    }
+
+    public EstadoZona leer(int zona) {
+        return zonas.get(zona);
+    }
+
+    public int getZonas() {
+        return zonas.length();
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Timer de Swing que ejecuta repintar en el EDT solo cuando hubo
+     * publicaciones desde el último cuadro
+     */
+    public Timer crearRefresco(final Runnable repintar) {
+        Timer refresco = new Timer(1000 / frecuenciaRefresco(), new ActionListener() {
+            private long ultimaVersion = -1;
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                long actual = version.get();
+                if (actual != ultimaVersion) {
+                    ultimaVersion = actual;
+                    repintar.run();
+                }
+            }
+        });
+        refresco.setCoalesce(true);
+        return refresco;
+    }
+
+    // Frecuencia de refresco de la pantalla principal (60 Hz si no se conoce)
+    static int frecuenciaRefresco() {
+        try {
+            if (GraphicsEnvironment.isHeadless()) return REFRESCO_POR_DEFECTO_HZ;
+            int hz = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+            return hz == DisplayMode.REFRESH_RATE_UNKNOWN || hz <= 0 ? REFRESCO_POR_DEFECTO_HZ : Math.min(hz, 240);
+        } catch (HeadlessException ex) {
+            return REFRESCO_POR_DEFECTO_HZ;
+        }
+    }
+}
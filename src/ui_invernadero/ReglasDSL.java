@@ -0,0 +1,614 @@
+package ui_invernadero;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Lenguaje de reglas del control automático
+ * Una regla por línea, '#' para comentarios:
+ *   temp > 51 AND ldr >= 500 -> fan ON, servo 90
+ * Sensores: temp, hum, ldr. Comparadores: &gt; &gt;= &lt; &lt;= == !=.
+ * Conectores: AND, OR, NOT y paréntesis. Actuadores: fan, buzzer, led,
+ * valve, servo (también sus nombres en español) con ON, OFF o un ángulo.
+ * Las reglas se compilan una sola vez a MethodHandles encadenados; después
+ * de calentarse, el JIT los convierte en código en línea sin interpretar el
+ * árbol en cada tick.
+ * @author Nicom
+ */
+public final class ReglasDSL {
+
+    public static final String PROPIEDAD_ARCHIVO = "invernadero.reglas";
+
+    private static final int TEMPERATURA = 0;
+    private static final int HUMEDAD = 1;
+    private static final int LUZ = 2;
+
+    private static final int MAYOR = 0;
+    private static final int MAYOR_IGUAL = 1;
+    private static final int MENOR = 2;
+    private static final int MENOR_IGUAL = 3;
+    private static final int IGUAL = 4;
+    private static final int DISTINTO = 5;
+    private static final String[] COMPARADORES = {">", ">=", "<", "<=", "==", "!="};
+
+    private static final MethodHandle[] COMPARAR = new MethodHandle[COMPARADORES.length];
+    private static final MethodHandle NEGAR;
+    private static final MethodHandle APLICAR;
+    private static final MethodHandle VERDADERO;
+    private static final MethodHandle FALSO;
+    private static final MethodHandle SIN_CAMBIOS;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodType comparacion = MethodType.methodType(boolean.class, double.class, double.class);
+            String[] nombres = {"mayor", "mayorIgual", "menor", "menorIgual", "igual", "distinto"};
+            for (int i = 0; i < nombres.length; i++) {
+                COMPARAR[i] = lookup.findStatic(ReglasDSL.class, nombres[i], comparacion);
+            }
+            NEGAR = lookup.findStatic(ReglasDSL.class, "negar", MethodType.methodType(boolean.class, boolean.class));
+            APLICAR = lookup.findStatic(ReglasDSL.class, "aplicar", MethodType.methodType(int.class, int.class, int.class, int.class));
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+        Class<?>[] sensores = {double.class, int.class, int.class};
+        VERDADERO = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, true), 0, sensores);
+        FALSO = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, false), 0, sensores);
+        SIN_CAMBIOS = MethodHandles.dropArguments(MethodHandles.identity(int.class), 1, sensores);
+    }
+
+    private ReglasDSL() {
+    }
+
+    // Primitivas que encadenan los MethodHandles
+
+    private static boolean mayor(double valor, double umbral) {
+        return valor > umbral;
+    }
+
+    private static boolean mayorIgual(double valor, double umbral) {
+        return valor >= umbral;
+    }
+
+    private static boolean menor(double valor, double umbral) {
+        return valor < umbral;
+    }
+
+    private static boolean menorIgual(double valor, double umbral) {
+        return valor <= umbral;
+    }
+
+    private static boolean igual(double valor, double umbral) {
+        return valor == umbral;
+    }
+
+    private static boolean distinto(double valor, double umbral) {
+        return valor != umbral;
+    }
+
+    private static boolean negar(boolean valor) {
+        return !valor;
+    }
+
+    private static int aplicar(int mascara, int encender, int apagar) {
+        return (mascara | encender) & ~apagar;
+    }
+
+    /**
+     * Condición del lado izquierdo de una regla
+     */
+    abstract static class Condicion {
+        // Evaluación directa sobre el árbol (referencia para verificar)
+        abstract boolean interpretar(double temperatura, int humedad, int ldr);
+
+        // (double temperatura, int humedad, int ldr) → boolean
+        abstract MethodHandle compilar();
+
+        // Comparaciones simples de las que depende la condición
+        abstract void comparaciones(List<Comparacion> destino);
+    }
+
+    static final class Comparacion extends Condicion {
+        final int sensor;
+        final int comparador;
+        final double valor;
+
+        Comparacion(int sensor, int comparador, double valor) {
+            this.sensor = sensor;
+            this.comparador = comparador;
+            this.valor = valor;
+        }
+
+        @Override
+        boolean interpretar(double temperatura, int humedad, int ldr) {
+            double leido = sensor == TEMPERATURA ? temperatura : sensor == HUMEDAD ? humedad : ldr;
+            switch (comparador) {
+                case MAYOR: return leido > valor;
+                case MAYOR_IGUAL: return leido >= valor;
+                case MENOR: return leido < valor;
+                case MENOR_IGUAL: return leido <= valor;
+                case IGUAL: return leido == valor;
+                default: return leido != valor;
+            }
+        }
+
+        @Override
+        void comparaciones(List<Comparacion> destino) {
+            destino.add(this);
+        }
+
+        @Override
+        MethodHandle compilar() {
+            MethodHandle prueba = MethodHandles.insertArguments(COMPARAR[comparador], 1, valor);
+            switch (sensor) {
+                case TEMPERATURA:
+                    return MethodHandles.dropArguments(prueba, 1, int.class, int.class);
+                case HUMEDAD:
+                    prueba = prueba.asType(MethodType.methodType(boolean.class, int.class));
+                    return MethodHandles.dropArguments(MethodHandles.dropArguments(prueba, 0, double.class), 2, int.class);
+                default:
+                    prueba = prueba.asType(MethodType.methodType(boolean.class, int.class));
+                    return MethodHandles.dropArguments(prueba, 0, double.class, int.class);
+            }
+        }
+    }
+
+    private static final class Y extends Condicion {
+        final Condicion izquierda;
+        final Condicion derecha;
+
+        Y(Condicion izquierda, Condicion derecha) {
+            this.izquierda = izquierda;
+            this.derecha = derecha;
+        }
+
+        @Override
+        boolean interpretar(double temperatura, int humedad, int ldr) {
+            return izquierda.interpretar(temperatura, humedad, ldr) && derecha.interpretar(temperatura, humedad, ldr);
+        }
+
+        @Override
+        MethodHandle compilar() {
+            return MethodHandles.guardWithTest(izquierda.compilar(), derecha.compilar(), FALSO);
+        }
+
+        @Override
+        void comparaciones(List<Comparacion> destino) {
+            izquierda.comparaciones(destino);
+            derecha.comparaciones(destino);
+        }
+    }
+
+    private static final class O extends Condicion {
+        final Condicion izquierda;
+        final Condicion derecha;
+
+        O(Condicion izquierda, Condicion derecha) {
+            this.izquierda = izquierda;
+            this.derecha = derecha;
+        }
+
+        @Override
+        boolean interpretar(double temperatura, int humedad, int ldr) {
+            return izquierda.interpretar(temperatura, humedad, ldr) || derecha.interpretar(temperatura, humedad, ldr);
+        }
+
+        @Override
+        MethodHandle compilar() {
+            return MethodHandles.guardWithTest(izquierda.compilar(), VERDADERO, derecha.compilar());
+        }
+
+        @Override
+        void comparaciones(List<Comparacion> destino) {
+            izquierda.comparaciones(destino);
+            derecha.comparaciones(destino);
+        }
+    }
+
+    private static final class No extends Condicion {
+        final Condicion condicion;
+
+        No(Condicion condicion) {
+            this.condicion = condicion;
+        }
+
+        @Override
+        boolean interpretar(double temperatura, int humedad, int ldr) {
+            return !condicion.interpretar(temperatura, humedad, ldr);
+        }
+
+        @Override
+        MethodHandle compilar() {
+            return MethodHandles.filterReturnValue(condicion.compilar(), NEGAR);
+        }
+
+        @Override
+        void comparaciones(List<Comparacion> destino) {
+            condicion.comparaciones(destino);
+        }
+    }
+
+    /**
+     * Regla ya analizada: si se cumple la condición, enciende y apaga bits
+     */
+    static final class Regla {
+        final Condicion condicion;
+        final int encender;
+        final int apagar;
+        final String texto;
+
+        Regla(Condicion condicion, int encender, int apagar, String texto) {
+            this.condicion = condicion;
+            this.encender = encender;
+            this.apagar = apagar;
+            this.texto = texto;
+        }
+
+        // (int mascara, double temperatura, int humedad, int ldr) → int
+        MethodHandle compilar() {
+            MethodHandle prueba = MethodHandles.dropArguments(condicion.compilar(), 0, int.class);
+            MethodHandle accion = MethodHandles.insertArguments(APLICAR, 1, encender, apagar);
+            accion = MethodHandles.dropArguments(accion, 1, double.class, int.class, int.class);
+            return MethodHandles.guardWithTest(prueba, accion, SIN_CAMBIOS);
+        }
+    }
+
+    /**
+     * Analiza y compila un conjunto de reglas
+     * @throws IllegalArgumentException con el número de línea si hay errores
+     */
+    public static ProgramaReglas compilar(String texto) {
+        List<Regla> reglas = analizar(texto);
+        return new ProgramaReglas(encadenar(reglas, 0, reglas.size()), reglas);
+    }
+
+    public static ProgramaReglas cargar(Path archivo) throws IOException {
+        try {
+            return compilar(new String(Files.readAllBytes(archivo), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException ex) {
+            throw new IOException(archivo + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Reglas del archivo indicado en -Dinvernadero.reglas, o null si no se
+     * configuró o no se pudo cargar (se usa la lógica fija del Arduino)
+     */
+    public static ProgramaReglas cargarConfigurado() {
+        String ruta = System.getProperty(PROPIEDAD_ARCHIVO);
+        if (ruta == null) return null;
+        try {
+            return cargar(Paths.get(ruta));
+        } catch (IOException ex) {
+            java.util.logging.Logger.getLogger(ReglasDSL.class.getName()).log(java.util.logging.Level.WARNING,
+                    "No se pudieron cargar las reglas de " + ruta, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Actuador por su nombre en minúsculas (fan, buzzer, led, valve, servo o en español)
+     */
+    static Actuador actuador(String nombre) {
+        switch (nombre) {
+            case "fan": case "ventilador": return Actuador.VENTILADOR;
+            case "buzzer": return Actuador.BUZZER;
+            case "led": return Actuador.LED;
+            case "valve": case "valvula": case "válvula": return Actuador.VALVULA;
+            case "servo": return Actuador.SERVO;
+            default: throw new IllegalArgumentException("actuador desconocido '" + nombre + "'");
+        }
+    }
+
+    /**
+     * Lógica fija de MotorControlAutomatico escrita como reglas
+     */
+    public static String porDefecto(double tempNormal, double tempVentilador, double tempBuzzer,
+                                    int umbralHumedad, int umbralLuz) {
+        return "# Temperatura: ventilador y buzzer\n"
+             + "temp > " + tempBuzzer + " -> fan ON, buzzer ON\n"
+             + "temp > " + tempVentilador + " AND temp <= " + tempBuzzer + " -> fan ON, buzzer OFF\n"
+             + "temp <= " + tempVentilador + " -> fan OFF, buzzer OFF\n"
+             + "# Humedad: riego\n"
+             + "hum >= " + umbralHumedad + " -> valve ON\n"
+             + "hum < " + umbralHumedad + " -> valve OFF\n"
+             + "# Luz: LED de noche\n"
+             + "ldr >= " + umbralLuz + " -> led ON\n"
+             + "ldr < " + umbralLuz + " -> led OFF\n"
+             + "# Servo con histéresis entre normal y ventilador\n"
+             + "temp > " + tempVentilador + " -> servo 90\n"
+             + "temp <= " + tempNormal + " -> servo 0\n";
+    }
+
+    // Árbol balanceado de folds: la profundidad crece con log2(reglas)
+    private static MethodHandle encadenar(List<Regla> reglas, int desde, int hasta) {
+        if (hasta - desde == 0) return SIN_CAMBIOS;
+        if (hasta - desde == 1) return reglas.get(desde).compilar();
+        int medio = (desde + hasta) >>> 1;
+        MethodHandle primero = encadenar(reglas, desde, medio);
+        MethodHandle despues = encadenar(reglas, medio, hasta);
+        // despues(primero(m, t, h, l), t, h, l)
+        return MethodHandles.foldArguments(MethodHandles.dropArguments(despues, 1, int.class), primero);
+    }
+
+    static List<Regla> analizar(String texto) {
+        List<Regla> reglas = new ArrayList<>();
+        String[] lineas = texto.split("\r?\n");
+        for (int i = 0; i < lineas.length; i++) {
+            String linea = lineas[i];
+            int comentario = linea.indexOf('#');
+            if (comentario >= 0) linea = linea.substring(0, comentario);
+            linea = linea.trim();
+            if (linea.isEmpty()) continue;
+            try {
+                reglas.add(new Analizador(linea).regla());
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Línea " + (i + 1) + ": " + ex.getMessage() + " en \"" + linea + "\"", ex);
+            }
+        }
+        return reglas;
+    }
+
+    /**
+     * Analizador descendente recursivo de una regla
+     * regla     := condicion '->' accion (',' accion)*
+     * condicion := termino (OR termino)*
+     * termino   := factor (AND factor)*
+     * factor    := NOT factor | '(' condicion ')' | sensor comparador numero
+     */
+    private static final class Analizador {
+        private final String linea;
+        private final List<String> simbolos = new ArrayList<>();
+        private int posicion = 0;
+
+        Analizador(String linea) {
+            this.linea = linea;
+            separar();
+        }
+
+        private void separar() {
+            int i = 0;
+            while (i < linea.length()) {
+                char c = linea.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (Character.isLetter(c) || c == '_') {
+                    int inicio = i;
+                    while (i < linea.length() && (Character.isLetterOrDigit(linea.charAt(i)) || linea.charAt(i) == '_')) i++;
+                    simbolos.add(linea.substring(inicio, i).toLowerCase(Locale.ROOT));
+                } else if (Character.isDigit(c) || c == '.' || (c == '-' && i + 1 < linea.length() && Character.isDigit(linea.charAt(i + 1))
+                        && !esNumeroAnterior())) {
+                    int inicio = i++;
+                    while (i < linea.length() && (Character.isDigit(linea.charAt(i)) || linea.charAt(i) == '.')) i++;
+                    simbolos.add(linea.substring(inicio, i));
+                } else if (linea.startsWith("->", i) || linea.startsWith(">=", i) || linea.startsWith("<=", i)
+                        || linea.startsWith("==", i) || linea.startsWith("!=", i)) {
+                    simbolos.add(linea.substring(i, i + 2));
+                    i += 2;
+                } else if (c == '>' || c == '<' || c == '(' || c == ')' || c == ',') {
+                    simbolos.add(String.valueOf(c));
+                    i++;
+                } else {
+                    throw new IllegalArgumentException("carácter inesperado '" + c + "'");
+                }
+            }
+        }
+
+        // Un '-' después de un número sería una resta (no soportada), no un signo
+        private boolean esNumeroAnterior() {
+            return !simbolos.isEmpty() && Character.isDigit(simbolos.get(simbolos.size() - 1).charAt(0));
+        }
+
+        private String ver() {
+            return posicion < simbolos.size() ? simbolos.get(posicion) : null;
+        }
+
+        private String tomar() {
+            if (posicion >= simbolos.size()) throw new IllegalArgumentException("regla incompleta");
+            return simbolos.get(posicion++);
+        }
+
+        private void esperar(String simbolo) {
+            String encontrado = tomar();
+            if (!simbolo.equals(encontrado)) {
+                throw new IllegalArgumentException("se esperaba '" + simbolo + "' y se encontró '" + encontrado + "'");
+            }
+        }
+
+        Regla regla() {
+            Condicion condicion = condicion();
+            esperar("->");
+            int encender = 0;
+            int apagar = 0;
+            do {
+                Actuador actuador = actuador(tomar());
+                String valor = tomar();
+                boolean activo;
+                if ("on".equals(valor)) {
+                    activo = true;
+                } else if ("off".equals(valor)) {
+                    activo = false;
+                } else {
+                    activo = numero(valor) != 0;      // Ángulo del servo: 0 cerrado
+                }
+                if (activo) {
+                    encender |= actuador.getBit();
+                    apagar &= ~actuador.getBit();
+                } else {
+                    apagar |= actuador.getBit();
+                    encender &= ~actuador.getBit();
+                }
+            } while (",".equals(ver()) && tomar() != null);
+            if (ver() != null) throw new IllegalArgumentException("sobra '" + ver() + "'");
+            return new Regla(condicion, encender, apagar, linea);
+        }
+
+        private Condicion condicion() {
+            Condicion condicion = termino();
+            while ("or".equals(ver()) || "o".equals(ver())) {
+                tomar();
+                condicion = new O(condicion, termino());
+            }
+            return condicion;
+        }
+
+        private Condicion termino() {
+            Condicion condicion = factor();
+            while ("and".equals(ver()) || "y".equals(ver())) {
+                tomar();
+                condicion = new Y(condicion, factor());
+            }
+            return condicion;
+        }
+
+        private Condicion factor() {
+            String simbolo = tomar();
+            if ("not".equals(simbolo) || "no".equals(simbolo)) return new No(factor());
+            if ("(".equals(simbolo)) {
+                Condicion condicion = condicion();
+                esperar(")");
+                return condicion;
+            }
+            int sensor = sensor(simbolo);
+            String comparador = tomar();
+            for (int i = 0; i < COMPARADORES.length; i++) {
+                if (COMPARADORES[i].equals(comparador)) return new Comparacion(sensor, i, numero(tomar()));
+            }
+            throw new IllegalArgumentException("comparador desconocido '" + comparador + "'");
+        }
+
+        private int sensor(String nombre) {
+            switch (nombre) {
+                case "temp": case "temperatura": return TEMPERATURA;
+                case "hum": case "humedad": return HUMEDAD;
+                case "ldr": case "luz": return LUZ;
+                default: throw new IllegalArgumentException("sensor desconocido '" + nombre + "'");
+            }
+        }
+
+        private double numero(String texto) {
+            try {
+                return Double.parseDouble(texto);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("se esperaba un número y se encontró '" + texto + "'");
+            }
+        }
+    }
+
+    /**
+     * Verifica las reglas por defecto contra MotorControlAutomatico y mide el
+     * costo por evaluación: java ui_invernadero.ReglasDSL [archivo.reglas]
+     */
+    public static void main(String args[]) throws IOException {
+        int lecturas = 4096;
+        double[] temperaturas = new double[lecturas];
+        int[] humedades = new int[lecturas];
+        int[] valoresLDR = new int[lecturas];
+        SplittableRandom aleatorio = new SplittableRandom(11);
+        for (int i = 0; i < lecturas; i++) {
+            temperaturas[i] = 40 + aleatorio.nextDouble() * 25;
+            humedades[i] = 300 + aleatorio.nextInt(400);
+            valoresLDR[i] = 300 + aleatorio.nextInt(400);
+        }
+
+        ProgramaReglas porDefecto = compilar(porDefecto(50.0, 51.0, 56.0, 500, 500));
+        MotorControlAutomatico motor = new MotorControlAutomatico(null);
+        int mascara = 0;
+        for (int i = 0; i < lecturas; i++) {
+            motor.ejecutar(temperaturas[i], humedades[i], valoresLDR[i]);
+            mascara = porDefecto.evaluar(mascara, temperaturas[i], humedades[i], valoresLDR[i]);
+            if (mascara != motor.getMascara()) {
+                throw new IllegalStateException("Diferencia con MotorControlAutomatico en la lectura " + i);
+            }
+        }
+        System.out.println("Reglas por defecto equivalentes a MotorControlAutomatico (" + porDefecto.getTamanio() + " reglas)");
+
+        System.out.printf("Escrito a mano:              %7.1f ns/evaluación%n", medirEscritoAMano(temperaturas, humedades, valoresLDR));
+        medir("Por defecto", analizar(porDefecto(50.0, 51.0, 56.0, 500, 500)), temperaturas, humedades, valoresLDR);
+        for (int cantidad : new int[] {100, 300}) {
+            medir(cantidad + " reglas", analizar(reglasAleatorias(cantidad, aleatorio)), temperaturas, humedades, valoresLDR);
+        }
+        if (args.length > 0) {
+            medir(args[0], analizar(new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8)),
+                  temperaturas, humedades, valoresLDR);
+        }
+    }
+
+    // Reglas sintéticas con umbrales en los rangos de los sensores (para benchmarks)
+    static String reglasAleatorias(int cantidad, SplittableRandom aleatorio) {
+        String[] sensores = {"temp", "hum", "ldr"};
+        String[] actuadores = {"fan", "buzzer", "led", "valve", "servo"};
+        StringBuilder texto = new StringBuilder();
+        for (int r = 0; r < cantidad; r++) {
+            int sensor = aleatorio.nextInt(3);
+            texto.append(sensores[sensor]).append(' ').append(COMPARADORES[aleatorio.nextInt(4)]).append(' ')
+                 .append(sensor == 0 ? 40 + aleatorio.nextInt(25) : 300 + aleatorio.nextInt(400));
+            if (aleatorio.nextBoolean()) {
+                int otro = aleatorio.nextInt(3);
+                texto.append(aleatorio.nextBoolean() ? " AND " : " OR ").append(sensores[otro]).append(' ')
+                     .append(COMPARADORES[aleatorio.nextInt(4)]).append(' ')
+                     .append(otro == 0 ? 40 + aleatorio.nextInt(25) : 300 + aleatorio.nextInt(400));
+            }
+            texto.append(" -> ").append(actuadores[aleatorio.nextInt(5)]).append(aleatorio.nextBoolean() ? " ON" : " OFF").append('\n');
+        }
+        return texto.toString();
+    }
+
+    private static double medirEscritoAMano(double[] temperaturas, int[] humedades, int[] valoresLDR) {
+        int mascara = 0;
+        long inicio = 0;
+        int vueltas = 2000;
+        for (int v = -vueltas; v < vueltas; v++) {           // Primera mitad: calentamiento
+            if (v == 0) inicio = System.nanoTime();
+            for (int i = 0; i < temperaturas.length; i++) {
+                mascara = EvaluadorZonas.siguienteMascara(mascara, temperaturas[i], humedades[i], valoresLDR[i],
+                                                          50.0, 51.0, 56.0, 500, 500);
+            }
+        }
+        long duracion = System.nanoTime() - inicio;
+        if (mascara == -1) System.out.println();
+        return (double) duracion / vueltas / temperaturas.length;
+    }
+
+    private static void medir(String nombre, List<Regla> reglas, double[] temperaturas, int[] humedades, int[] valoresLDR) {
+        ProgramaReglas programa = new ProgramaReglas(encadenar(reglas, 0, reglas.size()), reglas);
+        int vueltas = Math.max(20, 20_000 / reglas.size());
+
+        int compilado = 0;
+        long inicio = 0;
+        for (int v = -vueltas; v < vueltas; v++) {
+            if (v == 0) inicio = System.nanoTime();
+            for (int i = 0; i < temperaturas.length; i++) {
+                compilado = programa.evaluar(compilado, temperaturas[i], humedades[i], valoresLDR[i]);
+            }
+        }
+        double nsCompilado = (double) (System.nanoTime() - inicio) / vueltas / temperaturas.length;
+
+        int interpretado = 0;
+        for (int v = -vueltas; v < vueltas; v++) {
+            if (v == 0) inicio = System.nanoTime();
+            for (int i = 0; i < temperaturas.length; i++) {
+                for (Regla regla : reglas) {
+                    if (regla.condicion.interpretar(temperaturas[i], humedades[i], valoresLDR[i])) {
+                        interpretado = (interpretado | regla.encender) & ~regla.apagar;
+                    }
+                }
+            }
+        }
+        double nsInterpretado = (double) (System.nanoTime() - inicio) / vueltas / temperaturas.length;
+        if (compilado != interpretado) throw new IllegalStateException("El programa compilado no coincide con el interpretado");
+
+        System.out.printf("%-14s %3d reglas: compilado %7.1f ns/evaluación (%.2f ns/regla), interpretado %7.1f ns%n",
+                          nombre + ":", reglas.size(), nsCompilado, nsCompilado / reglas.size(), nsInterpretado);
+    }
+}
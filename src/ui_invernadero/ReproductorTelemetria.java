@@ -0,0 +1,194 @@
+package ui_invernadero;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reproducción de telemetría grabada a través del mismo motor de decisión
+ * que usa ControlAutomatico. El tiempo avanza con un reloj virtual, de modo
+ * que la salida es determinista sin importar la velocidad de reproducción.
+ * @author Nicom
+ */
+public class ReproductorTelemetria {
+
+    // Velocidad especial: reproducir tan rápido como sea posible
+    public static final double VELOCIDAD_MAXIMA = Double.POSITIVE_INFINITY;
+
+    private double velocidad = VELOCIDAD_MAXIMA;
+    private long periodoControlMs = 3000;         // Igual que automaticTimer
+
+    // Umbrales a probar (valores por defecto del Arduino)
+    private double tempNormal = 50.0;
+    private double tempVentilador = 51.0;
+    private double tempBuzzer = 56.0;
+    private int umbralHumedad = 500;
+    private int umbralLuz = 500;
+
+    /**
+     * Evento producido durante la reproducción, con su tiempo virtual
+     */
+    public static class Evento {
+        private final long tiempoMs;
+        private final Actuador actuador;
+        private final boolean activo;
+        private final String mensaje;
+
+        public Evento(long tiempoMs, Actuador actuador, boolean activo, String mensaje) {
+            this.tiempoMs = tiempoMs;
+            this.actuador = actuador;
+            this.activo = activo;
+            this.mensaje = mensaje;
+        }
+
+        public long getTiempoMs() {
+            return tiempoMs;
+        }
+
+        public Actuador getActuador() {
+            return actuador;
+        }
+
+        public boolean isActivo() {
+            return activo;
+        }
+
+        public String getMensaje() {
+            return mensaje;
+        }
+    }
+
+    /**
+     * @param velocidad factor sobre el tiempo real (1.0 = tiempo real),
+     *                  VELOCIDAD_MAXIMA para no esperar entre evaluaciones
+     */
+    public void setVelocidad(double velocidad) {
+        if (!(velocidad > 0)) {
+            throw new IllegalArgumentException("La velocidad debe ser mayor que 0: " + velocidad);
+        }
+        this.velocidad = velocidad;
+    }
+
+    /**
+     * @param periodoControlMs cada cuánto se evalúa el control; 0 evalúa en cada muestra
+     */
+    public void setPeriodoControlMs(long periodoControlMs) {
+        if (periodoControlMs < 0) {
+            throw new IllegalArgumentException("El periodo de control no puede ser negativo: " + periodoControlMs);
+        }
+        this.periodoControlMs = periodoControlMs;
+    }
+
+    public void configurarUmbrales(double tempNormal, double tempVentilador, double tempBuzzer,
+                                   int umbralHumedad, int umbralLuz) {
+        this.tempNormal = tempNormal;
+        this.tempVentilador = tempVentilador;
+        this.tempBuzzer = tempBuzzer;
+        this.umbralHumedad = umbralHumedad;
+        this.umbralLuz = umbralLuz;
+    }
+
+    /**
+     * Reproduce la telemetría desde el estado inicial (todo apagado).
+     * En cada instante de control se usa la última muestra con tiempo ≤ al instante.
+     * @return secuencia exacta de transiciones de actuadores
+     */
+    public List<Evento> reproducir(TelemetriaGrabada telemetria) {
+        int n = telemetria.getTamanio();
+        if (n == 0) return Collections.emptyList();
+
+        final List<Evento> eventos = new ArrayList<>();
+        final long[] tiempoVirtual = new long[1];
+        MotorControlAutomatico motor = new MotorControlAutomatico(new OyenteControl() {
+            @Override
+            public void transicion(Actuador actuador, boolean activo, String mensaje) {
+                eventos.add(new Evento(tiempoVirtual[0], actuador, activo, mensaje));
+            }
+        });
+        motor.configurarUmbrales(tempNormal, tempVentilador, tempBuzzer, umbralHumedad, umbralLuz);
+
+        long inicioVirtual = telemetria.getTiempo(0);
+        long inicioReal = System.nanoTime();
+
+        if (periodoControlMs == 0) {
+            for (int i = 0; i < n; i++) {
+                tiempoVirtual[0] = telemetria.getTiempo(i);
+                esperar(inicioReal, tiempoVirtual[0] - inicioVirtual);
+                motor.ejecutar(telemetria.getTemperatura(i), telemetria.getHumedad(i), telemetria.getValorLDR(i));
+            }
+            return eventos;
+        }
+
+        long siguienteControl = inicioVirtual + periodoControlMs;
+        int actual = 0;
+        for (int i = 1; i < n; i++) {
+            long tiempoMuestra = telemetria.getTiempo(i);
+            while (siguienteControl < tiempoMuestra) {
+                tiempoVirtual[0] = siguienteControl;
+                esperar(inicioReal, siguienteControl - inicioVirtual);
+                motor.ejecutar(telemetria.getTemperatura(actual), telemetria.getHumedad(actual), telemetria.getValorLDR(actual));
+                siguienteControl += periodoControlMs;
+            }
+            actual = i;
+        }
+        long tiempoFinal = telemetria.getTiempo(n - 1);
+        while (siguienteControl <= tiempoFinal) {
+            tiempoVirtual[0] = siguienteControl;
+            esperar(inicioReal, siguienteControl - inicioVirtual);
+            motor.ejecutar(telemetria.getTemperatura(actual), telemetria.getHumedad(actual), telemetria.getValorLDR(actual));
+            siguienteControl += periodoControlMs;
+        }
+        return eventos;
+    }
+
+    // Ajusta el reloj real al virtual según la velocidad configurada
+    private void esperar(long inicioReal, long transcurridoVirtualMs) {
+        if (velocidad == VELOCIDAD_MAXIMA) return;
+        long objetivo = inicioReal + (long) (transcurridoVirtualMs * 1_000_000L / velocidad);
+        long restante;
+        while ((restante = objetivo - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(restante);
+        }
+    }
+
+    /**
+     * Uso: java ui_invernadero.ReproductorTelemetria archivo.csv [velocidad|max] [periodoControlMs]
+     */
+    public static void main(String args[]) {
+        if (args.length < 1) {
+            System.err.println("Uso: ReproductorTelemetria archivo.csv [velocidad|max] [periodoControlMs]");
+            System.exit(1);
+        }
+        try {
+            TelemetriaGrabada telemetria = TelemetriaGrabada.cargarCSV(Paths.get(args[0]));
+            ReproductorTelemetria reproductor = new ReproductorTelemetria();
+            if (args.length > 1 && !"max".equalsIgnoreCase(args[1])) {
+                reproductor.setVelocidad(Double.parseDouble(args[1]));
+            }
+            if (args.length > 2) {
+                reproductor.setPeriodoControlMs(Long.parseLong(args[2]));
+            }
+
+            long inicio = System.nanoTime();
+            List<Evento> eventos = reproductor.reproducir(telemetria);
+            long duracionMs = (System.nanoTime() - inicio) / 1_000_000L;
+
+            // Hora virtual en UTC para que la salida sea idéntica en cualquier equipo
+            SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
+            sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
+            for (Evento evento : eventos) {
+                System.out.println("[" + sdf.format(new Date(evento.getTiempoMs())) + "] " + evento.getMensaje());
+            }
+            System.err.println(telemetria.getTamanio() + " muestras, " + eventos.size() + " transiciones en " + duracionMs + " ms");
+        } catch (IOException | IllegalArgumentException ex) {
+            System.err.println("Error en la reproducción: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+}
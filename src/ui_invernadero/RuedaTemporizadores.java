@@ -0,0 +1,253 @@
+package ui_invernadero;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+/**
+ * Rueda de temporizadores jerárquica (4 niveles de 64 ranuras)
+ * El nivel 0 tiene una ranura por tic; cada nivel siguiente cubre 64 veces
+ * más tiempo por ranura (con tics de 1 s: 64 s, 68 min, 3 días y 194 días).
+ * Un temporizador entra en el nivel más bajo que alcanza su vencimiento y,
+ * cuando el nivel de abajo da la vuelta, la ranura que le toca del nivel de
+ * arriba se reparte hacia abajo. Programar y cancelar son O(1): cada
+ * temporizador es un nodo de una lista doble circular y sabe dónde está.
+ * Los vencimientos más allá del último nivel esperan en su última ranura y
+ * se vuelven a ubicar al bajar.
+ *
+ * No es segura entre hilos: la usa un solo hilo (la etapa de reglas) y el
+ * tiempo avanza con avanzar(), así también sirve con tiempo simulado.
+ * @author Nicom
+ */
+public final class RuedaTemporizadores {
+
+    private static final int BITS = 6;
+    private static final int RANURAS = 1 << BITS;
+    private static final int MASCARA = RANURAS - 1;
+    private static final int NIVELES = 4;
+    private static final long ALCANCE = 1L << (BITS * NIVELES);           // Tics que cubre la rueda
+
+    /**
+     * Lo que se hace al vencer un temporizador; puede programar otros
+     */
+    public interface Vencimiento {
+        void vencer(Temporizador temporizador, long ahoraMs);
+    }
+
+    public static final class Temporizador {
+        private final Object dato;
+        private long vencimientoMs;
+        private long tic;
+        private Temporizador anterior;
+        private Temporizador siguiente;
+
+        private Temporizador(Object dato) {
+            this.dato = dato;
+        }
+
+        public Object getDato() {
+            return dato;
+        }
+
+        public long getVencimientoMs() {
+            return vencimientoMs;
+        }
+
+        public boolean isPendiente() {
+            return siguiente != null;
+        }
+    }
+
+    private final long resolucionMs;
+    private final Temporizador[][] ranuras = new Temporizador[NIVELES][RANURAS];    // Centinelas
+    private final Temporizador vencidos = centinela();                             // Ya vencidos al programarse
+    private long tic;
+    private int pendientes = 0;
+
+    /**
+     * @param resolucionMs duración de un tic (los vencimientos se redondean hacia arriba)
+     * @param inicioMs hora inicial de la rueda
+     */
+    public RuedaTemporizadores(long resolucionMs, long inicioMs) {
+        if (resolucionMs <= 0) throw new IllegalArgumentException("Resolución inválida: " + resolucionMs);
+        this.resolucionMs = resolucionMs;
+        this.tic = Math.floorDiv(inicioMs, resolucionMs);
+        for (Temporizador[] nivel : ranuras) {
+            for (int r = 0; r < RANURAS; r++) nivel[r] = centinela();
+        }
+    }
+
+    private static Temporizador centinela() {
+        Temporizador centinela = new Temporizador(null);
+        centinela.anterior = centinela.siguiente = centinela;
+        return centinela;
+    }
+
+    /**
+     * @return el temporizador, para cancelarlo
+     */
+    public Temporizador programar(long vencimientoMs, Object dato) {
+        Temporizador temporizador = new Temporizador(dato);
+        temporizador.vencimientoMs = vencimientoMs;
+        temporizador.tic = Math.floorDiv(vencimientoMs + resolucionMs - 1, resolucionMs);
+        ubicar(temporizador);
+        pendientes++;
+        return temporizador;
+    }
+
+    /**
+     * @return false si ya había vencido o estaba cancelado
+     */
+    public boolean cancelar(Temporizador temporizador) {
+        if (!temporizador.isPendiente()) return false;
+        desenlazar(temporizador);
+        pendientes--;
+        return true;
+    }
+
+    /**
+     * Avanza hasta ahoraMs y ejecuta los vencidos en orden de tic
+     * @return cantidad de temporizadores vencidos
+     */
+    public int avanzar(long ahoraMs, Vencimiento accion) {
+        long hasta = Math.floorDiv(ahoraMs, resolucionMs);
+        int cantidad = ejecutar(vencidos, ahoraMs, accion);
+        while (tic < hasta) {
+            if (pendientes == 0) {
+                tic = hasta;                                // Nada que repartir: saltar
+                break;
+            }
+            tic++;
+            // El nivel 0 dio la vuelta: bajar la ranura que toca de cada nivel de arriba
+            for (int nivel = 1; nivel < NIVELES && (tic & ((1L << (BITS * nivel)) - 1)) == 0; nivel++) {
+                Temporizador lista = sacar(ranuras[nivel][(int) (tic >>> (BITS * nivel)) & MASCARA]);
+                while (lista != null) {
+                    Temporizador siguiente = lista.siguiente;
+                    ubicar(lista);
+                    lista = siguiente;
+                }
+            }
+            cantidad += ejecutar(vencidos, ahoraMs, accion);                 // Bajaron justo a este tic
+            cantidad += ejecutar(ranuras[0][(int) tic & MASCARA], ahoraMs, accion);
+        }
+        return cantidad + ejecutar(vencidos, ahoraMs, accion);      // Reprogramados ya vencidos
+    }
+
+    public int getPendientes() {
+        return pendientes;
+    }
+
+    public long getResolucionMs() {
+        return resolucionMs;
+    }
+
+    private void ubicar(Temporizador temporizador) {
+        long delta = temporizador.tic - tic;
+        Temporizador centinela;
+        if (delta <= 0) {
+            centinela = vencidos;
+        } else if (delta >= ALCANCE) {
+            // Más allá de la rueda: la ranura del último nivel más lejana, se reubica al bajar
+            centinela = ranuras[NIVELES - 1][(int) ((tic + ALCANCE - 1) >>> (BITS * (NIVELES - 1))) & MASCARA];
+        } else {
+            int nivel = 0;
+            while (delta >= 1L << (BITS * (nivel + 1))) nivel++;
+            centinela = ranuras[nivel][(int) (temporizador.tic >>> (BITS * nivel)) & MASCARA];
+        }
+        temporizador.siguiente = centinela;
+        temporizador.anterior = centinela.anterior;
+        centinela.anterior.siguiente = temporizador;
+        centinela.anterior = temporizador;
+    }
+
+    private static void desenlazar(Temporizador temporizador) {
+        temporizador.anterior.siguiente = temporizador.siguiente;
+        temporizador.siguiente.anterior = temporizador.anterior;
+        temporizador.anterior = temporizador.siguiente = null;
+    }
+
+    // Vacía la ranura y devuelve sus nodos encadenados por siguiente (el último apunta a null) para reubicarlos
+    private static Temporizador sacar(Temporizador centinela) {
+        if (centinela.siguiente == centinela) return null;
+        Temporizador primero = centinela.siguiente;
+        centinela.anterior.siguiente = null;
+        centinela.anterior = centinela.siguiente = centinela;
+        return primero;
+    }
+
+    // De a uno: la acción puede cancelar otros de la misma ranura o programar ya vencidos
+    private int ejecutar(Temporizador centinela, long ahoraMs, Vencimiento accion) {
+        int cantidad = 0;
+        while (centinela.siguiente != centinela) {
+            Temporizador temporizador = centinela.siguiente;
+            desenlazar(temporizador);
+            pendientes--;
+            cantidad++;
+            accion.vencer(temporizador, ahoraMs);
+        }
+        return cantidad;
+    }
+
+    /**
+     * Rueda contra PriorityQueue con cientos de miles de temporizadores:
+     * java ui_invernadero.RuedaTemporizadores [temporizadores]
+     * Se programan vencimientos al azar dentro de una semana, se cancela la
+     * mitad y se avanza la semana de a un segundo.
+     */
+    public static void main(String args[]) {
+        int cantidad = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        long semanaMs = 7 * 86_400_000L;
+        long[] vencimientos = new long[cantidad];
+        SplittableRandom aleatorio = new SplittableRandom(47);
+        for (int i = 0; i < cantidad; i++) vencimientos[i] = 1 + aleatorio.nextLong(semanaMs);
+
+        for (int vuelta = 0; vuelta < 3; vuelta++) {                // Las primeras calientan el JIT
+            RuedaTemporizadores rueda = new RuedaTemporizadores(1000, 0);
+            Temporizador[] temporizadores = new Temporizador[cantidad];
+            long inicio = System.nanoTime();
+            for (int i = 0; i < cantidad; i++) temporizadores[i] = rueda.programar(vencimientos[i], null);
+            long programar = System.nanoTime() - inicio;
+            inicio = System.nanoTime();
+            for (int i = 0; i < cantidad; i += 2) rueda.cancelar(temporizadores[i]);
+            long cancelar = System.nanoTime() - inicio;
+            final long[] ultimo = {0, 0};
+            inicio = System.nanoTime();
+            int vencidos = 0;
+            for (long ahora = 1000; ahora <= semanaMs + 1000; ahora += 1000) {
+                vencidos += rueda.avanzar(ahora, new Vencimiento() {
+                    @Override
+                    public void vencer(Temporizador temporizador, long ahoraMs) {
+                        if (temporizador.getVencimientoMs() > ahoraMs || ahoraMs - temporizador.getVencimientoMs() >= 1000) ultimo[1]++;
+                        ultimo[0] = ahoraMs;
+                    }
+                });
+            }
+            long avanzar = System.nanoTime() - inicio;
+
+            PriorityQueue<long[]> cola = new PriorityQueue<>(cantidad, new Comparator<long[]>() {
+                @Override
+                public int compare(long[] a, long[] b) {
+                    return Long.compare(a[0], b[0]);
+                }
+            });
+            long[][] nodos = new long[cantidad][];
+            inicio = System.nanoTime();
+            for (int i = 0; i < cantidad; i++) cola.add(nodos[i] = new long[] {vencimientos[i]});
+            long programarCola = System.nanoTime() - inicio;
+            int muestraCancelar = Math.min(cantidad / 2, 2000);      // remove(Object) es O(n): solo una muestra
+            inicio = System.nanoTime();
+            for (int i = 0; i < muestraCancelar * 2; i += 2) cola.remove(nodos[i]);
+            long cancelarCola = System.nanoTime() - inicio;
+
+            if (vuelta < 2) continue;
+            System.out.printf("%,d temporizadores en una semana, tics de 1 s%n", cantidad);
+            System.out.printf("Rueda:          programar %6.0f ns, cancelar %6.0f ns, avanzar la semana %,d ms (%,d vencidos, %d fuera de su tic)%n",
+                              (double) programar / cantidad, (double) cancelar / (cantidad / 2), avanzar / 1_000_000, vencidos, ultimo[1]);
+            System.out.printf("PriorityQueue:  programar %6.0f ns, cancelar %,6.0f ns (remove sobre %,d elementos)%n",
+                              (double) programarCola / cantidad, (double) cancelarCola / muestraCancelar, cola.size());
+            System.out.println(vencidos == cantidad / 2 && ultimo[1] == 0 ? "Vencieron exactamente los no cancelados, cada uno en su tic"
+                                                                          : "ERROR en los vencimientos " + Arrays.toString(ultimo));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package ui_invernadero;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Endpoint HTTP local (solo 127.0.0.1) con las métricas en formato Prometheus
+ * Se activa con -Dinvernadero.metricas.puerto=9464 y se consulta en
+ * http://127.0.0.1:9464/metrics
+ * @author Nicom
+ */
+public class ServidorMetricas {
+
+    public static final String PROPIEDAD_PUERTO = "invernadero.metricas.puerto";
+
+    private static ServidorMetricas instancia;
+
+    private final HttpServer servidor;
+    private final ScheduledExecutorService sondaEDT;
+
+    public ServidorMetricas(int puerto) throws IOException {
+        ThreadFactory hilosDemonio = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable tarea) {
+                Thread hilo = new Thread(tarea, "metricas");
+                hilo.setDaemon(true);
+                return hilo;
+            }
+        };
+
+        servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), puerto), 0);
+        servidor.createContext("/metrics", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange intercambio) throws IOException {
+                byte[] cuerpo = Metricas.exponer().getBytes(StandardCharsets.UTF_8);
+                intercambio.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                intercambio.sendResponseHeaders(200, cuerpo.length);
+                try (OutputStream salida = intercambio.getResponseBody()) {
+                    salida.write(cuerpo);
+                }
+            }
+        });
+        servidor.setExecutor(Executors.newSingleThreadExecutor(hilosDemonio));
+
+        // Sonda de retraso del EDT: cuánto tarda en ejecutarse una tarea encolada
+        sondaEDT = Executors.newSingleThreadScheduledExecutor(hilosDemonio);
+        sondaEDT.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                final long encolada = System.nanoTime();
+                java.awt.EventQueue.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        Metricas.RETRASO_EDT.observarNanos(System.nanoTime() - encolada);
+                    }
+                });
+            }
+        }, 500, 500, TimeUnit.MILLISECONDS);
+    }
+
+    public void iniciar() {
+        servidor.start();
+    }
+
+    public void detener() {
+        sondaEDT.shutdownNow();
+        servidor.stop(0);
+    }
+
+    public int getPuerto() {
+        return servidor.getAddress().getPort();
+    }
+
+    /**
+     * Inicia el servidor una sola vez si la propiedad del puerto está definida
+     */
+    public static synchronized void iniciarSiConfigurado() {
+        String puerto = System.getProperty(PROPIEDAD_PUERTO);
+        if (instancia != null || puerto == null) return;
+        try {
+            instancia = new ServidorMetricas(Integer.parseInt(puerto.trim()));
+            instancia.iniciar();
+        } catch (IOException | NumberFormatException ex) {
+            java.util.logging.Logger.getLogger(ServidorMetricas.class.getName()).log(java.util.logging.Level.WARNING,
+                    "No se pudo iniciar el servidor de métricas en el puerto " + puerto, ex);
+        }
+    }
+}
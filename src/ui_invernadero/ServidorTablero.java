@@ -0,0 +1,647 @@
+package ui_invernadero;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tablero en vivo por HTTP local (solo 127.0.0.1) con Server-Sent Events
+ * Se activa con -Dinvernadero.tablero.puerto=8088 y se abre en
+ * http://127.0.0.1:8088/ (o con curl -N http://127.0.0.1:8088/eventos).
+ *
+ * Lee el PublicadorEstado igual que la interfaz: revisa la versión cada
+ * 100 ms y el núcleo de control nunca espera al tablero. Cada cambio se
+ * codifica una sola vez ("event: cambio", solo los campos que cambiaron) y
+ * el mismo arreglo de bytes se comparte entre todos los espectadores. Un
+ * espectador nuevo recibe primero la foto completa ("event: foto").
+ *
+ * Un solo hilo atiende todas las conexiones con un Selector de NIO y
+ * escrituras no bloqueantes: 1000 espectadores no son 1000 hilos. Un
+ * espectador que no lee se queda con los cambios pendientes hasta un límite;
+ * pasado ese límite se descartan y se le reenvía la foto completa.
+ *
+ * Para clientes remotos con muchas zonas, /deltas da los mismos cambios como
+ * tramas binarias de FlujoDeltas, cada una precedida por su largo en varint
+ * (largo 0 = latido). También se codifican una vez y se comparten.
+ * @author Nicom
+ */
+public class ServidorTablero implements Closeable {
+
+    public static final String PROPIEDAD_PUERTO = "invernadero.tablero.puerto";
+    private static final long PERIODO_MS = 100;            // Hasta 10 cambios/s por espectador
+    private static final long LATIDO_MS = 15_000;          // Comentario vacío: descubre conexiones muertas
+    private static final int PENDIENTES_MAXIMOS = 32;      // Eventos encolados antes de resincronizar
+    private static final int LARGO_PEDIDO = 4096;
+    private static final String METRICA_ESPECTADORES = "invernadero_tablero_espectadores";
+
+    private static final byte[] CABECERA_EVENTOS = ascii("HTTP/1.1 200 OK\r\nContent-Type: text/event-stream; charset=utf-8\r\n"
+            + "Cache-Control: no-cache\r\nConnection: keep-alive\r\nAccess-Control-Allow-Origin: *\r\n\r\nretry: 2000\n\n");
+    private static final byte[] CABECERA_DELTAS = ascii("HTTP/1.1 200 OK\r\nContent-Type: application/octet-stream\r\n"
+            + "Cache-Control: no-cache\r\nConnection: close\r\nAccess-Control-Allow-Origin: *\r\n\r\n");
+    private static final ByteBuffer LATIDO = ByteBuffer.wrap(ascii(":\n\n")).asReadOnlyBuffer();
+    private static final ByteBuffer LATIDO_BINARIO = ByteBuffer.wrap(new byte[1]).asReadOnlyBuffer();
+    private static final ByteBuffer NO_ENCONTRADO = ByteBuffer.wrap(ascii("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n"
+            + "Connection: close\r\n\r\n")).asReadOnlyBuffer();
+    private static final ByteBuffer PAGINA = respuestaPagina();
+
+    private final PublicadorEstado publicador;
+    private final Selector selector;
+    private final ServerSocketChannel canalServidor;
+    private final Thread hilo;
+    private volatile boolean cerrado = false;
+    private volatile Metricas.Metrica metricaEspectadores;
+
+    // Confinado al hilo del tablero
+    private final EstadoZona[] difundidos;                 // Lo último enviado por zona (base de los cambios)
+    private final List<Espectador> espectadores = new ArrayList<>();
+    private final StringBuilder texto = new StringBuilder(256);
+    private ByteBuffer foto;                               // Foto de difundidos; null = rearmar
+    private final FlujoDeltas.Codificador deltas;
+    private ByteBuffer clave;                              // Clave de deltas para los que llegan; null = rearmar
+    private long ultimaVersion = -1;
+
+    private volatile int cantidadEspectadores = 0;
+    private final AtomicLong eventosCodificados = new AtomicLong();
+    private final AtomicLong entregas = new AtomicLong();
+    private final AtomicLong resincronizaciones = new AtomicLong();
+
+    private static final class Espectador {
+        final SocketChannel canal;
+        final SelectionKey clave;
+        final ByteBuffer pedido = ByteBuffer.allocate(LARGO_PEDIDO);
+        final ArrayDeque<ByteBuffer> pendientes = new ArrayDeque<>();
+        boolean suscrito = false;
+        boolean binario = false;                           // /deltas
+        boolean cerrarAlVaciar = false;
+
+        Espectador(SocketChannel canal, SelectionKey clave) {
+            this.canal = canal;
+            this.clave = clave;
+        }
+    }
+
+    /**
+     * @param puerto puerto TCP en la interfaz local (0 = uno libre)
+     */
+    public ServidorTablero(int puerto, PublicadorEstado publicador) throws IOException {
+        this.publicador = publicador;
+        this.difundidos = new EstadoZona[publicador.getZonas()];
+        this.deltas = new FlujoDeltas.Codificador(difundidos.length, FlujoDeltas.INTERVALO_CLAVE);
+        this.selector = Selector.open();
+        this.canalServidor = ServerSocketChannel.open();
+        canalServidor.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), puerto), 1024);
+        canalServidor.configureBlocking(false);
+        canalServidor.register(selector, SelectionKey.OP_ACCEPT);
+        this.hilo = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                atender();
+            }
+        }, "tablero");
+        hilo.setDaemon(true);
+    }
+
+    public void iniciar() {
+        metricaEspectadores = Metricas.medidor(METRICA_ESPECTADORES, "Conexiones abiertas al tablero en vivo", "", new Metricas.Medidor() {
+            @Override
+            public double valor() {
+                return cantidadEspectadores;
+            }
+        });
+        hilo.start();
+    }
+
+    public void detener() {
+        cerrado = true;
+        selector.wakeup();
+        try {
+            hilo.join(1000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (metricaEspectadores != null) Metricas.retirar(metricaEspectadores);
+    }
+
+    @Override
+    public void close() {
+        detener();
+    }
+
+    public int getPuerto() {
+        return canalServidor.socket().getLocalPort();
+    }
+
+    public int getEspectadores() {
+        return cantidadEspectadores;
+    }
+
+    // Cambios codificados en JSON (una vez cada uno, sin importar cuántos espectadores hay)
+    public long getEventosCodificados() {
+        return eventosCodificados.get();
+    }
+
+    // Eventos entregados sumando todos los espectadores
+    public long getEntregas() {
+        return entregas.get();
+    }
+
+    public long getResincronizaciones() {
+        return resincronizaciones.get();
+    }
+
+    /**
+     * Crea e inicia el tablero si la propiedad del puerto está definida
+     * @return el tablero, o null si no está configurado o no pudo abrirse
+     */
+    public static ServidorTablero iniciarSiConfigurado(PublicadorEstado publicador) {
+        String puerto = System.getProperty(PROPIEDAD_PUERTO);
+        if (puerto == null) return null;
+        try {
+            ServidorTablero tablero = new ServidorTablero(Integer.parseInt(puerto.trim()), publicador);
+            tablero.iniciar();
+            return tablero;
+        } catch (IOException | NumberFormatException ex) {
+            java.util.logging.Logger.getLogger(ServidorTablero.class.getName()).log(java.util.logging.Level.WARNING,
+                    "No se pudo iniciar el tablero en el puerto " + puerto, ex);
+            return null;
+        }
+    }
+
+    private void atender() {
+        long proximoTic = System.nanoTime();
+        long proximoLatido = proximoTic + TimeUnit.MILLISECONDS.toNanos(LATIDO_MS);
+        try {
+            while (!cerrado) {
+                long espera = TimeUnit.NANOSECONDS.toMillis(proximoTic - System.nanoTime());
+                if (espera > 0) {
+                    selector.select(espera);
+                } else {
+                    selector.selectNow();
+                }
+                Iterator<SelectionKey> claves = selector.selectedKeys().iterator();
+                while (claves.hasNext()) {
+                    SelectionKey clave = claves.next();
+                    claves.remove();
+                    if (!clave.isValid()) continue;
+                    if (clave.isAcceptable()) {
+                        aceptar();
+                        continue;
+                    }
+                    Espectador espectador = (Espectador) clave.attachment();
+                    try {
+                        if (clave.isReadable()) leer(espectador);
+                        if (clave.isValid() && clave.isWritable()) vaciar(espectador);
+                    } catch (IOException ex) {
+                        cerrar(espectador);
+                    }
+                }
+                long ahora = System.nanoTime();
+                if (ahora - proximoTic >= 0) {
+                    proximoTic = ahora + TimeUnit.MILLISECONDS.toNanos(PERIODO_MS);
+                    difundirCambios();
+                }
+                if (ahora - proximoLatido >= 0) {
+                    proximoLatido = ahora + TimeUnit.MILLISECONDS.toNanos(LATIDO_MS);
+                    difundir(LATIDO, false, false);
+                    difundir(LATIDO_BINARIO, true, false);
+                }
+            }
+        } catch (IOException ex) {
+            java.util.logging.Logger.getLogger(ServidorTablero.class.getName()).log(java.util.logging.Level.WARNING,
+                    "El tablero dejó de atender conexiones", ex);
+        } finally {
+            for (Espectador espectador : new ArrayList<>(espectadores)) cerrar(espectador);
+            try {
+                canalServidor.close();
+                selector.close();
+            } catch (IOException ex) {
+                // Ya cerrado
+            }
+        }
+    }
+
+    private void aceptar() throws IOException {
+        SocketChannel canal;
+        while ((canal = canalServidor.accept()) != null) {
+            canal.configureBlocking(false);
+            canal.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            SelectionKey clave = canal.register(selector, SelectionKey.OP_READ);
+            Espectador espectador = new Espectador(canal, clave);
+            clave.attach(espectador);
+            espectadores.add(espectador);
+            cantidadEspectadores = espectadores.size();
+        }
+    }
+
+    // Pedido HTTP hasta la línea vacía; después solo se lee para notar el cierre
+    private void leer(Espectador espectador) throws IOException {
+        ByteBuffer pedido = espectador.pedido;
+        if (espectador.suscrito || espectador.cerrarAlVaciar) {
+            pedido.clear();
+            if (espectador.canal.read(pedido) < 0) cerrar(espectador);
+            return;
+        }
+        if (espectador.canal.read(pedido) < 0) {
+            cerrar(espectador);
+            return;
+        }
+        int fin = finDeCabeceras(pedido);
+        if (fin < 0) {
+            if (!pedido.hasRemaining()) cerrar(espectador);        // Pedido demasiado largo
+            return;
+        }
+        String linea = new String(pedido.array(), 0, Math.max(0, indiceDe(pedido, (byte) '\r')), StandardCharsets.US_ASCII);
+        String[] partes = linea.split(" ");
+        String ruta = partes.length >= 2 && partes[0].equals("GET") ? partes[1] : "";
+        int consulta = ruta.indexOf('?');
+        if (consulta >= 0) ruta = ruta.substring(0, consulta);
+        if (ruta.equals("/eventos")) {
+            espectador.suscrito = true;
+            encolar(espectador, ByteBuffer.wrap(CABECERA_EVENTOS));
+            encolar(espectador, foto());
+        } else if (ruta.equals("/deltas")) {
+            espectador.suscrito = true;
+            espectador.binario = true;
+            encolar(espectador, ByteBuffer.wrap(CABECERA_DELTAS));
+            encolar(espectador, clave());
+        } else {
+            espectador.cerrarAlVaciar = true;
+            encolar(espectador, (ruta.equals("/") ? PAGINA : NO_ENCONTRADO).duplicate());
+        }
+    }
+
+    private static int finDeCabeceras(ByteBuffer pedido) {
+        byte[] datos = pedido.array();
+        for (int i = 3; i < pedido.position(); i++) {
+            if (datos[i] == '\n' && datos[i - 1] == '\r' && datos[i - 2] == '\n' && datos[i - 3] == '\r') return i + 1;
+        }
+        return -1;
+    }
+
+    private static int indiceDe(ByteBuffer pedido, byte buscado) {
+        byte[] datos = pedido.array();
+        for (int i = 0; i < pedido.position(); i++) {
+            if (datos[i] == buscado) return i;
+        }
+        return -1;
+    }
+
+    // Compara con lo último difundido y envía los campos que cambiaron a todos
+    private void difundirCambios() {
+        long version = publicador.getVersion();
+        if (version == ultimaVersion) return;
+        ultimaVersion = version;
+        StringBuilder datos = texto;
+        datos.setLength(0);
+        for (int zona = 0; zona < difundidos.length; zona++) {
+            EstadoZona actual = publicador.leer(zona);
+            EstadoZona anterior = difundidos[zona];
+            if (actual == null || actual == anterior) continue;
+            int largo = datos.length();
+            datos.append(largo == 0 ? "[" : ",").append("{\"z\":").append(zona);
+            int inicioCampos = datos.length();
+            codificarCampos(datos, actual, anterior);
+            if (datos.length() == inicioCampos) {
+                datos.setLength(largo);                            // Solo cambió la secuencia
+            } else {
+                datos.append('}');
+            }
+            difundidos[zona] = actual;
+            foto = null;
+        }
+        if (datos.length() > 0) {
+            datos.append(']');
+            eventosCodificados.incrementAndGet();
+            difundir(evento("cambio", version, datos), false, true);
+        }
+        // El codificador de deltas avanza siempre, así su clave coincide con lo difundido
+        byte[] trama = deltas.codificar(difundidos, version);
+        if (trama != null) {
+            clave = null;
+            difundir(enmarcar(trama), true, true);
+        }
+    }
+
+    // Campos de la zona distintos de anterior (todos si anterior es null)
+    private static void codificarCampos(StringBuilder datos, EstadoZona actual, EstadoZona anterior) {
+        if (anterior == null || actual.getTemperaturaLM35() != anterior.getTemperaturaLM35()) {
+            datos.append(",\"t\":").append(Math.round(actual.getTemperaturaLM35() * 10) / 10.0);
+        }
+        if (anterior == null || actual.getHumedadAnalogica() != anterior.getHumedadAnalogica()) {
+            datos.append(",\"h\":").append(actual.getHumedadAnalogica());
+        }
+        if (anterior == null || actual.getValorLDR() != anterior.getValorLDR()) {
+            datos.append(",\"l\":").append(actual.getValorLDR());
+        }
+        if (anterior == null || actual.getActuadores() != anterior.getActuadores()) {
+            datos.append(",\"a\":").append(actual.getActuadores());
+        }
+        if (anterior == null || actual.isAutomaticoActivo() != anterior.isAutomaticoActivo()) {
+            datos.append(",\"auto\":").append(actual.isAutomaticoActivo());
+        }
+    }
+
+    // Foto completa de lo difundido, compartida por los espectadores que llegan entre dos cambios
+    private ByteBuffer foto() {
+        if (foto == null) {
+            StringBuilder datos = texto;
+            datos.setLength(0);
+            datos.append('[');
+            for (int zona = 0; zona < difundidos.length; zona++) {
+                if (difundidos[zona] == null) continue;
+                if (datos.length() > 1) datos.append(',');
+                datos.append("{\"z\":").append(zona);
+                codificarCampos(datos, difundidos[zona], null);
+                datos.append('}');
+            }
+            datos.append(']');
+            foto = evento("foto", ultimaVersion, datos);
+        }
+        return foto.duplicate();
+    }
+
+    private ByteBuffer clave() {
+        if (clave == null) clave = enmarcar(deltas.clave(ultimaVersion));
+        return clave.duplicate();
+    }
+
+    // Largo en varint y la trama
+    private static ByteBuffer enmarcar(byte[] trama) {
+        byte[] enmarcada = new byte[trama.length + 5];
+        int posicion = 0;
+        int largo = trama.length;
+        while ((largo & ~0x7F) != 0) {
+            enmarcada[posicion++] = (byte) (largo & 0x7F | 0x80);
+            largo >>>= 7;
+        }
+        enmarcada[posicion++] = (byte) largo;
+        System.arraycopy(trama, 0, enmarcada, posicion, trama.length);
+        return ByteBuffer.wrap(enmarcada, 0, posicion + trama.length).asReadOnlyBuffer();
+    }
+
+    private static ByteBuffer evento(String tipo, long version, CharSequence datos) {
+        String completo = "id: " + version + "\nevent: " + tipo + "\ndata: " + datos + "\n\n";
+        return ByteBuffer.wrap(completo.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+    }
+
+    private void difundir(ByteBuffer compartido, boolean binario, boolean contar) {
+        for (int i = espectadores.size() - 1; i >= 0; i--) {
+            Espectador espectador = espectadores.get(i);
+            if (!espectador.suscrito || espectador.binario != binario) continue;
+            if (espectador.pendientes.size() >= PENDIENTES_MAXIMOS) {
+                // No lee: se descartan los cambios encolados (menos el que está a medio escribir) y va la foto
+                ByteBuffer enCurso = espectador.pendientes.pollFirst();
+                espectador.pendientes.clear();
+                if (enCurso.position() > 0) espectador.pendientes.add(enCurso);
+                resincronizaciones.incrementAndGet();
+                encolar(espectador, binario ? clave() : foto());
+                continue;
+            }
+            // Cada espectador avanza su propia vista; los bytes son los mismos
+            if (encolar(espectador, compartido.duplicate()) && contar) entregas.incrementAndGet();
+        }
+    }
+
+    // Escribe lo que acepte el socket y guarda el resto; false si el espectador se cerró
+    private boolean encolar(Espectador espectador, ByteBuffer datos) {
+        espectador.pendientes.add(datos);
+        try {
+            vaciar(espectador);
+            return true;
+        } catch (IOException ex) {
+            cerrar(espectador);
+            return false;
+        }
+    }
+
+    private void vaciar(Espectador espectador) throws IOException {
+        ArrayDeque<ByteBuffer> pendientes = espectador.pendientes;
+        while (!pendientes.isEmpty()) {
+            ByteBuffer primero = pendientes.peekFirst();
+            espectador.canal.write(primero);
+            if (primero.hasRemaining()) {
+                espectador.clave.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            pendientes.pollFirst();
+        }
+        if (espectador.cerrarAlVaciar) {
+            cerrar(espectador);
+        } else if (espectador.clave.isValid()) {
+            espectador.clave.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void cerrar(Espectador espectador) {
+        if (!espectadores.remove(espectador)) return;
+        cantidadEspectadores = espectadores.size();
+        espectador.clave.cancel();
+        try {
+            espectador.canal.close();
+        } catch (IOException ex) {
+            // Ya cerrado
+        }
+    }
+
+    private static byte[] ascii(String texto) {
+        return texto.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Página mínima que se suscribe a /eventos y aplica los cambios sobre la foto
+    private static ByteBuffer respuestaPagina() {
+        StringBuilder nombres = new StringBuilder();
+        for (Actuador actuador : Actuador.values()) {
+            nombres.append(nombres.length() == 0 ? "" : ",").append('"').append(actuador.getEtiqueta()).append('"');
+        }
+        String html = "<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>Invernadero en vivo</title>"
+                + "<style>body{font-family:sans-serif}td,th{padding:4px 12px;text-align:left}</style></head><body>"
+                + "<h2>🌱 Invernadero en vivo</h2><table><thead><tr><th>Zona</th><th>LM35 (°C)</th><th>Humedad</th>"
+                + "<th>LDR</th><th>Actuadores</th><th>Automático</th></tr></thead><tbody id=\"zonas\"></tbody></table>"
+                + "<script>var act=[" + nombres + "],z={};"
+                + "function pintar(){var f='';for(var k in z){var e=z[k],a=[];"
+                + "for(var i=0;i<act.length;i++)if(e.a&(1<<i))a.push(act[i]);"
+                + "f+='<tr><td>'+k+'</td><td>'+e.t+'</td><td>'+e.h+'</td><td>'+e.l+'</td><td>'+(a.join(' ')||'-')"
+                + "+'</td><td>'+(e.auto?'sí':'no')+'</td></tr>';}document.getElementById('zonas').innerHTML=f;}"
+                + "function aplicar(d){JSON.parse(d).forEach(function(c){var e=z[c.z]||(z[c.z]={});for(var k in c)e[k]=c[k];});pintar();}"
+                + "var s=new EventSource('/eventos');"
+                + "s.addEventListener('foto',function(m){z={};aplicar(m.data);});"
+                + "s.addEventListener('cambio',function(m){aplicar(m.data);});"
+                + "</script></body></html>";
+        byte[] cuerpo = html.getBytes(StandardCharsets.UTF_8);
+        byte[] cabecera = ascii("HTTP/1.1 200 OK\r\nContent-Type: text/html; charset=utf-8\r\nContent-Length: " + cuerpo.length
+                + "\r\nConnection: close\r\n\r\n");
+        byte[] respuesta = Arrays.copyOf(cabecera, cabecera.length + cuerpo.length);
+        System.arraycopy(cuerpo, 0, respuesta, cabecera.length, cuerpo.length);
+        return ByteBuffer.wrap(respuesta).asReadOnlyBuffer();
+    }
+
+    /**
+     * Prueba de carga con espectadores locales:
+     * java ui_invernadero.ServidorTablero [espectadores] [segundos]
+     * Un hilo de "control" publica cada 10 ms y mide cuánto se atrasa cada
+     * vuelta, sin tablero y con el tablero difundiendo a todos los
+     * espectadores. Los espectadores son conexiones reales leídas por un
+     * Selector; la latencia va de la publicación a la llegada del evento.
+     */
+    public static void main(String args[]) throws Exception {
+        int cantidad = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int segundos = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final int zonas = 4;
+
+        PublicadorEstado sinTablero = new PublicadorEstado(zonas);
+        long[] atrasoSolo = controlar(sinTablero, segundos, new long[1 << 16]);
+        System.out.printf("Control sin tablero:             atraso de la vuelta p50 %.3f ms, p99 %.3f ms, máx %.3f ms%n",
+                          atrasoSolo[0] / 1e6, atrasoSolo[1] / 1e6, atrasoSolo[2] / 1e6);
+
+        PublicadorEstado publicador = new PublicadorEstado(zonas);
+        ServidorTablero tablero = new ServidorTablero(0, publicador);
+        tablero.iniciar();
+        final long[] publicadas = new long[1 << 16];             // nanoTime de cada versión publicada
+        final Espectadores clientes = new Espectadores(tablero.getPuerto(), cantidad, publicadas);
+        clientes.start();
+        clientes.conectados.await(30, TimeUnit.SECONDS);
+        long inicio = System.nanoTime();
+        while (tablero.getEspectadores() < cantidad && System.nanoTime() - inicio < 30_000_000_000L) Thread.sleep(10);
+        System.out.printf("Espectadores conectados:         %,d%n", tablero.getEspectadores());
+
+        long entregasAntes = tablero.getEntregas();
+        long[] atraso = controlar(publicador, segundos, publicadas);
+        Thread.sleep(500);
+        long entregas = tablero.getEntregas() - entregasAntes;
+        System.out.printf("Control con %,d espectadores: atraso de la vuelta p50 %.3f ms, p99 %.3f ms, máx %.3f ms%n",
+                          cantidad, atraso[0] / 1e6, atraso[1] / 1e6, atraso[2] / 1e6);
+        System.out.printf("Cambios codificados:             %,d (%.1f/s), entregados %,d (%,.0f eventos/s), resincronizaciones %d%n",
+                          tablero.getEventosCodificados(), tablero.getEventosCodificados() / (double) segundos,
+                          entregas, entregas / (double) segundos, tablero.getResincronizaciones());
+        clientes.detener();
+        long[] latencias = clientes.latencias();
+        System.out.printf("Publicación → espectador:        p50 %.2f ms, p99 %.2f ms, máx %.2f ms (%,d eventos medidos)%n",
+                          percentil(latencias, 0.50) / 1e6, percentil(latencias, 0.99) / 1e6,
+                          latencias.length > 0 ? latencias[latencias.length - 1] / 1e6 : 0.0, latencias.length);
+        tablero.detener();
+    }
+
+    // Vuelta de control de 10 ms que publica un estado nuevo; devuelve el atraso p50, p99 y máximo
+    private static long[] controlar(PublicadorEstado publicador, int segundos, long[] publicadas) throws InterruptedException {
+        SimuladorInvernadero simulador = new SimuladorInvernadero(publicador.getZonas(), 45L);
+        long periodo = 10_000_000L;
+        int vueltas = (int) (segundos * 1_000_000_000L / periodo);
+        long[] atrasos = new long[vueltas];
+        long siguiente = System.nanoTime() + periodo;
+        for (int v = 0; v < vueltas; v++) {
+            long espera = siguiente - System.nanoTime();
+            if (espera > 0) TimeUnit.NANOSECONDS.sleep(espera);
+            atrasos[v] = Math.max(0, System.nanoTime() - siguiente);
+            siguiente += periodo;
+            simulador.avanzar(1.0);
+            for (int zona = 0; zona < publicador.getZonas(); zona++) {
+                int mascara = simulador.getTemperatura(zona) > 51 ? Actuador.VENTILADOR.getBit() : 0;
+                simulador.setActuadores(zona, mascara);
+                publicador.publicar(zona, new EstadoZona(v, simulador.getTemperatura(zona), simulador.getHumedadAnalogica(zona),
+                                                         simulador.getValorLDR(zona), mascara, true));
+                publicadas[(int) (publicador.getVersion() & (publicadas.length - 1))] = System.nanoTime();
+            }
+        }
+        Arrays.sort(atrasos);
+        return new long[] {percentil(atrasos, 0.50), percentil(atrasos, 0.99), atrasos[atrasos.length - 1]};
+    }
+
+    private static long percentil(long[] ordenados, double p) {
+        if (ordenados.length == 0) return 0;
+        return ordenados[Math.min(ordenados.length - 1, (int) (p * ordenados.length))];
+    }
+
+    // Espectadores de prueba: todas las conexiones en un Selector, se busca la línea "id: N" de cada evento
+    private static final class Espectadores extends Thread {
+        final CountDownLatch conectados = new CountDownLatch(1);
+        private final int puerto;
+        private final int cantidad;
+        private final long[] publicadas;
+        private final long[] medidas = new long[1 << 22];
+        private int cantidadMedidas = 0;
+        private volatile boolean detenido = false;
+
+        Espectadores(int puerto, int cantidad, long[] publicadas) {
+            super("espectadores");
+            this.puerto = puerto;
+            this.cantidad = cantidad;
+            this.publicadas = publicadas;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try (Selector lectores = Selector.open()) {
+                byte[] pedido = ascii("GET /eventos HTTP/1.1\r\nHost: 127.0.0.1\r\nAccept: text/event-stream\r\n\r\n");
+                for (int i = 0; i < cantidad; i++) {
+                    SocketChannel canal = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), puerto));
+                    canal.write(ByteBuffer.wrap(pedido));
+                    canal.configureBlocking(false);
+                    canal.register(lectores, SelectionKey.OP_READ, new StringBuilder());
+                }
+                conectados.countDown();
+                ByteBuffer bufer = ByteBuffer.allocate(16 * 1024);
+                while (!detenido) {
+                    lectores.select(100);
+                    Iterator<SelectionKey> claves = lectores.selectedKeys().iterator();
+                    while (claves.hasNext()) {
+                        SelectionKey clave = claves.next();
+                        claves.remove();
+                        bufer.clear();
+                        if (((SocketChannel) clave.channel()).read(bufer) < 0) {
+                            clave.cancel();
+                            continue;
+                        }
+                        long llegada = System.nanoTime();
+                        StringBuilder linea = (StringBuilder) clave.attachment();
+                        for (int i = 0; i < bufer.position(); i++) {
+                            byte dato = bufer.get(i);
+                            if (dato != '\n') {
+                                if (linea.length() < 16) linea.append((char) dato);
+                                continue;
+                            }
+                            if (linea.length() > 4 && linea.charAt(0) == 'i' && linea.charAt(1) == 'd') {
+                                long version = Long.parseLong(linea.substring(4).trim());
+                                long publicada = version > 0 ? publicadas[(int) (version & (publicadas.length - 1))] : 0;
+                                if (publicada > 0 && cantidadMedidas < medidas.length) medidas[cantidadMedidas++] = llegada - publicada;
+                            }
+                            linea.setLength(0);
+                        }
+                    }
+                }
+                for (SelectionKey clave : lectores.keys()) clave.channel().close();
+            } catch (IOException ex) {
+                java.util.logging.Logger.getLogger(ServidorTablero.class.getName()).log(java.util.logging.Level.WARNING, null, ex);
+                conectados.countDown();
+            }
+        }
+
+        // Después de detener()
+        long[] latencias() {
+            long[] copia = Arrays.copyOf(medidas, cantidadMedidas);
+            Arrays.sort(copia);
+            return copia;
+        }
+
+        void detener() throws InterruptedException {
+            detenido = true;
+            join(2000);
+        }
+    }
+}
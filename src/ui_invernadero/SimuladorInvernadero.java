@@ -0,0 +1,190 @@
+package ui_invernadero;
+
+import java.time.LocalTime;
+import java.util.SplittableRandom;
+
+/**
+ * Simulador físico de lazo cerrado del invernadero
+ * Modelo térmico, de humedad del suelo y de luz por zona, afectado por los
+ * actuadores (Ventilador, Servo, Válvula, LED), el clima exterior y el ciclo
+ * día/noche. El estado de todas las zonas vive en arreglos primitivos para
+ * poder simular miles de zonas por paso.
+ * @author Nicom
+ */
+public class SimuladorInvernadero {
+
+    // Constantes del modelo (por segundo)
+    private static final double K_PASIVO = 1.0 / 1800.0;      // Intercambio por paredes
+    private static final double K_VENTILADOR = 1.0 / 120.0;   // Intercambio con ventilador (Pin 8)
+    private static final double K_SERVO = 1.0 / 600.0;        // Ventana abierta 90° (Pin 7)
+    private static final double GANANCIA_SOLAR = 0.02;        // °C/s a pleno sol
+    private static final double EVAPORACION = 0.01;           // ADC/s con suelo a 20°C
+    private static final double RIEGO = 2.0;                  // ADC/s con válvula abierta (Pin 12)
+    private static final double LUZ_LED = 0.05;               // Aporte del LED (Pin 11) al LDR
+
+    private final int zonas;
+    private final SplittableRandom aleatorio;
+
+    // Estado físico por zona
+    private final double[] temperatura;
+    private final double[] humedadSuelo;      // Valor analógico: más alto = más seco
+    private final int[] actuadores;           // Máscara de Actuador.getBit()
+
+    // Lecturas de sensores (con ruido) por zona
+    private final double[] lecturaTemperatura;
+    private final int[] lecturaHumedad;
+    private final int[] lecturaLDR;
+
+    // Clima exterior y reloj simulado
+    private double tempExteriorMedia = 22.0;
+    private double amplitudTermica = 8.0;
+    private double nubosidad = 0.2;           // 0 despejado, 1 cubierto
+    private double segundoDelDia;
+
+    public SimuladorInvernadero(int zonas, long semilla) {
+        if (zonas <= 0) {
+            throw new IllegalArgumentException("El número de zonas debe ser mayor que 0: " + zonas);
+        }
+        this.zonas = zonas;
+        this.aleatorio = new SplittableRandom(semilla);
+        temperatura = new double[zonas];
+        humedadSuelo = new double[zonas];
+        actuadores = new int[zonas];
+        lecturaTemperatura = new double[zonas];
+        lecturaHumedad = new int[zonas];
+        lecturaLDR = new int[zonas];
+        segundoDelDia = LocalTime.now().toSecondOfDay();
+        for (int z = 0; z < zonas; z++) {
+            setEstado(z, 25.0, 450);
+        }
+        avanzar(0.0);
+    }
+
+    // Simulador de una sola zona, como el Arduino de cada pantalla
+    public SimuladorInvernadero() {
+        this(1, System.nanoTime());
+    }
+
+    public void setEstado(int zona, double temperaturaInicial, int humedadInicial) {
+        temperatura[zona] = temperaturaInicial;
+        humedadSuelo[zona] = humedadInicial;
+    }
+
+    public void setClimaExterior(double tempMedia, double amplitud, double nubosidad) {
+        this.tempExteriorMedia = tempMedia;
+        this.amplitudTermica = amplitud;
+        this.nubosidad = Math.max(0.0, Math.min(1.0, nubosidad));
+    }
+
+    public void setHoraDelDia(double horas) {
+        segundoDelDia = ((horas % 24.0) + 24.0) % 24.0 * 3600.0;
+    }
+
+    public double getHoraDelDia() {
+        return segundoDelDia / 3600.0;
+    }
+
+    public void setActuadores(int zona, int mascara) {
+        actuadores[zona] = mascara;
+    }
+
+    public void setActuador(int zona, Actuador actuador, boolean activo) {
+        if (activo) {
+            actuadores[zona] |= actuador.getBit();
+        } else {
+            actuadores[zona] &= ~actuador.getBit();
+        }
+    }
+
+    /**
+     * Avanza todas las zonas dtSegundos y recalcula las lecturas de sensores
+     */
+    public void avanzar(double dtSegundos) {
+        segundoDelDia = (segundoDelDia + dtSegundos) % 86400.0;
+        double hora = segundoDelDia / 3600.0;
+
+        // Valores comunes a todas las zonas, calculados una vez por paso
+        double tempExterior = tempExteriorMedia + amplitudTermica * Math.sin(2.0 * Math.PI * (hora - 9.0) / 24.0);
+        double sol = (hora > 6.0 && hora < 18.0) ? Math.sin(Math.PI * (hora - 6.0) / 12.0) * (1.0 - 0.7 * nubosidad) : 0.0;
+        double gananciaSolar = GANANCIA_SOLAR * sol * dtSegundos;
+        double riego = RIEGO * dtSegundos;
+        double evaporacion = EVAPORACION * dtSegundos;
+        int bitVentilador = Actuador.VENTILADOR.getBit();
+        int bitServo = Actuador.SERVO.getBit();
+        int bitValvula = Actuador.VALVULA.getBit();
+        int bitLed = Actuador.LED.getBit();
+
+        for (int z = 0; z < zonas; z++) {
+            int mascara = actuadores[z];
+            double t = temperatura[z];
+
+            // Balance térmico: paredes + sol + ventilación forzada/natural
+            double k = K_PASIVO;
+            if ((mascara & bitVentilador) != 0) k += K_VENTILADOR;
+            if ((mascara & bitServo) != 0) k += K_SERVO;
+            t += (tempExterior - t) * Math.min(1.0, k * dtSegundos) + gananciaSolar;
+            temperatura[z] = t;
+
+            // Suelo: se seca más rápido con calor, la válvula lo humedece
+            double h = humedadSuelo[z] + evaporacion * (1.0 + 0.03 * (t - 20.0));
+            if ((mascara & bitValvula) != 0) h -= riego;
+            if (h < 0) h = 0;
+            if (h > 1023) h = 1023;
+            humedadSuelo[z] = h;
+
+            // LDR: más alto = más oscuro; el LED ilumina un poco el sensor
+            double luz = sol;
+            if ((mascara & bitLed) != 0) luz += LUZ_LED;
+            double ldr = 950.0 - 850.0 * luz;
+
+            // Lecturas con ruido del ADC (±0.5°C LM35, ±5 cuentas)
+            lecturaTemperatura[z] = t + (aleatorio.nextDouble() - 0.5);
+            lecturaHumedad[z] = limitarADC((int) Math.round(h + (aleatorio.nextDouble() - 0.5) * 10.0));
+            lecturaLDR[z] = limitarADC((int) Math.round(ldr + (aleatorio.nextDouble() - 0.5) * 10.0));
+        }
+    }
+
+    private static int limitarADC(int valor) {
+        return valor < 0 ? 0 : (valor > 1023 ? 1023 : valor);
+    }
+
+    public int getZonas() {
+        return zonas;
+    }
+
+    public double getTemperatura(int zona) {
+        return lecturaTemperatura[zona];
+    }
+
+    public int getHumedadAnalogica(int zona) {
+        return lecturaHumedad[zona];
+    }
+
+    public int getValorLDR(int zona) {
+        return lecturaLDR[zona];
+    }
+
+    /**
+     * Prueba de carga: java ui_invernadero.SimuladorInvernadero [zonas] [segundos]
+     * Simula a 10 Hz y reporta el costo por paso.
+     */
+    public static void main(String args[]) {
+        int zonas = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int segundos = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        SimuladorInvernadero simulador = new SimuladorInvernadero(zonas, 42L);
+        for (int z = 0; z < zonas; z++) {
+            simulador.setActuadores(z, z & 0x1F);
+        }
+
+        int pasos = segundos * 10;
+        for (int i = 0; i < 100; i++) simulador.avanzar(0.1);  // Calentamiento del JIT
+        long inicio = System.nanoTime();
+        for (int i = 0; i < pasos; i++) {
+            simulador.avanzar(0.1);
+        }
+        long duracion = System.nanoTime() - inicio;
+        double msPorPaso = duracion / 1e6 / pasos;
+        System.out.printf("%d zonas, %d pasos: %.3f ms/paso (%.1f%% de un núcleo a 10 Hz)%n",
+                          zonas, pasos, msPorPaso, msPorPaso);
+    }
+}
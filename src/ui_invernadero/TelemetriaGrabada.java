@@ -0,0 +1,99 @@
+package ui_invernadero;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Telemetría grabada del Arduino en arreglos primitivos
+ * Formato CSV: tiempoMs,temperaturaLM35,humedadAnalogica,valorLDR
+ * (las líneas vacías o que empiezan con '#' se ignoran)
+ * @author Nicom
+ */
+public class TelemetriaGrabada {
+
+    private long[] tiempos;
+    private double[] temperaturas;
+    private int[] humedades;
+    private int[] valoresLDR;
+    private int tamanio = 0;
+
+    public TelemetriaGrabada() {
+        this(1024);
+    }
+
+    public TelemetriaGrabada(int capacidadInicial) {
+        int capacidad = Math.max(16, capacidadInicial);
+        tiempos = new long[capacidad];
+        temperaturas = new double[capacidad];
+        humedades = new int[capacidad];
+        valoresLDR = new int[capacidad];
+    }
+
+    public void agregar(long tiempoMs, double temperaturaLM35, int humedadAnalogica, int valorLDR) {
+        if (tamanio > 0 && tiempoMs < tiempos[tamanio - 1]) {
+            throw new IllegalArgumentException("Las muestras deben estar ordenadas por tiempo: " + tiempoMs);
+        }
+        if (tamanio == tiempos.length) {
+            int capacidad = tamanio * 2;
+            tiempos = Arrays.copyOf(tiempos, capacidad);
+            temperaturas = Arrays.copyOf(temperaturas, capacidad);
+            humedades = Arrays.copyOf(humedades, capacidad);
+            valoresLDR = Arrays.copyOf(valoresLDR, capacidad);
+        }
+        tiempos[tamanio] = tiempoMs;
+        temperaturas[tamanio] = temperaturaLM35;
+        humedades[tamanio] = humedadAnalogica;
+        valoresLDR[tamanio] = valorLDR;
+        tamanio++;
+    }
+
+    public static TelemetriaGrabada cargarCSV(Path archivo) throws IOException {
+        TelemetriaGrabada telemetria = new TelemetriaGrabada();
+        try (BufferedReader lector = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+            String linea;
+            int numeroLinea = 0;
+            while ((linea = lector.readLine()) != null) {
+                numeroLinea++;
+                linea = linea.trim();
+                if (linea.isEmpty() || linea.startsWith("#")) continue;
+                String[] campos = linea.split(",");
+                if (campos.length < 4) {
+                    throw new IOException("Línea " + numeroLinea + " inválida: " + linea);
+                }
+                try {
+                    telemetria.agregar(Long.parseLong(campos[0].trim()),
+                                       Double.parseDouble(campos[1].trim()),
+                                       Integer.parseInt(campos[2].trim()),
+                                       Integer.parseInt(campos[3].trim()));
+                } catch (IllegalArgumentException ex) {
+                    throw new IOException("Línea " + numeroLinea + " inválida: " + linea, ex);
+                }
+            }
+        }
+        return telemetria;
+    }
+
+    public int getTamanio() {
+        return tamanio;
+    }
+
+    public long getTiempo(int i) {
+        return tiempos[i];
+    }
+
+    public double getTemperatura(int i) {
+        return temperaturas[i];
+    }
+
+    public int getHumedad(int i) {
+        return humedades[i];
+    }
+
+    public int getValorLDR(int i) {
+        return valoresLDR[i];
+    }
+}
@@ -0,0 +1,484 @@
+package ui_invernadero;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+
+/**
+ * Tubería de control por etapas sobre java.util.concurrent.Flow
+ * Lectura serie → Parser → Filtro → Reglas → Sumideros (interfaz, log,
+ * persistencia, métricas). Entre etapas hay buffers acotados: si una etapa se
+ * atrasa, la anterior espera (contrapresión) hasta llegar al lector, que deja
+ * de leer y el enlace serie frena a la placa.
+ * La salida de las reglas hacia los sumideros nunca espera: cada sumidero
+ * tiene su propio buffer y su política (descartar, agrupar o quedarse con el
+ * último valor), así que un disco o una interfaz lentos no frenan las
+ * decisiones de control.
+ * @author Nicom
+ */
+public class TuberiaControl implements Closeable {
+
+    /**
+     * Qué hace un sumidero cuando no alcanza a consumir al ritmo de las reglas
+     */
+    public enum Politica {
+        DESCARTAR,      // Entrega de a una; con el buffer lleno se pierden las nuevas
+        AGRUPAR,        // Entrega en lotes todo lo acumulado; con el buffer lleno se pierden las nuevas
+        ULTIMO_VALOR    // Solo entrega la más reciente; las intermedias se saltan
+    }
+
+    /**
+     * Decisión de control de una muestra: estado de actuadores resultante y
+     * mensajes de las transiciones que produjo (vacío casi siempre)
+     */
+    public static final class Decision {
+        private final Muestra muestra;
+        private final int actuadores;
+        private final List<String> eventos;
+
+        Decision(Muestra muestra, int actuadores, List<String> eventos) {
+            this.muestra = muestra;
+            this.actuadores = actuadores;
+            this.eventos = eventos;
+        }
+
+        public Muestra getMuestra() {
+            return muestra;
+        }
+
+        public int getActuadores() {
+            return actuadores;
+        }
+
+        public List<String> getEventos() {
+            return eventos;
+        }
+    }
+
+    /**
+     * Lógica de decisión; se ejecuta siempre en el hilo de la etapa de reglas
+     */
+    public interface Reglas {
+        /**
+         * @param eventos lista donde agregar los mensajes de transición
+         * @return máscara de actuadores (Actuador.getBit()) tras evaluar
+         */
+        int evaluar(Muestra muestra, List<String> eventos);
+    }
+
+    /**
+     * Destino final de las decisiones. La lista se reutiliza: no guardarla.
+     */
+    public interface Sumidero {
+        void consumir(List<Decision> lote) throws Exception;
+    }
+
+    // Línea tal como llegó del puerto serie
+    private static final class Linea {
+        final int placa;
+        final long tiempoMs;
+        final String texto;
+
+        Linea(int placa, long tiempoMs, String texto) {
+            this.placa = placa;
+            this.tiempoMs = tiempoMs;
+            this.texto = texto;
+        }
+    }
+
+    /**
+     * Etapa intermedia: consume de la anterior de a un elemento y publica el
+     * resultado con submit(), que espera si la siguiente está llena
+     */
+    private abstract static class Etapa<E, S> extends SubmissionPublisher<S> implements Flow.Processor<E, S> {
+        private Flow.Subscription suscripcion;
+
+        Etapa(ExecutorService hilos, int capacidad) {
+            super(hilos, capacidad);
+        }
+
+        // null para no publicar nada
+        abstract S procesar(E elemento);
+
+        @Override
+        public void onSubscribe(Flow.Subscription suscripcion) {
+            this.suscripcion = suscripcion;
+            suscripcion.request(1);
+        }
+
+        @Override
+        public void onNext(E elemento) {
+            try {
+                S resultado = procesar(elemento);
+                if (resultado != null) submit(resultado);
+            } catch (RuntimeException ex) {
+                java.util.logging.Logger.getLogger(TuberiaControl.class.getName()).log(java.util.logging.Level.WARNING, null, ex);
+            }
+            suscripcion.request(1);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            closeExceptionally(error);
+        }
+
+        @Override
+        public void onComplete() {
+            close();
+        }
+    }
+
+    /**
+     * Buffer propio y política de un sumidero
+     */
+    private final class Salida implements Flow.Subscriber<Decision> {
+        final String nombre;
+        final Politica politica;
+        final int tamanioLote;
+        final Sumidero sumidero;
+        final SubmissionPublisher<Decision> buffer;
+        final List<Decision> lote = new ArrayList<>();
+        final CountDownLatch terminado = new CountDownLatch(1);
+        Flow.Subscription suscripcion;
+        Metricas.Contador descartes;
+
+        Salida(String nombre, Politica politica, int capacidad, int tamanioLote, Sumidero sumidero) {
+            this.nombre = nombre;
+            this.politica = politica;
+            this.tamanioLote = tamanioLote;
+            this.sumidero = sumidero;
+            this.buffer = new SubmissionPublisher<>(hilos, capacidad);
+        }
+
+        // Llamado desde la etapa de reglas: nunca espera
+        void ofrecer(Decision decision) {
+            buffer.offer(decision, new BiPredicate<Flow.Subscriber<? super Decision>, Decision>() {
+                @Override
+                public boolean test(Flow.Subscriber<? super Decision> suscriptor, Decision descartada) {
+                    descartes.incrementar();
+                    return false;
+                }
+            });
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription suscripcion) {
+            this.suscripcion = suscripcion;
+            suscripcion.request(1);
+        }
+
+        @Override
+        public void onNext(Decision decision) {
+            boolean hayMas = buffer.estimateMaximumLag() > 1;     // Incluye a la actual
+            if (politica == Politica.ULTIMO_VALOR && hayMas) {
+                descartes.incrementar();          // Hay una más nueva detrás
+            } else {
+                lote.add(decision);
+                if (politica != Politica.AGRUPAR || !hayMas || lote.size() >= tamanioLote) {
+                    entregar();
+                }
+            }
+            suscripcion.request(1);
+        }
+
+        private void entregar() {
+            try {
+                sumidero.consumir(lote);
+            } catch (Exception ex) {
+                java.util.logging.Logger.getLogger(TuberiaControl.class.getName()).log(java.util.logging.Level.WARNING,
+                        "Error en el sumidero " + nombre, ex);
+            }
+            lote.clear();
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            terminado.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            if (!lote.isEmpty()) entregar();
+            terminado.countDown();
+        }
+    }
+
+    private static final String METRICA_COLA = "invernadero_tuberia_cola_profundidad";
+    private static final String METRICA_DESCARTES = "invernadero_tuberia_descartes_total";
+    private static final String METRICA_INVALIDAS = "invernadero_tuberia_lineas_invalidas_total";
+    private static final String METRICA_FILTRADAS = "invernadero_tuberia_muestras_filtradas_total";
+
+    private final ExecutorService hilos;
+    private final SubmissionPublisher<Linea> lectura;
+    private final Etapa<Linea, Muestra> parser;
+    private final Etapa<Muestra, Muestra> filtro;
+    private final Etapa<Muestra, Decision> reglas;
+    private final List<Salida> salidas = new ArrayList<>();
+    private final List<String> eventos = new ArrayList<>();    // Confinada al hilo de reglas
+    private final List<Metricas.Metrica> metricas = new ArrayList<>();   // Solo las series de esta tubería
+    private Metricas.Contador lineasInvalidas;
+    private Metricas.Contador muestrasFiltradas;
+    private boolean iniciada = false;
+
+    /**
+     * @param capacidad tamaño del buffer entre etapas (potencia de 2)
+     */
+    public TuberiaControl(int capacidad, final Reglas logica) {
+        final AtomicInteger contador = new AtomicInteger();
+        hilos = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable tarea) {
+                Thread hilo = new Thread(tarea, "tuberia-" + contador.getAndIncrement());
+                hilo.setDaemon(true);
+                return hilo;
+            }
+        });
+        lectura = new SubmissionPublisher<>(hilos, capacidad);
+        parser = new Etapa<Linea, Muestra>(hilos, capacidad) {
+            @Override
+            Muestra procesar(Linea linea) {
+                Muestra muestra = ProtocoloArduino.parsearMuestra(linea.placa, linea.tiempoMs, linea.texto);
+                if (muestra == null) lineasInvalidas.incrementar();
+                return muestra;
+            }
+        };
+        filtro = new Etapa<Muestra, Muestra>(hilos, capacidad) {
+            @Override
+            Muestra procesar(Muestra muestra) {
+                // Fuera del rango físico de los sensores: ruido del enlace
+                if (muestra.getTemperaturaLM35() < -55 || muestra.getTemperaturaLM35() > 150
+                        || muestra.getHumedadAnalogica() > 1023 || muestra.getValorLDR() > 1023) {
+                    muestrasFiltradas.incrementar();
+                    return null;
+                }
+                return muestra;
+            }
+        };
+        reglas = new Etapa<Muestra, Decision>(hilos, capacidad) {
+            @Override
+            Decision procesar(Muestra muestra) {
+                int actuadores = logica.evaluar(muestra, eventos);
+                List<String> mensajes = eventos.isEmpty() ? Collections.<String>emptyList() : new ArrayList<>(eventos);
+                eventos.clear();
+                Decision decision = new Decision(muestra, actuadores, mensajes);
+                for (Salida salida : salidas) {
+                    salida.ofrecer(decision);
+                }
+                return null;
+            }
+
+            @Override
+            public void onComplete() {
+                for (Salida salida : salidas) {
+                    salida.buffer.close();
+                }
+                close();
+            }
+        };
+    }
+
+    /**
+     * Agrega un sumidero; solo antes de iniciar()
+     * @param tamanioLote máximo de decisiones por llamada (política AGRUPAR)
+     */
+    public void agregarSumidero(String nombre, Politica politica, int capacidad, int tamanioLote, Sumidero sumidero) {
+        if (iniciada) throw new IllegalStateException("La tubería ya está iniciada");
+        salidas.add(new Salida(nombre, politica, capacidad, tamanioLote, sumidero));
+    }
+
+    public void iniciar() {
+        if (iniciada) return;
+        iniciada = true;
+        registrarMetricas();
+        for (Salida salida : salidas) {
+            salida.buffer.subscribe(salida);
+        }
+        filtro.subscribe(reglas);
+        parser.subscribe(filtro);
+        lectura.subscribe(parser);
+    }
+
+    /**
+     * Entrega una línea leída del puerto serie; espera si la tubería está
+     * llena (el hilo lector deja de leer)
+     */
+    public void recibirLinea(int placa, long tiempoMs, String linea) {
+        lectura.submit(new Linea(placa, tiempoMs, linea));
+    }
+
+    /**
+     * Elementos en espera: etapa "parser", "filtro", "reglas" o el nombre de
+     * un sumidero
+     */
+    public int getProfundidad(String etapa) {
+        if ("parser".equals(etapa)) return lectura.estimateMaximumLag();
+        if ("filtro".equals(etapa)) return parser.estimateMaximumLag();
+        if ("reglas".equals(etapa)) return filtro.estimateMaximumLag();
+        for (Salida salida : salidas) {
+            if (salida.nombre.equals(etapa)) return salida.buffer.estimateMaximumLag();
+        }
+        throw new IllegalArgumentException("Etapa desconocida: " + etapa);
+    }
+
+    public long getDescartes(String sumidero) {
+        for (Salida salida : salidas) {
+            if (salida.nombre.equals(sumidero)) return salida.descartes.getValor();
+        }
+        throw new IllegalArgumentException("Sumidero desconocido: " + sumidero);
+    }
+
+    private void registrarMetricas() {
+        List<String> etapas = new ArrayList<>();
+        etapas.add("parser");
+        etapas.add("filtro");
+        etapas.add("reglas");
+        for (Salida salida : salidas) etapas.add(salida.nombre);
+        for (final String etapa : etapas) {
+            metricas.add(Metricas.medidor(METRICA_COLA, "Elementos en espera por etapa de la tubería", "etapa=\"" + etapa + "\"",
+                                          new Metricas.Medidor() {
+                @Override
+                public double valor() {
+                    return getProfundidad(etapa);
+                }
+            }));
+        }
+        for (Salida salida : salidas) {
+            salida.descartes = Metricas.contador(METRICA_DESCARTES, "Decisiones que un sumidero no alcanzó a consumir",
+                                                 "sumidero=\"" + salida.nombre + "\"");
+            metricas.add(salida.descartes);
+        }
+        lineasInvalidas = Metricas.contador(METRICA_INVALIDAS, "Líneas del puerto serie que no son muestras válidas", "");
+        muestrasFiltradas = Metricas.contador(METRICA_FILTRADAS, "Muestras fuera del rango de los sensores", "");
+        metricas.add(lineasInvalidas);
+        metricas.add(muestrasFiltradas);
+    }
+
+    // Las de otras tuberías (otras zonas o instancias) siguen registradas
+    private void retirarMetricas() {
+        for (Metricas.Metrica metrica : metricas) {
+            Metricas.retirar(metrica);
+        }
+        metricas.clear();
+    }
+
+    /**
+     * Deja de aceptar líneas, vacía lo que queda en las etapas y espera a que
+     * los sumideros entreguen su último lote (máximo 5 s)
+     */
+    @Override
+    public void close() {
+        lectura.close();
+        if (iniciada) {
+            try {
+                for (Salida salida : salidas) {
+                    salida.terminado.await(5, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            retirarMetricas();
+        }
+        hilos.shutdown();
+    }
+
+    /**
+     * Prueba de contrapresión: java ui_invernadero.TuberiaControl [placas] [segundos]
+     * Las líneas entran lo más rápido posible; la interfaz tarda 2 ms por
+     * repintado y el disco 5 ms por escritura, y aun así las reglas siguen al
+     * ritmo del lector.
+     */
+    public static void main(String args[]) throws Exception {
+        final int placas = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        final int segundos = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        final MotorControlAutomatico[] motores = new MotorControlAutomatico[placas];
+        for (int p = 0; p < placas; p++) {
+            motores[p] = new MotorControlAutomatico(null);
+        }
+        final long[] decisiones = new long[1];
+        final long[] repintados = new long[1];
+        final long[] escrituras = new long[2];     // escrituras, decisiones escritas
+
+        TuberiaControl tuberia = new TuberiaControl(1024, new Reglas() {
+            @Override
+            public int evaluar(Muestra muestra, List<String> eventos) {
+                MotorControlAutomatico motor = motores[muestra.getPlaca()];
+                motor.ejecutar(muestra.getTemperaturaLM35(), muestra.getHumedadAnalogica(), muestra.getValorLDR());
+                decisiones[0]++;
+                return motor.getMascara();
+            }
+        });
+        tuberia.agregarSumidero("interfaz", Politica.ULTIMO_VALOR, 256, 1, new Sumidero() {
+            @Override
+            public void consumir(List<Decision> lote) throws Exception {
+                Thread.sleep(2);
+                repintados[0]++;
+            }
+        });
+        tuberia.agregarSumidero("persistencia", Politica.AGRUPAR, 4096, 4096, new Sumidero() {
+            @Override
+            public void consumir(List<Decision> lote) throws Exception {
+                Thread.sleep(5);
+                escrituras[0]++;
+                escrituras[1] += lote.size();
+            }
+        });
+        tuberia.agregarSumidero("metricas", Politica.DESCARTAR, 1024, 1, new Sumidero() {
+            @Override
+            public void consumir(List<Decision> lote) {
+                Metricas.muestraRecibida();
+            }
+        });
+        tuberia.iniciar();
+        ServidorMetricas.iniciarSiConfigurado();
+
+        GeneradorCarga generador = new GeneradorCarga(placas, 3L);
+        LoteMuestras lote = new LoteMuestras(placas);
+        String[] lineas = new String[placas];
+        long enviadas = 0;
+        int profundidadMaxima = 0;
+        long inicio = System.nanoTime();
+        long fin = inicio + TimeUnit.SECONDS.toNanos(segundos);
+        long tiempo = 0;
+        while (System.nanoTime() < fin) {
+            lote.limpiar();
+            generador.generar(lote, 0, placas, tiempo);
+            for (int p = 0; p < placas; p++) {
+                lineas[p] = ProtocoloArduino.formatearMuestra(lote.getTemperatura(p), lote.getHumedad(p), lote.getValorLDR(p));
+            }
+            for (int p = 0; p < placas; p++) {
+                tuberia.recibirLinea(p, tiempo, lineas[p]);
+            }
+            enviadas += placas;
+            tiempo += 1000;
+            profundidadMaxima = Math.max(profundidadMaxima, tuberia.getProfundidad("parser"));
+        }
+        long duracionLectura = System.nanoTime() - inicio;
+        System.out.printf("Profundidad al terminar: parser %d, filtro %d, reglas %d, interfaz %d, persistencia %d, métricas %d%n",
+                          tuberia.getProfundidad("parser"), tuberia.getProfundidad("filtro"), tuberia.getProfundidad("reglas"),
+                          tuberia.getProfundidad("interfaz"), tuberia.getProfundidad("persistencia"), tuberia.getProfundidad("metricas"));
+        tuberia.close();
+        long duracion = System.nanoTime() - inicio;
+
+        System.out.printf("%d placas, %d s: %,d líneas leídas (%,.0f líneas/s), %,d decisiones%n",
+                          placas, segundos, enviadas, enviadas / (duracionLectura / 1e9), decisiones[0]);
+        System.out.printf("Vaciado final: %.0f ms, profundidad máxima del parser: %d%n",
+                          (duracion - duracionLectura) / 1e6, profundidadMaxima);
+        System.out.printf("Interfaz (2 ms, último valor): %,d repintados, %,d saltadas%n",
+                          repintados[0], tuberia.getDescartes("interfaz"));
+        System.out.printf("Persistencia (5 ms, agrupada): %,d escrituras, %,d decisiones (%.0f por lote), %,d descartadas%n",
+                          escrituras[0], escrituras[1], escrituras[0] == 0 ? 0.0 : (double) escrituras[1] / escrituras[0],
+                          tuberia.getDescartes("persistencia"));
+        System.out.printf("Métricas (descartar): %,d descartadas%n", tuberia.getDescartes("metricas"));
+    }
+}
@@ -0,0 +1,222 @@
+package ui_invernadero;
+
+import java.util.SplittableRandom;
+
+/**
+ * Ventana deslizante por tiempo sobre las lecturas de un sensor
+ * Mantiene suma, máximo y mínimo de las muestras de los últimos duracionMs
+ * con costo O(1) amortizado por muestra: la suma es acumulada y el máximo y
+ * el mínimo salen de dos colas monótonas. La memoria es fija (un anillo
+ * dimensionado con el período mínimo entre muestras); si llegan más muestras
+ * de las previstas se descartan las más viejas y la ventana deja de
+ * considerarse completa hasta que vuelva a cubrir toda la duración. Lo
+ * mismo después de un hueco sin muestras más largo que la duración.
+ * @author Nicom
+ */
+public final class VentanaDeslizante {
+
+    private final long duracionMs;
+    private final int capacidad;
+
+    // Anillo de muestras: la más vieja en 'inicio'
+    private final long[] tiempos;
+    private final double[] valores;
+    private int inicio = 0;
+    private int cantidad = 0;
+    private double suma = 0;
+
+    // Colas monótonas con posiciones del anillo (decreciente / creciente)
+    private final int[] colaMaximo;
+    private final int[] colaMinimo;
+    private int inicioMaximo, cantidadMaximo;
+    private int inicioMinimo, cantidadMinimo;
+
+    private long primeraMs = Long.MIN_VALUE;      // Primera muestra desde el último reinicio o hueco
+    private long ultimaMs = Long.MIN_VALUE;
+    private long desbordeMs = Long.MIN_VALUE;     // Última muestra descartada por falta de lugar
+
+    /**
+     * @param duracionMs largo de la ventana
+     * @param periodoMinimoMs separación mínima esperada entre muestras (dimensiona el anillo)
+     */
+    public VentanaDeslizante(long duracionMs, long periodoMinimoMs) {
+        if (duracionMs <= 0 || periodoMinimoMs <= 0) {
+            throw new IllegalArgumentException("Duración y período deben ser positivos");
+        }
+        this.duracionMs = duracionMs;
+        this.capacidad = (int) Math.min(1 << 20, duracionMs / periodoMinimoMs + 2);
+        this.tiempos = new long[capacidad];
+        this.valores = new double[capacidad];
+        this.colaMaximo = new int[capacidad];
+        this.colaMinimo = new int[capacidad];
+    }
+
+    public void agregar(long tiempoMs, double valor) {
+        if (cantidad == capacidad) {
+            desbordeMs = tiempos[inicio];
+            expulsar();
+        }
+        int posicion = (inicio + cantidad) % capacidad;
+        tiempos[posicion] = tiempoMs;
+        valores[posicion] = valor;
+        cantidad++;
+        suma += valor;
+        ultimaMs = tiempoMs;
+
+        // Las muestras que ya no pueden ser máximo (o mínimo) salen por detrás
+        while (cantidadMaximo > 0 && valores[colaMaximo[(inicioMaximo + cantidadMaximo - 1) % capacidad]] <= valor) {
+            cantidadMaximo--;
+        }
+        colaMaximo[(inicioMaximo + cantidadMaximo++) % capacidad] = posicion;
+        while (cantidadMinimo > 0 && valores[colaMinimo[(inicioMinimo + cantidadMinimo - 1) % capacidad]] >= valor) {
+            cantidadMinimo--;
+        }
+        colaMinimo[(inicioMinimo + cantidadMinimo++) % capacidad] = posicion;
+
+        // Fuera de la ventana: anteriores a tiempoMs - duracionMs
+        while (cantidad > 0 && tiempos[inicio] < tiempoMs - duracionMs) {
+            expulsar();
+        }
+        // Sola en la ventana (la primera o después de un hueco más largo que la duración): la cobertura empieza acá
+        if (cantidad == 1) primeraMs = tiempoMs;
+    }
+
+    private void expulsar() {
+        if (cantidadMaximo > 0 && colaMaximo[inicioMaximo] == inicio) {
+            inicioMaximo = (inicioMaximo + 1) % capacidad;
+            cantidadMaximo--;
+        }
+        if (cantidadMinimo > 0 && colaMinimo[inicioMinimo] == inicio) {
+            inicioMinimo = (inicioMinimo + 1) % capacidad;
+            cantidadMinimo--;
+        }
+        suma -= valores[inicio];
+        inicio = (inicio + 1) % capacidad;
+        if (--cantidad == 0) suma = 0;             // Sin error acumulado al vaciarse
+    }
+
+    public void reiniciar() {
+        inicio = cantidad = 0;
+        inicioMaximo = cantidadMaximo = 0;
+        inicioMinimo = cantidadMinimo = 0;
+        suma = 0;
+        primeraMs = ultimaMs = desbordeMs = Long.MIN_VALUE;
+    }
+
+    /**
+     * true si las muestras cubren toda la duración sin huecos por desborde
+     */
+    public boolean isCompleta() {
+        return cantidad > 0 && ultimaMs - primeraMs >= duracionMs && desbordeMs < ultimaMs - duracionMs;
+    }
+
+    // Agregados de la ventana (NaN si está vacía)
+
+    public double getPromedio() {
+        return cantidad > 0 ? suma / cantidad : Double.NaN;
+    }
+
+    public double getMaximo() {
+        return cantidadMaximo > 0 ? valores[colaMaximo[inicioMaximo]] : Double.NaN;
+    }
+
+    public double getMinimo() {
+        return cantidadMinimo > 0 ? valores[colaMinimo[inicioMinimo]] : Double.NaN;
+    }
+
+    /**
+     * Todas las muestras de la ventana completa superan el umbral
+     */
+    public boolean isSostenidoSobre(double umbral) {
+        return isCompleta() && getMinimo() > umbral;
+    }
+
+    /**
+     * Todas las muestras de la ventana completa quedan en o bajo el umbral
+     */
+    public boolean isSostenidoBajo(double umbral) {
+        return isCompleta() && getMaximo() <= umbral;
+    }
+
+    public int getCantidad() {
+        return cantidad;
+    }
+
+    public int getCapacidad() {
+        return capacidad;
+    }
+
+    public long getDuracionMs() {
+        return duracionMs;
+    }
+
+    /**
+     * Verificación contra recorrer la ventana y costo por muestra:
+     * java ui_invernadero.VentanaDeslizante [muestras]
+     */
+    public static void main(String args[]) {
+        int muestras = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        SplittableRandom aleatorio = new SplittableRandom(37);
+        long[] tiempos = new long[muestras];
+        double[] valores = new double[muestras];
+        long tiempo = 0;
+        double valor = 50;
+        for (int i = 0; i < muestras; i++) {
+            tiempo += 250 + aleatorio.nextInt(1500);               // Lecturas irregulares
+            valor = Math.max(20, Math.min(80, valor + (aleatorio.nextDouble() - 0.5)));
+            tiempos[i] = tiempo;
+            valores[i] = Math.round(valor * 10) / 10.0;
+        }
+
+        // Verificación con una ventana de 5 minutos
+        VentanaDeslizante ventana = new VentanaDeslizante(300_000, 250);
+        int desde = 0;
+        for (int i = 0; i < Math.min(muestras, 200_000); i++) {
+            ventana.agregar(tiempos[i], valores[i]);
+            while (tiempos[desde] < tiempos[i] - 300_000) desde++;
+            double maximo = Double.NEGATIVE_INFINITY;
+            double minimo = Double.POSITIVE_INFINITY;
+            double suma = 0;
+            for (int j = desde; j <= i; j++) {
+                maximo = Math.max(maximo, valores[j]);
+                minimo = Math.min(minimo, valores[j]);
+                suma += valores[j];
+            }
+            if (ventana.getMaximo() != maximo || ventana.getMinimo() != minimo
+                    || Math.abs(ventana.getPromedio() - suma / (i - desde + 1)) > 1e-6) {
+                throw new IllegalStateException("Diferencia en la muestra " + i);
+            }
+        }
+        System.out.println("Verificación: máximo, mínimo y promedio iguales al recorrido completo");
+
+        // Hueco más largo que la ventana (sensor sin datos): una sola lectura no la completa
+        VentanaDeslizante hueco = new VentanaDeslizante(300_000, 250);
+        for (long t = 0; t <= 300_000; t += 1000) hueco.agregar(t, 55);
+        boolean completaAntes = hueco.isCompleta();
+        hueco.agregar(1_000_000, 55);
+        if (!completaAntes || hueco.isCompleta() || hueco.isSostenidoSobre(51)) {
+            throw new IllegalStateException("La ventana quedó completa con una sola lectura después del hueco");
+        }
+        for (long t = 1_001_000; t <= 1_300_000; t += 1000) hueco.agregar(t, 55);
+        if (!hueco.isSostenidoSobre(51)) {
+            throw new IllegalStateException("La ventana no volvió a completarse después del hueco");
+        }
+        System.out.println("Hueco de datos: la ventana vuelve a contar desde la primera lectura nueva");
+
+        for (long duracion : new long[] {60_000, 300_000, 3_600_000}) {
+            double ns = 0;
+            double control = 0;
+            for (int v = 0; v < 3; v++) {                          // Las primeras vueltas calientan el JIT
+                ventana = new VentanaDeslizante(duracion, 250);
+                long inicio = System.nanoTime();
+                for (int i = 0; i < muestras; i++) {
+                    ventana.agregar(tiempos[i], valores[i]);
+                    control += ventana.getMaximo() + ventana.getMinimo() + ventana.getPromedio();
+                }
+                ns = (double) (System.nanoTime() - inicio) / muestras;
+            }
+            System.out.printf("Ventana de %,d s: %.1f ns/muestra, %,d muestras en el anillo (control %.0f)%n",
+                              duracion / 1000, ns, ventana.getCapacidad(), control);
+        }
+    }
+}